@@ -0,0 +1,140 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.util.*;
+
+/**
+ * Represents a single (parameterized) operation on a hot path of libjitsi the
+ * average time and allocation of which are measured by
+ * {@link BenchmarkRunner}.
+ */
+public abstract class Benchmark
+{
+    /**
+     * The name of this <tt>Benchmark</tt> (e.g. <tt>codec.silk.encode</tt>).
+     */
+    private final String name;
+
+    /**
+     * The parameters of this <tt>Benchmark</tt> (e.g. the number of mixed
+     * streams) by name.
+     */
+    private final Map<String, String> params
+        = new LinkedHashMap<String, String>();
+
+    /**
+     * Initializes a new <tt>Benchmark</tt> instance with a specific name.
+     *
+     * @param name the name of the new instance
+     */
+    protected Benchmark(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Verifies the output of the measured operation (e.g. against reference
+     * vectors or a reference implementation). Invoked by
+     * {@link BenchmarkRunner} once before {@link #setUp()} and not measured.
+     *
+     * @return the named results of the verification (e.g. a signal-to-noise
+     * ratio) to be reported along with the measurement; empty if there is
+     * nothing to report
+     * @throws Exception if the verification fails
+     */
+    public Map<String, String> check()
+        throws Exception
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Gets the name of this <tt>Benchmark</tt>.
+     *
+     * @return the name of this <tt>Benchmark</tt>
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Gets the parameters of this <tt>Benchmark</tt> by name.
+     *
+     * @return the parameters of this <tt>Benchmark</tt> by name
+     */
+    public Map<String, String> getParams()
+    {
+        return Collections.unmodifiableMap(params);
+    }
+
+    /**
+     * Gets the name of this <tt>Benchmark</tt> along with its parameters as
+     * displayed to the user and matched by the filter of
+     * {@link BenchmarkRunner}.
+     *
+     * @return the name of this <tt>Benchmark</tt> along with its parameters
+     */
+    public String getQualifiedName()
+    {
+        if (params.isEmpty())
+            return name;
+
+        StringBuilder s = new StringBuilder(name);
+        String separator = "[";
+
+        for (Map.Entry<String, String> param : params.entrySet())
+        {
+            s.append(separator).append(param.getKey()).append('=')
+                    .append(param.getValue());
+            separator = ",";
+        }
+        return s.append(']').toString();
+    }
+
+    /**
+     * Performs the measured operation once. The result is to be consumed by
+     * the caller so that the virtual machine cannot eliminate the operation.
+     *
+     * @return a value which depends on the output of the operation
+     * @throws Exception if the operation fails
+     */
+    public abstract int run()
+        throws Exception;
+
+    /**
+     * Sets a parameter of this <tt>Benchmark</tt>.
+     *
+     * @param name the name of the parameter to set
+     * @param value the value of the parameter to set
+     * @return this <tt>Benchmark</tt>
+     */
+    protected Benchmark setParam(String name, Object value)
+    {
+        params.put(name, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Prepares this <tt>Benchmark</tt> for the invocations of {@link #run()}.
+     * Not measured.
+     *
+     * @throws Exception if the preparation fails
+     */
+    public void setUp()
+        throws Exception
+    {
+    }
+
+    /**
+     * Releases the resources acquired by {@link #setUp()}. Not measured.
+     */
+    public void tearDown()
+    {
+    }
+}
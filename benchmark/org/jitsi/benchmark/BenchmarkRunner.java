@@ -0,0 +1,428 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.regex.*;
+
+import org.apache.commons.math3.distribution.*;
+import org.apache.commons.math3.stat.descriptive.*;
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.conference.*;
+import org.jitsi.service.libjitsi.*;
+import org.json.simple.*;
+
+/**
+ * Runs the libjitsi benchmarks and reports the average time and the allocated
+ * memory per operation of each of them. The results are written as JSON in
+ * the format of the Java Microbenchmark Harness (JMH) so that they may be
+ * tracked over releases with the tools which consume the latter. The results
+ * of the verification of each benchmark (see {@link Benchmark#check()}) are
+ * reported along with its measurement.
+ * <p>
+ * The arguments are of the form <tt>--name=value</tt>:
+ * <tt>--filter</tt> is a regular expression which selects the benchmarks to
+ * run by qualified name, <tt>--output</tt> is the JSON file to write,
+ * <tt>--warmup-iterations</tt>, <tt>--iterations</tt> and
+ * <tt>--iteration-time</tt> (in milliseconds) control the measurement and
+ * <tt>--list</tt> lists the benchmarks without running them.
+ * </p>
+ */
+public class BenchmarkRunner
+{
+    /**
+     * The confidence level of the reported score errors (as with JMH).
+     */
+    private static final double CONFIDENCE = 0.999;
+
+    /**
+     * The default number of measurement iterations of each benchmark.
+     */
+    private static final int DEFAULT_ITERATIONS = 5;
+
+    /**
+     * The default duration in milliseconds of each (warmup or measurement)
+     * iteration.
+     */
+    private static final long DEFAULT_ITERATION_TIME = 1000;
+
+    /**
+     * The default number of warmup iterations of each benchmark.
+     */
+    private static final int DEFAULT_WARMUP_ITERATIONS = 3;
+
+    /**
+     * The sink of the values returned by {@link Benchmark#run()} which keeps
+     * the virtual machine from eliminating the measured operations.
+     */
+    private static volatile int sink;
+
+    /**
+     * Creates all benchmarks known to <tt>BenchmarkRunner</tt>.
+     *
+     * @return a list of all benchmarks known to <tt>BenchmarkRunner</tt>
+     */
+    private static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        benchmarks.addAll(CodecBenchmark.createBenchmarks());
+        benchmarks.addAll(SRTPBenchmark.createBenchmarks());
+        benchmarks.addAll(HMACSHA1Benchmark.createBenchmarks());
+        benchmarks.addAll(RawPacketBenchmark.createBenchmarks());
+        benchmarks.addAll(AudioMixingBenchmark.createBenchmarks());
+        benchmarks.addAll(PacketizerBenchmark.createBenchmarks());
+        benchmarks.addAll(PcmKernelsBenchmark.createBenchmarks());
+        benchmarks.addAll(ResamplerBenchmark.createBenchmarks());
+        benchmarks.addAll(ImgStreamingBenchmark.createBenchmarks());
+        return benchmarks;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread so far.
+     *
+     * @return the number of bytes allocated by the current thread so far or
+     * <tt>-1</tt> if the virtual machine does not support the measurement
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+        {
+            try
+            {
+                return
+                    ((com.sun.management.ThreadMXBean) threadMXBean)
+                        .getThreadAllocatedBytes(
+                                Thread.currentThread().getId());
+            }
+            catch (UnsupportedOperationException uoe)
+            {
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the benchmarks selected by the command-line arguments.
+     *
+     * @param args the command-line arguments
+     * @throws Exception if a benchmark fails or the results cannot be written
+     */
+    public static void main(String[] args)
+        throws Exception
+    {
+        Map<String, String> argMap = parseCommandLineArgs(args);
+        String filter = argMap.get("--filter");
+        Pattern pattern
+            = ((filter == null) || (filter.length() == 0))
+                ? null
+                : Pattern.compile(filter);
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (Benchmark benchmark : createBenchmarks())
+        {
+            if ((pattern == null)
+                    || pattern.matcher(benchmark.getQualifiedName()).find())
+                benchmarks.add(benchmark);
+        }
+
+        if (argMap.containsKey("--list"))
+        {
+            for (Benchmark benchmark : benchmarks)
+                System.out.println(benchmark.getQualifiedName());
+            return;
+        }
+
+        BenchmarkRunner runner
+            = new BenchmarkRunner(
+                    parseInt(
+                            argMap.get("--warmup-iterations"),
+                            DEFAULT_WARMUP_ITERATIONS),
+                    parseInt(argMap.get("--iterations"), DEFAULT_ITERATIONS),
+                    parseInt(
+                            argMap.get("--iteration-time"),
+                            (int) DEFAULT_ITERATION_TIME));
+        JSONArray results = new JSONArray();
+
+        LibJitsi.start();
+        try
+        {
+            for (Benchmark benchmark : benchmarks)
+                results.add(runner.run(benchmark));
+        }
+        finally
+        {
+            LibJitsi.stop();
+        }
+
+        String output = argMap.get("--output");
+
+        if ((output != null) && (output.length() != 0))
+        {
+            Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(output),
+                    "UTF-8");
+
+            try
+            {
+                results.writeJSONString(writer);
+            }
+            finally
+            {
+                writer.close();
+            }
+            System.out.println("Results written to " + output);
+        }
+    }
+
+    /**
+     * Parses command-line arguments of the form <tt>--name=value</tt> or
+     * <tt>--name</tt>.
+     *
+     * @param args the command-line arguments to parse
+     * @return the values of <tt>args</tt> by name
+     */
+    private static Map<String, String> parseCommandLineArgs(String[] args)
+    {
+        Map<String, String> argMap = new HashMap<String, String>();
+
+        for (String arg : args)
+        {
+            int keyEndIndex = arg.indexOf('=');
+
+            if (keyEndIndex == -1)
+                argMap.put(arg, null);
+            else
+            {
+                argMap.put(
+                        arg.substring(0, keyEndIndex),
+                        arg.substring(keyEndIndex + 1));
+            }
+        }
+        return argMap;
+    }
+
+    /**
+     * Parses a specific <tt>String</tt> as an <tt>int</tt> value.
+     *
+     * @param s the <tt>String</tt> to parse
+     * @param defaultValue the value to return if <tt>s</tt> is <tt>null</tt>
+     * or empty
+     * @return the <tt>int</tt> value represented by <tt>s</tt> or
+     * <tt>defaultValue</tt>
+     */
+    private static int parseInt(String s, int defaultValue)
+    {
+        return
+            ((s == null) || (s.length() == 0))
+                ? defaultValue
+                : Integer.parseInt(s);
+    }
+
+    /**
+     * Creates the JSON representation of a metric in the format of JMH.
+     *
+     * @param samples the samples of the metric (one per iteration)
+     * @param unit the unit of the metric
+     * @return the JSON representation of the metric
+     */
+    @SuppressWarnings("unchecked")
+    private static JSONObject toJSON(DescriptiveStatistics samples, String unit)
+    {
+        JSONObject metric = new JSONObject();
+        double score = samples.getMean();
+        double error = Double.NaN;
+        long n = samples.getN();
+
+        if (n > 1)
+        {
+            double t
+                = new TDistribution(n - 1).inverseCumulativeProbability(
+                        1 - (1 - CONFIDENCE) / 2);
+
+            error = t * samples.getStandardDeviation() / Math.sqrt(n);
+        }
+
+        JSONArray confidence = new JSONArray();
+        JSONArray rawData = new JSONArray();
+        JSONArray fork = new JSONArray();
+
+        confidence.add(score - error);
+        confidence.add(score + error);
+        for (double sample : samples.getValues())
+            fork.add(sample);
+        rawData.add(fork);
+
+        metric.put("score", score);
+        metric.put("scoreError", error);
+        metric.put("scoreConfidence", confidence);
+        metric.put("scoreUnit", unit);
+        metric.put("rawData", rawData);
+        return metric;
+    }
+
+    /**
+     * The number of measurement iterations of each benchmark.
+     */
+    private final int iterations;
+
+    /**
+     * The duration in milliseconds of each (warmup or measurement) iteration.
+     */
+    private final long iterationTime;
+
+    /**
+     * The number of warmup iterations of each benchmark.
+     */
+    private final int warmupIterations;
+
+    /**
+     * Initializes a new <tt>BenchmarkRunner</tt> instance.
+     *
+     * @param warmupIterations the number of warmup iterations of each
+     * benchmark
+     * @param iterations the number of measurement iterations of each
+     * benchmark
+     * @param iterationTime the duration in milliseconds of each iteration
+     */
+    public BenchmarkRunner(
+            int warmupIterations,
+            int iterations,
+            long iterationTime)
+    {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationTime = iterationTime;
+    }
+
+    /**
+     * Runs a specific <tt>Benchmark</tt> and returns its results in the JSON
+     * format of JMH.
+     *
+     * @param benchmark the <tt>Benchmark</tt> to run
+     * @return the results of <tt>benchmark</tt> in the JSON format of JMH
+     * @throws Exception if <tt>benchmark</tt> fails
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject run(Benchmark benchmark)
+        throws Exception
+    {
+        DescriptiveStatistics time = new DescriptiveStatistics();
+        DescriptiveStatistics alloc = new DescriptiveStatistics();
+        Map<String, String> checks = benchmark.check();
+
+        benchmark.setUp();
+        try
+        {
+            for (int i = 0; i < warmupIterations; i++)
+                runIteration(benchmark, null, null);
+            for (int i = 0; i < iterations; i++)
+                runIteration(benchmark, time, alloc);
+        }
+        finally
+        {
+            benchmark.tearDown();
+        }
+
+        System.out.println(
+                String.format(
+                        "%-56s %12.1f ns/op %10.0f B/op",
+                        benchmark.getQualifiedName(),
+                        time.getMean(),
+                        alloc.getMean()));
+        for (Map.Entry<String, String> check : checks.entrySet())
+        {
+            System.out.println(
+                    String.format(
+                            "    %-52s %s",
+                            check.getKey(),
+                            check.getValue()));
+        }
+
+        JSONObject result = new JSONObject();
+        JSONObject params = new JSONObject();
+
+        params.putAll(benchmark.getParams());
+
+        result.put("benchmark", benchmark.getName());
+        result.put("mode", "avgt");
+        result.put("threads", 1);
+        result.put("forks", 0);
+        result.put("jvm", System.getProperty("java.home"));
+        result.put("vmName", System.getProperty("java.vm.name"));
+        result.put("vmVersion", System.getProperty("java.vm.version"));
+        result.put("warmupIterations", warmupIterations);
+        result.put("warmupTime", iterationTime + " ms");
+        result.put("measurementIterations", iterations);
+        result.put("measurementTime", iterationTime + " ms");
+        if (!params.isEmpty())
+            result.put("params", params);
+        result.put("primaryMetric", toJSON(time, "ns/op"));
+
+        JSONObject secondaryMetrics = new JSONObject();
+
+        if (alloc.getN() != 0)
+            secondaryMetrics.put("gc.alloc.rate.norm", toJSON(alloc, "B/op"));
+        result.put("secondaryMetrics", secondaryMetrics);
+        if (!checks.isEmpty())
+        {
+            JSONObject checksJSON = new JSONObject();
+
+            checksJSON.putAll(checks);
+            result.put("checks", checksJSON);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a specific <tt>Benchmark</tt> repeatedly for the duration of one
+     * iteration.
+     *
+     * @param benchmark the <tt>Benchmark</tt> to run
+     * @param time the statistics to add the average time in nanoseconds per
+     * operation of the iteration to or <tt>null</tt> for a warmup iteration
+     * @param alloc the statistics to add the average number of bytes
+     * allocated per operation of the iteration to or <tt>null</tt>
+     * @throws Exception if <tt>benchmark</tt> fails
+     */
+    private void runIteration(
+            Benchmark benchmark,
+            DescriptiveStatistics time,
+            DescriptiveStatistics alloc)
+        throws Exception
+    {
+        long duration = iterationTime * 1000000L;
+        long operations = 0;
+        int sink = 0;
+        long startAllocatedBytes = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        long elapsedTime;
+
+        do
+        {
+            sink += benchmark.run();
+            operations++;
+        }
+        while ((elapsedTime = System.nanoTime() - startTime) < duration);
+
+        long endAllocatedBytes = getAllocatedBytes();
+
+        BenchmarkRunner.sink += sink;
+        if (time != null)
+            time.addValue(elapsedTime / (double) operations);
+        if ((alloc != null) && (startAllocatedBytes != -1))
+        {
+            alloc.addValue(
+                    (endAllocatedBytes - startAllocatedBytes)
+                        / (double) operations);
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.util.*;
+
+import javax.media.*;
+import javax.media.format.*;
+
+import org.jitsi.service.neomedia.codec.*;
+
+/**
+ * Measures the encoding of a frame of audio or the decoding of a packet of
+ * audio by one of the pure-Java audio codecs of libjitsi.
+ */
+public class CodecBenchmark
+    extends Benchmark
+{
+    /**
+     * Creates the benchmarks of the encoders and the decoders of the pure-Java
+     * audio codecs of libjitsi.
+     *
+     * @return a list of the benchmarks of the pure-Java audio codecs of
+     * libjitsi
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        String[][] codecs
+            = {
+                {
+                    "alaw",
+                    "org.jitsi.impl.neomedia.codec.audio.alaw.JavaEncoder",
+                    "net.sf.fmj.media.codec.audio.alaw.Decoder",
+                    "8000", "20"
+                },
+                {
+                    "g729",
+                    "org.jitsi.impl.neomedia.codec.audio.g729.JavaEncoder",
+                    "org.jitsi.impl.neomedia.codec.audio.g729.JavaDecoder",
+                    "8000", "20"
+                },
+                {
+                    "ilbc",
+                    "org.jitsi.impl.neomedia.codec.audio.ilbc.JavaEncoder",
+                    "org.jitsi.impl.neomedia.codec.audio.ilbc.JavaDecoder",
+                    "8000", Integer.toString(Constants.ILBC_MODE)
+                },
+                {
+                    "silk",
+                    "org.jitsi.impl.neomedia.codec.audio.silk.JavaEncoder",
+                    "org.jitsi.impl.neomedia.codec.audio.silk.JavaDecoder",
+                    "16000", "20"
+                },
+                {
+                    "ulaw",
+                    "org.jitsi.impl.neomedia.codec.audio.ulaw.JavaEncoder",
+                    "org.jitsi.impl.neomedia.codec.audio.ulaw.JavaDecoder",
+                    "8000", "20"
+                }
+            };
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (String[] codec : codecs)
+        {
+            for (boolean decode : new boolean[] { false, true })
+            {
+                benchmarks.add(
+                        new CodecBenchmark(
+                                codec[0],
+                                codec[1],
+                                codec[2],
+                                Integer.parseInt(codec[3]),
+                                Integer.parseInt(codec[4]),
+                                decode));
+            }
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Generates one second of speech-like (i.e. voiced with a varying pitch
+     * and amplitude, and noisy) audio.
+     *
+     * @param sampleRate the sample rate of the audio to generate
+     * @return one second of speech-like audio at <tt>sampleRate</tt> in 16-bit
+     * signed little-endian samples
+     */
+    static byte[] generateSpeech(int sampleRate)
+    {
+        Random random = new Random(sampleRate);
+        byte[] pcm = new byte[2 * sampleRate];
+        double f0 = 0;
+        double phase = 0;
+
+        for (int i = 0; i < sampleRate; i++)
+        {
+            if (i % (sampleRate / 10) == 0)
+                f0 = 90 + random.nextInt(200);
+            phase += 2 * Math.PI * f0 / sampleRate;
+
+            double envelope
+                = 0.5 + 0.5 * Math.sin(2 * Math.PI * i / (sampleRate * 0.6));
+            double sample
+                = envelope
+                        * (6000 * Math.sin(phase)
+                            + 2500 * Math.sin(3.7 * phase))
+                    + 300 * random.nextGaussian();
+            int s
+                = (int) Math.max(
+                        Short.MIN_VALUE,
+                        Math.min(Short.MAX_VALUE, sample));
+
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        return pcm;
+    }
+
+    /**
+     * Opens a specific <tt>Codec</tt> for a specific input <tt>Format</tt>
+     * and the first output <tt>Format</tt> it supports for the input.
+     *
+     * @param codec the <tt>Codec</tt> to open
+     * @param inFormat the input <tt>Format</tt> to open <tt>codec</tt> for
+     * @return the output <tt>Format</tt> <tt>codec</tt> has been opened for
+     * @throws ResourceUnavailableException if <tt>codec</tt> fails to open
+     */
+    static Format open(Codec codec, Format inFormat)
+        throws ResourceUnavailableException
+    {
+        if (codec.setInputFormat(inFormat) == null)
+        {
+            throw new ResourceUnavailableException(
+                    codec.getName() + " does not support " + inFormat);
+        }
+
+        Format[] outFormats = codec.getSupportedOutputFormats(inFormat);
+
+        if ((outFormats == null)
+                || (outFormats.length == 0)
+                || (codec.setOutputFormat(outFormats[0]) == null))
+        {
+            throw new ResourceUnavailableException(
+                    codec.getName() + " has no output format for " + inFormat);
+        }
+        codec.open();
+        return outFormats[0];
+    }
+
+    /**
+     * Processes a specific input <tt>Buffer</tt> with a specific
+     * <tt>Codec</tt> until the latter has consumed the former.
+     *
+     * @param codec the <tt>Codec</tt> to process <tt>in</tt> with
+     * @param in the <tt>Buffer</tt> to be processed
+     * @param out the <tt>Buffer</tt> to receive the output of <tt>codec</tt>
+     * @param outputs the list to add a copy of each output of <tt>codec</tt>
+     * to or <tt>null</tt>
+     * @return the total length of the output of <tt>codec</tt>
+     */
+    static int process(Codec codec, Buffer in, Buffer out, List<byte[]> outputs)
+    {
+        int outLength = 0;
+        int result;
+
+        do
+        {
+            out.setDiscard(false);
+            out.setFlags(0);
+            out.setLength(0);
+            result = codec.process(in, out);
+            if ((result & PlugIn.BUFFER_PROCESSED_FAILED) != 0)
+            {
+                throw new IllegalStateException(
+                        codec.getName() + " failed to process");
+            }
+            if (((result & PlugIn.OUTPUT_BUFFER_NOT_FILLED) == 0)
+                    && !out.isDiscard()
+                    && (out.getLength() > 0))
+            {
+                outLength += out.getLength();
+                if (outputs != null)
+                {
+                    byte[] output = new byte[out.getLength()];
+
+                    System.arraycopy(
+                            out.getData(), out.getOffset(),
+                            output, 0,
+                            output.length);
+                    outputs.add(output);
+                }
+            }
+        }
+        while ((result & PlugIn.INPUT_BUFFER_NOT_CONSUMED) != 0);
+        return outLength;
+    }
+
+    /**
+     * The fully-qualified class name of the decoder.
+     */
+    private final String decoderClassName;
+
+    /**
+     * The <tt>Codec</tt> which is measured.
+     */
+    private Codec codec;
+
+    /**
+     * The <tt>Format</tt> of the input of {@link #codec}.
+     */
+    private Format codecInFormat;
+
+    /**
+     * Whether the decoder (rather than the encoder) is measured.
+     */
+    private final boolean decode;
+
+    /**
+     * The fully-qualified class name of the encoder.
+     */
+    private final String encoderClassName;
+
+    /**
+     * The duration in milliseconds of a frame of audio.
+     */
+    private final int frameDuration;
+
+    /**
+     * The index in {@link #inputs} of the next input of {@link #codec}.
+     */
+    private int index;
+
+    /**
+     * The <tt>Buffer</tt> which is input into {@link #codec}.
+     */
+    private final Buffer in = new Buffer();
+
+    /**
+     * The inputs of {@link #codec} i.e. the frames of audio to encode or the
+     * packets of audio to decode.
+     */
+    private final List<Object> inputs = new ArrayList<Object>();
+
+    /**
+     * The <tt>Buffer</tt> which receives the output of {@link #codec}.
+     */
+    private final Buffer out = new Buffer();
+
+    /**
+     * The sample rate of the audio.
+     */
+    private final int sampleRate;
+
+    /**
+     * Initializes a new <tt>CodecBenchmark</tt> instance.
+     *
+     * @param codecName the name of the codec to measure
+     * @param encoderClassName the fully-qualified class name of the encoder
+     * @param decoderClassName the fully-qualified class name of the decoder
+     * @param sampleRate the sample rate of the audio
+     * @param frameDuration the duration in milliseconds of a frame of audio
+     * @param decode <tt>true</tt> to measure the decoder or <tt>false</tt> to
+     * measure the encoder
+     */
+    public CodecBenchmark(
+            String codecName,
+            String encoderClassName,
+            String decoderClassName,
+            int sampleRate,
+            int frameDuration,
+            boolean decode)
+    {
+        super("codec." + codecName + (decode ? ".decode" : ".encode"));
+
+        this.encoderClassName = encoderClassName;
+        this.decoderClassName = decoderClassName;
+        this.sampleRate = sampleRate;
+        this.frameDuration = frameDuration;
+        this.decode = decode;
+
+        setParam("rate", sampleRate);
+        setParam("ptime", frameDuration);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Encodes or decodes one frame of audio.
+     */
+    @Override
+    public int run()
+    {
+        Object input = inputs.get(index);
+
+        in.setData(input);
+        in.setOffset(0);
+        in.setLength(
+                (input instanceof short[])
+                    ? ((short[]) input).length
+                    : ((byte[]) input).length);
+        in.setFormat(codecInFormat);
+        in.setDiscard(false);
+        in.setFlags(0);
+        in.setSequenceNumber((in.getSequenceNumber() + 1) & 0xFFFF);
+        in.setTimeStamp(in.getTimeStamp() + frameDuration * 1000000L);
+        if (++index == inputs.size())
+            index = 0;
+
+        return process(codec, in, out, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Opens the codec to measure and prepares its input. The input of a
+     * decoder is produced by the respective encoder.
+     */
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        Codec encoder
+            = (Codec) Class.forName(encoderClassName).newInstance();
+        /*
+         * Most of the encoders take the audio in bytes but, for example, the
+         * SILK encoder takes it in shorts.
+         */
+        boolean shortArray = true;
+
+        for (Format f : encoder.getSupportedInputFormats())
+        {
+            if (Format.byteArray.equals(f.getDataType()))
+            {
+                shortArray = false;
+                break;
+            }
+        }
+
+        Format pcmFormat
+            = new AudioFormat(
+                    AudioFormat.LINEAR,
+                    sampleRate,
+                    16,
+                    1,
+                    AudioFormat.LITTLE_ENDIAN,
+                    AudioFormat.SIGNED,
+                    Format.NOT_SPECIFIED,
+                    Format.NOT_SPECIFIED,
+                    shortArray ? Format.shortArray : Format.byteArray);
+        byte[] pcm = generateSpeech(sampleRate);
+        int frameLength = 2 * sampleRate * frameDuration / 1000;
+        Format encodedFormat = open(encoder, pcmFormat);
+
+        inputs.clear();
+        for (int off = 0; off + frameLength <= pcm.length; off += frameLength)
+        {
+            if (shortArray)
+            {
+                short[] frame = new short[frameLength / 2];
+
+                for (int i = 0; i < frame.length; i++)
+                {
+                    frame[i]
+                        = (short)
+                            ((pcm[off + 2 * i] & 0xFF)
+                                | (pcm[off + 2 * i + 1] << 8));
+                }
+                inputs.add(frame);
+            }
+            else
+            {
+                byte[] frame = new byte[frameLength];
+
+                System.arraycopy(pcm, off, frame, 0, frameLength);
+                inputs.add(frame);
+            }
+        }
+
+        if (decode)
+        {
+            List<byte[]> packets = new ArrayList<byte[]>();
+
+            try
+            {
+                for (Object frame : inputs)
+                {
+                    in.setData(frame);
+                    in.setOffset(0);
+                    in.setLength(
+                            shortArray
+                                ? ((short[]) frame).length
+                                : ((byte[]) frame).length);
+                    in.setFormat(pcmFormat);
+                    in.setSequenceNumber(packets.size());
+                    process(encoder, in, out, packets);
+                }
+            }
+            finally
+            {
+                encoder.close();
+            }
+            inputs.clear();
+            inputs.addAll(packets);
+
+            codec = (Codec) Class.forName(decoderClassName).newInstance();
+            codecInFormat = encodedFormat;
+            open(codec, encodedFormat);
+        }
+        else
+        {
+            codec = encoder;
+            codecInFormat = pcmFormat;
+        }
+
+        index = 0;
+        in.setSequenceNumber(0);
+        in.setTimeStamp(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Closes the measured codec.
+     */
+    @Override
+    public void tearDown()
+    {
+        if (codec != null)
+        {
+            codec.close();
+            codec = null;
+        }
+        inputs.clear();
+    }
+}
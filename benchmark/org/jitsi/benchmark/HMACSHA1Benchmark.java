@@ -0,0 +1,325 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.util.*;
+
+import org.bouncycastle.crypto.*;
+import org.bouncycastle.crypto.digests.*;
+import org.bouncycastle.crypto.macs.*;
+import org.bouncycastle.crypto.params.*;
+import org.jitsi.impl.neomedia.transform.srtp.*;
+
+/**
+ * Measures the authentication of an SRTP packet with HMAC-SHA1 by
+ * {@link HMACSHA1} and by BouncyCastle's <tt>HMac</tt> (which
+ * <tt>HMACSHA1</tt> replaces in the crypto contexts). Before the measurement,
+ * <tt>HMACSHA1</tt> is verified against the test vectors of RFC 2202 and
+ * against <tt>HMac</tt> for messages of various lengths and keys which are
+ * shorter and longer than a SHA-1 block.
+ */
+public class HMACSHA1Benchmark
+    extends Benchmark
+{
+    /**
+     * The test cases of HMAC-SHA1 of RFC 2202 as key, data and digest.
+     */
+    private static final byte[][][] RFC2202_TEST_CASES
+        = {
+            {
+                repeat(0x0b, 20),
+                ascii("Hi There"),
+                hex("b617318655057264e28bc0b6fb378c8ef146be00")
+            },
+            {
+                ascii("Jefe"),
+                ascii("what do ya want for nothing?"),
+                hex("effcdf6ae5eb2fa2d27416d5f184df9c259a7c79")
+            },
+            {
+                repeat(0xaa, 20),
+                repeat(0xdd, 50),
+                hex("125d7342b9ac11cd91a39af48aa17b4f63f175d3")
+            },
+            {
+                hex("0102030405060708090a0b0c0d0e0f10111213141516171819"),
+                repeat(0xcd, 50),
+                hex("4c9007f4026250c6bc8414f9bf50c86c2d7235da")
+            },
+            {
+                repeat(0x0c, 20),
+                ascii("Test With Truncation"),
+                hex("4c1a03424b55e07fe7f27be1d58bb9324a9a5a04")
+            },
+            {
+                repeat(0xaa, 80),
+                ascii(
+                        "Test Using Larger Than Block-Size Key - Hash Key"
+                            + " First"),
+                hex("aa4ae5e15272d00e95705637ce8a3b55ed402112")
+            },
+            {
+                repeat(0xaa, 80),
+                ascii(
+                        "Test Using Larger Than Block-Size Key and Larger Than"
+                            + " One Block-Size Data"),
+                hex("e8e99d0f45237d786d6bbaa7965c7808bbff1a91")
+            }
+        };
+
+    /**
+     * Encodes a specific <tt>String</tt> in US-ASCII.
+     *
+     * @param s the <tt>String</tt> to encode
+     * @return the US-ASCII encoding of <tt>s</tt>
+     */
+    private static byte[] ascii(String s)
+    {
+        byte[] bytes = new byte[s.length()];
+
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) s.charAt(i);
+        return bytes;
+    }
+
+    /**
+     * Creates the benchmarks of HMAC-SHA1 for audio- and video-sized SRTP
+     * packets.
+     *
+     * @return a list of the benchmarks of HMAC-SHA1
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (int length : new int[] { 172, 1212 })
+        {
+            benchmarks.add(new HMACSHA1Benchmark(length, false));
+            benchmarks.add(new HMACSHA1Benchmark(length, true));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Decodes a specific hexadecimal <tt>String</tt>.
+     *
+     * @param s the hexadecimal <tt>String</tt> to decode
+     * @return the <tt>byte</tt>s represented by <tt>s</tt>
+     */
+    private static byte[] hex(String s)
+    {
+        byte[] bytes = new byte[s.length() / 2];
+
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i]
+                = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Computes the HMAC-SHA1 of a specific message with a specific
+     * <tt>Mac</tt>.
+     *
+     * @param mac the <tt>Mac</tt> to compute the HMAC-SHA1 with
+     * @param key the key to initialize <tt>mac</tt> with
+     * @param data the message to authenticate
+     * @param byteAtATime <tt>true</tt> to update <tt>mac</tt> one
+     * <tt>byte</tt> at a time or <tt>false</tt> to update it with all of
+     * <tt>data</tt> at once
+     * @return the HMAC-SHA1 of <tt>data</tt>
+     */
+    private static byte[] mac(
+            Mac mac,
+            byte[] key,
+            byte[] data,
+            boolean byteAtATime)
+    {
+        byte[] digest = new byte[mac.getMacSize()];
+
+        mac.init(new KeyParameter(key));
+        if (byteAtATime)
+        {
+            for (byte b : data)
+                mac.update(b);
+        }
+        else
+            mac.update(data, 0, data.length);
+        mac.doFinal(digest, 0);
+        return digest;
+    }
+
+    /**
+     * Initializes a new <tt>byte</tt> array with a specific value repeated a
+     * specific number of times.
+     *
+     * @param b the value of the elements of the new array
+     * @param length the length of the new array
+     * @return a new <tt>byte</tt> array of <tt>length</tt> elements equal to
+     * <tt>b</tt>
+     */
+    private static byte[] repeat(int b, int length)
+    {
+        byte[] bytes = new byte[length];
+
+        Arrays.fill(bytes, (byte) b);
+        return bytes;
+    }
+
+    /**
+     * Whether {@link HMACSHA1} (rather than BouncyCastle's <tt>HMac</tt>) is
+     * measured.
+     */
+    private final boolean hmacsha1;
+
+    /**
+     * The <tt>Mac</tt> which is measured.
+     */
+    private Mac mac;
+
+    /**
+     * The packet which is authenticated (i.e. the SRTP header and the
+     * encrypted payload followed by the rollover counter).
+     */
+    private final byte[] packet;
+
+    /**
+     * The authentication tag of the last authenticated packet.
+     */
+    private final byte[] tag = new byte[20];
+
+    /**
+     * Initializes a new <tt>HMACSHA1Benchmark</tt> instance.
+     *
+     * @param length the length in bytes of the authenticated portion of the
+     * packets
+     * @param hmacsha1 <tt>true</tt> to measure {@link HMACSHA1} or
+     * <tt>false</tt> to measure BouncyCastle's <tt>HMac</tt>
+     */
+    public HMACSHA1Benchmark(int length, boolean hmacsha1)
+    {
+        super("srtp.hmac");
+
+        this.hmacsha1 = hmacsha1;
+
+        packet = new byte[length];
+        for (int i = 0; i < packet.length; i++)
+            packet[i] = (byte) i;
+
+        setParam("length", length);
+        setParam("mac", hmacsha1 ? "hmacsha1" : "bouncycastle");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Verifies {@link HMACSHA1} against the test cases of RFC 2202 and
+     * against BouncyCastle's <tt>HMac</tt>.
+     */
+    @Override
+    public Map<String, String> check()
+    {
+        Map<String, String> checks = new LinkedHashMap<String, String>();
+        Mac hmacSHA1 = new HMACSHA1();
+        Mac hMac = new HMac(new SHA1Digest());
+
+        for (byte[][] testCase : RFC2202_TEST_CASES)
+        {
+            for (boolean byteAtATime : new boolean[] { false, true })
+            {
+                byte[] key = testCase[0];
+                byte[] data = testCase[1];
+                byte[] digest = testCase[2];
+
+                if (!Arrays.equals(
+                            mac(hmacSHA1, key, data, byteAtATime),
+                            digest)
+                        || !Arrays.equals(
+                                mac(hMac, key, data, byteAtATime),
+                                digest))
+                {
+                    throw new IllegalStateException(
+                            "RFC 2202 test case \"" + new String(data)
+                                + "\" failed");
+                }
+            }
+        }
+        checks.put("rfc2202", RFC2202_TEST_CASES.length + " test cases");
+
+        Random random = new Random(2202);
+        int messages = 0;
+
+        for (int keyLength : new int[] { 20, 64, 65, 100 })
+        {
+            byte[] key = new byte[keyLength];
+
+            random.nextBytes(key);
+            for (int length = 0; length <= 300; length++)
+            {
+                byte[] data = new byte[length];
+
+                random.nextBytes(data);
+
+                byte[] expected = mac(hMac, key, data, false);
+
+                if (!Arrays.equals(mac(hmacSHA1, key, data, false), expected)
+                        || !Arrays.equals(
+                                mac(hmacSHA1, key, data, true),
+                                expected))
+                {
+                    throw new IllegalStateException(
+                            "HMACSHA1 differs from HMac for a key of "
+                                + keyLength + " bytes and " + length
+                                + " bytes of data");
+                }
+                messages++;
+            }
+        }
+        checks.put("hmac", messages + " random messages match HMac");
+        return checks;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Authenticates one packet.
+     */
+    @Override
+    public int run()
+    {
+        mac.update(packet, 0, packet.length);
+        mac.doFinal(tag, 0);
+        return tag[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Initializes the <tt>Mac</tt> with a 160-bit session authentication key.
+     */
+    @Override
+    public void setUp()
+    {
+        byte[] key = new byte[20];
+
+        for (int i = 0; i < key.length; i++)
+            key[i] = (byte) (0x50 + i);
+
+        mac = hmacsha1 ? new HMACSHA1() : new HMac(new SHA1Digest());
+        mac.init(new KeyParameter(key));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tearDown()
+    {
+        mac = null;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.util.*;
+
+import org.jitsi.impl.neomedia.imgstreaming.*;
+
+/**
+ * Measures the conversion of a desktop frame captured by AWT (as opposed to
+ * the native grabber) into the raw ARGB bytes streamed by <tt>ImageStream</tt>
+ * i.e. its scaling to the format size and its conversion to bytes. The frame
+ * is captured from a synthetic <tt>DesktopInteract</tt> so that the results
+ * do not depend on the display. The conversion of <tt>ImgStreamingUtils</tt>
+ * is measured against the per-pixel conversion into a newly-allocated image
+ * which it replaced (i.e. the <tt>legacy</tt> implementation).
+ */
+public class ImgStreamingBenchmark
+    extends Benchmark
+{
+    /**
+     * Creates the benchmarks of the conversion of a 1080p desktop frame to
+     * 1080p (i.e. no scaling) and to 720p.
+     *
+     * @return a list of the benchmarks of the conversion of desktop frames
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (int[] size : new int[][] { { 1920, 1080 }, { 1280, 720 } })
+        {
+            benchmarks.add(
+                    new ImgStreamingBenchmark(size[0], size[1], true));
+            benchmarks.add(
+                    new ImgStreamingBenchmark(size[0], size[1], false));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Converts a frame into raw ARGB bytes the way <tt>ImageStream</tt> did
+     * before the conversion of <tt>ImgStreamingUtils</tt> read the pixels in
+     * bulk and reused the scaled image.
+     *
+     * @param screen the frame to convert
+     * @param width the width to scale <tt>screen</tt> to
+     * @param height the height to scale <tt>screen</tt> to
+     * @param output the array to receive the raw bytes
+     */
+    private static void legacyConvert(
+            BufferedImage screen,
+            int width, int height,
+            byte[] output)
+    {
+        AffineTransform tx = new AffineTransform();
+        double scaleWidth = width / ((double) screen.getWidth());
+        double scaleHeight = height / ((double) screen.getHeight());
+
+        if ((Double.compare(scaleWidth, 1) != 0)
+                || (Double.compare(scaleHeight, 1) != 0))
+            tx.scale(scaleWidth, scaleHeight);
+
+        BufferedImage scaled
+            = new AffineTransformOp(tx, AffineTransformOp.TYPE_BILINEAR)
+                .filter(
+                        screen,
+                        new BufferedImage(
+                                width, height,
+                                BufferedImage.TYPE_INT_ARGB));
+        WritableRaster raster = scaled.getRaster();
+        int pixel[] = new int[4];
+        int off = 0;
+
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                raster.getPixel(x, y, pixel);
+                output[off++] = (byte) pixel[0];
+                output[off++] = (byte) pixel[1];
+                output[off++] = (byte) pixel[2];
+                output[off++] = (byte) pixel[3];
+            }
+        }
+    }
+
+    /**
+     * The <tt>DesktopInteract</tt> which captures the frames.
+     */
+    private DesktopInteract desktopInteract;
+
+    /**
+     * The height of the raw frames.
+     */
+    private final int height;
+
+    /**
+     * Whether the conversion which <tt>ImgStreamingUtils</tt> replaced
+     * (rather than <tt>ImgStreamingUtils</tt>) is measured.
+     */
+    private final boolean legacy;
+
+    /**
+     * The array which receives the raw bytes.
+     */
+    private byte[] output;
+
+    /**
+     * The scaled image reused across frames (as <tt>ImageStream</tt> does).
+     */
+    private BufferedImage scaledScreen;
+
+    /**
+     * The width of the raw frames.
+     */
+    private final int width;
+
+    /**
+     * Initializes a new <tt>ImgStreamingBenchmark</tt> instance.
+     *
+     * @param width the width of the raw frames
+     * @param height the height of the raw frames
+     * @param legacy <tt>true</tt> to measure the conversion which
+     * <tt>ImgStreamingUtils</tt> replaced or <tt>false</tt> to measure
+     * <tt>ImgStreamingUtils</tt>
+     */
+    public ImgStreamingBenchmark(int width, int height, boolean legacy)
+    {
+        super("imgstreaming.capture");
+
+        this.width = width;
+        this.height = height;
+        this.legacy = legacy;
+
+        setParam("size", width + "x" + height);
+        setParam("impl", legacy ? "legacy" : "fast");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Captures one frame and converts it into raw ARGB bytes.
+     */
+    @Override
+    public int run()
+    {
+        if (!desktopInteract.captureScreen(0, 0, 0, width, height, output))
+        {
+            BufferedImage screen = desktopInteract.captureScreen();
+
+            if (legacy)
+                legacyConvert(screen, width, height, output);
+            else
+            {
+                scaledScreen
+                    = ImgStreamingUtils.getScaledImage(
+                            screen,
+                            width, height,
+                            BufferedImage.TYPE_INT_ARGB,
+                            scaledScreen);
+                ImgStreamingUtils.getImageBytes(scaledScreen, output);
+            }
+        }
+        return output[output.length - 1];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Generates the desktop frame.
+     */
+    @Override
+    public void setUp()
+    {
+        desktopInteract = new SyntheticDesktopInteract(1920, 1080);
+        output = new byte[width * height * 4];
+        scaledScreen = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tearDown()
+    {
+        desktopInteract = null;
+        output = null;
+        scaledScreen = null;
+    }
+
+    /**
+     * Implements a <tt>DesktopInteract</tt> without a native grabber which
+     * captures a generated (rather than the actual) desktop frame in the
+     * <tt>BufferedImage</tt> type of <tt>java.awt.Robot</tt>.
+     */
+    private static class SyntheticDesktopInteract
+        implements DesktopInteract
+    {
+        /**
+         * The generated desktop frame.
+         */
+        private final BufferedImage screen;
+
+        /**
+         * Initializes a new <tt>SyntheticDesktopInteract</tt> instance with a
+         * desktop of a specific size.
+         *
+         * @param width the width of the desktop
+         * @param height the height of the desktop
+         */
+        public SyntheticDesktopInteract(int width, int height)
+        {
+            screen
+                = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+            Random random = new Random(width * height);
+            int[] row = new int[width];
+
+            // Horizontal runs of colour like windows, text and gradients.
+            for (int y = 0; y < height; y++)
+            {
+                int rgb = random.nextInt();
+
+                for (int x = 0; x < width; x++)
+                {
+                    if (random.nextInt(32) == 0)
+                        rgb = random.nextInt();
+                    row[x] = rgb;
+                }
+                screen.setRGB(0, y, width, 1, row, 0, width);
+            }
+        }
+
+        public boolean captureScreen(int display, byte[] output)
+        {
+            return false;
+        }
+
+        public boolean captureScreen(
+                int display,
+                long buffer, int bufferLength)
+        {
+            return false;
+        }
+
+        public boolean captureScreen(
+                int display,
+                int x, int y, int width, int height,
+                byte[] output)
+        {
+            return false;
+        }
+
+        public boolean captureScreen(
+                int display,
+                int x, int y, int width, int height,
+                long buffer, int bufferLength)
+        {
+            return false;
+        }
+
+        public BufferedImage captureScreen()
+        {
+            return screen;
+        }
+
+        public BufferedImage captureScreen(
+                int x, int y,
+                int width, int height)
+        {
+            return screen.getSubimage(x, y, width, height);
+        }
+    }
+}
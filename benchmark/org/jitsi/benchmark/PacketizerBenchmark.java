@@ -0,0 +1,320 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.util.*;
+
+import javax.media.*;
+import javax.media.format.*;
+
+import org.jitsi.service.neomedia.codec.*;
+
+/**
+ * Measures the round trip of an encoded video frame through the
+ * <tt>Packetizer</tt> and the <tt>DePacketizer</tt> of H.264 or VP8 i.e. the
+ * splitting of the frame into RTP payloads and their reassembly.
+ */
+public class PacketizerBenchmark
+    extends Benchmark
+{
+    /**
+     * Creates the benchmarks of the round trips through the H.264 and VP8
+     * packetizers and depacketizers for small (i.e. single-packet) and large
+     * (i.e. fragmented) frames.
+     *
+     * @return a list of the benchmarks of the packetizers and depacketizers
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (int frameLength : new int[] { 800, 20000 })
+        {
+            benchmarks.add(
+                    new PacketizerBenchmark(
+                            "h264",
+                            Constants.H264,
+                            "org.jitsi.impl.neomedia.codec.video.h264.Packetizer",
+                            "org.jitsi.impl.neomedia.codec.video.h264.DePacketizer",
+                            frameLength));
+            benchmarks.add(
+                    new PacketizerBenchmark(
+                            "vp8",
+                            Constants.VP8,
+                            "org.jitsi.impl.neomedia.codec.video.vp8.Packetizer",
+                            "org.jitsi.impl.neomedia.codec.video.vp8.DePacketizer",
+                            frameLength));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Generates an H.264 access unit in Annex B byte stream format which
+     * consists of a sequence parameter set, a picture parameter set and a
+     * coded slice of an IDR picture.
+     *
+     * @param random the <tt>Random</tt> to generate the contents with
+     * @param length the total length of the access unit to generate
+     * @return an H.264 access unit of <tt>length</tt> bytes
+     */
+    private static byte[] generateH264AccessUnit(Random random, int length)
+    {
+        byte[] frame = new byte[length];
+        int[] nalLengths = { 12, 4, length - 3 * 3 - 12 - 4 };
+        int[] nalHeaders
+            = {
+                0x67 /* Sequence parameter set */,
+                0x68 /* Picture parameter set */,
+                0x65 /* Coded slice of an IDR picture */
+            };
+        int off = 0;
+
+        for (int i = 0; i < nalLengths.length; i++)
+        {
+            frame[off++] = 0;
+            frame[off++] = 0;
+            frame[off++] = 1;
+            frame[off++] = (byte) nalHeaders[i];
+            // Non-zero bytes so that no start code is emulated.
+            for (int end = off + nalLengths[i] - 1; off < end; off++)
+                frame[off] = (byte) (1 + random.nextInt(255));
+        }
+        return frame;
+    }
+
+    /**
+     * The fully-qualified class name of the depacketizer.
+     */
+    private final String dePacketizerClassName;
+
+    /**
+     * The <tt>Codec</tt> which reassembles the frames from the RTP payloads.
+     */
+    private Codec dePacketizer;
+
+    /**
+     * The <tt>Buffer</tt> which receives the output of {@link #dePacketizer}.
+     */
+    private final Buffer depacketized = new Buffer();
+
+    /**
+     * The encoding of the frames.
+     */
+    private final String encoding;
+
+    /**
+     * The encoded frame which is packetized and depacketized.
+     */
+    private byte[] frame;
+
+    /**
+     * The <tt>Format</tt> of {@link #frame}.
+     */
+    private Format frameFormat;
+
+    /**
+     * The length in bytes of {@link #frame}.
+     */
+    private final int frameLength;
+
+    /**
+     * The <tt>Buffer</tt> which is input into {@link #packetizer}.
+     */
+    private final Buffer in = new Buffer();
+
+    /**
+     * The <tt>Buffer</tt> which receives the RTP payloads output by
+     * {@link #packetizer} and is input into {@link #dePacketizer}.
+     */
+    private final Buffer packet = new Buffer();
+
+    /**
+     * The <tt>Format</tt> of the RTP payloads output by {@link #packetizer}.
+     */
+    private Format packetFormat;
+
+    /**
+     * The <tt>Codec</tt> which splits the frames into RTP payloads.
+     */
+    private Codec packetizer;
+
+    /**
+     * The fully-qualified class name of the packetizer.
+     */
+    private final String packetizerClassName;
+
+    /**
+     * The RTP sequence number of the next RTP payload.
+     */
+    private long sequenceNumber;
+
+    /**
+     * Initializes a new <tt>PacketizerBenchmark</tt> instance.
+     *
+     * @param name the name of the video codec the packetization of which is
+     * to be measured
+     * @param encoding the encoding of the frames
+     * @param packetizerClassName the fully-qualified class name of the
+     * packetizer
+     * @param dePacketizerClassName the fully-qualified class name of the
+     * depacketizer
+     * @param frameLength the length in bytes of the encoded frames
+     */
+    public PacketizerBenchmark(
+            String name,
+            String encoding,
+            String packetizerClassName,
+            String dePacketizerClassName,
+            int frameLength)
+    {
+        super("packetizer." + name + ".roundtrip");
+
+        this.encoding = encoding;
+        this.packetizerClassName = packetizerClassName;
+        this.dePacketizerClassName = dePacketizerClassName;
+        this.frameLength = frameLength;
+
+        setParam("frame", frameLength);
+    }
+
+    /**
+     * Processes a specific <tt>Buffer</tt> with a specific <tt>Codec</tt>
+     * and fails if the latter fails.
+     *
+     * @param codec the <tt>Codec</tt> to process <tt>in</tt> with
+     * @param in the <tt>Buffer</tt> to be processed
+     * @param out the <tt>Buffer</tt> to receive the output of <tt>codec</tt>
+     * @return the result of the processing by <tt>codec</tt>
+     */
+    private static int process(Codec codec, Buffer in, Buffer out)
+    {
+        out.setDiscard(false);
+        out.setFlags(0);
+        out.setLength(0);
+
+        int result = codec.process(in, out);
+
+        if ((result & PlugIn.BUFFER_PROCESSED_FAILED) != 0)
+        {
+            throw new IllegalStateException(
+                    codec.getName() + " failed to process");
+        }
+        return result;
+    }
+
+    /**
+     * Determines whether a specific <tt>Codec</tt> has produced output.
+     *
+     * @param result the result of the processing by the <tt>Codec</tt>
+     * @param out the <tt>Buffer</tt> which received the output of the
+     * <tt>Codec</tt>
+     * @return <tt>true</tt> if <tt>out</tt> contains output; otherwise,
+     * <tt>false</tt>
+     */
+    private static boolean isFilled(int result, Buffer out)
+    {
+        return
+            ((result & PlugIn.OUTPUT_BUFFER_NOT_FILLED) == 0)
+                && !out.isDiscard()
+                && (out.getLength() > 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Packetizes one frame and depacketizes each of the resulting RTP
+     * payloads as soon as it is output.
+     */
+    @Override
+    public int run()
+    {
+        int sink = 0;
+        int packetizerResult;
+
+        in.setData(frame);
+        in.setOffset(0);
+        in.setLength(frame.length);
+        in.setFormat(frameFormat);
+        in.setDiscard(false);
+        in.setFlags(0);
+        in.setTimeStamp(in.getTimeStamp() + 33333333L);
+
+        do
+        {
+            packetizerResult = process(packetizer, in, packet);
+            if (!isFilled(packetizerResult, packet))
+                continue;
+
+            packet.setFormat(packetFormat);
+            packet.setSequenceNumber(sequenceNumber++);
+
+            int dePacketizerResult;
+
+            do
+            {
+                dePacketizerResult = process(dePacketizer, packet, depacketized);
+                if (isFilled(dePacketizerResult, depacketized))
+                    sink += depacketized.getLength();
+            }
+            while ((dePacketizerResult & PlugIn.INPUT_BUFFER_NOT_CONSUMED)
+                    != 0);
+        }
+        while ((packetizerResult & PlugIn.INPUT_BUFFER_NOT_CONSUMED) != 0);
+        return sink;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Opens the packetizer and the depacketizer and generates the frame.
+     */
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        Random random = new Random(frameLength);
+
+        if (Constants.H264.equals(encoding))
+            frame = generateH264AccessUnit(random, frameLength);
+        else
+        {
+            frame = new byte[frameLength];
+            random.nextBytes(frame);
+        }
+
+        frameFormat = new VideoFormat(encoding);
+        packetizer = (Codec) Class.forName(packetizerClassName).newInstance();
+        packetFormat = CodecBenchmark.open(packetizer, frameFormat);
+        dePacketizer
+            = (Codec) Class.forName(dePacketizerClassName).newInstance();
+        CodecBenchmark.open(dePacketizer, packetFormat);
+
+        sequenceNumber = 0;
+        in.setTimeStamp(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Closes the packetizer and the depacketizer.
+     */
+    @Override
+    public void tearDown()
+    {
+        if (packetizer != null)
+        {
+            packetizer.close();
+            packetizer = null;
+        }
+        if (dePacketizer != null)
+        {
+            dePacketizer.close();
+            dePacketizer = null;
+        }
+        frame = null;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.util.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.audiolevel.*;
+import org.jitsi.service.neomedia.event.*;
+
+/**
+ * Measures the <tt>PcmKernels</tt> on 20 ms frames of signed 16-bit little
+ * endian audio against the per-sample loops which they replaced (i.e. the
+ * <tt>scalar</tt> implementation) so that the speedup can be read from the
+ * results.
+ */
+public class PcmKernelsBenchmark
+    extends Benchmark
+{
+    /**
+     * The operation which calculates the sound pressure level of a frame.
+     */
+    private static final String LEVEL = "level";
+
+    /**
+     * The operation which applies gain to a copy of a frame.
+     */
+    private static final String GAIN = "gain";
+
+    /**
+     * The operation which mixes two frames i.e. converts them to <tt>int</tt>
+     * samples, adds them, clips the sums and converts them back.
+     */
+    private static final String MIX = "mix";
+
+    /**
+     * Creates the benchmarks of the <tt>PcmKernels</tt> and of the per-sample
+     * loops which they replaced for 20 ms frames at 8, 16 and 48 kHz.
+     *
+     * @return a list of the benchmarks of the <tt>PcmKernels</tt>
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (String operation : new String[] { LEVEL, GAIN, MIX })
+        {
+            for (int sampleRate : new int[] { 8000, 16000, 48000 })
+            {
+                benchmarks.add(
+                        new PcmKernelsBenchmark(operation, sampleRate, false));
+                benchmarks.add(
+                        new PcmKernelsBenchmark(operation, sampleRate, true));
+            }
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Applies gain to a frame the way <tt>BasicVolumeControl</tt> did before
+     * <tt>PcmKernels</tt>.
+     *
+     * @param buffer the frame
+     * @param offset the offset in <tt>buffer</tt> at which the frame starts
+     * @param length the length in bytes of the frame
+     * @param level the gain to apply
+     */
+    private static void scalarApplyGain(
+            byte[] buffer, int offset, int length,
+            float level)
+    {
+        for (int i = offset, toIndex = offset + length; i < toIndex; i += 2)
+        {
+            int i1 = i + 1;
+            short s = (short) ((buffer[i] & 0xff) | (buffer[i1] << 8));
+            int si = s;
+
+            si = (int) (si * level);
+            if (si > Short.MAX_VALUE)
+                s = Short.MAX_VALUE;
+            else if (si < Short.MIN_VALUE)
+                s = Short.MIN_VALUE;
+            else
+                s = (short) si;
+
+            buffer[i] = (byte) s;
+            buffer[i1] = (byte) (s >> 8);
+        }
+    }
+
+    /**
+     * Converts a frame to <tt>int</tt> samples the way
+     * <tt>AudioMixerPushBufferStream</tt> did before <tt>PcmKernels</tt>.
+     *
+     * @param in the frame
+     * @param out the <tt>int</tt> array to receive the samples
+     * @param count the number of samples to convert
+     */
+    private void scalarDecode(byte[] in, int[] out, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int sample = ArrayIOUtils.readInt16(in, i * 2);
+
+            switch (outSampleSizeInBits)
+            {
+            case 16:
+                break;
+            case 32:
+                sample = Math.round(sample * 65536F);
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+
+            out[i] = sample;
+        }
+    }
+
+    /**
+     * Calculates the sound pressure level of a frame the way
+     * <tt>AudioLevelCalculator</tt> did before <tt>PcmKernels</tt>.
+     *
+     * @param samples the frame
+     * @param offset the offset in <tt>samples</tt> at which the frame starts
+     * @param length the length in bytes of the frame
+     * @return the sound pressure level of the frame
+     */
+    private static int scalarSoundPressureLevel(
+            byte[] samples, int offset, int length)
+    {
+        double rms = 0;
+        int sampleCount = 0;
+
+        while (offset < length)
+        {
+            double sample = ArrayIOUtils.readShort(samples, offset);
+
+            sample /= Short.MAX_VALUE;
+            rms += sample * sample;
+            sampleCount++;
+
+            offset += 2;
+        }
+        rms = (sampleCount == 0) ? 0 : Math.sqrt(rms / sampleCount);
+
+        return (rms > 0) ? (int) (20 * Math.log10(rms / 0.00002)) : -127;
+    }
+
+    /**
+     * The first frame.
+     */
+    private byte[] frame1;
+
+    /**
+     * The second frame (mixed into the first one).
+     */
+    private byte[] frame2;
+
+    /**
+     * The frame which receives the mix or the frame with gain applied.
+     */
+    private byte[] mixFrame;
+
+    /**
+     * The operation which is measured.
+     */
+    private final String operation;
+
+    /**
+     * The size in bits of the <tt>int</tt> samples produced by
+     * {@link #scalarDecode(byte[], int[], int)}.
+     */
+    private int outSampleSizeInBits = 16;
+
+    /**
+     * The <tt>int</tt> samples of {@link #frame1}.
+     */
+    private int[] samples1;
+
+    /**
+     * The <tt>int</tt> samples of {@link #frame2}.
+     */
+    private int[] samples2;
+
+    /**
+     * The sample rate of the frames.
+     */
+    private final int sampleRate;
+
+    /**
+     * Whether the per-sample loops replaced by <tt>PcmKernels</tt> (rather
+     * than <tt>PcmKernels</tt>) are measured.
+     */
+    private final boolean scalar;
+
+    /**
+     * Initializes a new <tt>PcmKernelsBenchmark</tt> instance.
+     *
+     * @param operation the operation to measure
+     * @param sampleRate the sample rate of the frames
+     * @param scalar <tt>true</tt> to measure the per-sample loops replaced by
+     * <tt>PcmKernels</tt> or <tt>false</tt> to measure <tt>PcmKernels</tt>
+     */
+    public PcmKernelsBenchmark(
+            String operation,
+            int sampleRate,
+            boolean scalar)
+    {
+        super("pcm." + operation);
+
+        this.operation = operation;
+        this.sampleRate = sampleRate;
+        this.scalar = scalar;
+
+        setParam("rate", sampleRate);
+        setParam("impl", scalar ? "scalar" : "kernel");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Performs the measured operation on one 20 ms frame.
+     */
+    @Override
+    public int run()
+    {
+        int length = frame1.length;
+
+        if (LEVEL.equals(operation))
+        {
+            return
+                scalar
+                    ? scalarSoundPressureLevel(frame1, 0, length)
+                    : AudioLevelCalculator.calculateSoundPressureLevel(
+                            frame1, 0, length,
+                            SimpleAudioLevelListener.MIN_LEVEL,
+                            SimpleAudioLevelListener.MAX_LEVEL,
+                            0);
+        }
+        else if (GAIN.equals(operation))
+        {
+            // Amplify so that the loud samples are clipped.
+            float gain = 1.9F;
+
+            System.arraycopy(frame1, 0, mixFrame, 0, length);
+            if (scalar)
+                scalarApplyGain(mixFrame, 0, length, gain);
+            else
+                PcmKernels.applyGain(mixFrame, 0, length, gain);
+            return mixFrame[length - 1];
+        }
+        else
+        {
+            int count = length / 2;
+
+            if (scalar)
+            {
+                // As AudioMixerPushBufferStream did before PcmKernels.
+                scalarDecode(frame1, samples1, count);
+                scalarDecode(frame2, samples2, count);
+                for (int i = 0; i < count; i++)
+                    samples1[i] += samples2[i];
+                for (int i = 0; i < count; i++)
+                {
+                    int sample = samples1[i];
+
+                    if (sample > Short.MAX_VALUE)
+                        samples1[i] = Short.MAX_VALUE;
+                    else if (sample < Short.MIN_VALUE)
+                        samples1[i] = Short.MIN_VALUE;
+                }
+                for (int i = 0; i < count; i++)
+                    ArrayIOUtils.writeInt16(samples1[i], mixFrame, i * 2);
+            }
+            else
+            {
+                PcmKernels.decode(frame1, 0, samples1, 0, count);
+                PcmKernels.decode(frame2, 0, samples2, 0, count);
+                PcmKernels.add(samples2, samples1, count);
+                PcmKernels.clip(
+                        samples1, 0, count,
+                        Short.MIN_VALUE, Short.MAX_VALUE);
+                PcmKernels.encode(samples1, 0, mixFrame, 0, count);
+            }
+            return mixFrame[length - 1];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Generates the frames.
+     */
+    @Override
+    public void setUp()
+    {
+        byte[] speech = CodecBenchmark.generateSpeech(sampleRate);
+        int length = 2 * sampleRate / 50;
+
+        frame1 = new byte[length];
+        frame2 = new byte[length];
+        mixFrame = new byte[length];
+        samples1 = new int[length / 2];
+        samples2 = new int[length / 2];
+        System.arraycopy(speech, length, frame1, 0, length);
+        System.arraycopy(speech, 7 * length, frame2, 0, length);
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.util.*;
+
+import javax.media.*;
+import javax.media.format.*;
+
+/**
+ * Measures the resampling of 20 ms frames of speech-like audio by the
+ * pure-Java <tt>JavaResampler</tt> and, if the native Speex library is
+ * available, by <tt>SpeexResampler</tt>.
+ * <p>
+ * Before the measurement, the quality of the resampler is determined with
+ * pure tones: the signal-to-noise (and distortion) ratio of a tone in the
+ * middle of the passband (<tt>snr</tt> in dB) and the gain at 80% of the
+ * Nyquist frequency of the lower sample rate (<tt>passband</tt> in dB). They
+ * are reported along with the parameters of the benchmark. The pure-Java
+ * resampler fails the benchmark if its quality is below
+ * {@link #MIN_SNR} or outside {@link #MAX_PASSBAND_RIPPLE}.
+ * </p>
+ */
+public class ResamplerBenchmark
+    extends Benchmark
+{
+    /**
+     * The fully-qualified class name of the pure-Java resampler.
+     */
+    private static final String JAVA
+        = "org.jitsi.impl.neomedia.codec.audio.resampler.JavaResampler";
+
+    /**
+     * The maximum deviation in dB from unity gain of the pure-Java resampler
+     * at 80% of the Nyquist frequency of the lower sample rate.
+     */
+    private static final double MAX_PASSBAND_RIPPLE = 0.1;
+
+    /**
+     * The minimum signal-to-noise ratio in dB of the pure-Java resampler.
+     */
+    private static final double MIN_SNR = 80;
+
+    /**
+     * The fully-qualified class name of the resampler which uses Speex.
+     */
+    private static final String SPEEX
+        = "org.jitsi.impl.neomedia.codec.audio.speex.SpeexResampler";
+
+    /**
+     * The amplitude of the tones with which the quality is determined.
+     */
+    private static final double TONE_AMPLITUDE = 16000;
+
+    /**
+     * Creates the benchmarks of the resamplers for common pairs of sample
+     * rates.
+     *
+     * @return a list of the benchmarks of the resamplers
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        int[][] rates
+            = {
+                { 8000, 48000 },
+                { 16000, 48000 },
+                { 44100, 48000 },
+                { 48000, 8000 },
+                { 48000, 16000 }
+            };
+        boolean speex;
+
+        try
+        {
+            Class.forName(SPEEX);
+            speex = true;
+        }
+        catch (Throwable t)
+        {
+            if (t instanceof ThreadDeath)
+                throw (ThreadDeath) t;
+            speex = false;
+        }
+
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (int[] rate : rates)
+        {
+            benchmarks.add(new ResamplerBenchmark(rate[0], rate[1], false));
+            if (speex)
+                benchmarks.add(new ResamplerBenchmark(rate[0], rate[1], true));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Initializes an <tt>AudioFormat</tt> of signed 16-bit little endian mono
+     * audio in bytes.
+     *
+     * @param sampleRate the sample rate of the <tt>AudioFormat</tt>
+     * @return an <tt>AudioFormat</tt> of signed 16-bit little endian mono
+     * audio in bytes at <tt>sampleRate</tt>
+     */
+    private static AudioFormat createFormat(int sampleRate)
+    {
+        return
+            new AudioFormat(
+                    AudioFormat.LINEAR,
+                    sampleRate,
+                    16,
+                    1,
+                    AudioFormat.LITTLE_ENDIAN,
+                    AudioFormat.SIGNED,
+                    Format.NOT_SPECIFIED,
+                    Format.NOT_SPECIFIED,
+                    Format.byteArray);
+    }
+
+    /**
+     * The <tt>Codec</tt> which is measured.
+     */
+    private Codec codec;
+
+    /**
+     * The fully-qualified class name of {@link #codec}.
+     */
+    private final String codecClassName;
+
+    /**
+     * The <tt>Buffer</tt> which is input into {@link #codec}.
+     */
+    private final Buffer in = new Buffer();
+
+    /**
+     * The index in {@link #speech} of the next frame.
+     */
+    private int index;
+
+    /**
+     * The input sample rate.
+     */
+    private final int inSampleRate;
+
+    /**
+     * The <tt>Buffer</tt> which receives the output of {@link #codec}.
+     */
+    private final Buffer out = new Buffer();
+
+    /**
+     * The output sample rate.
+     */
+    private final int outSampleRate;
+
+    /**
+     * One second of speech-like audio at {@link #inSampleRate}.
+     */
+    private byte[] speech;
+
+    /**
+     * Initializes a new <tt>ResamplerBenchmark</tt> instance.
+     *
+     * @param inSampleRate the input sample rate
+     * @param outSampleRate the output sample rate
+     * @param speex <tt>true</tt> to measure <tt>SpeexResampler</tt> or
+     * <tt>false</tt> to measure <tt>JavaResampler</tt>
+     */
+    public ResamplerBenchmark(
+            int inSampleRate,
+            int outSampleRate,
+            boolean speex)
+    {
+        super("resampler");
+
+        this.inSampleRate = inSampleRate;
+        this.outSampleRate = outSampleRate;
+        codecClassName = speex ? SPEEX : JAVA;
+
+        setParam("in", inSampleRate);
+        setParam("out", outSampleRate);
+        setParam("impl", speex ? "speex" : "java");
+    }
+
+    /**
+     * Initializes and opens a new instance of the measured resampler.
+     *
+     * @return the new resampler
+     * @throws Exception if the resampler fails to initialize or open
+     */
+    private Codec createCodec()
+        throws Exception
+    {
+        Codec codec = (Codec) Class.forName(codecClassName).newInstance();
+
+        if ((codec.setInputFormat(createFormat(inSampleRate)) == null)
+                || (codec.setOutputFormat(createFormat(outSampleRate))
+                        == null))
+        {
+            throw new ResourceUnavailableException(
+                    codec.getName() + " does not support " + inSampleRate
+                        + " to " + outSampleRate);
+        }
+        codec.open();
+        return codec;
+    }
+
+    /**
+     * Resamples a pure tone in 20 ms frames with a new instance of the
+     * measured resampler and fits a tone to the output after the first 100 ms
+     * (i.e. after the filters have settled).
+     *
+     * @param frequency the frequency in Hz of the tone
+     * @return the signal-to-noise ratio in dB and the gain in dB of the tone
+     * @throws Exception if the resampler fails
+     */
+    private double[] measureTone(double frequency)
+        throws Exception
+    {
+        Codec codec = createCodec();
+        int frameLength = 2 * (inSampleRate / 50);
+        byte[] frame = new byte[frameLength];
+        Buffer in = new Buffer();
+        Buffer out = new Buffer();
+        double[] y = new double[2 * outSampleRate];
+        int n = 0;
+        long t = 0;
+
+        try
+        {
+            // One second of the tone.
+            for (int i = 0; i < 50; i++)
+            {
+                for (int j = 0; j < frameLength; j += 2, t++)
+                {
+                    int s
+                        = (int) Math.round(
+                                TONE_AMPLITUDE
+                                    * Math.sin(
+                                            2 * Math.PI * frequency * t
+                                                / inSampleRate));
+
+                    frame[j] = (byte) s;
+                    frame[j + 1] = (byte) (s >> 8);
+                }
+                in.setData(frame);
+                in.setOffset(0);
+                in.setLength(frameLength);
+                in.setFormat(createFormat(inSampleRate));
+
+                List<byte[]> outputs = new ArrayList<byte[]>();
+
+                CodecBenchmark.process(codec, in, out, outputs);
+                for (byte[] output : outputs)
+                {
+                    for (int j = 0; j + 1 < output.length; j += 2)
+                    {
+                        y[n++]
+                            = (short)
+                                ((output[j] & 0xFF) | (output[j + 1] << 8));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            codec.close();
+        }
+
+        // Fit a sin(wk) + b cos(wk) by least squares.
+        double w = 2 * Math.PI * frequency / outSampleRate;
+        double ss = 0, sc = 0, cc = 0, ys = 0, yc = 0;
+        int k0 = outSampleRate / 10;
+
+        for (int k = k0; k < n; k++)
+        {
+            double sin = Math.sin(w * k);
+            double cos = Math.cos(w * k);
+
+            ss += sin * sin;
+            sc += sin * cos;
+            cc += cos * cos;
+            ys += y[k] * sin;
+            yc += y[k] * cos;
+        }
+
+        double det = ss * cc - sc * sc;
+        double a = (ys * cc - yc * sc) / det;
+        double b = (yc * ss - ys * sc) / det;
+        double signal = 0;
+        double noise = 0;
+
+        for (int k = k0; k < n; k++)
+        {
+            double fit = a * Math.sin(w * k) + b * Math.cos(w * k);
+            double e = y[k] - fit;
+
+            signal += fit * fit;
+            noise += e * e;
+        }
+        return
+            new double[]
+                    {
+                        10 * Math.log10(signal / noise),
+                        20 * Math.log10(
+                                Math.sqrt(a * a + b * b) / TONE_AMPLITUDE)
+                    };
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Resamples one 20 ms frame.
+     */
+    @Override
+    public int run()
+    {
+        int frameLength = 2 * (inSampleRate / 50);
+
+        in.setData(speech);
+        in.setOffset(index);
+        in.setLength(frameLength);
+        in.setDiscard(false);
+        in.setFlags(0);
+        in.setSequenceNumber((in.getSequenceNumber() + 1) & 0xFFFF);
+        in.setTimeStamp(in.getTimeStamp() + 20000000L);
+        index += frameLength;
+        if (index + frameLength > speech.length)
+            index = 0;
+
+        return CodecBenchmark.process(codec, in, out, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Determines the quality of the resampler and opens the resampler to
+     * measure.
+     */
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        int nyquist = Math.min(inSampleRate, outSampleRate) / 2;
+        double snr = measureTone(nyquist / 4.0 + 17)[0];
+        double passband = measureTone(0.8 * nyquist)[1];
+
+        setParam("snr", String.format(Locale.ROOT, "%.1f", snr));
+        setParam("passband", String.format(Locale.ROOT, "%.2f", passband));
+        if (JAVA.equals(codecClassName)
+                && ((snr < MIN_SNR)
+                        || (Math.abs(passband) > MAX_PASSBAND_RIPPLE)))
+        {
+            throw new IllegalStateException(
+                    "Insufficient quality: snr " + snr + " dB, passband "
+                        + passband + " dB");
+        }
+
+        codec = createCodec();
+        speech = CodecBenchmark.generateSpeech(inSampleRate);
+        in.setFormat(createFormat(inSampleRate));
+        index = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Closes the resampler.
+     */
+    @Override
+    public void tearDown()
+    {
+        if (codec != null)
+        {
+            codec.close();
+            codec = null;
+        }
+    }
+}
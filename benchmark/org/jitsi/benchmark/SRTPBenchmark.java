@@ -0,0 +1,224 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.benchmark;
+
+import java.util.*;
+
+import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.transform.srtp.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+
+/**
+ * Measures the protection of an RTP packet by
+ * {@link SRTPCryptoContext#transformPacket(RawPacket)} and its round trip
+ * through {@link SRTPCryptoContext#reverseTransformPacket(RawPacket)} with
+ * AES-CM and HMAC-SHA1 (i.e. the AES_CM_128_HMAC_SHA1_80 crypto suite).
+ * AES-CM is computed by either of its backends i.e. the Java Cryptography
+ * Extension or BouncyCastle (as selected by
+ * {@link SRTPCipherCTR#USE_JCE_PNAME}) so that they may be compared.
+ */
+public class SRTPBenchmark
+    extends Benchmark
+{
+    /**
+     * The SSRC of the protected RTP packets.
+     */
+    private static final long SSRC = 0x12345678L;
+
+    /**
+     * Creates the benchmarks of the SRTP transformation for audio- and
+     * video-sized RTP payloads with each of the AES-CM backends.
+     *
+     * @return a list of the benchmarks of the SRTP transformation
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (int payloadLength : new int[] { 160, 1200 })
+        {
+            for (boolean jce : new boolean[] { true, false })
+            {
+                benchmarks.add(new SRTPBenchmark(payloadLength, false, jce));
+                benchmarks.add(new SRTPBenchmark(payloadLength, true, jce));
+            }
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Initializes a new <tt>SRTPCryptoContext</tt> for AES-CM and HMAC-SHA1
+     * with a fixed master key and salt.
+     *
+     * @return a new <tt>SRTPCryptoContext</tt> for AES-CM and HMAC-SHA1
+     */
+    private static SRTPCryptoContext createContext()
+    {
+        byte[] masterKey = new byte[16];
+        byte[] masterSalt = new byte[14];
+
+        for (int i = 0; i < masterKey.length; i++)
+            masterKey[i] = (byte) i;
+        for (int i = 0; i < masterSalt.length; i++)
+            masterSalt[i] = (byte) (0xA0 + i);
+
+        SRTPPolicy policy
+            = new SRTPPolicy(
+                    SRTPPolicy.AESCM_ENCRYPTION, 16,
+                    SRTPPolicy.HMACSHA1_AUTHENTICATION, 20,
+                    10,
+                    14);
+        SRTPCryptoContext context
+            = new SRTPCryptoContext(
+                    SSRC, 0, 0,
+                    masterKey, masterSalt,
+                    policy);
+
+        context.deriveSrtpKeys(0);
+        return context;
+    }
+
+    /**
+     * Whether AES-CM is computed by the Java Cryptography Extension (rather
+     * than by BouncyCastle).
+     */
+    private final boolean jce;
+
+    /**
+     * The RTP packet which is protected (i.e. the header and the payload).
+     */
+    private final byte[] packet;
+
+    /**
+     * The <tt>SRTPCryptoContext</tt> which unprotects the packets or
+     * <tt>null</tt> if only the protection is measured.
+     */
+    private SRTPCryptoContext receiver;
+
+    /**
+     * Whether the round trip (rather than the protection only) is measured.
+     */
+    private final boolean roundTrip;
+
+    /**
+     * The <tt>SRTPCryptoContext</tt> which protects the packets.
+     */
+    private SRTPCryptoContext sender;
+
+    /**
+     * The RTP sequence number of the next packet.
+     */
+    private int sequenceNumber;
+
+    /**
+     * Initializes a new <tt>SRTPBenchmark</tt> instance.
+     *
+     * @param payloadLength the length in bytes of the payload of the RTP
+     * packets to protect
+     * @param roundTrip <tt>true</tt> to measure the protection followed by the
+     * unprotection or <tt>false</tt> to measure the protection only
+     * @param jce <tt>true</tt> to compute AES-CM by the Java Cryptography
+     * Extension or <tt>false</tt> to compute it by BouncyCastle
+     */
+    public SRTPBenchmark(int payloadLength, boolean roundTrip, boolean jce)
+    {
+        super(roundTrip ? "srtp.roundtrip" : "srtp.transform");
+
+        this.roundTrip = roundTrip;
+        this.jce = jce;
+
+        packet = new byte[12 + payloadLength];
+        packet[0] = (byte) 0x80;
+        packet[1] = 111;
+        packet[8] = (byte) (SSRC >> 24);
+        packet[9] = (byte) (SSRC >> 16);
+        packet[10] = (byte) (SSRC >> 8);
+        packet[11] = (byte) SSRC;
+        for (int i = 12; i < packet.length; i++)
+            packet[i] = (byte) i;
+
+        setParam("payload", payloadLength);
+        setParam("aes", jce ? "jce" : "bouncycastle");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Protects (and, optionally, unprotects) one RTP packet.
+     */
+    @Override
+    public int run()
+    {
+        RawPacket pkt = RawPacketPool.acquire(packet.length);
+
+        try
+        {
+            pkt.append(packet, packet.length);
+            pkt.writeByte(2, (byte) (sequenceNumber >> 8));
+            pkt.writeByte(3, (byte) sequenceNumber);
+            sequenceNumber = (sequenceNumber + 1) & 0xFFFF;
+
+            sender.transformPacket(pkt);
+            if (roundTrip && !receiver.reverseTransformPacket(pkt))
+                throw new IllegalStateException("SRTP authentication failed");
+            return pkt.getLength();
+        }
+        finally
+        {
+            RawPacketPool.release(pkt);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Selects the AES-CM backend and initializes the
+     * <tt>SRTPCryptoContext</tt>s.
+     */
+    @Override
+    public void setUp()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        if (cfg != null)
+        {
+            cfg.setProperty(
+                    SRTPCipherCTR.USE_JCE_PNAME,
+                    Boolean.toString(jce),
+                    true);
+        }
+        sender = createContext();
+        receiver = roundTrip ? createContext() : null;
+        sequenceNumber = 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Closes the <tt>SRTPCryptoContext</tt>s and restores the default
+     * AES-CM backend.
+     */
+    @Override
+    public void tearDown()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        if (cfg != null)
+            cfg.removeProperty(SRTPCipherCTR.USE_JCE_PNAME);
+        if (sender != null)
+        {
+            sender.close();
+            sender = null;
+        }
+        if (receiver != null)
+        {
+            receiver.close();
+            receiver = null;
+        }
+    }
+}
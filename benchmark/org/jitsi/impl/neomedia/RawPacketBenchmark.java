@@ -0,0 +1,394 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import javax.media.protocol.*;
+
+import org.jitsi.benchmark.*;
+import org.jitsi.impl.neomedia.transform.*;
+import org.jitsi.impl.neomedia.transform.srtp.*;
+
+/**
+ * Measures the time and, in particular, the allocation per RTP packet of the
+ * receive and the send paths of <tt>RTPConnectorInputStream</tt> and
+ * <tt>RTPConnectorOutputStream</tt> with an SRTP <tt>PacketTransformer</tt>.
+ * The sockets are replaced by in-memory stubs so that the allocation which is
+ * reported is the one of the streams, the <tt>PacketTransformer</tt> and
+ * <tt>RawPacketPool</tt> only. The receive path also includes the protection
+ * of the packet by the stub of the sender.
+ */
+public class RawPacketBenchmark
+    extends Benchmark
+{
+    /**
+     * The SSRC of the RTP packets.
+     */
+    private static final long SSRC = 0x12345678L;
+
+    /**
+     * Creates the benchmarks of the receive and the send paths for audio- and
+     * video-sized RTP payloads.
+     *
+     * @return a list of the benchmarks of the receive and the send paths
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (int payloadLength : new int[] { 160, 1200 })
+        {
+            benchmarks.add(new RawPacketBenchmark(payloadLength, true));
+            benchmarks.add(new RawPacketBenchmark(payloadLength, false));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Initializes a new <tt>SRTPCryptoContext</tt> for AES-CM and HMAC-SHA1
+     * with a fixed master key and salt.
+     *
+     * @return a new <tt>SRTPCryptoContext</tt> for AES-CM and HMAC-SHA1
+     */
+    private static SRTPCryptoContext createContext()
+    {
+        byte[] masterKey = new byte[16];
+        byte[] masterSalt = new byte[14];
+
+        for (int i = 0; i < masterKey.length; i++)
+            masterKey[i] = (byte) i;
+        for (int i = 0; i < masterSalt.length; i++)
+            masterSalt[i] = (byte) (0xA0 + i);
+
+        SRTPPolicy policy
+            = new SRTPPolicy(
+                    SRTPPolicy.AESCM_ENCRYPTION, 16,
+                    SRTPPolicy.HMACSHA1_AUTHENTICATION, 20,
+                    10,
+                    14);
+        SRTPCryptoContext context
+            = new SRTPCryptoContext(
+                    SSRC, 0, 0,
+                    masterKey, masterSalt,
+                    policy);
+
+        context.deriveSrtpKeys(0);
+        return context;
+    }
+
+    /**
+     * The <tt>byte</tt>s into which FMJ would read the received packets.
+     */
+    private final byte[] fmjBuffer
+        = new byte[RTPConnectorInputStream.PACKET_RECEIVE_BUFFER_LENGTH];
+
+    /**
+     * The <tt>RTPConnectorInputStream</tt> which receives the packets or
+     * <tt>null</tt> if the send path is measured.
+     */
+    private RTPConnectorInputStream inputStream;
+
+    /**
+     * The <tt>RTPConnectorOutputStream</tt> which sends the packets or
+     * <tt>null</tt> if the receive path is measured.
+     */
+    private RTPConnectorOutputStream outputStream;
+
+    /**
+     * The RTP packet which is received or sent (i.e. the header and the
+     * payload).
+     */
+    private final byte[] packet;
+
+    /**
+     * The <tt>DatagramPacket</tt> with which {@link #inputStream} receives.
+     */
+    private final DatagramPacket receiveDatagramPacket
+        = new DatagramPacket(new byte[0], 0);
+
+    /**
+     * Whether the receive path (rather than the send path) is measured.
+     */
+    private final boolean receive;
+
+    /**
+     * The <tt>SRTPCryptoContext</tt> which unprotects the received packets.
+     */
+    private SRTPCryptoContext receiver;
+
+    /**
+     * The <tt>SRTPCryptoContext</tt> which protects the sent packets and, on
+     * the receive path, the packets to be received.
+     */
+    private SRTPCryptoContext sender;
+
+    /**
+     * The <tt>RawPacket</tt> which wraps the buffer into which the stub of
+     * the socket of {@link #inputStream} protects a packet to be received.
+     */
+    private final RawPacket senderPacket = new RawPacket();
+
+    /**
+     * The RTP sequence number of the next packet.
+     */
+    private int sequenceNumber;
+
+    /**
+     * The number of <tt>byte</tt>s read by FMJ or written to the stub of the
+     * socket since the last invocation of {@link #run()}.
+     */
+    private int transferred;
+
+    /**
+     * Initializes a new <tt>RawPacketBenchmark</tt> instance.
+     *
+     * @param payloadLength the length in bytes of the payload of the RTP
+     * packets to receive or send
+     * @param receive <tt>true</tt> to measure the receive path or
+     * <tt>false</tt> to measure the send path
+     */
+    public RawPacketBenchmark(int payloadLength, boolean receive)
+    {
+        super(receive ? "rtp.receive" : "rtp.send");
+
+        this.receive = receive;
+
+        packet = new byte[12 + payloadLength];
+        packet[0] = (byte) 0x80;
+        packet[1] = 111;
+        packet[8] = (byte) (SSRC >> 24);
+        packet[9] = (byte) (SSRC >> 16);
+        packet[10] = (byte) (SSRC >> 8);
+        packet[11] = (byte) SSRC;
+        for (int i = 12; i < packet.length; i++)
+            packet[i] = (byte) i;
+
+        setParam("payload", payloadLength);
+    }
+
+    /**
+     * Writes the RTP sequence number of the next packet into
+     * {@link #packet}.
+     */
+    private void nextSequenceNumber()
+    {
+        packet[2] = (byte) (sequenceNumber >> 8);
+        packet[3] = (byte) sequenceNumber;
+        sequenceNumber = (sequenceNumber + 1) & 0xFFFF;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Receives or sends one RTP packet.
+     */
+    @Override
+    public int run()
+        throws IOException
+    {
+        transferred = 0;
+        nextSequenceNumber();
+        if (receive)
+        {
+            if (!inputStream.receive(receiveDatagramPacket))
+                throw new IOException("receive");
+        }
+        else if (outputStream.write(packet, 0, packet.length) < 0)
+        {
+            throw new IOException("write");
+        }
+        if (transferred == 0)
+            throw new IllegalStateException("SRTP authentication failed");
+        return transferred;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Initializes the <tt>SRTPCryptoContext</tt>s and the stream to be
+     * measured.
+     */
+    @Override
+    public void setUp()
+        throws IOException
+    {
+        sender = createContext();
+        sequenceNumber = 1;
+
+        if (receive)
+        {
+            receiver = createContext();
+
+            final PacketTransformer transformer
+                = new SRTPPacketTransformer(receiver);
+
+            inputStream
+                = new RTPConnectorInputStream()
+                {
+                    @Override
+                    protected RawPacket createRawPacket(
+                            DatagramPacket datagramPacket)
+                    {
+                        return
+                            transformer.reverseTransform(
+                                    super.createRawPacket(datagramPacket));
+                    }
+
+                    @Override
+                    protected void doLogPacket(DatagramPacket p)
+                    {
+                    }
+
+                    @Override
+                    protected void receivePacket(DatagramPacket p)
+                    {
+                        senderPacket.setBuffer(p.getData());
+                        senderPacket.setOffset(p.getOffset());
+                        senderPacket.setLength(0);
+                        senderPacket.append(packet, packet.length);
+                        sender.transformPacket(senderPacket);
+                        p.setLength(senderPacket.getLength());
+                    }
+                };
+            inputStream.setTransferHandler(
+                    new SourceTransferHandler()
+                    {
+                        public void transferData(PushSourceStream stream)
+                        {
+                            try
+                            {
+                                transferred
+                                    = stream.read(
+                                            fmjBuffer, 0,
+                                            fmjBuffer.length);
+                            }
+                            catch (IOException ioe)
+                            {
+                                throw new IllegalStateException(ioe);
+                            }
+                        }
+                    });
+        }
+        else
+        {
+            final PacketTransformer transformer
+                = new SRTPPacketTransformer(sender);
+
+            outputStream
+                = new RTPConnectorOutputStream()
+                {
+                    @Override
+                    protected RawPacket createRawPacket(
+                            byte[] buffer,
+                            int offset,
+                            int length)
+                    {
+                        return
+                            transformer.transform(
+                                    super.createRawPacket(
+                                            buffer, offset,
+                                            length));
+                    }
+
+                    @Override
+                    protected void doLogPacket(
+                            RawPacket packet,
+                            InetSocketAddress target)
+                    {
+                    }
+
+                    @Override
+                    protected boolean isSocketValid()
+                    {
+                        return true;
+                    }
+
+                    @Override
+                    protected void sendToTarget(
+                            RawPacket packet,
+                            InetSocketAddress target)
+                    {
+                        transferred += packet.getLength();
+                    }
+                };
+            outputStream.addTarget(InetAddress.getLoopbackAddress(), 5004);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Closes the stream and the <tt>SRTPCryptoContext</tt>s.
+     */
+    @Override
+    public void tearDown()
+    {
+        if (inputStream != null)
+        {
+            inputStream.close();
+            inputStream = null;
+        }
+        if (outputStream != null)
+        {
+            outputStream.close();
+            outputStream = null;
+        }
+        if (sender != null)
+        {
+            sender.close();
+            sender = null;
+        }
+        if (receiver != null)
+        {
+            receiver.close();
+            receiver = null;
+        }
+    }
+
+    /**
+     * Implements a <tt>PacketTransformer</tt> which protects and unprotects
+     * RTP packets with a single <tt>SRTPCryptoContext</tt> in place.
+     */
+    private static class SRTPPacketTransformer
+        implements PacketTransformer
+    {
+        /**
+         * The <tt>SRTPCryptoContext</tt> which protects and unprotects the
+         * packets.
+         */
+        private final SRTPCryptoContext context;
+
+        /**
+         * Initializes a new <tt>SRTPPacketTransformer</tt> instance.
+         *
+         * @param context the <tt>SRTPCryptoContext</tt> which is to protect
+         * and unprotect the packets
+         */
+        public SRTPPacketTransformer(SRTPCryptoContext context)
+        {
+            this.context = context;
+        }
+
+        public void close()
+        {
+        }
+
+        public RawPacket reverseTransform(RawPacket pkt)
+        {
+            return context.reverseTransformPacket(pkt) ? pkt : null;
+        }
+
+        public RawPacket transform(RawPacket pkt)
+        {
+            context.transformPacket(pkt);
+            return pkt;
+        }
+    }
+}
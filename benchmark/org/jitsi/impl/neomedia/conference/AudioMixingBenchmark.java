@@ -0,0 +1,239 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.conference;
+
+import java.util.*;
+
+import javax.media.*;
+import javax.media.format.*;
+
+import org.jitsi.benchmark.*;
+import org.jitsi.impl.neomedia.protocol.*;
+
+/**
+ * Measures the mixing of one 20 ms period of audio by
+ * <tt>AudioMixingPushBufferStream</tt> for each of <tt>N</tt> participants
+ * in a conference i.e. the production of <tt>N</tt> mixes each of which
+ * excludes the audio of the participant it is sent to. Both the mixing of the
+ * other <tt>N - 1</tt> inputs and the mix-minus (i.e. the subtraction of the
+ * own input from the sum of all inputs) are measured.
+ */
+public class AudioMixingBenchmark
+    extends Benchmark
+{
+    /**
+     * The sample rate of the mixed audio.
+     */
+    private static final double SAMPLE_RATE = 48000;
+
+    /**
+     * The number of samples per input stream in a 20 ms period.
+     */
+    private static final int SAMPLE_COUNT = (int) (SAMPLE_RATE / 50);
+
+    /**
+     * Creates the benchmarks of the audio mixing for conferences of 2 to 64
+     * participants.
+     *
+     * @return a list of the benchmarks of the audio mixing
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (int n = 2; n <= 64; n *= 2)
+        {
+            benchmarks.add(new AudioMixingBenchmark(n, false));
+            benchmarks.add(new AudioMixingBenchmark(n, true));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * The audio samples of each participant in the current period.
+     */
+    private int[][] inSamples;
+
+    /**
+     * The (single-element) arrays of the own audio samples of each
+     * participant which are subtracted by mix-minus.
+     */
+    private int[][][] minusInSamples;
+
+    /**
+     * The sum of {@link #inSamples} used by mix-minus.
+     */
+    private int[] mix;
+
+    /**
+     * Whether mix-minus (rather than the mixing of the other inputs) is
+     * measured.
+     */
+    private final boolean mixMinus;
+
+    /**
+     * The number of participants.
+     */
+    private final int n;
+
+    /**
+     * The audio samples of all participants but the respective one which are
+     * mixed for each participant.
+     */
+    private int[][][] otherInSamples;
+
+    /**
+     * The <tt>Buffer</tt>s which receive the mixes of the participants.
+     */
+    private Buffer[] outBuffers;
+
+    /**
+     * The <tt>AudioMixingPushBufferStream</tt>s which mix the audio for the
+     * participants.
+     */
+    private AudioMixingPushBufferStream[] outStreams;
+
+    /**
+     * Initializes a new <tt>AudioMixingBenchmark</tt> instance.
+     *
+     * @param n the number of participants
+     * @param mixMinus <tt>true</tt> to measure mix-minus or <tt>false</tt> to
+     * measure the mixing of the other inputs
+     */
+    public AudioMixingBenchmark(int n, boolean mixMinus)
+    {
+        super(mixMinus ? "mixer.mixminus" : "mixer.mix");
+
+        this.n = n;
+        this.mixMinus = mixMinus;
+
+        setParam("n", n);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Mixes one period of audio for each participant.
+     */
+    @Override
+    public int run()
+        throws Exception
+    {
+        int sink = 0;
+
+        if (mixMinus)
+        {
+            // As AudioMixerPushBufferStream#transferData(Buffer) does.
+            Arrays.fill(mix, 0);
+            for (int[] inStreamSamples : inSamples)
+            {
+                for (int i = 0; i < SAMPLE_COUNT; i++)
+                    mix[i] += inStreamSamples[i];
+            }
+        }
+
+        for (int p = 0; p < n; p++)
+        {
+            AudioMixingPushBufferStream outStream = outStreams[p];
+            Buffer outBuffer = outBuffers[p];
+
+            if (mixMinus)
+            {
+                outStream.setInSamples(
+                        mix, SAMPLE_COUNT,
+                        minusInSamples[p],
+                        null,
+                        SAMPLE_COUNT,
+                        0);
+            }
+            else
+                outStream.setInSamples(otherInSamples[p], SAMPLE_COUNT, 0);
+            outStream.read(outBuffer);
+            sink += outBuffer.getLength();
+        }
+        return sink;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Initializes an <tt>AudioMixer</tt> with an output stream for each
+     * participant and the audio of the participants.
+     */
+    @Override
+    public void setUp()
+    {
+        AudioFormat format
+            = new AudioFormat(
+                    AudioFormat.LINEAR,
+                    SAMPLE_RATE,
+                    16,
+                    1,
+                    AudioFormat.LITTLE_ENDIAN,
+                    AudioFormat.SIGNED,
+                    Format.NOT_SPECIFIED,
+                    Format.NOT_SPECIFIED,
+                    Format.byteArray);
+        AudioMixer audioMixer
+            = new AudioMixer(new FakePushBufferDataSource(format));
+        AudioMixerPushBufferStream audioMixerStream
+            = new AudioMixerPushBufferStream(audioMixer, format);
+        Random random = new Random(n);
+
+        inSamples = new int[n][SAMPLE_COUNT];
+        minusInSamples = new int[n][][];
+        mix = new int[SAMPLE_COUNT];
+        otherInSamples = new int[n][][];
+        outBuffers = new Buffer[n];
+        outStreams = new AudioMixingPushBufferStream[n];
+
+        for (int p = 0; p < n; p++)
+        {
+            double frequency = 100 + random.nextInt(400);
+
+            for (int i = 0; i < SAMPLE_COUNT; i++)
+            {
+                inSamples[p][i]
+                    = (int)
+                        (8000
+                            * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE)
+                            + 500 * random.nextGaussian());
+            }
+        }
+        for (int p = 0; p < n; p++)
+        {
+            minusInSamples[p] = new int[][] { inSamples[p] };
+            otherInSamples[p] = new int[n - 1][];
+            for (int q = 0, o = 0; q < n; q++)
+            {
+                if (q != p)
+                    otherInSamples[p][o++] = inSamples[q];
+            }
+            outBuffers[p] = new Buffer();
+            outStreams[p]
+                = new AudioMixingPushBufferStream(
+                        audioMixerStream,
+                        new AudioMixingPushBufferDataSource(audioMixer));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Releases the audio and the streams.
+     */
+    @Override
+    public void tearDown()
+    {
+        inSamples = null;
+        minusInSamples = null;
+        mix = null;
+        otherInSamples = null;
+        outBuffers = null;
+        outStreams = null;
+    }
+}
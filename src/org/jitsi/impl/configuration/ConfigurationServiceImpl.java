@@ -9,6 +9,7 @@ package org.jitsi.impl.configuration;
 import java.beans.*;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.jitsi.impl.configuration.xml.*;
 import org.jitsi.service.configuration.*;
@@ -73,6 +74,22 @@ public class ConfigurationServiceImpl
     private static final String DEFAULT_OVERRIDES_PROPS_FILE_NAME
                                              = "jitsi-default-overrides.properties";
 
+    /**
+     * The values of the properties which have been read through the typed
+     * getters such as {@link #getString(String)} and {@link #getInt(String,
+     * int)} mapped by property name. An entry is removed when the respective
+     * property changes.
+     */
+    private final Map<String, CachedProperty> cachedProperties
+        = new ConcurrentHashMap<String, CachedProperty>();
+
+    /**
+     * The number of times {@link #cachedProperties} has been invalidated. A
+     * value read from the properties is added to <tt>cachedProperties</tt>
+     * only if no invalidation has happened while it was being read.
+     */
+    private int cachedPropertiesGeneration;
+
     /**
      * A reference to the currently used configuration file.
      */
@@ -97,6 +114,27 @@ public class ConfigurationServiceImpl
     private Map<String, String> defaultProperties
                                                 = new HashMap<String, String>();
 
+    /**
+     * The index of the names in {@link #immutableDefaultProperties} and
+     * {@link #defaultProperties}.
+     */
+    private final PropertyNameIndex defaultPropertyNames
+        = new PropertyNameIndex();
+
+    /**
+     * The index of the names of the properties in {@link #store}. Kept in
+     * sync with the changes made through this instance and rebuilt from
+     * <tt>store</tt> when {@link #storePropertyNamesInvalid}.
+     */
+    private final PropertyNameIndex storePropertyNames
+        = new PropertyNameIndex();
+
+    /**
+     * The indicator which determines whether {@link #storePropertyNames} is to
+     * be rebuilt from {@link #store} before it is queried.
+     */
+    private boolean storePropertyNamesInvalid = true;
+
     /**
      * Our event dispatcher.
      */
@@ -116,11 +154,121 @@ public class ConfigurationServiceImpl
      */
     private ConfigurationStore store;
 
+    /**
+     * The time in milliseconds at which the changes to the properties which
+     * are being coalesced are to be stored in {@link #configurationFile}.
+     */
+    private long storeDeadline;
+
+    /**
+     * The indicator which determines whether there are changes to the
+     * properties which have not been stored in {@link #configurationFile} yet.
+     */
+    private boolean storePending;
+
+    /**
+     * The number of times the properties have been stored in
+     * {@link #configurationFile}.
+     */
+    private long stores;
+
+    /**
+     * The number of changes to the properties which have been coalesced with
+     * earlier changes i.e. the number of times the storing of the properties
+     * has been avoided.
+     */
+    private long storesAvoided;
+
+    /**
+     * The <tt>Thread</tt> which stores the coalesced changes to the properties
+     * in {@link #configurationFile} once {@link #storeDeadline} is reached.
+     */
+    private Thread storeThread;
+
+    /**
+     * The maximum time in nanoseconds that the storing of the properties in
+     * {@link #configurationFile} has taken.
+     */
+    private long storeTimeMax;
+
+    /**
+     * The total time in nanoseconds that the storing of the properties in
+     * {@link #configurationFile} has taken.
+     */
+    private long storeTimeTotal;
+
+    /**
+     * The time in milliseconds for which the changes to the properties are
+     * coalesced before they are stored in {@link #configurationFile} or
+     * <tt>0</tt> if they are stored right after each change.
+     *
+     * @see ConfigurationService#PNAME_CONFIGURATION_WRITE_BEHIND_DELAY
+     */
+    private final long writeBehindDelay;
+
     public ConfigurationServiceImpl()
     {
+        /*
+         * Invalidate the cached value of a property before anyone else gets
+         * notified about its change.
+         */
+        changeEventDispatcher.addPropertyChangeListener(
+                new PropertyChangeListener()
+                {
+                    public void propertyChange(PropertyChangeEvent evt)
+                    {
+                        invalidateCachedProperties(evt.getPropertyName());
+                    }
+                });
+
         // retrieve a reference to the FileAccessService
         this.faService = LibJitsi.getFileAccessService();
 
+        long writeBehindDelay = 0;
+        String s = getSystemProperty(PNAME_CONFIGURATION_WRITE_BEHIND_DELAY);
+
+        if (s != null)
+        {
+            try
+            {
+                writeBehindDelay = Long.parseLong(s.trim());
+            }
+            catch (NumberFormatException nfe)
+            {
+                logger.warn(
+                        "Invalid value of "
+                            + PNAME_CONFIGURATION_WRITE_BEHIND_DELAY + ": " + s,
+                        nfe);
+            }
+        }
+        this.writeBehindDelay = writeBehindDelay;
+        if (this.writeBehindDelay > 0)
+        {
+            /*
+             * Do not lose the changes which are being coalesced when the
+             * application exits.
+             */
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(getClass().getName() + ".shutdownHook")
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                flush();
+                            }
+                            catch (IOException ioe)
+                            {
+                                logger.error(
+                                        "Failed to store configuration on"
+                                            + " shutdown",
+                                        ioe);
+                            }
+                        }
+                    });
+        }
+
         try
         {
             debugPrintSystemProperties();
@@ -196,11 +344,14 @@ public class ConfigurationServiceImpl
         logger.info(configLogMsg);
         configLogger.info(configLogMsg);
 
-        doSetProperty(propertyName, property, isSystem);
+        synchronized (this)
+        {
+            doSetProperty(propertyName, property, isSystem);
+        }
 
         try
         {
-            storeConfiguration();
+            scheduleStoreConfiguration();
         }
         catch (IOException ex)
         {
@@ -244,12 +395,15 @@ public class ConfigurationServiceImpl
                         property.getValue());
         }
 
-        for (Map.Entry<String, Object> property : properties.entrySet())
-            doSetProperty(property.getKey(), property.getValue(), false);
+        synchronized (this)
+        {
+            for (Map.Entry<String, Object> property : properties.entrySet())
+                doSetProperty(property.getKey(), property.getValue(), false);
+        }
 
         try
         {
-            storeConfiguration();
+            scheduleStoreConfiguration();
         }
         catch (IOException ex)
         {
@@ -302,6 +456,7 @@ public class ConfigurationServiceImpl
         if (property == null)
         {
             store.removeProperty(propertyName);
+            updateStorePropertyNames(propertyName, false);
 
             if (isSystem)
             {
@@ -317,10 +472,16 @@ public class ConfigurationServiceImpl
                 //in the System property set and keep only a ref locally.
                 System.setProperty(propertyName, property.toString());
                 store.setSystemProperty(propertyName);
+                /*
+                 * Whether a system property is listed by the store depends on
+                 * its implementation.
+                 */
+                invalidateStorePropertyNames();
             }
             else
             {
                 store.setNonSystemProperty(propertyName, property);
+                updateStorePropertyNames(propertyName, true);
             }
         }
     }
@@ -360,7 +521,11 @@ public class ConfigurationServiceImpl
         logger.info(configLogMsg);
         configLogger.info(configLogMsg);
 
-        store.removeProperty(propertyName);
+        synchronized (this)
+        {
+            store.removeProperty(propertyName);
+            updateStorePropertyNames(propertyName, false);
+        }
 
         if (changeEventDispatcher.hasPropertyChangeListeners(propertyName))
             changeEventDispatcher.firePropertyChange(
@@ -368,7 +533,7 @@ public class ConfigurationServiceImpl
 
         try
         {
-            storeConfiguration();
+            scheduleStoreConfiguration();
         }
         catch (IOException ex)
         {
@@ -453,96 +618,26 @@ public class ConfigurationServiceImpl
     public List<String> getPropertyNamesByPrefix(String prefix,
             boolean exactPrefixMatch)
     {
-        HashSet<String> resultKeySet = new HashSet<String>();
-
-        //first fill in the names from the immutable default property set
-        Set<String> propertyNameSet;
-        String[] namesArray;
+        Set<String> resultKeySet = new TreeSet<String>();
 
-        if(immutableDefaultProperties.size() > 0)
-        {
-            propertyNameSet = immutableDefaultProperties.keySet();
-
-            namesArray
-                = propertyNameSet.toArray( new String[propertyNameSet.size()] );
-
-            getPropertyNamesByPrefix(prefix,
-                                     exactPrefixMatch,
-                                     namesArray,
-                                     resultKeySet);
-        }
+        //first fill in the names from the default property sets
+        defaultPropertyNames.getNamesByPrefix(
+                prefix,
+                exactPrefixMatch,
+                resultKeySet);
 
         //now get property names from the current store.
-        getPropertyNamesByPrefix(prefix,
-                                 exactPrefixMatch,
-                                 store.getPropertyNames(),
-                                 resultKeySet);
-
-        //finally, get property names from mutable default property set.
-        if(defaultProperties.size() > 0)
+        synchronized (storePropertyNames)
         {
-            propertyNameSet = defaultProperties.keySet();
-
-            namesArray
-                = propertyNameSet.toArray( new String[propertyNameSet.size()] );
-
-            getPropertyNamesByPrefix(prefix,
-                                     exactPrefixMatch,
-                                     namesArray,
-                                     resultKeySet);
+            getStorePropertyNames().getNamesByPrefix(
+                    prefix,
+                    exactPrefixMatch,
+                    resultKeySet);
         }
 
         return new ArrayList<String>( resultKeySet );
     }
 
-    /**
-     * Updates the specified <tt>String</tt> <tt>resulSet</tt> to contain all
-     * property names in the <tt>names</tt> array that partially or completely
-     * match the specified prefix. Depending on the value of the
-     * <tt>exactPrefixMatch</tt> parameter the method will (when false)
-     * or will not (when exactPrefixMatch is true) include property names that
-     * have prefixes longer than the specified <tt>prefix</tt> param.
-     *
-     * @param prefix a String containing the prefix (the non dotted non-caps
-     * part of a property name) that we're looking for.
-     * @param exactPrefixMatch a boolean indicating whether the returned
-     * property names should all have a prefix that is an exact match of the
-     * the <tt>prefix</tt> param or whether properties with prefixes that
-     * contain it but are longer than it are also accepted.
-     * @param names the list of names that we'd like to search.
-     *
-     * @return a reference to the updated result set.
-     */
-    private Set<String> getPropertyNamesByPrefix(
-                            String      prefix,
-                            boolean     exactPrefixMatch,
-                            String[]    names,
-                            Set<String> resultSet)
-    {
-        for (String key : names)
-        {
-            int ix = key.lastIndexOf('.');
-
-            if(ix == -1)
-                continue;
-
-            String keyPrefix = key.substring(0, ix);
-
-            if(exactPrefixMatch)
-            {
-                if(prefix.equals(keyPrefix))
-                    resultSet.add(key);
-            }
-            else
-            {
-                if(keyPrefix.startsWith(prefix))
-                    resultSet.add(key);
-            }
-        }
-
-        return resultSet;
-    }
-
     /**
      * Returns a <tt>List</tt> of <tt>String</tt>s containing the property names
      * that have the specified suffix. A suffix is considered to be everything
@@ -570,16 +665,67 @@ public class ConfigurationServiceImpl
     {
         List<String> resultKeySet = new LinkedList<String>();
 
-        for (String key : store.getPropertyNames())
+        synchronized (storePropertyNames)
         {
-            int ix = key.lastIndexOf('.');
-
-            if ((ix != -1) && suffix.equals(key.substring(ix+1)))
-                resultKeySet.add(key);
+            getStorePropertyNames().getNamesBySuffix(suffix, resultKeySet);
         }
         return resultKeySet;
     }
 
+    /**
+     * Gets the index of the names of the properties in {@link #store} and
+     * rebuilds it first if it has been invalidated. The caller is to hold the
+     * monitor of {@link #storePropertyNames}.
+     *
+     * @return the index of the names of the properties in <tt>store</tt>
+     */
+    private PropertyNameIndex getStorePropertyNames()
+    {
+        if (storePropertyNamesInvalid)
+        {
+            storePropertyNames.clear();
+            storePropertyNames.addAll(Arrays.asList(store.getPropertyNames()));
+            storePropertyNamesInvalid = false;
+        }
+        return storePropertyNames;
+    }
+
+    /**
+     * Invalidates the index of the names of the properties in {@link #store}
+     * so that it gets rebuilt before it is queried next.
+     */
+    private void invalidateStorePropertyNames()
+    {
+        synchronized (storePropertyNames)
+        {
+            storePropertyNamesInvalid = true;
+            storePropertyNames.clear();
+        }
+    }
+
+    /**
+     * Updates the index of the names of the properties in {@link #store}
+     * after a property has been added to or removed from <tt>store</tt>.
+     *
+     * @param propertyName the name of the property which has been added to or
+     * removed from <tt>store</tt>
+     * @param added <tt>true</tt> if the property has been added to
+     * <tt>store</tt> or <tt>false</tt> if it has been removed
+     */
+    private void updateStorePropertyNames(String propertyName, boolean added)
+    {
+        synchronized (storePropertyNames)
+        {
+            if (!storePropertyNamesInvalid)
+            {
+                if (added)
+                    storePropertyNames.add(propertyName);
+                else
+                    storePropertyNames.remove(propertyName);
+            }
+        }
+    }
+
     /**
      * Adds a PropertyChangeListener to the listener list.
      *
@@ -681,6 +827,9 @@ public class ConfigurationServiceImpl
     public void reloadConfiguration()
         throws IOException
     {
+        // Do not lose the changes which are being coalesced.
+        flush();
+
         this.configurationFile = null;
 
         File file = getConfigurationFile();
@@ -714,6 +863,11 @@ public class ConfigurationServiceImpl
             ioe.initCause(xmle);
             throw ioe;
         }
+        finally
+        {
+            invalidateCachedProperties(null);
+            invalidateStorePropertyNames();
+        }
     }
 
     /*
@@ -722,7 +876,170 @@ public class ConfigurationServiceImpl
     public synchronized void storeConfiguration()
         throws IOException
     {
-        storeConfiguration(getConfigurationFile());
+        storePending = false;
+
+        long startTime = System.nanoTime();
+
+        try
+        {
+            storeConfiguration(getConfigurationFile());
+        }
+        finally
+        {
+            long storeTime = System.nanoTime() - startTime;
+
+            stores++;
+            storeTimeTotal += storeTime;
+            if (storeTimeMax < storeTime)
+                storeTimeMax = storeTime;
+        }
+    }
+
+    /*
+     * Implements ConfigurationService#flush().
+     */
+    public synchronized void flush()
+        throws IOException
+    {
+        if (storePending)
+            storeConfiguration();
+    }
+
+    /**
+     * Stores the properties in the configuration file after they have been
+     * changed. If {@link #writeBehindDelay} is positive, coalesces the change
+     * with the changes which follow it within <tt>writeBehindDelay</tt>
+     * milliseconds and stores them all at once in {@link #storeThread}.
+     *
+     * @throws IOException if storing the properties right away fails
+     */
+    private void scheduleStoreConfiguration()
+        throws IOException
+    {
+        if (writeBehindDelay <= 0)
+        {
+            storeConfiguration();
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (storePending)
+            {
+                storesAvoided++;
+                return;
+            }
+
+            storePending = true;
+            storeDeadline = System.currentTimeMillis() + writeBehindDelay;
+            if (storeThread == null)
+            {
+                storeThread
+                    = new Thread(getClass().getName() + ".storeThread")
+                    {
+                        @Override
+                        public void run()
+                        {
+                            runInStoreThread();
+                        }
+                    };
+                storeThread.setDaemon(true);
+                storeThread.start();
+            }
+        }
+    }
+
+    /**
+     * Runs in {@link #storeThread} and stores the coalesced changes to the
+     * properties once {@link #storeDeadline} is reached.
+     */
+    private synchronized void runInStoreThread()
+    {
+        try
+        {
+            while (storePending)
+            {
+                long timeout = storeDeadline - System.currentTimeMillis();
+
+                if (timeout > 0)
+                {
+                    wait(timeout);
+                }
+                else
+                {
+                    try
+                    {
+                        storeConfiguration();
+                    }
+                    catch (IOException ioe)
+                    {
+                        logger.error(
+                                "Failed to store configuration after"
+                                    + " property changes",
+                                ioe);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            logger.warn(
+                    "Interrupted while coalescing property changes", ie);
+        }
+        finally
+        {
+            if (storeThread == Thread.currentThread())
+                storeThread = null;
+        }
+    }
+
+    /**
+     * Gets the average time in milliseconds that the storing of the
+     * properties in the configuration file has taken.
+     *
+     * @return the average time in milliseconds that the storing of the
+     * properties in the configuration file has taken
+     */
+    public synchronized double getAverageStoreTime()
+    {
+        return (stores == 0) ? 0 : (storeTimeTotal / (stores * 1000000.0));
+    }
+
+    /**
+     * Gets the maximum time in milliseconds that the storing of the
+     * properties in the configuration file has taken.
+     *
+     * @return the maximum time in milliseconds that the storing of the
+     * properties in the configuration file has taken
+     */
+    public synchronized double getMaxStoreTime()
+    {
+        return storeTimeMax / 1000000.0;
+    }
+
+    /**
+     * Gets the number of times the properties have been stored in the
+     * configuration file.
+     *
+     * @return the number of times the properties have been stored in the
+     * configuration file
+     */
+    public synchronized long getStoreCount()
+    {
+        return stores;
+    }
+
+    /**
+     * Gets the number of times the storing of the properties in the
+     * configuration file has been avoided by coalescing a change with earlier
+     * changes.
+     *
+     * @return the number of times the storing of the properties in the
+     * configuration file has been avoided
+     */
+    public synchronized long getStoresAvoided()
+    {
+        return storesAvoided;
     }
 
     /**
@@ -804,6 +1121,8 @@ public class ConfigurationServiceImpl
         if (this.configurationFile == null)
         {
             createConfigurationFile();
+            invalidateCachedProperties(null);
+            invalidateStorePropertyNames();
 
             /*
              * Make sure that the properties SC_HOME_DIR_LOCATION and
@@ -1281,15 +1600,67 @@ public class ConfigurationServiceImpl
      */
     public String getString(String propertyName)
     {
-        Object propValue = getProperty(propertyName);
-        if (propValue == null)
-            return null;
+        return getCachedProperty(propertyName).stringValue;
+    }
 
-        String propStrValue = propValue.toString().trim();
+    /**
+     * Gets the cached value of a specific property. If the value of the
+     * property is not cached yet, reads it and caches it unless the property
+     * changes while it is being read.
+     *
+     * @param propertyName the name of the property to get the cached value of
+     * @return the cached value of the property with the specified name
+     */
+    private CachedProperty getCachedProperty(String propertyName)
+    {
+        CachedProperty cachedProperty = cachedProperties.get(propertyName);
+
+        if (cachedProperty == null)
+        {
+            int generation;
+
+            synchronized (cachedProperties)
+            {
+                generation = cachedPropertiesGeneration;
+            }
 
-        return (propStrValue.length() > 0)
-                    ? propStrValue
-                    : null;
+            Object propValue = getProperty(propertyName);
+            String propStrValue
+                = (propValue == null) ? null : propValue.toString().trim();
+
+            cachedProperty
+                = new CachedProperty(
+                        ((propStrValue != null) && (propStrValue.length() > 0))
+                            ? propStrValue
+                            : null);
+
+            synchronized (cachedProperties)
+            {
+                if (generation == cachedPropertiesGeneration)
+                    cachedProperties.put(propertyName, cachedProperty);
+            }
+        }
+        return cachedProperty;
+    }
+
+    /**
+     * Invalidates the cached value of a specific property or of all
+     * properties.
+     *
+     * @param propertyName the name of the property to invalidate the cached
+     * value of or <tt>null</tt> to invalidate the cached values of all
+     * properties
+     */
+    private void invalidateCachedProperties(String propertyName)
+    {
+        synchronized (cachedProperties)
+        {
+            cachedPropertiesGeneration++;
+            if (propertyName == null)
+                cachedProperties.clear();
+            else
+                cachedProperties.remove(propertyName);
+        }
     }
 
     /**
@@ -1318,10 +1689,12 @@ public class ConfigurationServiceImpl
      */
     public boolean getBoolean(String propertyName, boolean defaultValue)
     {
-        String stringValue = getString(propertyName);
+        CachedProperty cachedProperty = getCachedProperty(propertyName);
 
-        return (stringValue == null) ? defaultValue : Boolean
-            .parseBoolean(stringValue);
+        return
+            (cachedProperty.stringValue == null)
+                ? defaultValue
+                : cachedProperty.getBoolean();
     }
 
     /**
@@ -1347,23 +1720,33 @@ public class ConfigurationServiceImpl
      */
     public int getInt(String propertyName, int defaultValue)
     {
-        String stringValue = getString(propertyName);
-        int intValue = defaultValue;
+        CachedProperty cachedProperty = getCachedProperty(propertyName);
+        Object intValue = cachedProperty.intValue;
 
-        if ((stringValue != null) && (stringValue.length() > 0))
+        if (intValue == null)
         {
+            String stringValue = cachedProperty.stringValue;
+
+            if (stringValue == null)
+                return defaultValue;
+
             try
             {
-                intValue = Integer.parseInt(stringValue);
+                intValue = Integer.valueOf(stringValue);
             }
             catch (NumberFormatException ex)
             {
                 logger.error(propertyName
                     + " does not appear to be an integer. " + "Defaulting to "
                     + defaultValue + ".", ex);
+                intValue = CachedProperty.INVALID;
             }
+            cachedProperty.intValue = intValue;
         }
-        return intValue;
+        return
+            (intValue instanceof Integer)
+                ? ((Integer) intValue).intValue()
+                : defaultValue;
     }
 
     /**
@@ -1389,14 +1772,19 @@ public class ConfigurationServiceImpl
      */
     public long getLong(String propertyName, long defaultValue)
     {
-        String stringValue = getString(propertyName);
-        long longValue = defaultValue;
+        CachedProperty cachedProperty = getCachedProperty(propertyName);
+        Object longValue = cachedProperty.longValue;
 
-        if ((stringValue != null) && (stringValue.length() > 0))
+        if (longValue == null)
         {
+            String stringValue = cachedProperty.stringValue;
+
+            if (stringValue == null)
+                return defaultValue;
+
             try
             {
-                longValue = Long.parseLong(stringValue);
+                longValue = Long.valueOf(stringValue);
             }
             catch (NumberFormatException ex)
             {
@@ -1405,9 +1793,14 @@ public class ConfigurationServiceImpl
                         + " does not appear to be a longinteger. "
                         + "Defaulting to " + defaultValue + ".",
                 ex);
+                longValue = CachedProperty.INVALID;
             }
+            cachedProperty.longValue = longValue;
         }
-        return longValue;
+        return
+            (longValue instanceof Long)
+                ? ((Long) longValue).longValue()
+                : defaultValue;
     }
 
     /**
@@ -1430,6 +1823,11 @@ public class ConfigurationServiceImpl
      */
     public void purgeStoredConfiguration()
     {
+        synchronized (this)
+        {
+            // Do not write the deleted configuration file back.
+            storePending = false;
+        }
         if (configurationFile != null)
         {
             configurationFile.delete();
@@ -1438,6 +1836,8 @@ public class ConfigurationServiceImpl
         if (store != null)
             for (String name : store.getPropertyNames())
                 store.removeProperty(name);
+        invalidateCachedProperties(null);
+        invalidateStorePropertyNames();
     }
 
     /**
@@ -1572,6 +1972,9 @@ public class ConfigurationServiceImpl
     {
         loadDefaultProperties(DEFAULT_PROPS_FILE_NAME);
         loadDefaultProperties(DEFAULT_OVERRIDES_PROPS_FILE_NAME);
+
+        defaultPropertyNames.addAll(immutableDefaultProperties.keySet());
+        defaultPropertyNames.addAll(defaultProperties.keySet());
     }
 
     /**
@@ -1641,5 +2044,73 @@ public class ConfigurationServiceImpl
         }
     }
 
+    /**
+     * Represents the cached value of a property as read by the typed getters
+     * of <tt>ConfigurationServiceImpl</tt>. The string value is determined
+     * when the instance is initialized and the typed values are parsed from it
+     * on demand. Each typed value is kept in a single field so that racing
+     * readers either see it parsed or parse it again.
+     */
+    private static class CachedProperty
+    {
+        /**
+         * The typed value which indicates that the string value of the
+         * property could not be parsed into the respective type.
+         */
+        static final Object INVALID = new Object();
 
+        /**
+         * The <tt>Boolean</tt> value of the property or <tt>null</tt> if it
+         * has not been parsed yet.
+         */
+        Boolean booleanValue;
+
+        /**
+         * The <tt>Integer</tt> value of the property, {@link #INVALID} or
+         * <tt>null</tt> if it has not been parsed yet.
+         */
+        Object intValue;
+
+        /**
+         * The <tt>Long</tt> value of the property, {@link #INVALID} or
+         * <tt>null</tt> if it has not been parsed yet.
+         */
+        Object longValue;
+
+        /**
+         * The trimmed string value of the property or <tt>null</tt> if the
+         * property has no value or its value is blank.
+         */
+        final String stringValue;
+
+        /**
+         * Initializes a new <tt>CachedProperty</tt> instance with a specific
+         * string value.
+         *
+         * @param stringValue the trimmed string value of the property or
+         * <tt>null</tt> if the property has no value or its value is blank
+         */
+        CachedProperty(String stringValue)
+        {
+            this.stringValue = stringValue;
+        }
+
+        /**
+         * Gets the <tt>boolean</tt> value of the property. The string value of
+         * the property is required to be non-<tt>null</tt>.
+         *
+         * @return the <tt>boolean</tt> value of the property
+         */
+        boolean getBoolean()
+        {
+            Boolean booleanValue = this.booleanValue;
+
+            if (booleanValue == null)
+            {
+                booleanValue = Boolean.valueOf(stringValue);
+                this.booleanValue = booleanValue;
+            }
+            return booleanValue.booleanValue();
+        }
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.configuration;
+
+import java.util.*;
+
+/**
+ * Indexes a set of property names so that the names with a specific prefix
+ * are found with a range scan over the sorted names and the names with a
+ * specific suffix (i.e. the part after the last dot) are found with a single
+ * lookup. The queries follow the semantics of
+ * {@link ConfigurationServiceImpl#getPropertyNamesByPrefix(String, boolean)}
+ * and {@link ConfigurationServiceImpl#getPropertyNamesBySuffix(String)}.
+ * <p>
+ * <b>Warning</b>: The class is not thread-safe.
+ * </p>
+ */
+public class PropertyNameIndex
+{
+    /**
+     * Gets the suffix of a specific property name i.e. the part after its
+     * last dot.
+     *
+     * @param name the property name to get the suffix of
+     * @return the suffix of <tt>name</tt> or <tt>null</tt> if <tt>name</tt>
+     * does not contain a dot
+     */
+    private static String getSuffix(String name)
+    {
+        int ix = name.lastIndexOf('.');
+
+        return (ix == -1) ? null : name.substring(ix + 1);
+    }
+
+    /**
+     * The indexed property names sorted in their natural order.
+     */
+    private final TreeSet<String> names = new TreeSet<String>();
+
+    /**
+     * The indexed property names which contain a dot mapped by their suffix.
+     */
+    private final Map<String, Set<String>> namesBySuffix
+        = new HashMap<String, Set<String>>();
+
+    /**
+     * Adds a specific property name to this index.
+     *
+     * @param name the property name to add to this index
+     */
+    public void add(String name)
+    {
+        if (!names.add(name))
+            return;
+
+        String suffix = getSuffix(name);
+
+        if (suffix != null)
+        {
+            Set<String> suffixNames = namesBySuffix.get(suffix);
+
+            if (suffixNames == null)
+            {
+                suffixNames = new TreeSet<String>();
+                namesBySuffix.put(suffix, suffixNames);
+            }
+            suffixNames.add(name);
+        }
+    }
+
+    /**
+     * Adds specific property names to this index.
+     *
+     * @param names the property names to add to this index
+     */
+    public void addAll(Collection<String> names)
+    {
+        for (String name : names)
+            add(name);
+    }
+
+    /**
+     * Removes all property names from this index.
+     */
+    public void clear()
+    {
+        names.clear();
+        namesBySuffix.clear();
+    }
+
+    /**
+     * Adds the property names in this index which have a specific prefix to a
+     * specific <tt>Collection</tt>. The prefix of a property name is the part
+     * before its last dot.
+     *
+     * @param prefix the prefix of the property names to be added to
+     * <tt>result</tt>
+     * @param exactPrefixMatch <tt>true</tt> to add only the property names
+     * which have a prefix equal to <tt>prefix</tt> or <tt>false</tt> to also
+     * add the property names which have a prefix starting with <tt>prefix</tt>
+     * @param result the <tt>Collection</tt> to add the matching property names
+     * to
+     */
+    public void getNamesByPrefix(
+            String prefix,
+            boolean exactPrefixMatch,
+            Collection<String> result)
+    {
+        int prefixLength = prefix.length();
+
+        if (exactPrefixMatch)
+        {
+            /*
+             * The names which start with prefix followed by a dot are sorted
+             * before prefix followed by a slash because the slash immediately
+             * follows the dot in the character set.
+             */
+            for (String name
+                    : names.subSet(prefix + '.', true, prefix + '/', false))
+            {
+                if (name.indexOf('.', prefixLength + 1) == -1)
+                    result.add(name);
+            }
+        }
+        else
+        {
+            for (String name : names.tailSet(prefix, true))
+            {
+                if (!name.startsWith(prefix))
+                    break;
+                if (name.lastIndexOf('.') >= prefixLength)
+                    result.add(name);
+            }
+        }
+    }
+
+    /**
+     * Adds the property names in this index which have a specific suffix to a
+     * specific <tt>Collection</tt>. The suffix of a property name is the part
+     * after its last dot.
+     *
+     * @param suffix the suffix of the property names to be added to
+     * <tt>result</tt>
+     * @param result the <tt>Collection</tt> to add the matching property names
+     * to
+     */
+    public void getNamesBySuffix(String suffix, Collection<String> result)
+    {
+        Set<String> suffixNames = namesBySuffix.get(suffix);
+
+        if (suffixNames != null)
+            result.addAll(suffixNames);
+    }
+
+    /**
+     * Removes a specific property name from this index.
+     *
+     * @param name the property name to remove from this index
+     */
+    public void remove(String name)
+    {
+        if (!names.remove(name))
+            return;
+
+        String suffix = getSuffix(name);
+
+        if (suffix != null)
+        {
+            Set<String> suffixNames = namesBySuffix.get(suffix);
+
+            if ((suffixNames != null)
+                    && suffixNames.remove(name)
+                    && suffixNames.isEmpty())
+                namesBySuffix.remove(suffix);
+        }
+    }
+}
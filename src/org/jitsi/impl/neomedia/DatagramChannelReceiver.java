@@ -0,0 +1,444 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.util.*;
+
+/**
+ * Receives datagrams on behalf of many <tt>RTPConnectorInputStream</tt>s from
+ * a small, fixed number of threads using NIO <tt>DatagramChannel</tt>s and
+ * <tt>Selector</tt>s instead of dedicating a blocking thread to each
+ * <tt>DatagramSocket</tt>. Every wakeup of a <tt>Selector</tt> drains up to
+ * {@link #BATCH_SIZE_PNAME} datagrams from each ready channel into
+ * <tt>RawPacket</tt>s acquired from <tt>RawPacketPool</tt> and then hands
+ * them, one after another, to the respective <tt>RTPConnectorInputStream</tt>
+ * i.e. through its <tt>DatagramPacketFilter</tt>s, its
+ * <tt>PacketTransformer</tt> chain and its <tt>SourceTransferHandler</tt>.
+ * <p>
+ * Only <tt>DatagramSocket</tt>s which have an associated
+ * <tt>DatagramChannel</tt> (i.e. were created through
+ * {@link DatagramChannel#open()}) can be serviced by
+ * <tt>DatagramChannelReceiver</tt>. The channels are put in non-blocking mode
+ * upon registration.
+ * </p>
+ */
+public class DatagramChannelReceiver
+{
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the maximum number of datagrams to be drained from a single ready
+     * <tt>DatagramChannel</tt> per <tt>Selector</tt> wakeup.
+     */
+    public static final String BATCH_SIZE_PNAME
+        = "org.jitsi.impl.neomedia.DatagramChannelReceiver.batchSize";
+
+    /**
+     * The default value of the {@link #BATCH_SIZE_PNAME}
+     * <tt>ConfigurationService</tt> property.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    /**
+     * The name of the <tt>boolean</tt> <tt>ConfigurationService</tt> property
+     * which specifies whether <tt>RTPConnectorUDPInputStream</tt>s are to
+     * receive through the shared <tt>DatagramChannelReceiver</tt> (when their
+     * <tt>DatagramSocket</tt>s have associated <tt>DatagramChannel</tt>s)
+     * rather than through a dedicated thread each. The default value is
+     * <tt>false</tt>.
+     */
+    public static final String ENABLED_PNAME
+        = "org.jitsi.impl.neomedia.DatagramChannelReceiver.enabled";
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the number of threads (and, respectively, <tt>Selector</tt>s) of the
+     * shared <tt>DatagramChannelReceiver</tt>. The default value is the number
+     * of available processors.
+     */
+    public static final String THREAD_COUNT_PNAME
+        = "org.jitsi.impl.neomedia.DatagramChannelReceiver.threadCount";
+
+    /**
+     * The one and only <tt>DatagramChannelReceiver</tt> instance shared by all
+     * <tt>RTPConnectorUDPInputStream</tt>s.
+     */
+    private static DatagramChannelReceiver instance;
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>DatagramChannelReceiver</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(DatagramChannelReceiver.class);
+
+    /**
+     * Gets the <tt>DatagramChannelReceiver</tt> instance shared by all
+     * <tt>RTPConnectorUDPInputStream</tt>s, initializing it if necessary.
+     *
+     * @return the shared <tt>DatagramChannelReceiver</tt> instance
+     */
+    public static synchronized DatagramChannelReceiver getInstance()
+    {
+        if (instance == null)
+        {
+            ConfigurationService cfg = LibJitsi.getConfigurationService();
+            int batchSize = DEFAULT_BATCH_SIZE;
+            int threadCount = Runtime.getRuntime().availableProcessors();
+
+            if (cfg != null)
+            {
+                batchSize = cfg.getInt(BATCH_SIZE_PNAME, batchSize);
+                threadCount = cfg.getInt(THREAD_COUNT_PNAME, threadCount);
+            }
+            instance
+                = new DatagramChannelReceiver(
+                        Math.max(1, threadCount),
+                        Math.max(1, batchSize));
+        }
+        return instance;
+    }
+
+    /**
+     * Determines whether the shared <tt>DatagramChannelReceiver</tt> is to be
+     * used by <tt>RTPConnectorUDPInputStream</tt>s as specified by the
+     * {@link #ENABLED_PNAME} <tt>ConfigurationService</tt> property.
+     *
+     * @return <tt>true</tt> if the shared <tt>DatagramChannelReceiver</tt> is
+     * to be used; otherwise, <tt>false</tt>
+     */
+    public static boolean isEnabled()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        return (cfg != null) && cfg.getBoolean(ENABLED_PNAME, false);
+    }
+
+    /**
+     * The maximum number of datagrams to be drained from a single ready
+     * <tt>DatagramChannel</tt> per <tt>Selector</tt> wakeup.
+     */
+    private final int batchSize;
+
+    /**
+     * The index in {@link #workers} of the <tt>Worker</tt> to be assigned the
+     * next registration.
+     */
+    private int nextWorker = 0;
+
+    /**
+     * The <tt>Worker</tt>s i.e. the threads and their respective
+     * <tt>Selector</tt>s which receive on behalf of the registered
+     * <tt>RTPConnectorInputStream</tt>s.
+     */
+    private final Worker[] workers;
+
+    /**
+     * Initializes a new <tt>DatagramChannelReceiver</tt> instance.
+     *
+     * @param threadCount the number of threads to receive from
+     * @param batchSize the maximum number of datagrams to be drained from a
+     * single ready <tt>DatagramChannel</tt> per <tt>Selector</tt> wakeup
+     */
+    private DatagramChannelReceiver(int threadCount, int batchSize)
+    {
+        this.batchSize = batchSize;
+
+        workers = new Worker[threadCount];
+    }
+
+    /**
+     * Registers a specific <tt>DatagramChannel</tt> with this instance so that
+     * the datagrams received on it are delivered to a specific
+     * <tt>RTPConnectorInputStream</tt>. The registration is automatically
+     * cancelled when the channel is closed or <tt>stream</tt> is closed.
+     *
+     * @param channel the <tt>DatagramChannel</tt> to receive from
+     * @param stream the <tt>RTPConnectorInputStream</tt> to deliver the
+     * datagrams received on <tt>channel</tt> to
+     * @throws IOException if <tt>channel</tt> cannot be put in non-blocking
+     * mode or a <tt>Selector</tt> cannot be opened
+     */
+    public void register(
+            DatagramChannel channel,
+            RTPConnectorInputStream stream)
+        throws IOException
+    {
+        if (channel == null)
+            throw new NullPointerException("channel");
+        if (stream == null)
+            throw new NullPointerException("stream");
+
+        channel.configureBlocking(false);
+
+        Worker worker;
+
+        synchronized (workers)
+        {
+            int index = nextWorker;
+
+            nextWorker = (nextWorker + 1) % workers.length;
+            worker = workers[index];
+            if (worker == null)
+            {
+                worker = new Worker(index);
+                workers[index] = worker;
+            }
+        }
+        worker.register(channel, stream);
+    }
+
+    /**
+     * Represents a thread and its associated <tt>Selector</tt> which receive
+     * datagrams on behalf of a subset of the registered
+     * <tt>RTPConnectorInputStream</tt>s.
+     */
+    private class Worker
+        implements Runnable
+    {
+        /**
+         * The <tt>ByteBuffer</tt>s which wrap the buffers of {@link #packets}
+         * and into which datagrams are received.
+         */
+        private final ByteBuffer[] buffers;
+
+        /**
+         * The <tt>DatagramPacket</tt>s which are handed to the
+         * <tt>DatagramPacketFilter</tt>s of the
+         * <tt>RTPConnectorInputStream</tt>s and which share their
+         * <tt>byte</tt> arrays with {@link #packets}.
+         */
+        private final DatagramPacket[] datagramPackets;
+
+        /**
+         * The <tt>RawPacket</tt>s acquired from <tt>RawPacketPool</tt> into
+         * which datagrams are received and which are handed to the
+         * <tt>PacketTransformer</tt> chains of the
+         * <tt>RTPConnectorInputStream</tt>s. They are owned by this
+         * <tt>Worker</tt> and reused for each batch.
+         */
+        private final RawPacket[] packets;
+
+        /**
+         * The <tt>DatagramChannel</tt>s and their associated
+         * <tt>RTPConnectorInputStream</tt>s which are to be registered with
+         * {@link #selector} by the thread of this <tt>Worker</tt>.
+         */
+        private final Queue<Object[]> pendingRegistrations
+            = new ConcurrentLinkedQueue<Object[]>();
+
+        /**
+         * The <tt>Selector</tt> which multiplexes the
+         * <tt>DatagramChannel</tt>s registered with this <tt>Worker</tt>.
+         */
+        private final Selector selector;
+
+        /**
+         * Initializes a new <tt>Worker</tt> instance and starts its thread.
+         *
+         * @param index the index of the new instance in {@link #workers} to be
+         * reflected in the name of its thread
+         * @throws IOException if a <tt>Selector</tt> cannot be opened
+         */
+        public Worker(int index)
+            throws IOException
+        {
+            selector = Selector.open();
+
+            buffers = new ByteBuffer[batchSize];
+            datagramPackets = new DatagramPacket[batchSize];
+            packets = new RawPacket[batchSize];
+            for (int i = 0; i < batchSize; i++)
+            {
+                RawPacket packet
+                    = RawPacketPool.acquire(
+                            RTPConnectorInputStream
+                                .PACKET_RECEIVE_BUFFER_LENGTH);
+                byte[] buffer = packet.getBuffer();
+
+                buffers[i] = ByteBuffer.wrap(buffer);
+                datagramPackets[i] = new DatagramPacket(buffer, buffer.length);
+                packets[i] = packet;
+            }
+
+            Thread thread
+                = new Thread(this, "DatagramChannelReceiverThread-" + index);
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Receives the datagrams available on the <tt>DatagramChannel</tt> of
+         * a specific <tt>SelectionKey</tt> (up to {@link #batchSize} of them)
+         * and delivers them to the associated
+         * <tt>RTPConnectorInputStream</tt>.
+         *
+         * @param key the <tt>SelectionKey</tt> which has been selected for
+         * reading
+         */
+        private void drain(SelectionKey key)
+        {
+            DatagramChannel channel = (DatagramChannel) key.channel();
+            RTPConnectorInputStream stream
+                = (RTPConnectorInputStream) key.attachment();
+            int count = 0;
+
+            try
+            {
+                while (count < batchSize)
+                {
+                    ByteBuffer buffer = buffers[count];
+
+                    /*
+                     * Leave the headroom and the tailroom of RawPacketPool
+                     * around the received data so that the
+                     * PacketTransformers may grow the packet in place.
+                     */
+                    buffer.clear();
+                    buffer.limit(
+                            RawPacketPool.HEADROOM
+                                + RTPConnectorInputStream
+                                    .PACKET_RECEIVE_BUFFER_LENGTH);
+                    buffer.position(RawPacketPool.HEADROOM);
+
+                    SocketAddress source = channel.receive(buffer);
+
+                    if (source == null)
+                        break;
+
+                    DatagramPacket p = datagramPackets[count];
+
+                    p.setData(
+                            buffer.array(),
+                            RawPacketPool.HEADROOM,
+                            buffer.position() - RawPacketPool.HEADROOM);
+                    p.setSocketAddress(source);
+                    count++;
+                }
+            }
+            catch (IOException ioe)
+            {
+                if (!stream.closed)
+                {
+                    logger.warn(
+                            "Failed to receive from " + channel
+                                + ", stopping the reception.",
+                            ioe);
+                    stream.ioError = true;
+                }
+                key.cancel();
+            }
+
+            for (int i = 0; (i < count) && !stream.closed; i++)
+            {
+                try
+                {
+                    stream.handleReceivedPacket(
+                            datagramPackets[i],
+                            packets[i]);
+                }
+                catch (Throwable t)
+                {
+                    if (t instanceof ThreadDeath)
+                        throw (ThreadDeath) t;
+                    else
+                        logger.error("Failed to handle a received packet.", t);
+                }
+            }
+
+            if (stream.closed)
+                key.cancel();
+        }
+
+        /**
+         * Registers with {@link #selector} the <tt>DatagramChannel</tt>s
+         * queued in {@link #pendingRegistrations}. Must be invoked by the
+         * thread of this <tt>Worker</tt>.
+         */
+        private void processPendingRegistrations()
+        {
+            Object[] registration;
+
+            while ((registration = pendingRegistrations.poll()) != null)
+            {
+                DatagramChannel channel = (DatagramChannel) registration[0];
+                RTPConnectorInputStream stream
+                    = (RTPConnectorInputStream) registration[1];
+
+                if (stream.closed || !channel.isOpen())
+                    continue;
+
+                try
+                {
+                    channel.register(selector, SelectionKey.OP_READ, stream);
+                }
+                catch (IOException ioe)
+                {
+                    logger.error("Failed to register " + channel, ioe);
+                    stream.ioError = true;
+                }
+            }
+        }
+
+        /**
+         * Queues a specific <tt>DatagramChannel</tt> for registration with
+         * {@link #selector} and wakes the thread of this <tt>Worker</tt> up.
+         *
+         * @param channel the <tt>DatagramChannel</tt> to receive from
+         * @param stream the <tt>RTPConnectorInputStream</tt> to deliver the
+         * datagrams received on <tt>channel</tt> to
+         */
+        void register(DatagramChannel channel, RTPConnectorInputStream stream)
+        {
+            pendingRegistrations.add(new Object[] { channel, stream });
+            selector.wakeup();
+        }
+
+        /**
+         * Runs in the thread of this <tt>Worker</tt> and receives from the
+         * <tt>DatagramChannel</tt>s registered with {@link #selector}.
+         */
+        public void run()
+        {
+            while (true)
+            {
+                try
+                {
+                    selector.select();
+                }
+                catch (IOException ioe)
+                {
+                    logger.error("Failed to select.", ioe);
+                    continue;
+                }
+
+                processPendingRegistrations();
+
+                Iterator<SelectionKey> keyIter
+                    = selector.selectedKeys().iterator();
+
+                while (keyIter.hasNext())
+                {
+                    SelectionKey key = keyIter.next();
+
+                    keyIter.remove();
+                    if (key.isValid() && key.isReadable())
+                        drain(key);
+                }
+            }
+        }
+    }
+}
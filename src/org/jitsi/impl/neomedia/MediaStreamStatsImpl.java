@@ -804,6 +804,25 @@ public class MediaStreamStatsImpl
         return nbDiscardedLate;
     }
 
+    /**
+     * Returns the number of packets which the decoder has been asked to
+     * conceal since the beginning of the session by the jitter buffer.
+     * It's the sum over all <tt>ReceiveStream</tt>s of the <tt>MediaStream</tt>
+     *
+     * @return the number of packets which the decoder has been asked to
+     * conceal.
+     */
+    public int getNbConcealed()
+    {
+        int nbConcealed = 0;
+        for(PacketQueueControl pqc : getPacketQueueControls())
+        {
+            if(pqc instanceof JitterBufferControl)
+                nbConcealed += ((JitterBufferControl) pqc).getConcealed();
+        }
+        return nbConcealed;
+    }
+
     /**
      * Returns the number of Protocol Data Units (PDU) discarded by the
      * FMJ packet queue since the beginning of the session during resets.
@@ -1109,12 +1128,23 @@ public class MediaStreamStatsImpl
                 for(ReceiveStream receiveStream
                         : devSession.getReceiveStreams())
                 {
-                    DataSource ds = receiveStream.getDataSource();
-                    if(ds instanceof net.sf.fmj.media.protocol.rtp.DataSource)
+                    /*
+                     * Prefer the DataSource which is actually played back
+                     * because it may play its streams out through
+                     * JitterBufferPushBufferStreams which replace the
+                     * PacketQueueControl of FMJ.
+                     */
+                    DataSource ds
+                        = devSession.getPlaybackDataSource(receiveStream);
+                    if(!(ds instanceof PushBufferDataSource))
+                        ds = receiveStream.getDataSource();
+                    PushBufferStream[] streams
+                        = (ds instanceof PushBufferDataSource)
+                            ? ((PushBufferDataSource)ds).getStreams()
+                            : null;
+                    if(streams != null)
                     {
-                        for (PushBufferStream pbs :
-                                ((net.sf.fmj.media.protocol.rtp.DataSource)ds)
-                                        .getStreams())
+                        for (PushBufferStream pbs : streams)
                         {
                             PacketQueueControl pqc = (PacketQueueControl)
                                     pbs.getControl(
@@ -0,0 +1,593 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.util.*;
+
+/**
+ * Paces the sending of the packets of a single output stream in accord with a
+ * maximum number of packets per a specific number of milliseconds and/or a
+ * maximum number of bits per second (i.e. two token buckets). The packets are
+ * queued without blocking the writer and are sent by a small pool of threads
+ * which is shared by all <tt>Pacer</tt> instances: a <tt>Pacer</tt> occupies a
+ * thread only while it has packets which it is allowed to send and otherwise
+ * schedules itself for the time at which its buckets will have been refilled.
+ * Thus a burst (e.g. a video key frame) is spread over time without dedicating
+ * a thread to every stream.
+ */
+public abstract class Pacer
+{
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * which packet is dropped when a packet is written into a <tt>Pacer</tt>
+     * which has {@link #QUEUE_CAPACITY_PNAME} packets queued already:
+     * &quot;head&quot; drops the oldest queued packet, &quot;tail&quot; (the
+     * default) drops the written packet.
+     */
+    public static final String DROP_POLICY_PNAME
+        = "org.jitsi.impl.neomedia.Pacer.dropPolicy";
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>Pacer</tt> class and its instances
+     * for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(Pacer.class);
+
+    /**
+     * The maximum number of packets which a <tt>Pacer</tt> sends in one run
+     * of a thread of {@link #scheduler} in order to not starve the other
+     * <tt>Pacer</tt>s.
+     */
+    private static final int MAX_PACKETS_PER_RUN = 32;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the maximum number of packets queued by a <tt>Pacer</tt>. The default is
+     * <tt>RTPConnectorOutputStream</tt>'s
+     * <tt>MAX_PACKETS_PER_MILLIS_POLICY_PACKET_QUEUE_CAPACITY</tt>.
+     */
+    public static final String QUEUE_CAPACITY_PNAME
+        = "org.jitsi.impl.neomedia.Pacer.queueCapacity";
+
+    /**
+     * The <tt>ScheduledExecutorService</tt> which sends the packets of all
+     * <tt>Pacer</tt>s.
+     */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the number of threads which send the packets of all <tt>Pacer</tt>s. The
+     * default is <tt>2</tt>.
+     */
+    public static final String THREAD_COUNT_PNAME
+        = "org.jitsi.impl.neomedia.Pacer.threadCount";
+
+    /**
+     * The number of bits which may be sent right now. May be negative after a
+     * packet larger than the accumulated bits has been sent.
+     */
+    private double bitTokens;
+
+    /**
+     * Whether this <tt>Pacer</tt> has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * The number of packets which have been dropped because the queue of this
+     * <tt>Pacer</tt> was full.
+     */
+    private final AtomicLong droppedPacketCount = new AtomicLong();
+
+    /**
+     * Whether the oldest queued packet rather than the written packet is
+     * dropped when the queue of this <tt>Pacer</tt> is full.
+     */
+    private final boolean dropHead;
+
+    /**
+     * The times in nanoseconds at which the packets in {@link #packets} were
+     * queued.
+     */
+    private final long[] enqueueTimes;
+
+    /**
+     * The index in {@link #packets} of the oldest queued packet.
+     */
+    private int head = 0;
+
+    /**
+     * The time in nanoseconds at which the token buckets were last refilled.
+     */
+    private long lastRefillTime = System.nanoTime();
+
+    /**
+     * The maximum number of bits per second to be sent or <tt>-1</tt> if the
+     * number of bits is not limited.
+     */
+    private volatile long maxBitrate = -1;
+
+    /**
+     * The maximum number of packets to be sent per {@link #perNanos}
+     * nanoseconds or <tt>-1</tt> if the number of packets is not limited.
+     */
+    private volatile int maxPackets = -1;
+
+    /**
+     * The greatest number of nanoseconds a packet has been queued before it
+     * was sent.
+     */
+    private volatile long maxPacingDelay = 0;
+
+    /**
+     * The number of packets which may be sent right now.
+     */
+    private double packetTokens;
+
+    /**
+     * The ring buffer of queued packets.
+     */
+    private final RawPacket[] packets;
+
+    /**
+     * The number of nanoseconds per which {@link #maxPackets} are to be sent.
+     */
+    private volatile long perNanos = -1;
+
+    /**
+     * The <tt>Runnable</tt> which sends the queued packets in a thread of
+     * {@link #scheduler}.
+     */
+    private final Runnable runnable
+        = new Runnable()
+        {
+            public void run()
+            {
+                Pacer.this.run();
+            }
+        };
+
+    /**
+     * Whether {@link #runnable} has been submitted to or is running in
+     * {@link #scheduler}. Guarantees that the packets of this <tt>Pacer</tt>
+     * are sent in a single thread at a time and, consequently, in order.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * The number of packets which have been sent.
+     */
+    private final AtomicLong sentPacketCount = new AtomicLong();
+
+    /**
+     * The number of packets in {@link #packets}.
+     */
+    private int size = 0;
+
+    /**
+     * The sum in nanoseconds of the times for which the sent packets were
+     * queued.
+     */
+    private final AtomicLong totalPacingDelay = new AtomicLong();
+
+    /**
+     * Initializes a new <tt>Pacer</tt> instance.
+     */
+    public Pacer()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        int capacity
+            = RTPConnectorOutputStream
+                .MAX_PACKETS_PER_MILLIS_POLICY_PACKET_QUEUE_CAPACITY;
+        String dropPolicy = null;
+
+        if (cfg != null)
+        {
+            capacity = cfg.getInt(QUEUE_CAPACITY_PNAME, capacity);
+            dropPolicy = cfg.getString(DROP_POLICY_PNAME);
+        }
+        if (capacity < 1)
+            capacity = 1;
+
+        dropHead = "head".equalsIgnoreCase(dropPolicy);
+        enqueueTimes = new long[capacity];
+        packets = new RawPacket[capacity];
+    }
+
+    /**
+     * Closes this <tt>Pacer</tt> and releases the queued packets into
+     * <tt>RawPacketPool</tt>.
+     */
+    public synchronized void close()
+    {
+        if (closed)
+            return;
+        closed = true;
+
+        while (size > 0)
+            RawPacketPool.release(poll(0));
+    }
+
+    /**
+     * Gets the mean number of milliseconds for which the packets sent by this
+     * <tt>Pacer</tt> were queued.
+     *
+     * @return the mean number of milliseconds for which the packets sent by
+     * this <tt>Pacer</tt> were queued
+     */
+    public double getAveragePacingDelay()
+    {
+        long sentPacketCount = this.sentPacketCount.get();
+
+        return
+            (sentPacketCount == 0)
+                ? 0
+                : (totalPacingDelay.get() / (sentPacketCount * 1000000D));
+    }
+
+    /**
+     * Gets the number of packets which this <tt>Pacer</tt> has dropped because
+     * its queue was full.
+     *
+     * @return the number of packets which this <tt>Pacer</tt> has dropped
+     */
+    public long getDroppedPacketCount()
+    {
+        return droppedPacketCount.get();
+    }
+
+    /**
+     * Gets the greatest number of milliseconds for which a packet sent by this
+     * <tt>Pacer</tt> was queued.
+     *
+     * @return the greatest number of milliseconds for which a packet sent by
+     * this <tt>Pacer</tt> was queued
+     */
+    public double getMaxPacingDelay()
+    {
+        return maxPacingDelay / 1000000D;
+    }
+
+    /**
+     * Gets the number of packets which are currently queued by this
+     * <tt>Pacer</tt>.
+     *
+     * @return the number of packets which are currently queued by this
+     * <tt>Pacer</tt>
+     */
+    public synchronized int getQueueSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the <tt>ScheduledExecutorService</tt> which sends the packets of
+     * all <tt>Pacer</tt>s and initializes it if necessary.
+     *
+     * @return the <tt>ScheduledExecutorService</tt> which sends the packets of
+     * all <tt>Pacer</tt>s
+     */
+    private static synchronized ScheduledExecutorService getScheduler()
+    {
+        if (scheduler == null)
+        {
+            ConfigurationService cfg = LibJitsi.getConfigurationService();
+            int threadCount = 2;
+
+            if (cfg != null)
+                threadCount = cfg.getInt(THREAD_COUNT_PNAME, threadCount);
+            if (threadCount < 1)
+                threadCount = 1;
+
+            final AtomicInteger threadIndex = new AtomicInteger();
+
+            scheduler
+                = Executors.newScheduledThreadPool(
+                        threadCount,
+                        new ThreadFactory()
+                        {
+                            public Thread newThread(Runnable r)
+                            {
+                                String name
+                                    = Pacer.class.getName() + "-"
+                                        + threadIndex.incrementAndGet();
+                                Thread t = new Thread(r, name);
+
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Gets the number of packets which this <tt>Pacer</tt> has sent.
+     *
+     * @return the number of packets which this <tt>Pacer</tt> has sent
+     */
+    public long getSentPacketCount()
+    {
+        return sentPacketCount.get();
+    }
+
+    /**
+     * Removes the oldest queued packet.
+     *
+     * @param now the current time in nanoseconds or <tt>0</tt> if the pacing
+     * delay of the removed packet is not to be accounted for
+     * @return the oldest queued packet
+     */
+    private RawPacket poll(long now)
+    {
+        RawPacket packet = packets[head];
+
+        if (now != 0)
+        {
+            long delay = now - enqueueTimes[head];
+
+            totalPacingDelay.addAndGet(delay);
+            if (delay > maxPacingDelay)
+                maxPacingDelay = delay;
+        }
+
+        packets[head] = null;
+        head = (head + 1) % packets.length;
+        size--;
+        return packet;
+    }
+
+    /**
+     * Adds to the token buckets the tokens which have accumulated since they
+     * were last refilled.
+     *
+     * @param now the current time in nanoseconds
+     */
+    private void refill(long now)
+    {
+        long elapsed = now - lastRefillTime;
+
+        lastRefillTime = now;
+
+        int maxPackets = this.maxPackets;
+        long perNanos = this.perNanos;
+
+        if ((maxPackets > 0) && (perNanos > 0))
+        {
+            packetTokens += elapsed * (double) maxPackets / perNanos;
+            if (packetTokens > maxPackets)
+                packetTokens = maxPackets;
+        }
+
+        long maxBitrate = this.maxBitrate;
+
+        if (maxBitrate > 0)
+        {
+            // Allow bursts of up to 20 milliseconds worth of bits.
+            double maxBitTokens = maxBitrate / 50D;
+
+            bitTokens += elapsed * maxBitrate / 1000000000D;
+            if (bitTokens > maxBitTokens)
+                bitTokens = maxBitTokens;
+        }
+    }
+
+    /**
+     * Sends the queued packets which the token buckets allow and schedules
+     * the next run of this <tt>Pacer</tt> if there are packets left.
+     */
+    private void run()
+    {
+        long delay = 0;
+
+        try
+        {
+            for (int i = 0; i < MAX_PACKETS_PER_RUN; i++)
+            {
+                RawPacket packet;
+                long now = System.nanoTime();
+
+                synchronized (this)
+                {
+                    if (closed || (size == 0))
+                        break;
+
+                    refill(now);
+
+                    boolean limitPackets = (maxPackets > 0) && (perNanos > 0);
+                    boolean limitBits = (maxBitrate > 0);
+
+                    if (limitPackets && (packetTokens < 1))
+                    {
+                        delay
+                            = (long)
+                                ((1 - packetTokens) * perNanos / maxPackets);
+                    }
+                    if (limitBits && (bitTokens < 0))
+                    {
+                        delay
+                            = Math.max(
+                                    delay,
+                                    (long)
+                                        (-bitTokens * 1000000000D
+                                            / maxBitrate));
+                    }
+                    if (delay > 0)
+                        break;
+
+                    packet = poll(now);
+                    if (limitPackets)
+                        packetTokens--;
+                    if (limitBits)
+                        bitTokens -= packet.getLength() * 8;
+                }
+
+                sentPacketCount.incrementAndGet();
+                send(packet);
+            }
+        }
+        catch (Throwable t)
+        {
+            logger.error("Failed to send a paced packet.", t);
+        }
+        finally
+        {
+            scheduled.set(false);
+        }
+
+        boolean empty;
+
+        synchronized (this)
+        {
+            empty = closed || (size == 0);
+        }
+        if (!empty)
+            schedule((delay > 0) ? Math.max(delay, 1000) : 0);
+    }
+
+    /**
+     * Schedules {@link #runnable} in {@link #scheduler} unless it is already
+     * scheduled.
+     *
+     * @param delay the number of nanoseconds after which <tt>runnable</tt> is
+     * to run
+     */
+    private void schedule(long delay)
+    {
+        if (scheduled.compareAndSet(false, true))
+        {
+            try
+            {
+                getScheduler().schedule(
+                        runnable,
+                        delay,
+                        TimeUnit.NANOSECONDS);
+            }
+            catch (RejectedExecutionException ree)
+            {
+                scheduled.set(false);
+                logger.error("Failed to schedule the sending of packets.", ree);
+            }
+        }
+    }
+
+    /**
+     * Sends a specific packet (in a thread of the pool shared by all
+     * <tt>Pacer</tt>s). Implementations are responsible for releasing the
+     * packet into <tt>RawPacketPool</tt>.
+     *
+     * @param packet the packet to send
+     */
+    protected abstract void send(RawPacket packet);
+
+    /**
+     * Sets the maximum number of bits per second to be sent by this
+     * <tt>Pacer</tt>.
+     *
+     * @param maxBitrate the maximum number of bits per second to be sent by
+     * this <tt>Pacer</tt>; <tt>-1</tt> if no maximum is to be set
+     */
+    public synchronized void setMaxBitrate(long maxBitrate)
+    {
+        if (maxBitrate < 1)
+        {
+            this.maxBitrate = -1;
+        }
+        else
+        {
+            if (this.maxBitrate < 1)
+                bitTokens = 0;
+            this.maxBitrate = maxBitrate;
+        }
+    }
+
+    /**
+     * Sets the maximum number of packets to be sent by this <tt>Pacer</tt>
+     * per a specific number of milliseconds.
+     *
+     * @param maxPackets the maximum number of packets to be sent by this
+     * <tt>Pacer</tt> per the specified number of milliseconds; <tt>-1</tt> if
+     * no maximum is to be set
+     * @param perMillis the number of milliseconds per which
+     * <tt>maxPackets</tt> are to be sent by this <tt>Pacer</tt>
+     */
+    public synchronized void setMaxPacketsPerMillis(
+            int maxPackets,
+            long perMillis)
+    {
+        if (maxPackets < 1)
+        {
+            this.maxPackets = -1;
+            this.perNanos = -1;
+        }
+        else
+        {
+            if (perMillis < 1)
+                throw new IllegalArgumentException("perMillis");
+
+            if (this.maxPackets < 1)
+                packetTokens = maxPackets;
+            this.maxPackets = maxPackets;
+            this.perNanos = perMillis * 1000000;
+        }
+    }
+
+    /**
+     * Queues a specific packet to be sent by this <tt>Pacer</tt>. Never
+     * blocks: if the queue is full, a packet is dropped in accord with
+     * {@link #DROP_POLICY_PNAME}.
+     *
+     * @param packet the packet to be sent by this <tt>Pacer</tt>
+     */
+    public void write(RawPacket packet)
+    {
+        RawPacket dropped = null;
+
+        synchronized (this)
+        {
+            if (closed)
+            {
+                dropped = packet;
+            }
+            else
+            {
+                if (size == packets.length)
+                {
+                    if (dropHead)
+                    {
+                        dropped = poll(0);
+                    }
+                    else
+                    {
+                        dropped = packet;
+                        packet = null;
+                    }
+                    droppedPacketCount.incrementAndGet();
+                }
+                if (packet != null)
+                {
+                    int tail = (head + size) % packets.length;
+
+                    packets[tail] = packet;
+                    enqueueTimes[tail] = System.nanoTime();
+                    size++;
+                }
+            }
+        }
+
+        if (dropped != null)
+            RawPacketPool.release(dropped);
+        if (packet != null)
+            schedule(0);
+    }
+}
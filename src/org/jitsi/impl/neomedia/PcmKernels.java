@@ -0,0 +1,200 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia;
+
+/**
+ * Implements batch routines on signed 16-bit little endian PCM audio such as
+ * the calculation of levels, the application of gain with clipping and the
+ * mixing. The routines do not allocate and their loops are kept simple (i.e.
+ * counted, with loop-invariant arguments and without calls in their bodies)
+ * so that the JIT compiler can hoist the range checks, unroll and, where the
+ * accesses are not strided, vectorize them.
+ * <p>
+ * Unless stated otherwise, offsets and lengths into <tt>byte</tt> arrays are
+ * in bytes and offsets and counts into <tt>int</tt> arrays are in samples.
+ * </p>
+ */
+public class PcmKernels
+{
+    /**
+     * Adds <tt>int</tt> samples to others in place without clipping.
+     *
+     * @param in the samples to add to <tt>out</tt>
+     * @param out the samples to add <tt>in</tt> to
+     * @param count the number of samples to add
+     */
+    public static void add(int[] in, int[] out, int count)
+    {
+        for (int i = 0; i < count; i++)
+            out[i] += in[i];
+    }
+
+    /**
+     * Applies a specific gain to signed 16-bit little endian samples in place
+     * clipping (rather than wrapping) the results.
+     *
+     * @param pcm the samples to apply <tt>gain</tt> to
+     * @param offset the offset in <tt>pcm</tt> at which the samples start
+     * @param length the length in bytes of the samples in <tt>pcm</tt>
+     * @param gain the gain to apply
+     */
+    public static void applyGain(
+            byte[] pcm, int offset, int length,
+            float gain)
+    {
+        for (int i = offset, end = offset + (length & ~1); i < end; i += 2)
+        {
+            int s = (pcm[i + 1] << 8) | (pcm[i] & 0xFF);
+
+            s = (int) (s * gain);
+            s = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, s));
+
+            pcm[i] = (byte) s;
+            pcm[i + 1] = (byte) (s >> 8);
+        }
+    }
+
+    /**
+     * Clips <tt>int</tt> samples in place to a specific range.
+     *
+     * @param samples the samples to clip
+     * @param offset the offset in <tt>samples</tt> at which the samples start
+     * @param count the number of samples to clip
+     * @param min the minimum value of a sample
+     * @param max the maximum value of a sample
+     */
+    public static void clip(
+            int[] samples, int offset, int count,
+            int min, int max)
+    {
+        for (int i = offset, end = offset + count; i < end; i++)
+        {
+            int sample = samples[i];
+
+            /*
+             * Most samples are within the range so do not store them (which is
+             * cheaper than Math.min/max would be).
+             */
+            if (sample > max)
+                samples[i] = max;
+            else if (sample < min)
+                samples[i] = min;
+        }
+    }
+
+    /**
+     * Converts signed 16-bit little endian samples to <tt>int</tt> samples.
+     *
+     * @param in the samples to convert
+     * @param inOffset the offset in <tt>in</tt> at which the samples start
+     * @param out the <tt>int</tt> array to write the converted samples to
+     * @param outOffset the offset in <tt>out</tt> at which the converted
+     * samples are to be written
+     * @param count the number of samples to convert
+     */
+    public static void decode(
+            byte[] in, int inOffset,
+            int[] out, int outOffset,
+            int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int j = inOffset + 2 * i;
+
+            out[outOffset + i] = (in[j + 1] << 8) | (in[j] & 0xFF);
+        }
+    }
+
+    /**
+     * Converts <tt>int</tt> samples to signed 16-bit little endian samples
+     * clipping (rather than wrapping) the ones which do not fit into 16 bits.
+     *
+     * @param in the samples to convert
+     * @param inOffset the offset in <tt>in</tt> at which the samples start
+     * @param out the <tt>byte</tt> array to write the converted samples to
+     * @param outOffset the offset in <tt>out</tt> at which the converted
+     * samples are to be written
+     * @param count the number of samples to convert
+     */
+    public static void encode(
+            int[] in, int inOffset,
+            byte[] out, int outOffset,
+            int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int s
+                = Math.max(
+                        Short.MIN_VALUE,
+                        Math.min(Short.MAX_VALUE, in[inOffset + i]));
+            int j = outOffset + 2 * i;
+
+            out[j] = (byte) s;
+            out[j + 1] = (byte) (s >> 8);
+        }
+    }
+
+    /**
+     * Subtracts <tt>int</tt> samples from others in place without clipping.
+     *
+     * @param in the samples to subtract from <tt>out</tt>
+     * @param out the samples to subtract <tt>in</tt> from
+     * @param count the number of samples to subtract
+     */
+    public static void subtract(int[] in, int[] out, int count)
+    {
+        for (int i = 0; i < count; i++)
+            out[i] -= in[i];
+    }
+
+    /**
+     * Calculates the sum of the absolute values of signed 16-bit little endian
+     * samples.
+     *
+     * @param pcm the samples
+     * @param offset the offset in <tt>pcm</tt> at which the samples start
+     * @param length the length in bytes of the samples in <tt>pcm</tt>
+     * @return the sum of the absolute values of the specified samples
+     */
+    public static long sumOfAbsolutes(byte[] pcm, int offset, int length)
+    {
+        long sum = 0;
+
+        for (int i = offset, end = offset + (length & ~1); i < end; i += 2)
+            sum += Math.abs((pcm[i + 1] << 8) | (pcm[i] & 0xFF));
+        return sum;
+    }
+
+    /**
+     * Calculates the sum of the squares of signed 16-bit little endian
+     * samples.
+     *
+     * @param pcm the samples
+     * @param offset the offset in <tt>pcm</tt> at which the samples start
+     * @param length the length in bytes of the samples in <tt>pcm</tt>
+     * @return the sum of the squares of the specified samples
+     */
+    public static long sumOfSquares(byte[] pcm, int offset, int length)
+    {
+        long sum = 0;
+
+        for (int i = offset, end = offset + (length & ~1); i < end; i += 2)
+        {
+            int s = (pcm[i + 1] << 8) | (pcm[i] & 0xFF);
+
+            sum += s * s;
+        }
+        return sum;
+    }
+
+    /**
+     * Prevents the initialization of <tt>PcmKernels</tt> instances.
+     */
+    private PcmKernels()
+    {
+    }
+}
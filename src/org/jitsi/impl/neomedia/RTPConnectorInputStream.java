@@ -14,7 +14,6 @@ import javax.media.protocol.*;
 import org.ice4j.socket.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.packetlogging.*;
-import org.jitsi.util.*;
 
 /**
  * @author Bing SU (nova.su@gmail.com)
@@ -32,15 +31,17 @@ public abstract class RTPConnectorInputStream
     private static final Object[] EMPTY_CONTROLS = new Object[0];
 
     /**
-     * The length in bytes of the buffers of <tt>RTPConnectorInputStream</tt>
-     * receiving packets from the network.
+     * The buffer of the <tt>DatagramPacket</tt> of {@link #run()} before it is
+     * pointed to the buffer of a pooled <tt>RawPacket</tt>.
      */
-    private static final int PACKET_RECEIVE_BUFFER_LENGTH = 4 * 1024;
+    private static final byte[] EMPTY_BUFFER = new byte[0];
 
     /**
-     * Packet receive buffer
+     * The length in bytes of the buffers of <tt>RTPConnectorInputStream</tt>
+     * receiving packets from the network.
      */
-    private final byte[] buffer = new byte[PACKET_RECEIVE_BUFFER_LENGTH];
+    static final int PACKET_RECEIVE_BUFFER_LENGTH
+        = RawPacketPool.LARGE_CAPACITY;
 
     /**
      * Whether this stream is closed. Used to control the termination of worker
@@ -59,6 +60,15 @@ public abstract class RTPConnectorInputStream
      */
     protected RawPacket pkt;
 
+    /**
+     * The <tt>RawPacket</tt> acquired from <tt>RawPacketPool</tt> into the
+     * buffer of which the <tt>DatagramPacket</tt> being handled by
+     * {@link #handleReceivedPacket(DatagramPacket, RawPacket)} has been
+     * received or <tt>null</tt> if no such <tt>DatagramPacket</tt> is being
+     * handled.
+     */
+    private RawPacket received;
+
     /**
      * SourceTransferHandler object which is used to read packets.
      */
@@ -135,6 +145,14 @@ public abstract class RTPConnectorInputStream
      */
     protected RawPacket createRawPacket(DatagramPacket datagramPacket)
     {
+        /*
+         * The packet data has been received into a pooled RawPacket so hand
+         * that RawPacket to the PacketTransformers rather than wrap its buffer
+         * once more. The buffer is set anew because a PacketTransformer may
+         * have replaced it while it was handling the previous packet.
+         */
+        RawPacket pkt = received;
+
         if (pkt == null)
         {
             return
@@ -284,67 +302,136 @@ public abstract class RTPConnectorInputStream
      */
     public void run()
     {
-        DatagramPacket p
-            = new DatagramPacket(buffer, 0, PACKET_RECEIVE_BUFFER_LENGTH);
+        DatagramPacket p = new DatagramPacket(EMPTY_BUFFER, 0);
+
+        while (!closed && receive(p));
+    }
+
+    /**
+     * Receives a packet into the buffer of a <tt>RawPacket</tt> acquired from
+     * <tt>RawPacketPool</tt>, handles it and releases the <tt>RawPacket</tt>
+     * back into the pool once the <tt>SourceTransferHandler</tt> has read it.
+     *
+     * @param p the <tt>DatagramPacket</tt> to receive with which is pointed to
+     * the buffer of the acquired <tt>RawPacket</tt>
+     * @return <tt>true</tt> if a packet has been received; <tt>false</tt> if
+     * the reception has failed
+     */
+    boolean receive(DatagramPacket p)
+    {
+        RawPacket received
+            = RawPacketPool.acquire(PACKET_RECEIVE_BUFFER_LENGTH);
 
-        while (!closed)
+        try
         {
+            /*
+             * Setting the data restores the length of the DatagramPacket which
+             * the previous reception has reduced (which also takes care of
+             * http://code.google.com/p/android/issues/detail?id=24765).
+             */
+            p.setData(
+                    received.getBuffer(),
+                    received.getOffset(),
+                    PACKET_RECEIVE_BUFFER_LENGTH);
             try
             {
-                // http://code.google.com/p/android/issues/detail?id=24765
-                if (OSUtils.IS_ANDROID)
-                    p.setLength(PACKET_RECEIVE_BUFFER_LENGTH);
-
                 receivePacket(p);
             }
             catch (IOException e)
             {
                 ioError = true;
-                break;
+                return false;
             }
 
-            /*
-             * Do the DatagramPacketFilters accept the received DatagramPacket?
-             */
-            DatagramPacketFilter[] datagramPacketFilters
-                = getDatagramPacketFilters();
-            boolean accept;
+            handleReceivedPacket(p, received);
+            return true;
+        }
+        finally
+        {
+            RawPacketPool.release(received);
+        }
+    }
 
-            if (datagramPacketFilters == null)
-                accept = true;
-            else
+    /**
+     * Runs a specific received <tt>DatagramPacket</tt> through the
+     * <tt>DatagramPacketFilter</tt>s of this instance, converts it into a
+     * <tt>RawPacket</tt> and notifies the <tt>transferHandler</tt> that there's
+     * data to be read.
+     *
+     * @param p the <tt>DatagramPacket</tt> which has just been received
+     */
+    private void handleReceivedPacket(DatagramPacket p)
+    {
+        /*
+         * Do the DatagramPacketFilters accept the received DatagramPacket?
+         */
+        DatagramPacketFilter[] datagramPacketFilters
+            = getDatagramPacketFilters();
+        boolean accept;
+
+        if (datagramPacketFilters == null)
+            accept = true;
+        else
+        {
+            accept = true;
+            for (int i = 0; i < datagramPacketFilters.length; i++)
             {
-                accept = true;
-                for (int i = 0; i < datagramPacketFilters.length; i++)
+                try
                 {
-                    try
-                    {
-                        if (!datagramPacketFilters[i].accept(p))
-                        {
-                            accept = false;
-                            break;
-                        }
-                    }
-                    catch (Throwable t)
+                    if (!datagramPacketFilters[i].accept(p))
                     {
-                        if (t instanceof ThreadDeath)
-                            throw (ThreadDeath) t;
+                        accept = false;
+                        break;
                     }
                 }
+                catch (Throwable t)
+                {
+                    if (t instanceof ThreadDeath)
+                        throw (ThreadDeath) t;
+                }
             }
+        }
 
-            if (accept)
-            {
-                pkt = createRawPacket(p);
-
-                /*
-                 * If we got extended, the delivery of the packet may have been
-                 * canceled.
-                 */
-                if ((pkt != null) && (!pkt.isInvalid())
-                        && (transferHandler != null) && !closed)
-                    transferHandler.transferData(this);
-            }
+        if (accept)
+        {
+            pkt = createRawPacket(p);
+
+            /*
+             * If we got extended, the delivery of the packet may have been
+             * canceled.
+             */
+            if ((pkt != null) && (!pkt.isInvalid())
+                    && (transferHandler != null) && !closed)
+                transferHandler.transferData(this);
+        }
+    }
+
+    /**
+     * Handles a specific <tt>DatagramPacket</tt> which has been received into
+     * the buffer of a specific <tt>RawPacket</tt> acquired from
+     * <tt>RawPacketPool</tt>. Invoked by {@link #receive(DatagramPacket)} and
+     * by the shared {@link DatagramChannelReceiver} which may receive on
+     * behalf of this instance. The packet data reaches the
+     * <tt>PacketTransformer</tt>s in <tt>received</tt> without being copied.
+     * The caller retains the ownership of <tt>received</tt> and may reuse or
+     * release it once the method returns because the
+     * <tt>SourceTransferHandler</tt> reads the packet data before it
+     * returns.
+     *
+     * @param p the <tt>DatagramPacket</tt> which has just been received
+     * @param received the <tt>RawPacket</tt> into the buffer of which
+     * <tt>p</tt> has been received
+     */
+    void handleReceivedPacket(DatagramPacket p, RawPacket received)
+    {
+        this.received = received;
+        try
+        {
+            handleReceivedPacket(p);
+        }
+        finally
+        {
+            this.received = null;
         }
     }
 
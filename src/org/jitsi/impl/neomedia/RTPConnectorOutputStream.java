@@ -9,8 +9,6 @@ package org.jitsi.impl.neomedia;
 import java.io.*;
 import java.net.*;
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.concurrent.locks.*;
 
 import javax.media.rtp.*;
 
@@ -33,10 +31,10 @@ public abstract class RTPConnectorOutputStream
         = Logger.getLogger(RTPConnectorOutputStream.class);
 
     /**
-     * The maximum number of packets to be sent to be kept in the queue of
-     * <tt>MaxPacketsPerMillisPolicy</tt>. When the maximum is reached, the next
-     * attempt to write a new packet in the queue will block until at least one
-     * packet from the queue is sent. Defined in order to prevent
+     * The default maximum number of packets to be sent to be kept in the queue
+     * of the <tt>Pacer</tt> of an <tt>RTPConnectorOutputStream</tt>. When the
+     * maximum is reached, a packet is dropped in accord with
+     * {@link Pacer#DROP_POLICY_PNAME}. Defined in order to prevent
      * <tt>OutOfMemoryError</tt>s which, technically, may arise if the capacity
      * of the queue is unlimited.
      */
@@ -45,11 +43,12 @@ public abstract class RTPConnectorOutputStream
             = 256;
 
     /**
-     * The functionality which allows this <tt>OutputDataStream</tt> to control
-     * how many RTP packets it sends through its <tt>DatagramSocket</tt> per a
-     * specific number of milliseconds.
+     * The <tt>Pacer</tt> which controls how many RTP packets and bits this
+     * <tt>OutputDataStream</tt> sends through its <tt>DatagramSocket</tt> per
+     * a specific number of milliseconds or <tt>null</tt> if the packets are
+     * sent in the writing thread without pacing.
      */
-    private MaxPacketsPerMillisPolicy maxPacketsPerMillisPolicy;
+    private volatile Pacer pacer;
 
     /**
      * Stream targets' IP addresses and ports.
@@ -57,13 +56,6 @@ public abstract class RTPConnectorOutputStream
     protected final List<InetSocketAddress> targets
         = new LinkedList<InetSocketAddress>();
 
-    /**
-     * The pool of <tt>RawPacket</tt> instances which reduces the number of
-     * allocations performed by {@link #createRawPacket(byte[], int, int)}.
-     */
-    private final LinkedBlockingQueue<RawPacket> rawPacketPool
-        = new LinkedBlockingQueue<RawPacket>();
-
     /**
      * Used for debugging. As we don't log every packet
      * we must count them and decide which to log.
@@ -98,11 +90,15 @@ public abstract class RTPConnectorOutputStream
      */
     public void close()
     {
-        if (maxPacketsPerMillisPolicy != null)
+        Pacer pacer;
+
+        synchronized (this)
         {
-            maxPacketsPerMillisPolicy.close();
-            maxPacketsPerMillisPolicy = null;
+            pacer = this.pacer;
+            this.pacer = null;
         }
+        if (pacer != null)
+            pacer.close();
         removeTargets();
     }
 
@@ -110,7 +106,9 @@ public abstract class RTPConnectorOutputStream
      * Creates a new <tt>RawPacket</tt> from a specific <tt>byte[]</tt> buffer
      * in order to have this instance send its packet data through its
      * {@link #write(byte[], int, int)} method. Allows extenders to intercept
-     * the packet data and possibly filter and/or modify it.
+     * the packet data and possibly filter and/or modify it. The returned
+     * <tt>RawPacket</tt> is acquired from <tt>RawPacketPool</tt> and is
+     * released back into it once it has been sent.
      *
      * @param buffer the packet data to be sent to the targets of this instance
      * @param offset the offset of the packet data in <tt>buffer</tt>
@@ -123,17 +121,53 @@ public abstract class RTPConnectorOutputStream
      */
     protected RawPacket createRawPacket(byte[] buffer, int offset, int length)
     {
-        RawPacket pkt = rawPacketPool.poll();
+        RawPacket pkt = RawPacketPool.acquire(length);
 
-        if ((pkt == null) || (pkt.getBuffer().length < length))
-            pkt = new RawPacket(new byte[length], 0, 0);
-
-        System.arraycopy(buffer, offset, pkt.getBuffer(), 0, length);
+        System.arraycopy(
+                buffer, offset,
+                pkt.getBuffer(), pkt.getOffset(),
+                length);
         pkt.setLength(length);
-        pkt.setOffset(0);
         return pkt;
     }
 
+    /**
+     * Gets the <tt>Pacer</tt> of this <tt>OutputDataStream</tt> and
+     * initializes it if necessary.
+     *
+     * @return the <tt>Pacer</tt> of this <tt>OutputDataStream</tt>
+     */
+    private synchronized Pacer getOrCreatePacer()
+    {
+        if (pacer == null)
+        {
+            pacer
+                = new Pacer()
+                {
+                    @Override
+                    protected void send(RawPacket packet)
+                    {
+                        RTPConnectorOutputStream.this.send(packet);
+                    }
+                };
+        }
+        return pacer;
+    }
+
+    /**
+     * Gets the <tt>Pacer</tt> which controls how many RTP packets and bits
+     * this <tt>OutputDataStream</tt> sends per a specific number of
+     * milliseconds and which exposes the queue size and the pacing delay.
+     *
+     * @return the <tt>Pacer</tt> of this <tt>OutputDataStream</tt> or
+     * <tt>null</tt> if this <tt>OutputDataStream</tt> does not pace the
+     * packets it sends
+     */
+    public synchronized Pacer getPacer()
+    {
+        return pacer;
+    }
+
     /**
      * Remove a target from stream targets list
      *
@@ -180,8 +214,8 @@ public abstract class RTPConnectorOutputStream
      */
     static boolean logPacket(long numOfPacket)
     {
-        // We log all packets (without voice data)
-        return true;
+        // We log all packets (without voice data)
+        return true;
     }
 
     /**
@@ -255,12 +289,12 @@ public abstract class RTPConnectorOutputStream
             }
             catch (IOException ioe)
             {
-                rawPacketPool.offer(packet);
+                RawPacketPool.release(packet);
                 // TODO error handling
                 return false;
             }
         }
-        rawPacketPool.offer(packet);
+        RawPacketPool.release(packet);
         return true;
     }
 
@@ -278,21 +312,46 @@ public abstract class RTPConnectorOutputStream
      */
     public void setMaxPacketsPerMillis(int maxPackets, long perMillis)
     {
-        if (maxPacketsPerMillisPolicy == null)
+        Pacer pacer = getPacer();
+
+        if (pacer == null)
         {
             if (maxPackets > 0)
             {
                 if (perMillis < 1)
                     throw new IllegalArgumentException("perMillis");
 
-                maxPacketsPerMillisPolicy
-                    = new MaxPacketsPerMillisPolicy(maxPackets, perMillis);
+                getOrCreatePacer().setMaxPacketsPerMillis(
+                        maxPackets,
+                        perMillis);
             }
         }
         else
         {
-            maxPacketsPerMillisPolicy
-                .setMaxPacketsPerMillis(maxPackets, perMillis);
+            pacer.setMaxPacketsPerMillis(maxPackets, perMillis);
+        }
+    }
+
+    /**
+     * Sets the maximum number of bits per second to be sent by this
+     * <tt>OutputDataStream</tt> through its <tt>DatagramSocket</tt>.
+     *
+     * @param maxBitrate the maximum number of bits per second to be sent by
+     * this <tt>OutputDataStream</tt> through its <tt>DatagramSocket</tt>;
+     * <tt>-1</tt> if no maximum is to be set
+     */
+    public void setMaxBitrate(long maxBitrate)
+    {
+        Pacer pacer = getPacer();
+
+        if (pacer == null)
+        {
+            if (maxBitrate > 0)
+                getOrCreatePacer().setMaxBitrate(maxBitrate);
+        }
+        else
+        {
+            pacer.setMaxBitrate(maxBitrate);
         }
     }
 
@@ -317,7 +376,7 @@ public abstract class RTPConnectorOutputStream
          * sent after hanging up a call.
          */
         if (logger.isDebugEnabled() && targets.isEmpty())
-            logger.debug("Write called without targets!");
+            logger.debug("Write called without targets!");
 
         RawPacket packet = createRawPacket(buffer, offset, length);
 
@@ -327,13 +386,15 @@ public abstract class RTPConnectorOutputStream
          */
         if (packet != null)
         {
-            if (maxPacketsPerMillisPolicy == null)
+            Pacer pacer = this.pacer;
+
+            if (pacer == null)
             {
                 if (!send(packet))
                     return -1;
             }
             else
-                maxPacketsPerMillisPolicy.write(packet);
+                pacer.write(packet);
         }
         return length;
     }
@@ -345,228 +406,5 @@ public abstract class RTPConnectorOutputStream
     public void setPriority(int priority)
     {
         // currently no priority is set
-//        if ((maxPacketsPerMillisPolicy != null)
-//                && (maxPacketsPerMillisPolicy.sendThread != null))
-//            maxPacketsPerMillisPolicy.sendThread.setPriority(priority);
-    }
-
-    /**
-     * Implements the functionality which allows this <tt>OutputDataStream</tt>
-     * to control how many RTP packets it sends through its
-     * <tt>DatagramSocket</tt> per a specific number of milliseconds.
-     */
-    private class MaxPacketsPerMillisPolicy
-    {
-
-        /**
-         * The maximum number of RTP packets to be sent by this
-         * <tt>OutputDataStream</tt> through its <tt>DatagramSocket</tt> per
-         * {@link #perNanos} nanoseconds.
-         */
-        private int maxPackets = -1;
-
-        /**
-         * The time stamp in nanoseconds of the start of the current
-         * <tt>perNanos</tt> interval.
-         */
-        private long millisStartTime = 0;
-
-        /**
-         * The list of RTP packets to be sent through the
-         * <tt>DatagramSocket</tt> of this <tt>OutputDataSource</tt>.
-         */
-        private final ArrayBlockingQueue<RawPacket> packetQueue
-            = new ArrayBlockingQueue<RawPacket>(
-                    MAX_PACKETS_PER_MILLIS_POLICY_PACKET_QUEUE_CAPACITY);
-
-        /**
-         * The number of RTP packets already sent during the current
-         * <tt>perNanos</tt> interval.
-         */
-        private long packetsSentInMillis = 0;
-
-        /**
-         * The time interval in nanoseconds during which {@link #maxPackets}
-         * number of RTP packets are to be sent through the
-         * <tt>DatagramSocket</tt> of this <tt>OutputDataSource</tt>.
-         */
-        private long perNanos = -1;
-
-        /**
-         * The <tt>Thread</tt> which is to send the RTP packets in
-         * {@link #packetQueue} through the <tt>DatagramSocket</tt> of this
-         * <tt>OutputDataSource</tt>.
-         */
-        private Thread sendThread;
-
-        /**
-         * To signal run or stop condition to send thread.
-         */
-        private boolean sendRun = true;
-
-        /**
-         * Initializes a new <tt>MaxPacketsPerMillisPolicy</tt> instance which
-         * is to control how many RTP packets this <tt>OutputDataSource</tt> is
-         * to send through its <tt>DatagramSocket</tt> per a specific number of
-         * milliseconds.
-         *
-         * @param maxPackets the maximum number of RTP packets to be sent per
-         * <tt>perMillis</tt> milliseconds through the <tt>DatagramSocket</tt>
-         * of this <tt>OutputDataStream</tt>
-         * @param perMillis the number of milliseconds per which a maximum of
-         * <tt>maxPackets</tt> RTP packets are to be sent through the
-         * <tt>DatagramSocket</tt> of this <tt>OutputDataStream</tt>
-         */
-        public MaxPacketsPerMillisPolicy(int maxPackets, long perMillis)
-        {
-            setMaxPacketsPerMillis(maxPackets, perMillis);
-            synchronized (this) {
-                if (sendThread == null)
-                {
-                    sendThread
-                        = new Thread(getClass().getName())
-                        {
-                            @Override
-                            public void run()
-                            {
-                                runInSendThread();
-                            }
-                        };
-                    sendThread.setDaemon(true);
-                    sendThread.start();
-                }
-            }
-        }
-
-        /**
-         * Closes the connector.
-         */
-        synchronized void close()
-        {
-            if (!sendRun)
-                return;
-            sendRun = false;
-            // just offer a new packet to wakeup thread in case it waits for
-            // a packet.
-            packetQueue.offer(new RawPacket(null, 0, 0));
-        }
-
-        /**
-         * Sends the RTP packets in {@link #packetQueue} in accord with
-         * {@link #maxPackets} and {@link #perNanos}.
-         */
-        private void runInSendThread()
-        {
-            try
-            {
-                while (sendRun)
-                {
-                    RawPacket packet = null;
-
-                    while (true)
-                    {
-                        try
-                        {
-                            packet = packetQueue.take();
-                            break;
-                        }
-                        catch (InterruptedException iex)
-                        {
-                            continue;
-                        }
-                    }
-                    if (!sendRun)
-                        break;
-
-                    long time = System.nanoTime();
-                    long millisRemainingTime = time - millisStartTime;
-
-                    if ((perNanos < 1)
-                            || (millisRemainingTime >= perNanos))
-                    {
-                        millisStartTime = time;
-                        packetsSentInMillis = 0;
-                    }
-                    else if ((maxPackets > 0)
-                            && (packetsSentInMillis >= maxPackets))
-                    {
-                        while (true)
-                        {
-                            millisRemainingTime = System.nanoTime()
-                                    - millisStartTime;
-                            if (millisRemainingTime >= perNanos)
-                                break;
-                            LockSupport.parkNanos(millisRemainingTime);
-                        }
-                        millisStartTime = System.nanoTime();
-                        packetsSentInMillis = 0;
-                    }
-
-                    send(packet);
-                    packetsSentInMillis++;
-                }
-            }
-            finally
-            {
-                packetQueue.clear();
-                synchronized (packetQueue)
-                {
-                    if (Thread.currentThread().equals(sendThread))
-                        sendThread = null;
-                }
-            }
-        }
-
-        /**
-         * Sets the maximum number of RTP packets to be sent by this
-         * <tt>OutputDataStream</tt> through its <tt>DatagramSocket</tt> per
-         * a specific number of milliseconds.
-         *
-         * @param maxPackets the maximum number of RTP packets to be sent by
-         * this <tt>OutputDataStream</tt> through its <tt>DatagramSocket</tt>
-         * per the specified number of milliseconds; <tt>-1</tt> if no maximum
-         * is to be set
-         * @param perMillis the number of milliseconds per which
-         * <tt>maxPackets</tt> are to be sent by this <tt>OutputDataStream</tt>
-         * through its <tt>DatagramSocket</tt>
-         */
-        public void setMaxPacketsPerMillis(int maxPackets, long perMillis)
-        {
-            if (maxPackets < 1)
-            {
-                this.maxPackets = -1;
-                this.perNanos = -1;
-            }
-            else
-            {
-                if (perMillis < 1)
-                    throw new IllegalArgumentException("perMillis");
-
-                this.maxPackets = maxPackets;
-                this.perNanos = perMillis * 1000000;
-            }
-        }
-
-        /**
-         * Queues a specific RTP packet to be sent through the
-         * <tt>DatagramSocket</tt> of this <tt>OutputDataStream</tt>.
-         *
-         * @param packet the RTP packet to be queued for sending through the
-         * <tt>DatagramSocket</tt> of this <tt>OutputDataStream</tt>
-         */
-        public void write(RawPacket packet)
-        {
-            while (true)
-            {
-                try
-                {
-                    packetQueue.put(packet);
-                    break;
-                }
-                catch (InterruptedException iex)
-                {
-                }
-            }
-        }
     }
 }
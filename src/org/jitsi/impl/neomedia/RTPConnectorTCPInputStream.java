@@ -112,9 +112,9 @@ public class RTPConnectorTCPInputStream
                     socket.getLocalPort(),
                     PacketLoggingService.TransportName.TCP,
                     false,
-                    convertedPacket.readRegion(convertedPacket.getOffset(),
+                    convertedPacket.readRegion(0,
                                              convertedPacket.getHeaderLength()),
-                    convertedPacket.getOffset(),
+                    0,
                     convertedPacket.getHeaderLength());
     }
 
@@ -129,12 +129,18 @@ public class RTPConnectorTCPInputStream
         throws IOException
     {
         int len = -1;
-        byte data[] = null;
 
         try
         {
-            data = p.getData();
-            len = socket.getInputStream().read(data);
+            /*
+             * Read at the offset of p in order to preserve the headroom of the
+             * pooled RawPacket which p points to.
+             */
+            len
+                = socket.getInputStream().read(
+                        p.getData(),
+                        p.getOffset(),
+                        p.getLength());
         }
         catch(Exception e)
         {
@@ -143,7 +149,6 @@ public class RTPConnectorTCPInputStream
 
         if(len > 0)
         {
-            p.setData(data);
             p.setLength(len);
             p.setAddress(socket.getInetAddress());
             p.setPort(socket.getPort());
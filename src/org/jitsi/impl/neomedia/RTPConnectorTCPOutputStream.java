@@ -82,8 +82,8 @@ public class RTPConnectorTCPOutputStream
                     target.getPort(),
                     PacketLoggingService.TransportName.TCP,
                     true,
-                    packet.readRegion(packet.getOffset(), packet.getHeaderLength()),
-                    packet.getOffset(),
+                    packet.readRegion(0, packet.getHeaderLength()),
+                    0,
                     packet.getHeaderLength());
     }
 
@@ -8,10 +8,12 @@ package org.jitsi.impl.neomedia;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 
 import org.ice4j.socket.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.packetlogging.*;
+import org.jitsi.util.*;
 
 /**
  * RTPConnectorInputStream implementation for UDP protocol.
@@ -21,6 +23,13 @@ import org.jitsi.service.packetlogging.*;
 public class RTPConnectorUDPInputStream
     extends RTPConnectorInputStream
 {
+    /**
+     * The <tt>Logger</tt> used by the <tt>RTPConnectorUDPInputStream</tt>
+     * class and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(RTPConnectorUDPInputStream.class);
+
     /**
      * UDP socket used to receive data.
      */
@@ -33,7 +42,11 @@ public class RTPConnectorUDPInputStream
 
     /**
      * Initializes a new <tt>RTPConnectorInputStream</tt> which is to receive
-     * packet data from a specific UDP socket.
+     * packet data from a specific UDP socket. If the
+     * <tt>DatagramChannelReceiver</tt> is enabled and the specified socket has
+     * an associated <tt>DatagramChannel</tt>, the reception is delegated to
+     * the shared <tt>DatagramChannelReceiver</tt>; otherwise, a dedicated
+     * thread is started.
      *
      * @param socket the UDP socket the new instance is to receive data from
      */
@@ -44,8 +57,51 @@ public class RTPConnectorUDPInputStream
         if(socket != null)
         {
             closed = false;
-            receiverThread = new Thread(this, "RTPConnectorUDPInputStreamThread");
-            receiverThread.start();
+            if (!registerWithDatagramChannelReceiver())
+            {
+                receiverThread
+                    = new Thread(this, "RTPConnectorUDPInputStreamThread");
+                receiverThread.start();
+            }
+        }
+    }
+
+    /**
+     * Attempts to have the shared <tt>DatagramChannelReceiver</tt> receive
+     * from the <tt>DatagramChannel</tt> of {@link #socket} on behalf of this
+     * instance.
+     *
+     * @return <tt>true</tt> if the shared <tt>DatagramChannelReceiver</tt>
+     * will receive on behalf of this instance; otherwise, <tt>false</tt>
+     */
+    private boolean registerWithDatagramChannelReceiver()
+    {
+        DatagramChannel channel = socket.getChannel();
+
+        if ((channel == null) || !DatagramChannelReceiver.isEnabled())
+            return false;
+
+        receivedSizeFlag = true;
+        try
+        {
+            socket.setReceiveBufferSize(65535);
+        }
+        catch(Throwable t)
+        {
+        }
+
+        try
+        {
+            DatagramChannelReceiver.getInstance().register(channel, this);
+            return true;
+        }
+        catch (IOException ioe)
+        {
+            logger.warn(
+                    "Failed to register with the DatagramChannelReceiver,"
+                        + " falling back to a dedicated receive thread.",
+                    ioe);
+            return false;
         }
     }
 
@@ -95,9 +151,9 @@ public class RTPConnectorUDPInputStream
                     socket.getLocalPort(),
                     PacketLoggingService.TransportName.UDP,
                     false,
-                    convertedPacket.readRegion(convertedPacket.getOffset(),
+                    convertedPacket.readRegion(0,
                                              convertedPacket.getHeaderLength()),
-                    convertedPacket.getOffset(),
+                    0,
                     convertedPacket.getHeaderLength());
             
             // And log to the media buffer
@@ -8,10 +8,13 @@ package org.jitsi.impl.neomedia;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
 
 import org.ice4j.socket.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.packetlogging.*;
+import org.jitsi.util.*;
 
 /**
  * RTPConnectorOutputStream implementation for UDP protocol.
@@ -21,6 +24,20 @@ import org.jitsi.service.packetlogging.*;
 public class RTPConnectorUDPOutputStream
     extends RTPConnectorOutputStream
 {
+    /**
+     * The <tt>Logger</tt> used by the <tt>RTPConnectorUDPOutputStream</tt>
+     * class and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(RTPConnectorUDPOutputStream.class);
+
+    /**
+     * The number of packets which have not been sent because the send buffer
+     * of the non-blocking <tt>DatagramChannel</tt> of {@link #socket} was
+     * full.
+     */
+    private long sendBufferOverflows;
+
     /**
      * UDP socket used to send packet data
      */
@@ -36,6 +53,19 @@ public class RTPConnectorUDPOutputStream
         this.socket = socket;
     }
 
+    /**
+     * Gets the number of packets which have not been sent by this instance
+     * because the send buffer of the non-blocking <tt>DatagramChannel</tt> of
+     * its socket was full.
+     *
+     * @return the number of packets which have not been sent by this instance
+     * because the send buffer of its socket was full
+     */
+    public long getSendBufferOverflows()
+    {
+        return sendBufferOverflows;
+    }
+
     /**
      * Sends a specific <tt>RawPacket</tt> through this
      * <tt>OutputDataStream</tt> to a specific <tt>InetSocketAddress</tt>.
@@ -52,13 +82,54 @@ public class RTPConnectorUDPOutputStream
     protected void sendToTarget(RawPacket packet, InetSocketAddress target)
         throws IOException
     {
-        socket.send(
-                new DatagramPacket(
+        DatagramChannel channel = socket.getChannel();
+
+        /*
+         * The DatagramChannelReceiver puts the channel in non-blocking mode
+         * in which the DatagramSocket adaptor refuses to send.
+         */
+        if ((channel != null) && !channel.isBlocking())
+        {
+            ByteBuffer buffer
+                = ByteBuffer.wrap(
                         packet.getBuffer(),
                         packet.getOffset(),
-                        packet.getLength(),
-                        target.getAddress(),
-                        target.getPort()));
+                        packet.getLength());
+
+            /*
+             * A non-blocking send does not wait for room in the send buffer
+             * and sends nothing if there is not enough of it. Give the kernel
+             * a chance to drain the send buffer once before the packet is
+             * given up on.
+             */
+            if (channel.send(buffer, target) == 0)
+            {
+                Thread.yield();
+                if (channel.send(buffer, target) == 0)
+                {
+                    long sendBufferOverflows = ++this.sendBufferOverflows;
+
+                    if ((sendBufferOverflows == 1)
+                            || (sendBufferOverflows % 1000 == 0))
+                    {
+                        logger.warn(
+                                "Dropped " + sendBufferOverflows
+                                    + " packet(s) to " + target
+                                    + " because the send buffer was full.");
+                    }
+                }
+            }
+        }
+        else
+        {
+            socket.send(
+                    new DatagramPacket(
+                            packet.getBuffer(),
+                            packet.getOffset(),
+                            packet.getLength(),
+                            target.getAddress(),
+                            target.getPort()));
+        }
     }
 
     /**
@@ -85,9 +156,9 @@ public class RTPConnectorUDPOutputStream
                     target.getPort(),
                     PacketLoggingService.TransportName.UDP,
                     true,
-                    packet.readRegion(packet.getOffset(),
+                    packet.readRegion(0,
                                       packet.getHeaderLength()),
-                    packet.getOffset(),
+                    0,
                     packet.getHeaderLength());
     }
 
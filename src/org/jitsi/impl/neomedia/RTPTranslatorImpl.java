@@ -9,6 +9,9 @@ package org.jitsi.impl.neomedia;
 import java.io.*;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 
 import javax.media.*;
 import javax.media.format.*;
@@ -18,6 +21,8 @@ import javax.media.rtp.event.*;
 import javax.media.rtp.rtcp.*;
 
 import org.jitsi.impl.neomedia.protocol.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.util.*;
 
@@ -48,10 +53,93 @@ public class RTPTranslatorImpl
     private static final boolean CREATE_FAKE_SEND_STREAM_IF_NECESSARY = false;
 
     /**
-     * An array with <tt>long</tt> element type and no elements explicitly
-     * defined to reduce unnecessary allocations.
+     * The default capacity of the queues of packets to be translated i.e. the
+     * default value of the {@link #WRITE_QUEUE_CAPACITY_PNAME}
+     * <tt>ConfigurationService</tt> property.
      */
-    private static final long[] EMPTY_LONG_ARRAY = new long[0];
+    private static final int WRITE_QUEUE_CAPACITY
+        = RTPConnectorOutputStream
+            .MAX_PACKETS_PER_MILLIS_POLICY_PACKET_QUEUE_CAPACITY;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the capacity of the queues of packets to be translated. The value is
+     * rounded up to a power of two.
+     */
+    public static final String WRITE_QUEUE_CAPACITY_PNAME
+        = "org.jitsi.impl.neomedia.RTPTranslatorImpl.writeQueueCapacity";
+
+    /**
+     * The name of the <tt>boolean</tt> <tt>ConfigurationService</tt> property
+     * which specifies whether each output connector is to be written into by a
+     * thread (and a queue) of its own so that a slow peer does not stall the
+     * others. The default value is <tt>false</tt> i.e. a single thread writes
+     * into all output connectors.
+     */
+    public static final String WRITER_PER_CONNECTOR_PNAME
+        = "org.jitsi.impl.neomedia.RTPTranslatorImpl.writerPerConnector";
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the number of threads of a pool (shared by all
+     * <tt>RTPTranslatorImpl</tt>s) which write into the output connectors in
+     * parallel. If positive, each output connector has a queue of its own (as
+     * with {@link #WRITER_PER_CONNECTOR_PNAME}) the packets of which are
+     * written (and, consequently, SRTP-transformed) in order by one pool thread
+     * at a time. The default value is <tt>0</tt> i.e. no pool.
+     */
+    public static final String WRITER_POOL_SIZE_PNAME
+        = "org.jitsi.impl.neomedia.RTPTranslatorImpl.writerPoolSize";
+
+    /**
+     * The maximum number of packets a thread of {@link #writerPool} writes
+     * from one queue before it lets the other queues have their turn.
+     */
+    private static final int WRITER_POOL_BATCH_SIZE = 32;
+
+    /**
+     * The pool of threads shared by all <tt>RTPTranslatorImpl</tt>s which
+     * write into the output connectors in parallel if
+     * {@link #WRITER_POOL_SIZE_PNAME} is positive.
+     */
+    private static ExecutorService writerPool;
+
+    /**
+     * Gets the pool of threads shared by all <tt>RTPTranslatorImpl</tt>s
+     * which write into the output connectors in parallel.
+     *
+     * @param poolSize the number of threads of the pool
+     * @return the pool of threads which write into the output connectors
+     */
+    private static synchronized ExecutorService getWriterPool(int poolSize)
+    {
+        if (writerPool == null)
+        {
+            writerPool
+                = Executors.newFixedThreadPool(
+                        poolSize,
+                        new ThreadFactory()
+                        {
+                            private final AtomicInteger threadCount
+                                = new AtomicInteger();
+
+                            public Thread newThread(Runnable r)
+                            {
+                                Thread t
+                                    = new Thread(
+                                            r,
+                                            RTPTranslatorImpl.class.getName()
+                                                + ".writerPool-"
+                                                + threadCount
+                                                    .incrementAndGet());
+
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+        }
+        return writerPool;
+    }
 
     /**
      * The <tt>RTPConnector</tt> which is used by {@link #manager} and which
@@ -74,6 +162,16 @@ public class RTPTranslatorImpl
      */
     private final RTPManager manager = RTPManager.newInstance();
 
+    /**
+     * The index of the <tt>StreamRTPManagerDesc</tt>s by the SSRCs they
+     * receive (i.e. the SSRCs of the RTP packets which have been received
+     * through their respective <tt>RTPConnector</tt>s). The SSRCs are
+     * represented as unsigned 32-bit values. Consulted for every received RTP
+     * packet without locking or boxing.
+     */
+    private final CopyOnWriteLongHashMap<StreamRTPManagerDesc> receiveSSRCs
+        = new CopyOnWriteLongHashMap<StreamRTPManagerDesc>();
+
     /**
      * The <tt>SendStream</tt>s created by the <tt>RTPManager</tt> and the
      * <tt>StreamRTPManager</tt>-specific views to them.
@@ -104,6 +202,7 @@ public class RTPTranslatorImpl
 
         getStreamRTPManagerDesc(streamRTPManager, true)
             .addFormat(format, payloadType);
+        invalidatePayloadTypeRewrites();
     }
 
     public synchronized void addReceiveStreamListener(
@@ -363,6 +462,8 @@ public class RTPTranslatorImpl
                 }
 
                 streamRTPManagerIter.remove();
+                receiveSSRCs.removeValue(streamRTPManagerDesc);
+                invalidatePayloadTypeRewrites();
 
                 closeFakeSendStreamIfNotNecessary();
 
@@ -371,19 +472,13 @@ public class RTPTranslatorImpl
         }
     }
 
-    private synchronized StreamRTPManagerDesc
-        findStreamRTPManagerDescByReceiveSSRC(
+    private StreamRTPManagerDesc findStreamRTPManagerDescByReceiveSSRC(
             long receiveSSRC,
             StreamRTPManagerDesc exclusion)
     {
-        for (int i = 0, count = streamRTPManagers.size(); i < count; i++)
-        {
-            StreamRTPManagerDesc s = streamRTPManagers.get(i);
+        StreamRTPManagerDesc s = receiveSSRCs.get(receiveSSRC & 0xffffffffL);
 
-            if ((s != exclusion) && s.containsReceiveSSRC(receiveSSRC))
-                return s;
-        }
-        return null;
+        return (s == exclusion) ? null : s;
     }
 
     public Object getControl(
@@ -393,6 +488,48 @@ public class RTPTranslatorImpl
         return manager.getControl(controlType);
     }
 
+    /**
+     * Gets the number of packets which have been translated (i.e. written)
+     * to a specific <tt>StreamRTPManager</tt>.
+     *
+     * @param streamRTPManager the <tt>StreamRTPManager</tt> to get the number
+     * of translated packets of
+     * @return the number of packets which have been written to
+     * <tt>streamRTPManager</tt>
+     */
+    public long getWrittenPacketCount(StreamRTPManager streamRTPManager)
+    {
+        StreamRTPManagerDesc streamRTPManagerDesc
+            = getStreamRTPManagerDesc(streamRTPManager, false);
+
+        return
+            (streamRTPManagerDesc == null)
+                ? 0
+                : streamRTPManagerDesc.writtenPacketCount.get();
+    }
+
+    /**
+     * Gets the number of packets received from a specific
+     * <tt>StreamRTPManager</tt> which have not been translated to (some of)
+     * the other <tt>StreamRTPManager</tt>s because the queues of packets to be
+     * translated were full.
+     *
+     * @param streamRTPManager the <tt>StreamRTPManager</tt> to get the number
+     * of dropped packets of
+     * @return the number of packets received from <tt>streamRTPManager</tt>
+     * which have been dropped
+     */
+    public long getDroppedPacketCount(StreamRTPManager streamRTPManager)
+    {
+        StreamRTPManagerDesc streamRTPManagerDesc
+            = getStreamRTPManagerDesc(streamRTPManager, false);
+
+        return
+            (streamRTPManagerDesc == null)
+                ? 0
+                : streamRTPManagerDesc.droppedPacketCount.get();
+    }
+
     public GlobalReceptionStats getGlobalReceptionStats(
             StreamRTPManager streamRTPManager)
     {
@@ -429,8 +566,10 @@ public class RTPTranslatorImpl
                 {
                     ReceiveStream receiveStream = (ReceiveStream) s;
 
-                    if (streamRTPManagerDesc.containsReceiveSSRC(
-                            receiveStream.getSSRC()))
+                    if (findStreamRTPManagerDescByReceiveSSRC(
+                                receiveStream.getSSRC(),
+                                null)
+                            == streamRTPManagerDesc)
                         receiveStreams.add(receiveStream);
                 }
             }
@@ -505,9 +644,21 @@ public class RTPTranslatorImpl
                         : new RTPConnectorDesc(streamRTPManagerDesc, connector);
             if (connectorDesc != null)
                 this.connector.addConnector(connectorDesc);
+            invalidatePayloadTypeRewrites();
         }
     }
 
+    /**
+     * Invalidates the payload type rewrite tables of all
+     * <tt>StreamRTPManagerDesc</tt>s so that they get recomputed (lazily) from
+     * the current formats and connectors.
+     */
+    private synchronized void invalidatePayloadTypeRewrites()
+    {
+        for (StreamRTPManagerDesc s : streamRTPManagers)
+            s.invalidatePayloadTypeRewrites();
+    }
+
     /**
      * Logs information about an RTCP packet using {@link #logger} for debugging
      * purposes.
@@ -582,7 +733,6 @@ public class RTPTranslatorImpl
         boolean data = streamDesc.data;
         StreamRTPManagerDesc streamRTPManagerDesc
             = streamDesc.connectorDesc.streamRTPManagerDesc;
-        Format format = null;
 
         if (data)
         {
@@ -593,22 +743,21 @@ public class RTPTranslatorImpl
             if ((length >= 12)
                     && (/* v */ ((buffer[offset] & 0xc0) >>> 6) == 2))
             {
-                long ssrc = readInt(buffer, offset + 8);
+                long ssrc = readInt(buffer, offset + 8) & 0xffffffffL;
+                StreamRTPManagerDesc receiver = receiveSSRCs.get(ssrc);
 
-                if (!streamRTPManagerDesc.containsReceiveSSRC(ssrc))
+                /*
+                 * The first StreamRTPManager to receive a specific SSRC owns
+                 * it and the packets with the same SSRC received through the
+                 * others are not translated.
+                 */
+                if (receiver == null)
                 {
-                    if (findStreamRTPManagerDescByReceiveSSRC(
-                                ssrc,
-                                streamRTPManagerDesc)
-                            == null)
-                        streamRTPManagerDesc.addReceiveSSRC(ssrc);
-                    else
-                        return 0;
+                    receiver
+                        = receiveSSRCs.putIfAbsent(ssrc, streamRTPManagerDesc);
                 }
-
-                int pt = buffer[offset + 1] & 0x7f;
-
-                format = streamRTPManagerDesc.getFormat(pt);
+                if (receiver != streamRTPManagerDesc)
+                    return 0;
             }
         }
         else if (logger.isTraceEnabled())
@@ -625,7 +774,6 @@ public class RTPTranslatorImpl
         {
             outputStream.write(
                     buffer, offset, read,
-                    format,
                     streamRTPManagerDesc);
         }
 
@@ -723,6 +871,13 @@ public class RTPTranslatorImpl
 
         public OutputDataStream stream;
 
+        /**
+         * The <tt>WriteQueue</tt> dedicated to writing into {@link #stream} if
+         * {@link #WRITER_PER_CONNECTOR_PNAME} is in effect; otherwise,
+         * <tt>null</tt>.
+         */
+        public WriteQueue writeQueue;
+
         public OutputDataStreamDesc(
                 RTPConnectorDesc connectorDesc,
                 OutputDataStream stream)
@@ -733,212 +888,278 @@ public class RTPTranslatorImpl
     }
 
     private static class OutputDataStreamImpl
-        implements OutputDataStream,
-                   Runnable
+        implements OutputDataStream
     {
-        private static final int WRITE_QUEUE_CAPACITY
-            = RTPConnectorOutputStream
-                .MAX_PACKETS_PER_MILLIS_POLICY_PACKET_QUEUE_CAPACITY;
+        private static final OutputDataStreamDesc[] NO_STREAMS
+            = new OutputDataStreamDesc[0];
 
         private boolean closed;
 
         private final boolean data;
 
-        private final List<OutputDataStreamDesc> streams
-            = new ArrayList<OutputDataStreamDesc>();
+        /**
+         * The <tt>OutputDataStream</tt>s this instance writes into. Copied on
+         * write so that the threads which write packets do not have to
+         * synchronize with the addition and removal of streams.
+         */
+        private volatile OutputDataStreamDesc[] streams = NO_STREAMS;
 
-        private final RTPTranslatorBuffer[] writeQueue
-            = new RTPTranslatorBuffer[WRITE_QUEUE_CAPACITY];
+        /**
+         * The capacity of {@link #writeQueue} and of the
+         * <tt>WriteQueue</tt>s of the <tt>OutputDataStreamDesc</tt>s.
+         */
+        private final int writeQueueCapacity;
 
-        private int writeQueueHead;
+        /**
+         * The <tt>WriteQueue</tt> shared by all {@link #streams} if
+         * {@link #writerPerConnector} is <tt>false</tt>; otherwise,
+         * <tt>null</tt>.
+         */
+        private final WriteQueue writeQueue;
 
-        private int writeQueueLength;
+        /**
+         * The indicator which determines whether each of {@link #streams} is
+         * written into by a thread of its own (or, if {@link #writerPool} is
+         * not <tt>null</tt>, by one thread of the pool at a time) so that a
+         * slow peer does not stall the others.
+         */
+        private final boolean writerPerConnector;
 
-        private Thread writeThread;
+        /**
+         * The pool of threads which consume the <tt>WriteQueue</tt>s of
+         * {@link #streams} or <tt>null</tt> if each <tt>WriteQueue</tt> has a
+         * thread of its own.
+         */
+        private final Executor writerPool;
 
         public OutputDataStreamImpl(boolean data)
         {
             this.data = data;
+
+            ConfigurationService cfg = LibJitsi.getConfigurationService();
+            int writeQueueCapacity = WRITE_QUEUE_CAPACITY;
+            boolean writerPerConnector = false;
+            int writerPoolSize = 0;
+
+            if (cfg != null)
+            {
+                writeQueueCapacity
+                    = cfg.getInt(
+                            WRITE_QUEUE_CAPACITY_PNAME,
+                            writeQueueCapacity);
+                writerPerConnector
+                    = cfg.getBoolean(
+                            WRITER_PER_CONNECTOR_PNAME,
+                            writerPerConnector);
+                writerPoolSize
+                    = cfg.getInt(WRITER_POOL_SIZE_PNAME, writerPoolSize);
+            }
+            this.writeQueueCapacity = writeQueueCapacity;
+            if (writerPoolSize > 0)
+            {
+                writerPool = getWriterPool(writerPoolSize);
+                writerPerConnector = true;
+            }
+            else
+                writerPool = null;
+            this.writerPerConnector = writerPerConnector;
+
+            writeQueue
+                = writerPerConnector
+                    ? null
+                    : new WriteQueue(this, null, writeQueueCapacity, null);
         }
 
         public synchronized void addStream(
                 RTPConnectorDesc connectorDesc,
                 OutputDataStream stream)
         {
+            OutputDataStreamDesc[] streams = this.streams;
+
             for (OutputDataStreamDesc streamDesc : streams)
                 if ((streamDesc.connectorDesc == connectorDesc)
                         && (streamDesc.stream == stream))
                     return;
-            streams.add(new OutputDataStreamDesc(connectorDesc, stream));
+
+            OutputDataStreamDesc streamDesc
+                = new OutputDataStreamDesc(connectorDesc, stream);
+
+            if (writerPerConnector && !closed)
+            {
+                streamDesc.writeQueue
+                    = new WriteQueue(
+                            this,
+                            streamDesc,
+                            writeQueueCapacity,
+                            writerPool);
+            }
+
+            OutputDataStreamDesc[] newStreams
+                = new OutputDataStreamDesc[streams.length + 1];
+
+            System.arraycopy(streams, 0, newStreams, 0, streams.length);
+            newStreams[streams.length] = streamDesc;
+            this.streams = newStreams;
         }
 
         public synchronized void close()
         {
             closed = true;
-            writeThread = null;
-            notify();
-        }
-
-        private synchronized void createWriteThread()
-        {
-            writeThread = new Thread(this, getClass().getName());
-            writeThread.setDaemon(true);
-            writeThread.start();
+            if (writeQueue != null)
+                writeQueue.close();
+            for (OutputDataStreamDesc streamDesc : streams)
+                if (streamDesc.writeQueue != null)
+                    streamDesc.writeQueue.close();
         }
 
-        private synchronized int doWrite(
+        /**
+         * Writes a specific packet into {@link #streams} (or into a specific
+         * one of them only) with the exception of the one associated with a
+         * specific <tt>StreamRTPManagerDesc</tt>.
+         *
+         * @param buffer the <tt>byte</tt>s of the packet to be written
+         * @param offset the offset in <tt>buffer</tt> at which the packet
+         * begins
+         * @param length the number of <tt>byte</tt>s in <tt>buffer</tt> which
+         * constitute the packet
+         * @param exclusion the <tt>StreamRTPManagerDesc</tt> which is not to
+         * be written into (typically, the one the packet has been received
+         * from and the payload type of the packet is defined by) or
+         * <tt>null</tt>
+         * @param target the one of {@link #streams} to write into or
+         * <tt>null</tt> to write into all of them
+         * @return the largest number of <tt>byte</tt>s written into one of the
+         * streams
+         */
+        int doWrite(
                 byte[] buffer, int offset, int length,
-                Format format,
-                StreamRTPManagerDesc exclusion)
+                StreamRTPManagerDesc exclusion,
+                OutputDataStreamDesc target)
         {
-            int write = 0;
+            /*
+             * Read the payload type before it is rewritten for the first
+             * destination.
+             */
+            int payloadType
+                = (data
+                        && (exclusion != null)
+                        && (length >= 12)
+                        && (/* v */ ((buffer[offset] & 0xc0) >>> 6) == 2))
+                    ? (buffer[offset + 1] & 0x7f)
+                    : -1;
 
-            for (int streamIndex = 0, streamCount = streams.size();
-                    streamIndex < streamCount;
-                    streamIndex++)
+            /*
+             * A WriteQueue dedicated to a stream writes into that stream only
+             * so it does not have to look it up among all streams.
+             */
+            if (target != null)
             {
-                OutputDataStreamDesc streamDesc = streams.get(streamIndex);
-                StreamRTPManagerDesc streamRTPManagerDesc
-                    = streamDesc.connectorDesc.streamRTPManagerDesc;
-
-                if (streamRTPManagerDesc != exclusion)
-                {
-                    if (data)
-                    {
-                        if ((format != null) && (length > 0))
-                        {
-                            Integer payloadType
-                                = streamRTPManagerDesc.getPayloadType(format);
-
-                            if ((payloadType == null) && (exclusion != null))
-                                payloadType = exclusion.getPayloadType(format);
-                            if (payloadType != null)
-                            {
-                                int payloadTypeByteIndex = offset + 1;
+                return
+                    doWrite(
+                            buffer, offset, length,
+                            exclusion, payloadType,
+                            target);
+            }
 
-                                buffer[payloadTypeByteIndex]
-                                    = (byte)
-                                        ((buffer[payloadTypeByteIndex] & 0x80)
-                                            | (payloadType & 0x7f));
-                            }
-                        }
-                    }
-                    else if (logger.isTraceEnabled())
-                    {
-                        logRTCP(
-                                this, "doWrite",
-                                buffer, offset, length);
-                    }
+            int write = 0;
 
-                    int streamWrite
-                        = streamDesc.stream.write(buffer, offset, length);
+            for (OutputDataStreamDesc streamDesc : streams)
+            {
+                int streamWrite
+                    = doWrite(
+                            buffer, offset, length,
+                            exclusion, payloadType,
+                            streamDesc);
 
-                    if (write < streamWrite)
-                        write = streamWrite;
-                }
+                if (write < streamWrite)
+                    write = streamWrite;
             }
             return write;
         }
 
-        public synchronized void removeStreams(RTPConnectorDesc connectorDesc)
+        /**
+         * Writes a specific packet into a specific one of {@link #streams}
+         * unless it is associated with a specific
+         * <tt>StreamRTPManagerDesc</tt>.
+         *
+         * @param buffer the <tt>byte</tt>s of the packet to be written
+         * @param offset the offset in <tt>buffer</tt> at which the packet
+         * begins
+         * @param length the number of <tt>byte</tt>s in <tt>buffer</tt> which
+         * constitute the packet
+         * @param exclusion the <tt>StreamRTPManagerDesc</tt> which is not to
+         * be written into or <tt>null</tt>
+         * @param payloadType the payload type of the packet as received from
+         * <tt>exclusion</tt> or <tt>-1</tt> if it is not to be rewritten
+         * @param streamDesc the one of {@link #streams} to write into
+         * @return the number of <tt>byte</tt>s written into
+         * <tt>streamDesc</tt>
+         */
+        private int doWrite(
+                byte[] buffer, int offset, int length,
+                StreamRTPManagerDesc exclusion,
+                int payloadType,
+                OutputDataStreamDesc streamDesc)
         {
-            Iterator<OutputDataStreamDesc> streamIter = streams.iterator();
-
-            while (streamIter.hasNext())
-            {
-                OutputDataStreamDesc streamDesc = streamIter.next();
+            StreamRTPManagerDesc streamRTPManagerDesc
+                = streamDesc.connectorDesc.streamRTPManagerDesc;
 
-                if (streamDesc.connectorDesc == connectorDesc)
-                    streamIter.remove();
-            }
-        }
+            if (streamRTPManagerDesc == exclusion)
+                return 0;
 
-        public void run()
-        {
-            try
+            if (data)
             {
-                while (true)
+                if (payloadType >= 0)
                 {
-                    int writeIndex;
-                    byte[] buffer;
-                    StreamRTPManagerDesc exclusion;
-                    Format format;
-                    int length;
-
-                    synchronized (this)
-                    {
-                        if (closed
-                                || !Thread.currentThread().equals(writeThread))
-                            break;
-                        if (writeQueueLength < 1)
-                        {
-                            boolean interrupted = false;
-
-                            try
-                            {
-                                wait();
-                            }
-                            catch (InterruptedException ie)
-                            {
-                                interrupted = true;
-                            }
-                            if (interrupted)
-                                Thread.currentThread().interrupt();
-                            continue;
-                        }
-
-                        writeIndex = writeQueueHead;
-
-                        RTPTranslatorBuffer write = writeQueue[writeIndex];
-
-                        buffer = write.data;
-                        write.data = null;
-                        exclusion = write.exclusion;
-                        write.exclusion = null;
-                        format = write.format;
-                        write.format = null;
-                        length = write.length;
-                        write.length = 0;
-
-                        writeQueueHead++;
-                        if (writeQueueHead >= writeQueue.length)
-                            writeQueueHead = 0;
-                        writeQueueLength--;
-                    }
+                    byte newPayloadType
+                        = streamRTPManagerDesc.getPayloadTypeRewrites(
+                                exclusion)
+                            [payloadType];
 
-                    try
-                    {
-                        doWrite(buffer, 0, length, format, exclusion);
-                    }
-                    finally
+                    if (newPayloadType >= 0)
                     {
-                        synchronized (this)
-                        {
-                            RTPTranslatorBuffer write = writeQueue[writeIndex];
+                        int payloadTypeByteIndex = offset + 1;
 
-                            if ((write != null) && (write.data == null))
-                                write.data = buffer;
-                        }
+                        buffer[payloadTypeByteIndex]
+                            = (byte)
+                                ((buffer[payloadTypeByteIndex] & 0x80)
+                                    | newPayloadType);
                     }
                 }
             }
-            catch (Throwable t)
+            else if (logger.isTraceEnabled())
             {
-                logger.error("Failed to translate RTP packet", t);
-                if (t instanceof ThreadDeath)
-                    throw (ThreadDeath) t;
+                logRTCP(this, "doWrite", buffer, offset, length);
             }
-            finally
+
+            int write = streamDesc.stream.write(buffer, offset, length);
+
+            if (data && (write > 0))
+                streamRTPManagerDesc.writtenPacketCount.incrementAndGet();
+            return write;
+        }
+
+        public synchronized void removeStreams(RTPConnectorDesc connectorDesc)
+        {
+            OutputDataStreamDesc[] streams = this.streams;
+            List<OutputDataStreamDesc> newStreams
+                = new ArrayList<OutputDataStreamDesc>(streams.length);
+
+            for (OutputDataStreamDesc streamDesc : streams)
             {
-                synchronized (this)
+                if (streamDesc.connectorDesc == connectorDesc)
                 {
-                    if (Thread.currentThread().equals(writeThread))
-                        writeThread = null;
-                    if (!closed
-                            && (writeThread == null)
-                            && (writeQueueLength > 0))
-                        createWriteThread();
+                    if (streamDesc.writeQueue != null)
+                        streamDesc.writeQueue.close();
                 }
+                else
+                    newStreams.add(streamDesc);
+            }
+            if (newStreams.size() != streams.length)
+            {
+                this.streams
+                    = newStreams.toArray(
+                            new OutputDataStreamDesc[newStreams.size()]);
             }
         }
 
@@ -947,53 +1168,75 @@ public class RTPTranslatorImpl
             return doWrite(buffer, offset, length, null, null);
         }
 
-        public synchronized void write(
+        /**
+         * Queues a specific packet received from a peer for translation to the
+         * other peers. Never blocks: if a <tt>WriteQueue</tt> is full, the
+         * packet is dropped for the peer(s) it serves and the drop is
+         * accounted to <tt>exclusion</tt>.
+         *
+         * @param buffer the <tt>byte</tt>s of the packet to be translated
+         * @param offset the offset in <tt>buffer</tt> at which the packet
+         * begins
+         * @param length the number of <tt>byte</tt>s in <tt>buffer</tt> which
+         * constitute the packet
+         * @param exclusion the <tt>StreamRTPManagerDesc</tt> the packet has
+         * been received from
+         */
+        public void write(
                 byte[] buffer, int offset, int length,
-                Format format,
                 StreamRTPManagerDesc exclusion)
         {
-            if (closed)
-                return;
-
-            int writeIndex;
-
-            if (writeQueueLength < writeQueue.length)
+            if (writerPerConnector)
             {
-                writeIndex
-                    = (writeQueueHead + writeQueueLength) % writeQueue.length;
+                for (OutputDataStreamDesc streamDesc : streams)
+                {
+                    WriteQueue writeQueue = streamDesc.writeQueue;
+
+                    if ((writeQueue != null)
+                            && (streamDesc.connectorDesc.streamRTPManagerDesc
+                                    != exclusion)
+                            && !writeQueue.offer(
+                                    buffer, offset, length,
+                                    exclusion))
+                    {
+                        packetDropped(exclusion);
+                    }
+                }
             }
-            else
+            else if (!writeQueue.offer(
+                    buffer, offset, length,
+                    exclusion))
             {
-                writeIndex = writeQueueHead;
-                writeQueueHead++;
-                if (writeQueueHead >= writeQueue.length)
-                    writeQueueHead = 0;
-                writeQueueLength--;
-                logger.warn("Will not translate RTP packet.");
+                packetDropped(exclusion);
             }
+        }
 
-            RTPTranslatorBuffer write
-                = writeQueue[writeIndex];
-
-            if (write == null)
-                writeQueue[writeIndex] = write = new RTPTranslatorBuffer();
-
-            byte[] data = write.data;
-
-            if ((data == null) || (data.length < length))
-                write.data = data = new byte[length];
-            System.arraycopy(buffer, offset, data, 0, length);
-
-            write.exclusion = exclusion;
-            write.format = format;
-            write.length = length;
+        /**
+         * Accounts for a packet received from a specific
+         * <tt>StreamRTPManagerDesc</tt> which has not been translated because
+         * a <tt>WriteQueue</tt> was full.
+         *
+         * @param exclusion the <tt>StreamRTPManagerDesc</tt> the dropped packet
+         * has been received from
+         */
+        private void packetDropped(StreamRTPManagerDesc exclusion)
+        {
+            if (exclusion == null)
+                return;
 
-            writeQueueLength++;
+            long droppedPacketCount
+                = exclusion.droppedPacketCount.incrementAndGet();
 
-            if (writeThread == null)
-                createWriteThread();
-            else
-                notify();
+            /*
+             * Log the first drop and then only occasionally in order to not
+             * flood the log at times of congestion.
+             */
+            if ((droppedPacketCount % 1000) == 1)
+            {
+                logger.warn(
+                        "Will not translate RTP packet. Dropped "
+                            + droppedPacketCount + " packet(s) so far.");
+            }
         }
     }
 
@@ -1462,8 +1705,6 @@ public class RTPTranslatorImpl
 
         public StreamRTPManagerDesc exclusion;
 
-        public Format format;
-
         public int length;
     }
 
@@ -1695,16 +1936,41 @@ public class RTPTranslatorImpl
     {
         public RTPConnectorDesc connectorDesc;
 
+        /**
+         * The number of packets received from {@link #streamRTPManager} which
+         * have not been translated because the queues of packets to be
+         * translated were full.
+         */
+        public final AtomicLong droppedPacketCount = new AtomicLong();
+
         private final Map<Integer, Format> formats
             = new HashMap<Integer, Format>();
 
-        private long[] receiveSSRCs = EMPTY_LONG_ARRAY;
+        /**
+         * The tables (by source <tt>StreamRTPManagerDesc</tt>) which map the
+         * RTP payload types of the source to the RTP payload types to be
+         * written into the packets translated to this destination. Each table
+         * is computed on first use and all of them are discarded (copy on
+         * write) when formats or connectors change. Every discard installs a
+         * new empty <tt>Map</tt> (rather than a shared one) so that a table
+         * computed before the discard cannot be cached after it.
+         */
+        private final AtomicReference<Map<StreamRTPManagerDesc, byte[]>>
+            payloadTypeRewrites
+                = new AtomicReference<Map<StreamRTPManagerDesc, byte[]>>(
+                        new IdentityHashMap<StreamRTPManagerDesc, byte[]>());
 
         private final List<ReceiveStreamListener> receiveStreamListeners
             = new LinkedList<ReceiveStreamListener>();
 
         public final StreamRTPManager streamRTPManager;
 
+        /**
+         * The number of RTP packets which have been translated (i.e. written)
+         * to {@link #streamRTPManager}.
+         */
+        public final AtomicLong writtenPacketCount = new AtomicLong();
+
         public StreamRTPManagerDesc(StreamRTPManager streamRTPManager)
         {
             this.streamRTPManager = streamRTPManager;
@@ -1718,22 +1984,6 @@ public class RTPTranslatorImpl
             }
         }
 
-        public synchronized void addReceiveSSRC(long receiveSSRC)
-        {
-            if (!containsReceiveSSRC(receiveSSRC))
-            {
-                int receiveSSRCCount = receiveSSRCs.length;
-                long[] newReceiveSSRCs = new long[receiveSSRCCount + 1];
-
-                System.arraycopy(
-                    receiveSSRCs, 0,
-                    newReceiveSSRCs, 0,
-                    receiveSSRCCount);
-                newReceiveSSRCs[receiveSSRCCount] = receiveSSRC;
-                receiveSSRCs = newReceiveSSRCs;
-            }
-        }
-
         public void addReceiveStreamListener(ReceiveStreamListener listener)
         {
             synchronized (receiveStreamListeners)
@@ -1777,6 +2027,61 @@ public class RTPTranslatorImpl
             return null;
         }
 
+        /**
+         * Gets the table which maps the RTP payload types of a specific
+         * source <tt>StreamRTPManagerDesc</tt> to the RTP payload types to be
+         * written into the packets translated from the source to this
+         * destination.
+         *
+         * @param source the <tt>StreamRTPManagerDesc</tt> the RTP packets to
+         * be translated have been received from
+         * @return an array of <tt>128</tt> elements indexed by the RTP payload
+         * types of <tt>source</tt> of which an element is the RTP payload type
+         * to be written for this destination or <tt>-1</tt> if the RTP payload
+         * type is to be left as it is
+         */
+        public byte[] getPayloadTypeRewrites(StreamRTPManagerDesc source)
+        {
+            Map<StreamRTPManagerDesc, byte[]> payloadTypeRewrites
+                = this.payloadTypeRewrites.get();
+            byte[] rewrites = payloadTypeRewrites.get(source);
+
+            if (rewrites == null)
+            {
+                rewrites = new byte[128];
+                for (int pt = 0; pt < rewrites.length; pt++)
+                {
+                    Format format = source.getFormat(pt);
+                    Integer payloadType = null;
+
+                    if (format != null)
+                    {
+                        payloadType = getPayloadType(format);
+                        if (payloadType == null)
+                            payloadType = source.getPayloadType(format);
+                    }
+                    rewrites[pt]
+                        = (payloadType == null)
+                            ? -1
+                            : (byte) (payloadType & 0x7f);
+                }
+
+                Map<StreamRTPManagerDesc, byte[]> newPayloadTypeRewrites
+                    = new IdentityHashMap<StreamRTPManagerDesc, byte[]>(
+                            payloadTypeRewrites);
+
+                newPayloadTypeRewrites.put(source, rewrites);
+                /*
+                 * If the tables have been invalidated in the meantime, the
+                 * computed one may be stale so do not cache it.
+                 */
+                this.payloadTypeRewrites.compareAndSet(
+                        payloadTypeRewrites,
+                        newPayloadTypeRewrites);
+            }
+            return rewrites;
+        }
+
         public ReceiveStreamListener[] getReceiveStreamListeners()
         {
             synchronized (receiveStreamListeners)
@@ -1788,12 +2093,19 @@ public class RTPTranslatorImpl
             }
         }
 
-        public synchronized boolean containsReceiveSSRC(long receiveSSRC)
+        /**
+         * Discards the payload type rewrite tables of this instance so that
+         * they get recomputed on next use.
+         */
+        public void invalidatePayloadTypeRewrites()
         {
-            for (int i = 0; i < receiveSSRCs.length; i++)
-                if (receiveSSRCs[i] == receiveSSRC)
-                    return true;
-            return false;
+            /*
+             * A shared empty Map would let the compareAndSet in
+             * getPayloadTypeRewrites succeed across an invalidation which
+             * happened while a table was being computed (i.e. ABA).
+             */
+            payloadTypeRewrites.set(
+                    new IdentityHashMap<StreamRTPManagerDesc, byte[]>());
         }
 
         public void removeReceiveStreamListener(ReceiveStreamListener listener)
@@ -1804,4 +2116,323 @@ public class RTPTranslatorImpl
             }
         }
     }
+
+    /**
+     * Implements a bounded, lock-free, multiple-producer/single-consumer queue
+     * of packets to be translated with preallocated slots and the thread which
+     * consumes it by writing the packets into an <tt>OutputDataStreamImpl</tt>.
+     * The threads which read packets from the peers never block on it: when
+     * it is full, {@link #offer(byte[], int, int, StreamRTPManagerDesc)} fails
+     * and the packet is dropped.
+     * <p>
+     * Instead of a thread of its own, the queue may be consumed by the threads
+     * of a pool. At most one of them is scheduled to consume the queue at any
+     * time so the packets are still written in order.
+     * </p>
+     */
+    private static class WriteQueue
+        implements Runnable
+    {
+        /**
+         * The maximum number of nanoseconds the consumer thread parks for while
+         * it waits for a packet to be offered. Guards against the unlikely
+         * case of a missed unpark.
+         */
+        private static final long PARK_NANOS = 10 * 1000 * 1000;
+
+        private volatile boolean closed;
+
+        /**
+         * The sequence number of the next slot to be consumed. Accessed by the
+         * consumer thread only.
+         */
+        private long head;
+
+        /**
+         * The <tt>OutputDataStreamImpl</tt> into which the packets in this
+         * queue are written.
+         */
+        private final OutputDataStreamImpl outputStream;
+
+        /**
+         * The bit mask which maps a sequence number to an index in
+         * {@link #slots}.
+         */
+        private final int mask;
+
+        /**
+         * The per-slot sequence numbers which indicate whether a slot is free
+         * for a producer (the sequence number equals the one the producer is
+         * to write) or has been published for the consumer (the sequence
+         * number equals the one the consumer is to read plus one).
+         */
+        private final AtomicLongArray sequences;
+
+        /**
+         * The preallocated slots of this queue.
+         */
+        private final RTPTranslatorBuffer[] slots;
+
+        /**
+         * The sequence number of the next slot to be claimed by a producer.
+         */
+        private final AtomicLong tail = new AtomicLong();
+
+        /**
+         * The one of the streams of {@link #outputStream} this queue is
+         * dedicated to or <tt>null</tt> if it serves all of them.
+         */
+        private final OutputDataStreamDesc target;
+
+        /**
+         * The indicator which determines whether the consumer thread is
+         * (about to be) parked waiting for a packet.
+         */
+        private volatile boolean waiting;
+
+        private final Thread writeThread;
+
+        /**
+         * The pool of threads which consume this queue or <tt>null</tt> if
+         * {@link #writeThread} does.
+         */
+        private final Executor writerPool;
+
+        /**
+         * The indicator which determines whether a consumer of this queue has
+         * been scheduled with {@link #writerPool}.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Initializes a new <tt>WriteQueue</tt> instance and starts its
+         * consumer thread.
+         *
+         * @param outputStream the <tt>OutputDataStreamImpl</tt> into which the
+         * packets in the new queue are to be written
+         * @param target the one of the streams of <tt>outputStream</tt> the
+         * new queue is dedicated to or <tt>null</tt> if it is to serve all of
+         * them
+         * @param capacity the minimum number of packets the new queue is to be
+         * able to hold
+         * @param writerPool the pool of threads which are to consume the new
+         * queue or <tt>null</tt> to have the new queue start a consumer thread
+         * of its own
+         */
+        public WriteQueue(
+                OutputDataStreamImpl outputStream,
+                OutputDataStreamDesc target,
+                int capacity,
+                Executor writerPool)
+        {
+            this.outputStream = outputStream;
+            this.target = target;
+            this.writerPool = writerPool;
+
+            int length = 1;
+
+            while (length < capacity)
+                length <<= 1;
+
+            mask = length - 1;
+            slots = new RTPTranslatorBuffer[length];
+            sequences = new AtomicLongArray(length);
+            for (int i = 0; i < length; i++)
+            {
+                slots[i] = new RTPTranslatorBuffer();
+                sequences.set(i, i);
+            }
+
+            if (writerPool == null)
+            {
+                writeThread = new Thread(this, getClass().getName());
+                writeThread.setDaemon(true);
+                writeThread.start();
+            }
+            else
+                writeThread = null;
+        }
+
+        /**
+         * Stops the consumer thread of this queue.
+         */
+        public void close()
+        {
+            closed = true;
+            if (writeThread != null)
+                LockSupport.unpark(writeThread);
+        }
+
+        /**
+         * Determines whether a packet has been published at the head of this
+         * queue.
+         *
+         * @return <tt>true</tt> if there is a packet to be consumed at the
+         * head of this queue; otherwise, <tt>false</tt>
+         */
+        private boolean isHeadPublished()
+        {
+            return sequences.get((int) (head & mask)) == head + 1;
+        }
+
+        /**
+         * Copies a specific packet into this queue.
+         *
+         * @param buffer the <tt>byte</tt>s of the packet to be queued
+         * @param offset the offset in <tt>buffer</tt> at which the packet
+         * begins
+         * @param length the number of <tt>byte</tt>s in <tt>buffer</tt> which
+         * constitute the packet
+         * @param exclusion the <tt>StreamRTPManagerDesc</tt> the packet has
+         * been received from
+         * @return <tt>true</tt> if the packet has been queued or this queue
+         * has been closed; <tt>false</tt> if this queue is full
+         */
+        public boolean offer(
+                byte[] buffer, int offset, int length,
+                StreamRTPManagerDesc exclusion)
+        {
+            if (closed)
+                return true;
+
+            long sequence;
+            int index;
+
+            while (true)
+            {
+                sequence = tail.get();
+                index = (int) (sequence & mask);
+
+                long delta = sequences.get(index) - sequence;
+
+                if (delta == 0)
+                {
+                    if (tail.compareAndSet(sequence, sequence + 1))
+                        break;
+                }
+                else if (delta < 0)
+                {
+                    // The consumer has not freed the slot yet i.e. full.
+                    return false;
+                }
+            }
+
+            RTPTranslatorBuffer slot = slots[index];
+            byte[] data = slot.data;
+
+            if ((data == null) || (data.length < length))
+                slot.data = data = new byte[length];
+            System.arraycopy(buffer, offset, data, 0, length);
+            slot.exclusion = exclusion;
+            slot.length = length;
+
+            // Publish the slot to the consumer.
+            sequences.set(index, sequence + 1);
+
+            if (writerPool != null)
+                schedule();
+            else if (waiting)
+                LockSupport.unpark(writeThread);
+            return true;
+        }
+
+        /**
+         * Consumes this queue by writing the queued packets into
+         * {@link #outputStream}. If this queue has a thread of its own, runs
+         * until this queue is closed. Otherwise, writes at most
+         * {@link #WRITER_POOL_BATCH_SIZE} packets and reschedules itself with
+         * {@link #writerPool} if more packets remain.
+         */
+        public void run()
+        {
+            if (writerPool == null)
+            {
+                while (!closed)
+                {
+                    if (isHeadPublished())
+                        write();
+                    else
+                    {
+                        waiting = true;
+                        if (!closed && !isHeadPublished())
+                            LockSupport.parkNanos(this, PARK_NANOS);
+                        waiting = false;
+                    }
+                }
+            }
+            else
+            {
+                for (int i = 0;
+                        (i < WRITER_POOL_BATCH_SIZE)
+                            && !closed
+                            && isHeadPublished();
+                        i++)
+                {
+                    write();
+                }
+
+                scheduled.set(false);
+                /*
+                 * A producer may have published a packet after the check above
+                 * and failed to schedule because this consumer was still
+                 * scheduled.
+                 */
+                if (isHeadPublished())
+                    schedule();
+            }
+        }
+
+        /**
+         * Schedules a consumer of this queue with {@link #writerPool} unless
+         * one has already been scheduled.
+         */
+        private void schedule()
+        {
+            if (!closed && scheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    writerPool.execute(this);
+                }
+                catch (RejectedExecutionException ree)
+                {
+                    scheduled.set(false);
+                    logger.error("Failed to schedule RTP translation", ree);
+                }
+            }
+        }
+
+        /**
+         * Writes the packet at the head of this queue into
+         * {@link #outputStream} and frees its slot.
+         */
+        private void write()
+        {
+            int index = (int) (head & mask);
+            RTPTranslatorBuffer slot = slots[index];
+
+            try
+            {
+                outputStream.doWrite(
+                        slot.data, 0, slot.length,
+                        slot.exclusion,
+                        target);
+            }
+            catch (Throwable t)
+            {
+                logger.error("Failed to translate RTP packet", t);
+                if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+            }
+            finally
+            {
+                slot.exclusion = null;
+                slot.length = 0;
+
+                // Free the slot for the producers.
+                sequences.lazySet(index, head + slots.length);
+                head++;
+            }
+        }
+    }
 }
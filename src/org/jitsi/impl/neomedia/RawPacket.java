@@ -313,19 +313,33 @@ public class RawPacket
     /**
      * Grow the internal packet buffer.
      *
-     * This will change the data buffer of this packet but not the
+     * This may change the data buffer of this packet but not the
      * length of the valid data. Use this to grow the internal buffer
-     * to avoid buffer re-allocations when appending data.
+     * to avoid buffer re-allocations when appending data. If the buffer
+     * already has at least <tt>howMuch</tt> bytes of room after the packet
+     * data (e.g. the tailroom of a <tt>RawPacket</tt> acquired from
+     * <tt>RawPacketPool</tt>), it is left as it is.
      *
      * @param howMuch number of bytes to grow
      */
     public void grow(int howMuch) {
-        if (howMuch == 0) {
+        if (howMuch <= 0) {
             return;
         }
-        byte[] newBuffer = new byte[this.length + howMuch];
-        System.arraycopy(this.buffer, this.offset, newBuffer, 0, this.length);
-        offset = 0;
+        if (buffer.length - (offset + length) >= howMuch) {
+            return;
+        }
+        byte[] newBuffer
+            = new byte[
+                    RawPacketPool.HEADROOM
+                        + this.length
+                        + howMuch
+                        + RawPacketPool.TAILROOM];
+        System.arraycopy(
+                this.buffer, this.offset,
+                newBuffer, RawPacketPool.HEADROOM,
+                this.length);
+        offset = RawPacketPool.HEADROOM;
         buffer = newBuffer;
     }
 
@@ -342,14 +356,9 @@ public class RawPacket
         }
 
         // re-allocate internal buffer if it is too small
-        if ((this.length + len) > (buffer.length - this.offset)) {
-            byte[] newBuffer = new byte[this.length + len];
-            System.arraycopy(this.buffer, this.offset, newBuffer, 0, this.length);
-            this.offset = 0;
-            this.buffer = newBuffer;
-        }
+        grow(len);
         // append data
-        System.arraycopy(data, 0, this.buffer, this.length, len);
+        System.arraycopy(data, 0, this.buffer, this.offset + this.length, len);
         this.length = this.length + len;
 
     }
@@ -390,56 +399,88 @@ public class RawPacket
     public void setCsrcList(long[] newCsrcList)
     {
         int newCsrcCount = newCsrcList.length;
-        byte[] csrcBuff = new byte[newCsrcCount * 4];
-        int csrcOffset = 0;
+        int oldCsrcCount = getCsrcCount();
+        int delta = (newCsrcCount - oldCsrcCount) * 4;
 
-        for(long csrc : newCsrcList)
+        if (delta > 0)
         {
-            csrcBuff[csrcOffset] = (byte)(csrc >> 24);
-            csrcBuff[csrcOffset+1] = (byte)(csrc >> 16);
-            csrcBuff[csrcOffset+2] = (byte)(csrc >> 8);
-            csrcBuff[csrcOffset+3] = (byte)csrc;
-
-            csrcOffset += 4;
+            //make room for the additional CSRC IDs at the end of the old list
+            insert(FIXED_HEADER_SIZE + oldCsrcCount * 4, delta);
+        }
+        else if (delta < 0)
+        {
+            //drop the superfluous CSRC IDs by moving the fixed header forward
+            System.arraycopy(
+                    buffer, offset,
+                    buffer, offset - delta,
+                    FIXED_HEADER_SIZE);
+            offset -= delta;
+            length += delta;
         }
 
-        int oldCsrcCount = getCsrcCount();
-
-        byte[] oldBuffer = this.getBuffer();
-
-        //the new buffer needs to be bigger than the new one in order to
-        //accommodate the list of CSRC IDs (unless there were more of them
-        //previously than after setting the new list).
-        byte[] newBuffer
-            = new byte[length + offset + csrcBuff.length - oldCsrcCount*4];
-
-        //copy the part up to the CSRC list
-        System.arraycopy(
-                    oldBuffer, 0, newBuffer, 0, offset + FIXED_HEADER_SIZE);
-
-        //copy the new CSRC list
-        System.arraycopy( csrcBuff, 0, newBuffer,
-                        offset + FIXED_HEADER_SIZE, csrcBuff.length);
-
-        //now copy the payload from the old buff and make sure we don't copy
-        //the CSRC list if there was one in the old packet
-        int payloadOffsetForOldBuff
-            = offset + FIXED_HEADER_SIZE + oldCsrcCount*4;
+        int csrcOffset = offset + FIXED_HEADER_SIZE;
 
-        int payloadOffsetForNewBuff
-            = offset + FIXED_HEADER_SIZE + newCsrcCount*4;
+        for(long csrc : newCsrcList)
+        {
+            buffer[csrcOffset] = (byte)(csrc >> 24);
+            buffer[csrcOffset+1] = (byte)(csrc >> 16);
+            buffer[csrcOffset+2] = (byte)(csrc >> 8);
+            buffer[csrcOffset+3] = (byte)csrc;
 
-        System.arraycopy( oldBuffer, payloadOffsetForOldBuff,
-                          newBuffer, payloadOffsetForNewBuff,
-                          length - payloadOffsetForOldBuff);
+            csrcOffset += 4;
+        }
 
         //set the new CSRC count
-        newBuffer[offset] = (byte)((newBuffer[offset] & 0xF0)
-                                    | newCsrcCount);
+        buffer[offset] = (byte)((buffer[offset] & 0xF0) | newCsrcCount);
+    }
 
-        this.buffer = newBuffer;
-        this.length = payloadOffsetForNewBuff + length
-                - payloadOffsetForOldBuff - offset;
+    /**
+     * Inserts <tt>len</tt> bytes of room into the data of this packet at a
+     * specific offset relative to the start of the packet. The bytes before
+     * <tt>off</tt> are moved into the room available before the packet data
+     * in {@link #buffer} if there is enough of it, otherwise the bytes from
+     * <tt>off</tt> on are moved into the room available after the packet data
+     * if there is enough of it. Only if there is not enough room on either side
+     * is a new buffer allocated. The contents of the inserted room are
+     * undefined.
+     *
+     * @param off the offset relative to the start of the packet data at which
+     * the room is to be inserted
+     * @param len the number of bytes to insert
+     */
+    private void insert(int off, int len)
+    {
+        if (offset >= len)
+        {
+            System.arraycopy(buffer, offset, buffer, offset - len, off);
+            offset -= len;
+        }
+        else if (buffer.length - (offset + length) >= len)
+        {
+            System.arraycopy(
+                    buffer, offset + off,
+                    buffer, offset + off + len,
+                    length - off);
+        }
+        else
+        {
+            byte[] newBuffer
+                = new byte[
+                        RawPacketPool.HEADROOM
+                            + length
+                            + len
+                            + RawPacketPool.TAILROOM];
+            int newOffset = RawPacketPool.HEADROOM;
+
+            System.arraycopy(buffer, offset, newBuffer, newOffset, off);
+            System.arraycopy(
+                    buffer, offset + off,
+                    newBuffer, newOffset + off + len,
+                    length - off);
+            buffer = newBuffer;
+            offset = newOffset;
+        }
+        length += len;
     }
 
     /**
@@ -452,7 +493,7 @@ public class RawPacket
     {
         int csrcCount = getCsrcCount();
         long[] csrcList = new long[csrcCount];
-        int csrcStartIndex = offset + FIXED_HEADER_SIZE;
+        int csrcStartIndex = FIXED_HEADER_SIZE;
 
         for (int i = 0; i < csrcCount; i++)
         {
@@ -641,80 +682,50 @@ public class RawPacket
      */
     public void addExtension(byte[] extBuff, int newExtensionLen)
     {
-        int newBuffLen = length + offset + newExtensionLen;
-        int bufferOffset = offset;
-        int newBufferOffset = offset;
-        int lengthToCopy = FIXED_HEADER_SIZE + getCsrcCount()*4;
         boolean extensionBit = getExtensionBit();
-        //if there was no extension previously, we also need to consider adding
-        //the extension header.
+        int extHeaderOffset = FIXED_HEADER_SIZE + getCsrcCount() * 4;
+        int oldExtensionLen = getExtensionLength();
+
         if (extensionBit)
         {
-            // without copying the extension length value, will set it later
-            lengthToCopy += EXT_HEADER_SIZE - 2;
+            //append the new extension content after the existing one
+            insert(
+                    extHeaderOffset + EXT_HEADER_SIZE + oldExtensionLen,
+                    newExtensionLen);
         }
-        else
-            newBuffLen += EXT_HEADER_SIZE;
-
-        byte[] newBuffer = new byte[ newBuffLen ];
-
-        /*
-         * Copy header, CSRC list and the leading two bytes of the extension
-         * header if any.
-         */
-        System.arraycopy(buffer, bufferOffset,
-            newBuffer, newBufferOffset, lengthToCopy);
-        //raise the extension bit.
-        newBuffer[newBufferOffset] |= 0x10;
-        bufferOffset += lengthToCopy;
-        newBufferOffset += lengthToCopy;
-
-        // Set the extension header or modify the existing one.
-        int totalExtensionLen = newExtensionLen + getExtensionLength();
-
-        //if there were no extensions previously, we need to add the hdr now
-        if(extensionBit)
-            bufferOffset += 4;
         else
         {
-           // we will now be adding the RFC 5285 ext header which looks like
-           // this:
-           //
-           //  0                   1                   2                   3
-           //  0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
-           // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
-           // |       0xBE    |    0xDE       |           length=3            |
-           // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
-           newBuffer[newBufferOffset++] = (byte)0xBE;
-           newBuffer[newBufferOffset++] = (byte)0xDE;
+            //if there was no extension previously, we also need to add the
+            //extension header.
+            insert(extHeaderOffset, EXT_HEADER_SIZE + newExtensionLen);
+
+            // we will now be adding the RFC 5285 ext header which looks like
+            // this:
+            //
+            //  0                   1                   2                   3
+            //  0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+            // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+            // |       0xBE    |    0xDE       |           length=3            |
+            // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+            buffer[offset + extHeaderOffset] = (byte)0xBE;
+            buffer[offset + extHeaderOffset + 1] = (byte)0xDE;
         }
+        //raise the extension bit.
+        setExtensionBit(true);
+
         // length field counts the number of 32-bit words in the extension
+        int totalExtensionLen = newExtensionLen + oldExtensionLen;
         int lengthInWords = (totalExtensionLen + 3)/4;
-        newBuffer[newBufferOffset++] = (byte)(lengthInWords >> 8);
-        newBuffer[newBufferOffset++] = (byte)lengthInWords;
 
-        // Copy the existing extension content if any.
-        if (extensionBit)
-        {
-            lengthToCopy = getExtensionLength();
-            System.arraycopy(buffer, bufferOffset,
-                newBuffer, newBufferOffset, lengthToCopy);
-            bufferOffset += lengthToCopy;
-            newBufferOffset += lengthToCopy;
-        }
+        buffer[offset + extHeaderOffset + 2] = (byte)(lengthInWords >> 8);
+        buffer[offset + extHeaderOffset + 3] = (byte)lengthInWords;
 
         //copy the extension content from the new extension.
-        System.arraycopy(extBuff, 0,
-            newBuffer, newBufferOffset, newExtensionLen);
-        newBufferOffset += newExtensionLen;
-
-        //now copy the payload
-        System.arraycopy(buffer, bufferOffset,
-            newBuffer, newBufferOffset, getPayloadLength());
-        newBufferOffset += getPayloadLength();
-
-        buffer = newBuffer;
-        this.length = newBufferOffset - offset;
+        System.arraycopy(
+                extBuff, 0,
+                buffer,
+                offset + extHeaderOffset + EXT_HEADER_SIZE + oldExtensionLen,
+                newExtensionLen);
     }
 
     /**
@@ -768,7 +779,7 @@ public class RawPacket
         long[] csrcLevels = new long[csrcCount * 2];
 
         //first extract the csrc IDs
-        int csrcStartIndex = offset + FIXED_HEADER_SIZE;
+        int csrcStartIndex = FIXED_HEADER_SIZE;
         for (int i = 0; i < csrcCount; i++)
         {
             int csrcLevelsIndex = 2 * i;
@@ -0,0 +1,167 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia;
+
+import java.util.concurrent.*;
+
+/**
+ * Implements a pool of <tt>RawPacket</tt>s which are reused across the
+ * receive, transform and send paths in order to avoid allocating a new
+ * <tt>byte</tt> array per packet. The buffers of the <tt>RawPacket</tt>s
+ * acquired from the pool reserve {@link #HEADROOM} bytes before and
+ * {@link #TAILROOM} bytes after the packet data so that CSRC lists, RTP header
+ * extensions and SRTP/SRTCP authentication tags may be added in place.
+ * <p>
+ * The pooled <tt>RawPacket</tt>s come in two sizes: the ones able to hold
+ * {@link #DEFAULT_CAPACITY} bytes (i.e. an MTU) which are used to send and
+ * the ones able to hold {@link #LARGE_CAPACITY} bytes which are used to
+ * receive (in order to not truncate datagrams larger than an MTU). Each size
+ * is pooled separately so that the two paths do not discard each other's
+ * <tt>RawPacket</tt>s.
+ * </p>
+ */
+public class RawPacketPool
+{
+    /**
+     * The default capacity in bytes (excluding headroom and tailroom) of the
+     * buffers of the <tt>RawPacket</tt>s allocated by the pool.
+     */
+    public static final int DEFAULT_CAPACITY = 1500;
+
+    /**
+     * The number of bytes reserved before the packet data in the buffers of
+     * the <tt>RawPacket</tt>s allocated by the pool. Accommodates a CSRC list
+     * of the maximum of 15 entries, an RFC 5285 extension header and a
+     * CSRC audio levels extension.
+     */
+    public static final int HEADROOM = 80;
+
+    /**
+     * The capacity in bytes (excluding headroom and tailroom) of the buffers
+     * of the large <tt>RawPacket</tt>s allocated by the pool. Matches the
+     * length of the buffers which <tt>RTPConnectorInputStream</tt> receives
+     * into.
+     */
+    public static final int LARGE_CAPACITY = 4 * 1024;
+
+    /**
+     * The maximum number of <tt>RawPacket</tt>s of each size kept in the pool.
+     * Released <tt>RawPacket</tt>s in excess are left to the garbage
+     * collector.
+     */
+    public static final int MAX_POOL_SIZE = 1024;
+
+    /**
+     * The number of bytes reserved after the packet data in the buffers of the
+     * <tt>RawPacket</tt>s allocated by the pool. Accommodates the SRTCP index,
+     * an MKI and the longest authentication tag.
+     */
+    public static final int TAILROOM = 32;
+
+    /**
+     * The large <tt>RawPacket</tt>s (i.e. able to hold
+     * {@link #LARGE_CAPACITY} bytes) which have been released and are
+     * available for reuse.
+     */
+    private static final BlockingQueue<RawPacket> largePool
+        = new ArrayBlockingQueue<RawPacket>(MAX_POOL_SIZE);
+
+    /**
+     * The <tt>RawPacket</tt>s able to hold {@link #DEFAULT_CAPACITY} (but not
+     * {@link #LARGE_CAPACITY}) bytes which have been released and are
+     * available for reuse.
+     */
+    private static final BlockingQueue<RawPacket> pool
+        = new ArrayBlockingQueue<RawPacket>(MAX_POOL_SIZE);
+
+    /**
+     * Acquires a <tt>RawPacket</tt> from the pool (or allocates a new one if
+     * the pool does not have a suitable one) which is able to hold at least
+     * <tt>capacity</tt> bytes of packet data in addition to {@link #HEADROOM}
+     * and {@link #TAILROOM}. The returned <tt>RawPacket</tt> has its offset set
+     * to <tt>HEADROOM</tt> and its length set to zero.
+     *
+     * @param capacity the number of bytes of packet data the returned
+     * <tt>RawPacket</tt> is to be able to hold
+     * @return a <tt>RawPacket</tt> able to hold <tt>capacity</tt> bytes of
+     * packet data
+     */
+    public static RawPacket acquire(int capacity)
+    {
+        int bufferLength = HEADROOM + capacity + TAILROOM;
+        RawPacket pkt
+            = (capacity <= DEFAULT_CAPACITY) ? pool.poll() : largePool.poll();
+
+        if ((pkt == null) || (pkt.getBuffer().length < bufferLength))
+        {
+            /*
+             * If the pooled RawPacket is too small, drop it on the floor rather
+             * than put it back because it is likely to be too small for the
+             * next caller as well.
+             */
+            pkt
+                = new RawPacket(
+                        new byte[
+                                HEADROOM
+                                    + ((capacity <= DEFAULT_CAPACITY)
+                                            ? DEFAULT_CAPACITY
+                                            : Math.max(
+                                                    capacity,
+                                                    LARGE_CAPACITY))
+                                    + TAILROOM],
+                        HEADROOM,
+                        0);
+        }
+        else
+        {
+            pkt.setOffset(HEADROOM);
+            pkt.setLength(0);
+        }
+        return pkt;
+    }
+
+    /**
+     * Releases a specific <tt>RawPacket</tt> into the pool so that it may be
+     * returned by a subsequent call to {@link #acquire(int)}. The caller must
+     * not access <tt>pkt</tt> after it has been released.
+     *
+     * @param pkt the <tt>RawPacket</tt> to be released into the pool
+     */
+    public static void release(RawPacket pkt)
+    {
+        if (pkt == null)
+            return;
+
+        /*
+         * Extenders of RawPacket (e.g. ZrtpRawPacket, DtmfRawPacket) carry
+         * type-specific meaning and are not to be handed out as plain
+         * RawPackets.
+         */
+        if (pkt.getClass() != RawPacket.class)
+            return;
+
+        byte[] buffer = pkt.getBuffer();
+
+        /*
+         * A PacketTransformer may have replaced the buffer with one which is
+         * too small to be pooled.
+         */
+        if (buffer == null)
+            return;
+        else if (buffer.length >= HEADROOM + LARGE_CAPACITY + TAILROOM)
+            largePool.offer(pkt);
+        else if (buffer.length >= HEADROOM + DEFAULT_CAPACITY + TAILROOM)
+            pool.offer(pkt);
+    }
+
+    /**
+     * Prevents the initialization of <tt>RawPacketPool</tt> instances.
+     */
+    private RawPacketPool()
+    {
+    }
+}
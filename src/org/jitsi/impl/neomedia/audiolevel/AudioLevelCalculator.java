@@ -39,11 +39,6 @@ public class AudioLevelCalculator
     private static final double MAX_SOUND_PRESSURE_LEVEL
         = 127 /* HUMAN TINNITUS (RINGING IN THE EARS) BEGINS */;
 
-    /**
-     * The minimum level we can get as a result after compute.
-     */
-    private static final int MIN_AUDIO_LEVEL = Short.MIN_VALUE;
-
     /**
      * Modifies a specific <tt>level</tt> value so that its multiple uses for
      * the purposes of a sound meter will result in a smoother, animation-like
@@ -104,27 +99,13 @@ public class AudioLevelCalculator
             return 0;
 
         int samplesNumber = length/2;
-        int absoluteMeanSoundLevel = 0;
         // magic ratio which scales good visually our levels
         double levelRatio = MAX_AUDIO_LEVEL/(maxLevel - minLevel)/16;
+        long absoluteMeanSoundLevel
+            = PcmKernels.sumOfAbsolutes(samples, offset, length)
+                / samplesNumber;
 
-        // Do the processing
-        for (int i = 0; i < samplesNumber; i++)
-        {
-            int tempL = samples[offset++];
-            int tempH = samples[offset++];
-            int soundLevel = tempH << 8 | (tempL & 255);
-
-            if (soundLevel > MAX_AUDIO_LEVEL)
-                soundLevel = MAX_AUDIO_LEVEL;
-            else if (soundLevel < MIN_AUDIO_LEVEL)
-                soundLevel = MIN_AUDIO_LEVEL;
-
-            absoluteMeanSoundLevel += Math.abs(soundLevel);
-        }
-
-        int result
-            = (int)(absoluteMeanSoundLevel/samplesNumber/levelRatio);
+        int result = (int)(absoluteMeanSoundLevel/levelRatio);
 
         result = ensureLevelRange(result, minLevel, maxLevel);
         result = animateLevel(result, minLevel, maxLevel, lastLevel);
@@ -151,20 +132,14 @@ public class AudioLevelCalculator
         byte[] samples, int offset, int length,
         int minLevel, int maxLevel, int lastLevel)
     {
-        double rms = 0;
-        int sampleCount = 0;
-
-        while (offset < length)
-        {
-            double sample = ArrayIOUtils.readShort(samples, offset);
-
-            sample /= Short.MAX_VALUE;
-            rms += sample * sample;
-            sampleCount++;
-
-            offset += 2;
-        }
-        rms = (sampleCount == 0) ? 0 : Math.sqrt(rms / sampleCount);
+        int sampleCount = length / 2;
+        double rms
+            = (sampleCount == 0)
+                ? 0
+                : Math.sqrt(
+                            PcmKernels.sumOfSquares(samples, offset, length)
+                                / (double) sampleCount)
+                    / Short.MAX_VALUE;
 
         double db;
 
@@ -11,12 +11,14 @@ import javax.media.*;
 import org.jitsi.service.neomedia.event.*;
 
 /**
- * The class implements an audio level measurement thread. The thread will
- * measure new data every time it is added through the <tt>addData()</tt> method
- * and would then deliver it to a registered listener if any. (No measurement
- * would be performed until we have a <tt>levelListener</tt>). We use a
- * separate thread so that we could compute and deliver audio levels in a way
- * that won't delay the media processing thread.
+ * The class implements an audio level measurement dispatcher. It will measure
+ * new data every time it is added through the <tt>addData()</tt> method and
+ * would then deliver it to a registered listener if any. (No measurement would
+ * be performed until we have a <tt>levelListener</tt>). The measurement and
+ * the delivery are performed by the {@link EventDispatchExecutor} which is
+ * shared by all dispatchers so that we could compute and deliver audio levels
+ * in a way that won't delay the media processing thread. If data is added
+ * faster than it is measured, only the latest data is measured.
  * <p>
  * Note that, for performance reasons this class is not 100% thread safe and you
  * should not modify add or remove audio listeners in this dispatcher in the
@@ -29,13 +31,6 @@ import org.jitsi.service.neomedia.event.*;
  */
 public class AudioLevelEventDispatcher
 {
-    /**
-     * The interval of time in milliseconds which the Thread of
-     * AudioLevelEventDispatcher is to idly wait for data to be provided for
-     * audio level calculation before it exits.
-     */
-    private static final long IDLE_TIMEOUT = 30 * 1000;
-
     /**
      * The <tt>AudioLevelMap</tt> in which the audio calculations run by this
      * <tt>AudioLevelEventDispatcher</tt> are to be cached in addition to
@@ -64,138 +59,107 @@ public class AudioLevelEventDispatcher
     private SimpleAudioLevelListener listener;
 
     /**
-     * The SSRC of the stream we are measuring that we should use as a key for
-     * entries of the levelMap level cache.
+     * The array which is to receive the next data to process. Allows
+     * {@link #addData(Buffer)} to copy the data outside the lock of this
+     * instance without allocating.
      */
-    private long ssrc = -1;
+    private byte[] spareData = null;
 
     /**
-     * The <tt>Thread</tt> which runs the actual audio level calculations and
-     * dispatches to {@link #listener}.
+     * The SSRC of the stream we are measuring that we should use as a key for
+     * entries of the levelMap level cache.
      */
-    private Thread thread;
+    private long ssrc = -1;
 
     /**
-     * The name of the <tt>Thread</tt> which is to run the actual audio level
-     * calculations and to dispatch to {@link #listener}.
+     * The <tt>EventDispatchExecutor.Task</tt> which runs the actual audio level
+     * calculations and dispatches to {@link #listener}.
      */
-    private final String threadName;
+    private final EventDispatchExecutor.Task task
+        = new EventDispatchExecutor.Task()
+        {
+            @Override
+            protected void dispatch()
+            {
+                AudioLevelEventDispatcher.this.dispatch();
+            }
+        };
 
     /**
-     * Initializes a new <tt>AudioLevelEventDispatcher</tt> instance which is to
-     * use a specific name for its <tt>Thread</tt> which is to run the actual
-     * audio level calculations and to dispatch to its
-     * <tt>SimpleAudioLevelListener</tt>
+     * Initializes a new <tt>AudioLevelEventDispatcher</tt> instance.
      *
-     * @param threadName
+     * @param threadName the name of the <tt>Thread</tt> which used to run the
+     * actual audio level calculations. Ignored because the calculations are
+     * run by the shared {@link EventDispatchExecutor}.
      */
     public AudioLevelEventDispatcher(String threadName)
     {
-        this.threadName = threadName;
     }
 
     /**
-     * Runs the actual audio level calculations and dispatches to the
-     * {@link #listener}.
+     * Runs the actual audio level calculation of the latest data and
+     * dispatches to the {@link #listener}. Invoked by {@link #task}.
      */
-    private void run()
+    private void dispatch()
     {
-        long idleTimeoutStart = -1;
-
-        while (true)
-        {
-            SimpleAudioLevelListener listener;
-            AudioLevelMap cache;
-            long ssrc;
-
-            byte[] data;
-            int dataLength;
-
-            synchronized(this)
-            {
-                if (!Thread.currentThread().equals(thread))
-                    break;
+        SimpleAudioLevelListener listener;
+        AudioLevelMap cache;
+        long ssrc;
 
-                listener = this.listener;
-                cache = this.cache;
-                ssrc = this.ssrc;
-                /*
-                 * If no one is interested in the audio level, do not even keep
-                 * the Thread waiting.
-                 */
-                if ((listener == null) && ((cache == null) || (ssrc == -1)))
-                    break;
-
-                data = this.data;
-                dataLength = this.dataLength;
-                /*
-                 * If there is no data to calculate the audio level of, wait for
-                 * such data to be provided.
-                 */
-                if ((data == null) || (dataLength < 1))
-                {
-                    // The current thread is idle.
-                    if (idleTimeoutStart == -1)
-                        idleTimeoutStart = System.currentTimeMillis();
-                    else if ((System.currentTimeMillis() - idleTimeoutStart)
-                            >= IDLE_TIMEOUT)
-                        break;
-
-                    boolean interrupted = false;
-
-                    try
-                    {
-                        wait(IDLE_TIMEOUT);
-                    }
-                    catch (InterruptedException ie)
-                    {
-                        interrupted = true;
-                    }
-                    if (interrupted)
-                        Thread.currentThread().interrupt();
-
-                    continue;
-                }
-                // The values of data and dataLength seem valid so consume them.
-                this.data = null;
-                this.dataLength = 0;
-                // The current thread is no longer idle.
-                idleTimeoutStart = -1;
-            }
-
-            int newLevel
-                = AudioLevelCalculator.calculateSoundPressureLevel(
-                        data, 0, dataLength,
-                        SimpleAudioLevelListener.MIN_LEVEL,
-                        SimpleAudioLevelListener.MAX_LEVEL,
-                        lastLevel);
+        byte[] data;
+        int dataLength;
 
+        synchronized(this)
+        {
+            listener = this.listener;
+            cache = this.cache;
+            ssrc = this.ssrc;
             /*
-             * In order to try to mitigate the issue with allocating data, try
-             * to return the one which we have just calculated the audio level
-             * of.
+             * If no one is interested in the audio level, do not even
+             * calculate it.
              */
-            synchronized (this)
-            {
-                if ((this.data == null)
-                        && (this.listener == null)
-                        && ((this.cache == null) || (this.ssrc == -1)))
-                    this.data = data;
-            }
+            if ((listener == null) && ((cache == null) || (ssrc == -1)))
+                return;
+
+            data = this.data;
+            dataLength = this.dataLength;
+            // If there is no data to calculate the audio level of, we're done.
+            if ((data == null) || (dataLength < 1))
+                return;
+            // The values of data and dataLength seem valid so consume them.
+            this.data = null;
+            this.dataLength = 0;
+        }
 
-            try
-            {
-                // Cache the newLevel if requested.
-                if ((cache != null) && (ssrc != -1))
-                    cache.putLevel(ssrc, newLevel);
-                // Notify the listener about the newLevel if requested.
-                if (listener != null)
-                    listener.audioLevelChanged(newLevel);
-            }
-            finally
-            {
-                lastLevel = newLevel;
-            }
+        int newLevel
+            = AudioLevelCalculator.calculateSoundPressureLevel(
+                    data, 0, dataLength,
+                    SimpleAudioLevelListener.MIN_LEVEL,
+                    SimpleAudioLevelListener.MAX_LEVEL,
+                    lastLevel);
+
+        /*
+         * In order to try to mitigate the issue with allocating data, try to
+         * return the one which we have just calculated the audio level of.
+         */
+        synchronized (this)
+        {
+            if (spareData == null)
+                spareData = data;
+        }
+
+        try
+        {
+            // Cache the newLevel if requested.
+            if ((cache != null) && (ssrc != -1))
+                cache.putLevel(ssrc, newLevel);
+            // Notify the listener about the newLevel if requested.
+            if (listener != null)
+                listener.audioLevelChanged(newLevel);
+        }
+        finally
+        {
+            lastLevel = newLevel;
         }
     }
 
@@ -204,36 +168,54 @@ public class AudioLevelEventDispatcher
      *
      * @param buffer the data that we'd like to queue for processing.
      */
-    public synchronized void addData(Buffer buffer)
+    public void addData(Buffer buffer)
     {
-        /*
-         * If no one is interested in the audio level, do not even add the
-         * Buffer data.
-         */
-        if ((listener == null) && ((cache == null) || (ssrc == -1)))
+        int length = buffer.getLength();
+
+        if (length <= 0)
             return;
 
-        dataLength = buffer.getLength();
-        if (dataLength > 0)
+        byte[] data;
+
+        synchronized (this)
         {
-            if((data == null) || (data.length < dataLength))
-                data = new byte[dataLength];
+            /*
+             * If no one is interested in the audio level, do not even add the
+             * Buffer data.
+             */
+            if ((listener == null) && ((cache == null) || (ssrc == -1)))
+                return;
 
-            Object bufferData = buffer.getData();
+            data = spareData;
+            spareData = null;
+        }
 
-            if (bufferData != null)
-            {
-                System.arraycopy(
-                        bufferData, buffer.getOffset(),
-                        data, 0,
-                        dataLength);
-            }
+        // Copy the Buffer data outside the lock.
+        if ((data == null) || (data.length < length))
+            data = new byte[length];
 
-            if (thread == null)
-                startThread();
-            else
-                notify();
+        Object bufferData = buffer.getData();
+
+        if (bufferData instanceof byte[])
+        {
+            System.arraycopy(
+                    bufferData, buffer.getOffset(),
+                    data, 0,
+                    length);
+        }
+
+        synchronized (this)
+        {
+            /*
+             * The data which has not been processed yet is superseded so it
+             * may receive the next data.
+             */
+            if ((this.data != null) && (spareData == null))
+                spareData = this.data;
+            this.data = data;
+            dataLength = length;
         }
+        task.schedule();
     }
 
     /**
@@ -243,14 +225,15 @@ public class AudioLevelEventDispatcher
      * @param listener the listener that we will be notifying or <tt>null</tt>
      * if we are to remove it.
      */
-    public synchronized void setAudioLevelListener(
-            SimpleAudioLevelListener listener)
+    public void setAudioLevelListener(SimpleAudioLevelListener listener)
     {
-        if (this.listener != listener)
+        synchronized (this)
         {
+            if (this.listener == listener)
+                return;
             this.listener = listener;
-            startOrNotifyThread();
         }
+        scheduleIfNecessary();
     }
 
     /**
@@ -262,79 +245,31 @@ public class AudioLevelEventDispatcher
      * cache measured results.
      * @param ssrc the SSRC key where entries should be logged
      */
-    public synchronized void setAudioLevelCache(AudioLevelMap cache, long ssrc)
+    public void setAudioLevelCache(AudioLevelMap cache, long ssrc)
     {
-        if ((this.cache != cache) || (this.ssrc != ssrc))
+        synchronized (this)
         {
+            if ((this.cache == cache) && (this.ssrc == ssrc))
+                return;
             this.cache = cache;
             this.ssrc = ssrc;
-            startOrNotifyThread();
         }
+        scheduleIfNecessary();
     }
 
     /**
-     * Starts the <tt>Thread</tt> which is to run the audio level calculations
-     * and to dispatch to {@link #listener} if necessary or notifies it about a
-     * change it the state on which it depends.
+     * Schedules {@link #task} if there is data to calculate the audio level of
+     * and someone is interested in the audio level.
      */
-    private synchronized void startOrNotifyThread()
+    private void scheduleIfNecessary()
     {
-        if ((this.listener == null) && ((cache == null) || (ssrc == -1)))
-        {
-            thread = null;
-            notify();
-        }
-        else if ((data != null) && (dataLength > 0))
+        synchronized (this)
         {
-            if (thread == null)
-                startThread();
-            else
-                notify();
+            if ((listener == null) && ((cache == null) || (ssrc == -1)))
+                return;
+            if ((data == null) || (dataLength < 1))
+                return;
         }
-    }
-
-    /**
-     * Starts the <tt>Thread</tt> which is to run the audio level calculations
-     * and to dispatch to {@link #listener}.
-     */
-    private synchronized void startThread()
-    {
-        thread
-            = new Thread("AudioLevelEventDispatcherThread")
-            {
-                @Override
-                public void run()
-                {
-                    try
-                    {
-                        AudioLevelEventDispatcher.this.run();
-                    }
-                    finally
-                    {
-                        synchronized (AudioLevelEventDispatcher.this)
-                        {
-                            if (Thread.currentThread().equals(thread))
-                                thread = null;
-                            /*
-                             * If the thread of this AudioLevelEventDispatcher
-                             * is dying yet the state suggests that it should be
-                             * running, restart it.
-                             */
-                            if ((thread == null)
-                                    && ((listener != null)
-                                            || ((cache != null)
-                                                    && (ssrc != -1)))
-                                    && (data != null)
-                                    && (dataLength > 0))
-                                startThread();
-                        }
-                    }
-                }
-            };
-        thread.setDaemon(true);
-        if (threadName != null)
-            thread.setName(threadName);
-
-        thread.start();
+        task.schedule();
     }
 }
@@ -0,0 +1,228 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.audiolevel;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.util.*;
+
+/**
+ * Runs the event dispatching of all media streams (e.g. of audio levels,
+ * CSRC audio levels and DTMF tones) on a single pool of threads the size of
+ * which depends on the number of processors rather than on the number of
+ * streams.
+ * <p>
+ * The work is submitted as {@link Task}s each of which coalesces its
+ * invocations: a <tt>Task</tt> is queued at most once at any given time and it
+ * is expected to dispatch the latest state (e.g. the latest audio level) only.
+ * Consequently, the number of queued <tt>Task</tt>s is bounded by the number
+ * of streams. The invocations of one and the same <tt>Task</tt> are never run
+ * concurrently so the listeners of a stream are notified in order.
+ * </p>
+ */
+public class EventDispatchExecutor
+{
+    /**
+     * The interval of time in milliseconds after which an idle thread of
+     * {@link #executor} exits.
+     */
+    private static final long IDLE_TIMEOUT = 30 * 1000;
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>EventDispatchExecutor</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(EventDispatchExecutor.class);
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the maximum number of threads which dispatch the events of all streams.
+     * The default is the number of available processors.
+     */
+    public static final String THREAD_COUNT_PNAME
+        = "org.jitsi.impl.neomedia.audiolevel.EventDispatchExecutor"
+            + ".threadCount";
+
+    /**
+     * The <tt>ExecutorService</tt> which runs the {@link Task}s.
+     */
+    private static ExecutorService executor;
+
+    /**
+     * Submits a specific <tt>Task</tt> for execution.
+     *
+     * @param task the <tt>Task</tt> to execute
+     */
+    private static void execute(Task task)
+    {
+        try
+        {
+            getExecutor().execute(task);
+        }
+        catch (RejectedExecutionException ree)
+        {
+            logger.error("Failed to dispatch events.", ree);
+            task.state.set(Task.IDLE);
+        }
+    }
+
+    /**
+     * Gets the <tt>ExecutorService</tt> which runs the {@link Task}s and
+     * initializes it if necessary.
+     *
+     * @return the <tt>ExecutorService</tt> which runs the <tt>Task</tt>s
+     */
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            ConfigurationService cfg = LibJitsi.getConfigurationService();
+            int threadCount = Runtime.getRuntime().availableProcessors();
+
+            if (cfg != null)
+                threadCount = cfg.getInt(THREAD_COUNT_PNAME, threadCount);
+            if (threadCount < 1)
+                threadCount = 1;
+
+            final AtomicInteger threadIndex = new AtomicInteger();
+            ThreadPoolExecutor threadPoolExecutor
+                = new ThreadPoolExecutor(
+                        threadCount,
+                        threadCount,
+                        IDLE_TIMEOUT, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>(),
+                        new ThreadFactory()
+                        {
+                            public Thread newThread(Runnable r)
+                            {
+                                String name
+                                    = EventDispatchExecutor.class.getName()
+                                        + "-" + threadIndex.incrementAndGet();
+                                Thread t = new Thread(r, name);
+
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+
+            // Do not keep idle threads around (as the dispatchers used to).
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            executor = threadPoolExecutor;
+        }
+        return executor;
+    }
+
+    /**
+     * Prevents the initialization of <tt>EventDispatchExecutor</tt>
+     * instances.
+     */
+    private EventDispatchExecutor()
+    {
+    }
+
+    /**
+     * Represents the dispatching of the events of a stream by the
+     * <tt>EventDispatchExecutor</tt>. Invoking {@link #schedule()} while the
+     * <tt>Task</tt> is queued has no effect and invoking it while the
+     * <tt>Task</tt> is running has it run once more afterwards.
+     */
+    public static abstract class Task
+        implements Runnable
+    {
+        /**
+         * The state of a <tt>Task</tt> which is neither queued nor running.
+         */
+        private static final int IDLE = 0;
+
+        /**
+         * The state of a <tt>Task</tt> which is running.
+         */
+        private static final int RUNNING = 2;
+
+        /**
+         * The state of a <tt>Task</tt> which is running and is to be run
+         * once more afterwards.
+         */
+        private static final int RUNNING_AND_SCHEDULED = 3;
+
+        /**
+         * The state of a <tt>Task</tt> which is queued.
+         */
+        private static final int SCHEDULED = 1;
+
+        /**
+         * The state of this <tt>Task</tt>.
+         */
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        /**
+         * Dispatches the latest events of the stream associated with this
+         * <tt>Task</tt>. Never invoked concurrently.
+         */
+        protected abstract void dispatch();
+
+        /**
+         * Runs {@link #dispatch()} and, if this <tt>Task</tt> has been
+         * scheduled in the meantime, queues it once more.
+         */
+        public final void run()
+        {
+            state.set(RUNNING);
+            try
+            {
+                dispatch();
+            }
+            catch (Throwable t)
+            {
+                if (t instanceof ThreadDeath)
+                    throw (ThreadDeath) t;
+                else
+                    logger.error("Failed to dispatch events.", t);
+            }
+            finally
+            {
+                if (!state.compareAndSet(RUNNING, IDLE))
+                {
+                    state.set(SCHEDULED);
+                    execute(this);
+                }
+            }
+        }
+
+        /**
+         * Schedules this <tt>Task</tt> for execution by the
+         * <tt>EventDispatchExecutor</tt> unless it is already queued.
+         */
+        public void schedule()
+        {
+            while (true)
+            {
+                switch (state.get())
+                {
+                case IDLE:
+                    if (state.compareAndSet(IDLE, SCHEDULED))
+                    {
+                        execute(this);
+                        return;
+                    }
+                    break;
+                case RUNNING:
+                    if (state.compareAndSet(RUNNING, RUNNING_AND_SCHEDULED))
+                        return;
+                    break;
+                default:
+                    // SCHEDULED or RUNNING_AND_SCHEDULED
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -25,13 +25,17 @@ public abstract class AbstractCodec2
     /**
      * The <tt>Buffer</tt> flag which indicates that the respective
      * <tt>Buffer</tt> contains audio data which has been decoded as a result of
-     * the operation of FEC.
+     * the operation of FEC. On the input <tt>Buffer</tt> of a decoder, requests
+     * the concealment of the lost packet with the sequence number of the
+     * <tt>Buffer</tt> using the FEC data in the packet which follows it.
      */
     public static final int BUFFER_FLAG_FEC = (1 << 24);
     /**
      * The <tt>Buffer</tt> flag which indicates that the respective
      * <tt>Buffer</tt> contains audio data which has been decoded as a result of
-     * the operation of PLC.
+     * the operation of PLC. On the input <tt>Buffer</tt> of a decoder, requests
+     * the concealment of the lost packet with the sequence number of the
+     * <tt>Buffer</tt> using PLC.
      */
     public static final int BUFFER_FLAG_PLC = (1 << 25);
 
@@ -185,13 +185,20 @@ public class JNIDecoder
 
         long seqNo = inBuffer.getSequenceNumber();
         int lostSeqNoCount = calculateLostSeqNoCount(lastSeqNo, seqNo);
+        /*
+         * The jitter buffer may explicitly request the concealment of the lost
+         * packet seqNo with the data of the packet which follows it (FEC) or
+         * with no data at all (PLC).
+         */
+        int concealFlags
+            = inBuffer.getFlags() & (BUFFER_FLAG_FEC | BUFFER_FLAG_PLC);
         /*
          * Detect the lost Buffers/packets and decode FEC/PLC. When no in-band
          * forward error correction data is available, the Opus decoder will
          * operate as if PLC has been specified.
          */
         boolean decodeFEC
-        	= ((lostSeqNoCount != 0)
+        	= (((lostSeqNoCount != 0) || (concealFlags != 0))
         			&& (lastFrameSizeInSamplesPerChannel != 0));
 
         if ((inBuffer.getFlags() & Buffer.FLAG_SKIP_FEC) != 0)
@@ -215,8 +222,16 @@ public class JNIDecoder
 
         if (decodeFEC)
         {
-        	inLength
-        		= (lostSeqNoCount == 1) ? inLength /* FEC */ : 0 /* PLC */;
+            if (concealFlags != 0)
+            {
+                if ((concealFlags & BUFFER_FLAG_FEC) == 0)
+                    inLength = 0 /* PLC */;
+            }
+            else
+            {
+                inLength
+                    = (lostSeqNoCount == 1) ? inLength /* FEC */ : 0 /* PLC */;
+            }
 
             byte[] out
                 = validateByteArraySize(
@@ -250,7 +265,13 @@ public class JNIDecoder
                 nbDecodedFec++;
             }
 
-            lastSeqNo = incrementSeqNo(lastSeqNo);
+            lastSeqNo
+                = (concealFlags != 0) ? seqNo : incrementSeqNo(lastSeqNo);
+        }
+        else if (concealFlags != 0)
+        {
+            // There is nothing to conceal with (yet) so output nothing.
+            lastSeqNo = seqNo;
         }
         else
         {
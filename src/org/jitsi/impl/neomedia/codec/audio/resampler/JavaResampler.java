@@ -0,0 +1,284 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.codec.audio.resampler;
+
+import java.util.*;
+
+import javax.media.*;
+import javax.media.format.*;
+
+import org.jitsi.impl.neomedia.codec.*;
+
+/**
+ * Implements an audio resampler in pure Java using
+ * <tt>PolyphaseResampler</tt> i.e. without depending on a native library.
+ */
+public class JavaResampler
+    extends AbstractCodec2
+{
+    /**
+     * The list of <tt>Format</tt>s of audio data supported as input and output
+     * by <tt>JavaResampler</tt> instances.
+     */
+    private static final Format[] SUPPORTED_FORMATS;
+
+    /**
+     * The list of sample rates of audio data supported as input and output by
+     * <tt>JavaResampler</tt> instances.
+     */
+    private static final double[] SUPPORTED_SAMPLE_RATES
+        = new double[]
+                {
+                    8000,
+                    11025,
+                    12000,
+                    16000,
+                    22050,
+                    24000,
+                    32000,
+                    44100,
+                    48000,
+                    Format.NOT_SPECIFIED
+                };
+
+    static
+    {
+        int supportedCount = SUPPORTED_SAMPLE_RATES.length;
+
+        SUPPORTED_FORMATS = new Format[2 * supportedCount];
+        for (int i = 0; i < supportedCount; i++)
+        {
+            for (int channels = 1; channels <= 2; channels++)
+            {
+                SUPPORTED_FORMATS[2 * i + channels - 1]
+                    = new AudioFormat(
+                            AudioFormat.LINEAR,
+                            SUPPORTED_SAMPLE_RATES[i],
+                            16 /* sampleSizeInBits */,
+                            channels,
+                            AudioFormat.LITTLE_ENDIAN,
+                            AudioFormat.SIGNED,
+                            Format.NOT_SPECIFIED /* frameSizeInBits */,
+                            Format.NOT_SPECIFIED /* frameRate */,
+                            Format.byteArray);
+            }
+        }
+    }
+
+    /**
+     * The <tt>PolyphaseResampler</tt> which resamples the audio data
+     * processed by this instance.
+     */
+    private PolyphaseResampler resampler;
+
+    /**
+     * Initializes a new <tt>JavaResampler</tt> instance.
+     */
+    public JavaResampler()
+    {
+        super("Java Resampler", AudioFormat.class, SUPPORTED_FORMATS);
+
+        inputFormats = SUPPORTED_FORMATS;
+    }
+
+    /**
+     * @see AbstractCodec2#doClose()
+     */
+    @Override
+    protected void doClose()
+    {
+        resampler = null;
+    }
+
+    /**
+     * Opens this <tt>Codec</tt> and acquires the resources that it needs to
+     * operate. The <tt>PolyphaseResampler</tt> is initialized when the sample
+     * rates are known i.e. with the first input.
+     *
+     * @throws ResourceUnavailableException if any of the resources that this
+     * <tt>Codec</tt> needs to operate cannot be acquired
+     * @see AbstractCodec2#doOpen()
+     */
+    @Override
+    protected void doOpen()
+        throws ResourceUnavailableException
+    {
+    }
+
+    /**
+     * Resamples audio from a specific input <tt>Buffer</tt> into a specific
+     * output <tt>Buffer</tt>.
+     *
+     * @param inBuffer input <tt>Buffer</tt>
+     * @param outBuffer output <tt>Buffer</tt>
+     * @return <tt>BUFFER_PROCESSED_OK</tt> if <tt>inBuffer</tt> has been
+     * successfully processed
+     * @see AbstractCodec2#doProcess(Buffer, Buffer)
+     */
+    @Override
+    protected int doProcess(Buffer inBuffer, Buffer outBuffer)
+    {
+        Format inFormat = inBuffer.getFormat();
+
+        if ((inFormat != null)
+                && (inFormat != this.inputFormat)
+                && !inFormat.equals(this.inputFormat))
+        {
+            if (null == setInputFormat(inFormat))
+                return BUFFER_PROCESSED_FAILED;
+        }
+        inFormat = this.inputFormat;
+
+        AudioFormat inAudioFormat = (AudioFormat) inFormat;
+        int inSampleRate = (int) inAudioFormat.getSampleRate();
+        AudioFormat outAudioFormat = (AudioFormat) getOutputFormat();
+        int outSampleRate = (int) outAudioFormat.getSampleRate();
+        byte[] in = (byte[]) inBuffer.getData();
+        int inLength = inBuffer.getLength();
+
+        if (inSampleRate == outSampleRate)
+        {
+            // passthrough
+            byte[] out = validateByteArraySize(outBuffer, inLength, false);
+
+            if ((in != null) && (inLength > 0))
+                System.arraycopy(in, inBuffer.getOffset(), out, 0, inLength);
+            outBuffer.setLength(inLength);
+        }
+        else
+        {
+            int channels = inAudioFormat.getChannels();
+
+            if (outAudioFormat.getChannels() != channels)
+                return BUFFER_PROCESSED_FAILED;
+
+            if ((resampler == null)
+                    || (resampler.getChannels() != channels)
+                    || (resampler.getInSampleRate() != inSampleRate)
+                    || (resampler.getOutSampleRate() != outSampleRate))
+            {
+                if (!PolyphaseResampler.isSupported(
+                        inSampleRate,
+                        outSampleRate))
+                    return BUFFER_PROCESSED_FAILED;
+
+                resampler
+                    = new PolyphaseResampler(
+                            inSampleRate,
+                            outSampleRate,
+                            channels);
+            }
+
+            int frameSize = 2 * channels;
+            int inSampleCount = (in == null) ? 0 : (inLength / frameSize);
+            byte[] out
+                = validateByteArraySize(
+                        outBuffer,
+                        resampler.getMaxOutSampleCount(inSampleCount)
+                            * frameSize,
+                        false);
+            int outSampleCount
+                = (inSampleCount == 0)
+                    ? 0
+                    : resampler.process(
+                            in, inBuffer.getOffset(), inSampleCount,
+                            out, 0);
+
+            outBuffer.setLength(outSampleCount * frameSize);
+        }
+
+        outBuffer.setDuration(inBuffer.getDuration());
+        outBuffer.setEOM(inBuffer.isEOM());
+        outBuffer.setFlags(inBuffer.getFlags());
+        outBuffer.setFormat(outAudioFormat);
+        outBuffer.setHeader(inBuffer.getHeader());
+        outBuffer.setOffset(0);
+        outBuffer.setSequenceNumber(inBuffer.getSequenceNumber());
+        outBuffer.setTimeStamp(inBuffer.getTimeStamp());
+
+        return BUFFER_PROCESSED_OK;
+    }
+
+    /**
+     * Get the output formats matching a specific input format.
+     *
+     * @param inputFormat the input format to get the matching output formats of
+     * @return the output formats matching the specified input format
+     * @see AbstractCodec2#getMatchingOutputFormats(Format)
+     */
+    @Override
+    protected Format[] getMatchingOutputFormats(Format inputFormat)
+    {
+        List<Format> matchingOutputFormats = new ArrayList<Format>();
+
+        if (inputFormat instanceof AudioFormat)
+        {
+            int inChannels = ((AudioFormat) inputFormat).getChannels();
+
+            for (Format supportedFormat : SUPPORTED_FORMATS)
+            {
+                if (((AudioFormat) supportedFormat).getChannels()
+                        == inChannels)
+                    matchingOutputFormats.add(supportedFormat);
+            }
+        }
+        return
+            matchingOutputFormats.toArray(
+                    new Format[matchingOutputFormats.size()]);
+    }
+
+    /**
+     * Resets the state of this <tt>Codec</tt> i.e. discards the audio data
+     * kept by the filters for the resampling of subsequent input.
+     */
+    @Override
+    public void reset()
+    {
+        super.reset();
+
+        if (resampler != null)
+            resampler.reset();
+    }
+
+    /**
+     * Sets the <tt>Format</tt> of the media data to be input for processing in
+     * this <tt>Codec</tt>.
+     *
+     * @param format the <tt>Format</tt> of the media data to be input for
+     * processing in this <tt>Codec</tt>
+     * @return the <tt>Format</tt> of the media data to be input for processing
+     * in this <tt>Codec</tt> if <tt>format</tt> is compatible with this
+     * <tt>Codec</tt>; otherwise, <tt>null</tt>
+     * @see AbstractCodec2#setInputFormat(Format)
+     */
+    @Override
+    public Format setInputFormat(Format format)
+    {
+        AudioFormat inFormat = (AudioFormat) super.setInputFormat(format);
+
+        if (inFormat != null)
+        {
+            double outSampleRate
+                = (outputFormat == null)
+                    ? inFormat.getSampleRate()
+                    : ((AudioFormat) outputFormat).getSampleRate();
+
+            setOutputFormat(
+                    new AudioFormat(
+                            inFormat.getEncoding(),
+                            outSampleRate,
+                            inFormat.getSampleSizeInBits(),
+                            inFormat.getChannels(),
+                            inFormat.getEndian(),
+                            inFormat.getSigned(),
+                            Format.NOT_SPECIFIED,
+                            Format.NOT_SPECIFIED,
+                            Format.byteArray));
+        }
+        return inFormat;
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.codec.audio.resampler;
+
+/**
+ * Implements a pure-Java polyphase FIR resampler of signed 16-bit little
+ * endian (interleaved) PCM audio. The ratio of the sample rates is reduced to
+ * <tt>L/M</tt> and the output samples are calculated with a bank of
+ * <tt>L</tt> Kaiser-windowed sinc filters, one for each fractional position
+ * of an output sample between two input samples. The cutoff frequency of the
+ * filters is slightly below the Nyquist frequency of the lower of the two
+ * sample rates so the resampler both interpolates and prevents aliasing.
+ * <p>
+ * The filter bank is calculated when an instance is initialized and
+ * {@link #process(byte[], int, int, byte[], int)} does not allocate unless
+ * it is given more input samples than ever before. The delay introduced by
+ * the filters is about half of their length i.e. 24 input samples when
+ * upsampling and 24 output samples when downsampling.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class PolyphaseResampler
+{
+    /**
+     * The Kaiser window parameter of the filters which determines their
+     * stopband attenuation (about 80 dB).
+     */
+    private static final double BETA = 8.0;
+
+    /**
+     * The cutoff frequency of the filters relative to the Nyquist frequency
+     * of the lower of the input and output sample rates.
+     */
+    private static final double CUTOFF = 0.89;
+
+    /**
+     * The maximum number of phases i.e. of filters in a bank. Limits the
+     * memory occupied by the filter bank (and rules out pairs of sample rates
+     * which are not related by a simple ratio).
+     */
+    public static final int MAX_PHASES = 1024;
+
+    /**
+     * The number of taps of the filters when upsampling. When downsampling,
+     * the filters are longer by the downsampling ratio.
+     */
+    private static final int TAPS = 48;
+
+    /**
+     * Calculates the dot product of the coefficients of a filter and
+     * (mono) input samples. The number of taps is even so they are summed in
+     * two partial sums which do not depend on each other.
+     *
+     * @param samples the input samples
+     * @param s the index in <tt>samples</tt> of the first input sample
+     * @param coefficients the filter bank
+     * @param c the index in <tt>coefficients</tt> of the first coefficient of
+     * the filter
+     * @param taps the number of taps of the filter
+     * @return the dot product of the coefficients of the filter and the input
+     * samples
+     */
+    private static float dot(
+            float[] samples, int s,
+            float[] coefficients, int c,
+            int taps)
+    {
+        float sum0 = 0, sum1 = 0;
+
+        for (int j = 0; j < taps; j += 2)
+        {
+            sum0 += samples[s + j] * coefficients[c + j];
+            sum1 += samples[s + j + 1] * coefficients[c + j + 1];
+        }
+        return sum0 + sum1;
+    }
+
+    /**
+     * Calculates the greatest common divisor of two positive integers.
+     *
+     * @param a the first integer
+     * @param b the second integer
+     * @return the greatest common divisor of <tt>a</tt> and <tt>b</tt>
+     */
+    private static int gcd(int a, int b)
+    {
+        while (b != 0)
+        {
+            int r = a % b;
+
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    /**
+     * Calculates the zeroth-order modified Bessel function of the first kind
+     * (used by the Kaiser window).
+     *
+     * @param x the argument of the function
+     * @return the value of the function at <tt>x</tt>
+     */
+    private static double i0(double x)
+    {
+        double sum = 1;
+        double term = 1;
+        double halfX = x / 2;
+
+        for (int k = 1; k < 64; k++)
+        {
+            double t = halfX / k;
+
+            term *= t * t;
+            sum += term;
+            if (term < sum * 1e-12)
+                break;
+        }
+        return sum;
+    }
+
+    /**
+     * Determines whether a specific pair of sample rates is supported by
+     * <tt>PolyphaseResampler</tt>.
+     *
+     * @param inSampleRate the input sample rate
+     * @param outSampleRate the output sample rate
+     * @return <tt>true</tt> if <tt>PolyphaseResampler</tt> can convert from
+     * <tt>inSampleRate</tt> to <tt>outSampleRate</tt>; otherwise,
+     * <tt>false</tt>
+     */
+    public static boolean isSupported(int inSampleRate, int outSampleRate)
+    {
+        return
+            (inSampleRate > 0)
+                && (outSampleRate > 0)
+                && (outSampleRate / gcd(inSampleRate, outSampleRate)
+                        <= MAX_PHASES);
+    }
+
+    /**
+     * The number of interleaved channels.
+     */
+    private final int channels;
+
+    /**
+     * The filter bank: the {@link #taps} coefficients of phase <tt>p</tt>
+     * start at index <tt>p * taps</tt>.
+     */
+    private final float[] coefficients;
+
+    /**
+     * The index in {@link #samples} (in samples per channel) of the first
+     * input sample of the filter which calculates the next output sample.
+     */
+    private int index;
+
+    /**
+     * The input sample rate.
+     */
+    private final int inSampleRate;
+
+    /**
+     * The number of samples per channel in {@link #samples}.
+     */
+    private int length;
+
+    /**
+     * The decimation factor i.e. the input sample rate divided by the
+     * greatest common divisor of the sample rates.
+     */
+    private final int m;
+
+    /**
+     * The output sample rate.
+     */
+    private final int outSampleRate;
+
+    /**
+     * The phase (i.e. the fractional position in units of <tt>1/phases</tt>
+     * of an input sample) of the next output sample.
+     */
+    private int phase;
+
+    /**
+     * The number of phases i.e. the interpolation factor which is the output
+     * sample rate divided by the greatest common divisor of the sample rates.
+     */
+    private final int phases;
+
+    /**
+     * The interleaved input samples which have not been consumed yet
+     * including the history required by the filters.
+     */
+    private float[] samples;
+
+    /**
+     * The number of taps of each filter.
+     */
+    private final int taps;
+
+    /**
+     * Initializes a new <tt>PolyphaseResampler</tt> instance which is to
+     * convert audio with a specific number of channels between specific
+     * sample rates.
+     *
+     * @param inSampleRate the input sample rate
+     * @param outSampleRate the output sample rate
+     * @param channels the number of interleaved channels
+     * @throws IllegalArgumentException if the pair of sample rates is not
+     * supported or <tt>channels</tt> is less than one
+     */
+    public PolyphaseResampler(
+            int inSampleRate,
+            int outSampleRate,
+            int channels)
+    {
+        if (!isSupported(inSampleRate, outSampleRate))
+        {
+            throw new IllegalArgumentException(
+                    "Unsupported sample rates " + inSampleRate + " and "
+                        + outSampleRate);
+        }
+        if (channels < 1)
+            throw new IllegalArgumentException("channels");
+
+        int gcd = gcd(inSampleRate, outSampleRate);
+
+        this.inSampleRate = inSampleRate;
+        this.outSampleRate = outSampleRate;
+        this.channels = channels;
+        phases = outSampleRate / gcd;
+        m = inSampleRate / gcd;
+
+        /*
+         * When downsampling, the filters are stretched by the downsampling
+         * ratio in order to keep the width of their transition band relative
+         * to the output sample rate.
+         */
+        double cutoff = CUTOFF;
+        int taps = TAPS;
+
+        if (m > phases)
+        {
+            double ratio = m / (double) phases;
+
+            cutoff /= ratio;
+            taps = (int) Math.ceil(TAPS * ratio);
+            taps += taps & 1;
+        }
+        this.taps = taps;
+
+        coefficients = new float[phases * taps];
+
+        double halfTaps = taps / 2;
+        double i0Beta = i0(BETA);
+
+        for (int p = 0; p < phases; p++)
+        {
+            /*
+             * The output sample of phase p lies between the input samples
+             * taps/2 - 1 and taps/2 of the filter.
+             */
+            double position = halfTaps - 1 + p / (double) phases;
+            double sum = 0;
+
+            for (int j = 0; j < taps; j++)
+            {
+                double d = position - j;
+                double x = d / halfTaps;
+                double window
+                    = (x * x >= 1)
+                        ? 0
+                        : i0(BETA * Math.sqrt(1 - x * x)) / i0Beta;
+                double sinc
+                    = (d == 0)
+                        ? cutoff
+                        : Math.sin(Math.PI * cutoff * d) / (Math.PI * d);
+                double coefficient = sinc * window;
+
+                coefficients[p * taps + j] = (float) coefficient;
+                sum += coefficient;
+            }
+            // Normalize the gain at DC to one.
+            for (int j = 0; j < taps; j++)
+                coefficients[p * taps + j] /= sum;
+        }
+
+        samples = new float[channels * taps];
+        reset();
+    }
+
+    /**
+     * Gets the number of interleaved channels of the audio converted by this
+     * instance.
+     *
+     * @return the number of interleaved channels of the audio converted by
+     * this instance
+     */
+    public int getChannels()
+    {
+        return channels;
+    }
+
+    /**
+     * Gets the input sample rate of this instance.
+     *
+     * @return the input sample rate of this instance
+     */
+    public int getInSampleRate()
+    {
+        return inSampleRate;
+    }
+
+    /**
+     * Gets the maximum number of samples per channel which
+     * {@link #process(byte[], int, int, byte[], int)} may output for a
+     * specific number of input samples per channel.
+     *
+     * @param inSampleCount the number of input samples per channel
+     * @return the maximum number of samples per channel which may be output
+     * for <tt>inSampleCount</tt> input samples per channel
+     */
+    public int getMaxOutSampleCount(int inSampleCount)
+    {
+        return (int) (((long) inSampleCount * phases) / m) + 2;
+    }
+
+    /**
+     * Gets the output sample rate of this instance.
+     *
+     * @return the output sample rate of this instance
+     */
+    public int getOutSampleRate()
+    {
+        return outSampleRate;
+    }
+
+    /**
+     * Resamples signed 16-bit little endian interleaved samples. The output
+     * is delayed by the filters so the number of output samples of a call is
+     * not necessarily proportional to the number of its input samples but it
+     * is on average and it is exactly so for inputs of constant size
+     * corresponding to a duration which is a multiple of the period of the
+     * ratio of the sample rates (e.g. 1 ms for 44.1 and 48 kHz).
+     *
+     * @param in the input samples
+     * @param inOffset the offset in bytes in <tt>in</tt> at which the input
+     * samples start
+     * @param inSampleCount the number of input samples per channel
+     * @param out the array to write the output samples to which is to have
+     * room for at least {@link #getMaxOutSampleCount(int)} samples per
+     * channel
+     * @param outOffset the offset in bytes in <tt>out</tt> at which the
+     * output samples are to be written
+     * @return the number of output samples per channel written into
+     * <tt>out</tt>
+     */
+    public int process(
+            byte[] in, int inOffset, int inSampleCount,
+            byte[] out, int outOffset)
+    {
+        int channels = this.channels;
+        int newLength = length + inSampleCount;
+
+        if (samples.length < newLength * channels)
+        {
+            float[] newSamples = new float[newLength * channels];
+
+            System.arraycopy(samples, 0, newSamples, 0, length * channels);
+            samples = newSamples;
+        }
+
+        float[] samples = this.samples;
+
+        for (int i = length * channels, end = newLength * channels,
+                    j = inOffset;
+                i < end;
+                i++, j += 2)
+        {
+            samples[i] = (in[j + 1] << 8) | (in[j] & 0xFF);
+        }
+        length = newLength;
+
+        float[] coefficients = this.coefficients;
+        int taps = this.taps;
+        int phases = this.phases;
+        int m = this.m;
+        int index = this.index;
+        int phase = this.phase;
+        int outSampleCount = 0;
+        int o = outOffset;
+
+        while (index + taps <= newLength)
+        {
+            int c = phase * taps;
+
+            for (int ch = 0; ch < channels; ch++)
+            {
+                float sum = 0;
+
+                if (channels == 1)
+                    sum = dot(samples, index, coefficients, c, taps);
+                else
+                {
+                    for (int j = 0, s = index * channels + ch;
+                            j < taps;
+                            j++, s += channels)
+                    {
+                        sum += samples[s] * coefficients[c + j];
+                    }
+                }
+
+                int s = Math.round(sum);
+
+                if (s > Short.MAX_VALUE)
+                    s = Short.MAX_VALUE;
+                else if (s < Short.MIN_VALUE)
+                    s = Short.MIN_VALUE;
+                out[o++] = (byte) s;
+                out[o++] = (byte) (s >> 8);
+            }
+            outSampleCount++;
+
+            phase += m;
+            if (phase >= phases)
+            {
+                index += phase / phases;
+                phase %= phases;
+            }
+        }
+
+        // Keep the input samples which are still required by the filters.
+        if (index != 0)
+        {
+            System.arraycopy(
+                    samples, index * channels,
+                    samples, 0,
+                    (newLength - index) * channels);
+            length = newLength - index;
+            index = 0;
+        }
+        this.index = index;
+        this.phase = phase;
+        return outSampleCount;
+    }
+
+    /**
+     * Discards the input samples kept by this instance so that the next call
+     * to {@link #process(byte[], int, int, byte[], int)} starts with
+     * silence (e.g. because the input has been discontinued).
+     */
+    public void reset()
+    {
+        /*
+         * Start with taps - 1 samples of silence so that the output is as
+         * long as the input (in time) from the first call on.
+         */
+        length = taps - 1;
+        for (int i = 0, end = length * channels; i < end; i++)
+            samples[i] = 0;
+        index = 0;
+        phase = 0;
+    }
+}
@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  * Calculates the reflection coefficients from the input vector
  * Input vector contains nb_subfr sub vectors of length L_sub + D
@@ -26,6 +28,7 @@ public class BurgModifiedFLP
      * @param nb_subfr number of subframes stacked in x.
      * @param WhiteNoiseFrac fraction added to zero-lag autocorrelation.
      * @param D order.
+     * @param scratch Scratch memory.
      * @return
      */
     static float SKP_Silk_burg_modified_FLP(     /* O    returns residual energy                                         */
@@ -35,18 +38,26 @@ public class BurgModifiedFLP
             final int   subfr_length,       /* I    input signal subframe length (including D preceeding samples)   */
             final int   nb_subfr,           /* I    number of subframes stacked in x                                */
             final float WhiteNoiseFrac,     /* I    fraction added to zero-lag autocorrelation                      */
-            final int   D                   /* I    order                                                           */
+            final int   D,                  /* I    order                                                           */
+            SKP_Silk_find_pred_coefs_scratch_FLP scratch /* Scratch memory                                          */
     )
     {
         int         k, n, s;
         double          C0, num, nrg_f, nrg_b, rc, Atmp, tmp1, tmp2;
         float []x_ptr;
         int x_ptr_offset;
-        double          C_first_row[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ],
-                        C_last_row[]  = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
-        double          CAf[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ],
-                        CAb[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
-        double          Af[] = new double [ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+        double          C_first_row[] = scratch.C_first_row,
+                        C_last_row[]  = scratch.C_last_row;
+        double          CAf[] = scratch.CAf,
+                        CAb[] = scratch.CAb;
+        double          Af[] = scratch.Af;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(C_first_row, 0);
+        Arrays.fill(C_last_row, 0);
+        Arrays.fill(CAf, 0);
+        Arrays.fill(CAb, 0);
+        Arrays.fill(Af, 0);
 
         assert( subfr_length * nb_subfr <= MAX_FRAME_SIZE );
         assert( nb_subfr <= MAX_NB_SUBFR );
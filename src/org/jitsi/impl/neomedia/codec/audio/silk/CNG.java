@@ -94,8 +94,8 @@ public class CNG
     {
         int   i, subfr;
         int tmp_32, Gain_Q26, max_Gain_Q16;
-        short[] LPC_buf = new short[Define.MAX_LPC_ORDER];
-        short[] CNG_sig = new short[Define.MAX_FRAME_LENGTH];
+        short[] LPC_buf = psDec.sDecScratch.LPC_buf;
+        short[] CNG_sig = psDec.sDecScratch.CNG_sig;
 
         SKP_Silk_CNG_struct  psCNG;
 
@@ -135,8 +135,12 @@ public class CNG
         /* Add CNG when packet is lost and / or when low speech activity */
         if( psDec.lossCnt != 0 ) {//|| psDec.vadFlag == NO_VOICE_ACTIVITY ) {
 
+            /* The scratch memory is reused so clear it as if it were allocated */
+            Arrays.fill(LPC_buf, (short)0);
+            Arrays.fill(CNG_sig, (short)0);
+
             /* Generate CNG excitation */
-            int[] psCNG_rand_seed_ptr = new int[1];
+            int[] psCNG_rand_seed_ptr = psDec.sDecScratch.rand_seed;
             psCNG_rand_seed_ptr[0] = psCNG.rand_seed;
 
              SKP_Silk_CNG_exc( CNG_sig, 0,  psCNG.CNG_exc_buf_Q10, 0,
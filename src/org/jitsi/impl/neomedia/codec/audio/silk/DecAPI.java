@@ -87,7 +87,8 @@ public class DecAPI
         prev_fs_kHz = psDec.fs_kHz;
 
         /* Call decoder for one frame */
-        int[] used_bytes_ptr =new int[1];
+        int[] used_bytes_ptr = psDec.sDecScratch.used_bytes;
+        used_bytes_ptr[0] = 0;
         ret += DecodeFrame.SKP_Silk_decode_frame( psDec, samplesOut, samplesOut_offset, nSamplesOut, inData, inData_offset,
                 nBytesIn, lostFlag, used_bytes_ptr );
         used_bytes = used_bytes_ptr[0];
@@ -128,7 +129,7 @@ public class DecAPI
 
         /* Resample if needed */
         if( psDec.fs_kHz * 1000 != decControl.API_sampleRate ) {
-            short[] samplesOut_tmp = new short[Define.MAX_API_FS_KHZ * Define.FRAME_LENGTH_MS];
+            short[] samplesOut_tmp = psDec.sDecScratch.samplesOut_tmp;
             Typedef.SKP_assert( psDec.fs_kHz <= Define.MAX_API_FS_KHZ );
 
             /* Copy to a tmp buffer as the resampling writes to samplesOut */
@@ -39,9 +39,10 @@ public class DecodeCore
 
         short[] pxq;
         int     pxq_offset;
-        short[] A_Q12_tmp = new short[Define.MAX_LPC_ORDER];
+        SKP_Silk_decoder_scratch scratch = psDec.sDecScratch;
+        short[] A_Q12_tmp = scratch.A_Q12_tmp;
 
-        short[]   sLTP = new short[ Define.MAX_FRAME_LENGTH ];
+        short[]   sLTP = scratch.sLTP;
 
         int   Gain_Q16;
         int[] pred_lag_ptr;
@@ -54,11 +55,17 @@ public class DecodeCore
         int   LPC_pred_Q10;
 
         int   rand_seed, offset_Q10, dither;
-        int[]   vec_Q10 = new int[ Define.MAX_FRAME_LENGTH / Define.NB_SUBFR ];
+        int[]   vec_Q10 = scratch.vec_Q10;
         int   inv_gain_Q16, inv_gain_Q32, gain_adj_Q16;
-        int[] FiltState = new int[ Define.MAX_LPC_ORDER ];
+        int[] FiltState = scratch.FiltState;
         int j;
 
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(A_Q12_tmp, (short)0);
+        Arrays.fill(sLTP, (short)0);
+        Arrays.fill(vec_Q10, 0);
+        Arrays.fill(FiltState, 0);
+
         Typedef.SKP_assert( psDec.prev_inv_gain_Q16 != 0 );
 
         offset_Q10 = TablesOther.SKP_Silk_Quantization_Offsets_Q10[ psDecCtrl.sigtype ][ psDecCtrl.QuantOffsetType ];
@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  * Decode frame
  *
@@ -40,9 +42,13 @@ public class DecodeFrame
         int[]                         decBytes           /* O    Used bytes to decode this frame             */
     )
     {
-        SKP_Silk_decoder_control sDecCtrl = new SKP_Silk_decoder_control();
+        SKP_Silk_decoder_control sDecCtrl = psDec.sDecScratch.sDecCtrl;
         int         L, fs_Khz_old, LPC_order_old, ret = 0;
-        int[]         Pulses = new int[ Define.MAX_FRAME_LENGTH ];
+        int[]         Pulses = psDec.sDecScratch.Pulses;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        sDecCtrl.memZero();
+        Arrays.fill(Pulses, 0);
 
 
         L = psDec.frame_length;
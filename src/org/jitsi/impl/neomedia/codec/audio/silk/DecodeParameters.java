@@ -31,12 +31,21 @@ public class DecodeParameters
         )
     {
         int   i, k, Ix, fs_kHz_dec, nBytesUsed;
-        int[] Ix_ptr = new int[1];
-        int[]   Ixs = new int[ Define.NB_SUBFR ];
-        int[]   GainsIndices = new int[ Define.NB_SUBFR ];
-        int[]   NLSFIndices = new int[ Define.NLSF_MSVQ_MAX_CB_STAGES ];
-        int[]   pNLSF_Q15 = new int[ Define.MAX_LPC_ORDER ];
-        int []  pNLSF0_Q15 = new int[ Define.MAX_LPC_ORDER ];
+        SKP_Silk_decoder_scratch scratch = psDec.sDecScratch;
+        int[] Ix_ptr = scratch.Ix;
+        int[]   Ixs = scratch.Ixs;
+        int[]   GainsIndices = scratch.GainsIndices;
+        int[]   NLSFIndices = scratch.NLSFIndices;
+        int[]   pNLSF_Q15 = scratch.pNLSF_Q15;
+        int []  pNLSF0_Q15 = scratch.pNLSF0_Q15;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Ix_ptr[0] = 0;
+        Arrays.fill(Ixs, 0);
+        Arrays.fill(GainsIndices, 0);
+        Arrays.fill(NLSFIndices, 0);
+        Arrays.fill(pNLSF_Q15, 0);
+        Arrays.fill(pNLSF0_Q15, 0);
 
         short[] cbk_ptr_Q14;
         SKP_Silk_NLSF_CB_struct psNLSF_CB = null;
@@ -94,7 +103,7 @@ public class DecodeParameters
         }
 
         /* Dequant Gains */
-        int LastGainIndex_ptr[] = new int[1];
+        int LastGainIndex_ptr[] = scratch.value;
         LastGainIndex_ptr[0] = psDec.LastGainIndex;
         GainQuant.SKP_Silk_gains_dequant( psDecCtrl.Gains_Q16, GainsIndices, LastGainIndex_ptr, psDec.nFramesDecoded );
         psDec.LastGainIndex = LastGainIndex_ptr[0];
@@ -116,7 +125,7 @@ public class DecodeParameters
         /************************************/
         /* Decode NLSF interpolation factor */
         /************************************/
-        int[] NLSFInterpCoef_Q2_ptr = new int[1];
+        int[] NLSFInterpCoef_Q2_ptr = scratch.value;
         NLSFInterpCoef_Q2_ptr[0] = psDecCtrl.NLSFInterpCoef_Q2;
 
         RangeCoder.SKP_Silk_range_decoder( NLSFInterpCoef_Q2_ptr, 0, psRC, TablesOther.SKP_Silk_NLSF_interpolation_factor_CDF, 0,
@@ -188,7 +197,7 @@ public class DecodeParameters
             /* Decode LTP gains */
             /********************/
             /* Decode PERIndex value */
-            int PERIndex_ptr[] = new int[1];
+            int PERIndex_ptr[] = scratch.value;
             PERIndex_ptr[0] =  psDecCtrl.PERIndex;
 
             RangeCoder.SKP_Silk_range_decoder( PERIndex_ptr, 0,  psRC, TablesLTP.SKP_Silk_LTP_per_index_CDF, 0,
@@ -229,12 +238,12 @@ public class DecodeParameters
         /*********************************************/
         /* Decode quantization indices of excitation */
         /*********************************************/
-        DecodePulses.SKP_Silk_decode_pulses( psRC, psDecCtrl, q, psDec.frame_length );
+        DecodePulses.SKP_Silk_decode_pulses( psRC, psDecCtrl, q, psDec.frame_length, scratch );
 
         /*********************************************/
         /* Decode VAD flag                           */
         /*********************************************/
-        int[] vadFlag_ptr = new int[1];
+        int[] vadFlag_ptr = scratch.value;
         vadFlag_ptr[0] = psDec.vadFlag;
         RangeCoder.SKP_Silk_range_decoder( vadFlag_ptr, 0, psRC, TablesOther.SKP_Silk_vadflag_CDF, 0, TablesOther.SKP_Silk_vadflag_offset );
         psDec.vadFlag = vadFlag_ptr[0];
@@ -242,7 +251,7 @@ public class DecodeParameters
         /**************************************/
         /* Decode Frame termination indicator */
         /**************************************/
-        int[] FrameTermination_ptr = new int[1];
+        int[] FrameTermination_ptr = scratch.value;
         FrameTermination_ptr[0] = psDec.FrameTermination;
         RangeCoder.SKP_Silk_range_decoder( FrameTermination_ptr, 0, psRC, TablesOther.SKP_Silk_FrameTermination_CDF, 0, TablesOther.SKP_Silk_FrameTermination_offset );
         psDec.FrameTermination = FrameTermination_ptr[0];
@@ -250,7 +259,8 @@ public class DecodeParameters
         /****************************************/
         /* get number of bytes used so far      */
         /****************************************/
-        int nBytesUsed_ptr[] = new int[1];
+        int nBytesUsed_ptr[] = scratch.value;
+        nBytesUsed_ptr[0] = 0;
         RangeCoder.SKP_Silk_range_coder_get_length( psRC, nBytesUsed_ptr );
         nBytesUsed = nBytesUsed_ptr[0];
 
@@ -22,17 +22,19 @@ public class DecodePulses
      * @param psDecCtrl Decoder control.
      * @param q Excitation signal.
      * @param frame_length Frame length (preliminary).
+     * @param scratch Scratch memory.
      */
     static void SKP_Silk_decode_pulses(
             SKP_Silk_range_coder_state      psRC,              /* I/O  Range coder state                           */
             SKP_Silk_decoder_control        psDecCtrl,         /* I/O  Decoder control                             */
             int                             q[],               /* O    Excitation signal                           */
-            final int                       frame_length       /* I    Frame length (preliminary)                  */
+            final int                       frame_length,      /* I    Frame length (preliminary)                  */
+            SKP_Silk_decoder_scratch        scratch            /*      Scratch memory                              */
     )
     {
         int   i, j, k, iter, abs_q, nLS, bit;
-        int[]   sum_pulses = new int[ Define.MAX_NB_SHELL_BLOCKS ];
-        int[]   nLshifts = new int[ Define.MAX_NB_SHELL_BLOCKS ];
+        int[]   sum_pulses = scratch.sum_pulses;
+        int[]   nLshifts = scratch.nLshifts;
         int[]   pulses_ptr;
         int     pulses_ptr_offset;
         int[]   cdf_ptr;
@@ -40,7 +42,7 @@ public class DecodePulses
         /*********************/
         /* Decode rate level */
         /*********************/
-        int RateLevelIndex_ptr[] = new int[1];
+        int RateLevelIndex_ptr[] = scratch.pulses_value;
         RateLevelIndex_ptr[0] = psDecCtrl.RateLevelIndex;
         RangeCoder.SKP_Silk_range_decoder( RateLevelIndex_ptr, 0, psRC,
                 TablesPulsesPerBlock.SKP_Silk_rate_levels_CDF[ psDecCtrl.sigtype ], 0, TablesPulsesPerBlock.SKP_Silk_rate_levels_CDF_offset );
@@ -91,7 +93,8 @@ public class DecodePulses
                     abs_q = pulses_ptr[pulses_ptr_offset + k];
                     for( j = 0; j < nLS; j++ ) {
                         abs_q = abs_q << 1;
-                        int bit_ptr[] = new int[1];
+                        int bit_ptr[] = scratch.pulses_value;
+                        bit_ptr[0] = 0;
                         RangeCoder.SKP_Silk_range_decoder( bit_ptr, 0, psRC, TablesOther.SKP_Silk_lsb_CDF, 0, 1 );
                         bit = bit_ptr[0];
                         abs_q += bit;
@@ -0,0 +1,194 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.codec.audio.silk;
+
+import java.util.*;
+
+/**
+ * Encoder control.
+ *
+ * @author Jing Dai
+ * @author Dingxin Xu
+ */
+class SKP_Silk_encoder_control
+{
+    /* Quantization indices */
+    int     lagIndex;
+    int     contourIndex;
+    int     PERIndex;
+    int[]   LTPIndex = new int[ Define.NB_SUBFR ];
+    int[]   NLSFIndices = new int[ Define.NLSF_MSVQ_MAX_CB_STAGES ];  /* NLSF path of quantized LSF vector   */
+    int     NLSFInterpCoef_Q2;
+    int[]   GainsIndices = new int[ Define.NB_SUBFR ];
+    int     Seed;
+    int     LTP_scaleIndex;
+    int     RateLevelIndex;
+    int     QuantOffsetType;
+    int     sigtype;
+
+    /* Prediction and coding parameters */
+    int[]   pitchL = new int[ Define.NB_SUBFR ];
+
+    int     LBRR_usage;                     /* Low bitrate redundancy usage                             */
+
+    /**
+     * set all fields of the instance to zero
+     */
+    public void memZero()
+    {
+        Arrays.fill(this.GainsIndices, 0);
+        Arrays.fill(this.LTPIndex, 0);
+        Arrays.fill(this.NLSFIndices, 0);
+        Arrays.fill(this.pitchL, 0);
+
+        this.LBRR_usage = 0;
+        this.LTP_scaleIndex = 0;
+        this.NLSFInterpCoef_Q2 = 0;
+        this.PERIndex = 0;
+        this.QuantOffsetType = 0;
+        this.RateLevelIndex = 0;
+        this.Seed = 0;
+        this.contourIndex = 0;
+        this.lagIndex = 0;
+        this.sigtype = 0;
+    }
+}
+
+/**
+ * Class for Packet Loss Concealment.
+ *
+ * @author Jing Dai
+ * @author Dingxin Xu
+ */
+ class SKP_Silk_PLC_struct
+ {
+    int       pitchL_Q8;                      /* Pitch lag to use for voiced concealment                  */
+    short[]   LTPCoef_Q14 = new short[ Define.LTP_ORDER ];       /* LTP coeficients to use for voiced concealment            */
+    short[]   prevLPC_Q12 = new short[ Define.MAX_LPC_ORDER ];
+    int         last_frame_lost;                /* Was previous frame lost                                  */
+    int       rand_seed;                      /* Seed for unvoiced signal generation                      */
+    short     randScale_Q14;                  /* Scaling of unvoiced random signal                        */
+    int       conc_energy;
+    int       conc_energy_shift;
+    short     prevLTP_scale_Q14;
+    int[]     prevGain_Q16 = new int[ Define.NB_SUBFR ];
+    int       fs_kHz;
+}
+
+ /**
+  * Class for CNG.
+  *
+  * @author Jing Dai
+  * @author Dingxin Xu
+  */
+ class SKP_Silk_CNG_struct
+ {
+     int[]   CNG_exc_buf_Q10 = new int[ Define.MAX_FRAME_LENGTH ];
+     int[]   CNG_smth_NLSF_Q15 = new int[ Define.MAX_LPC_ORDER ];
+     int[]   CNG_synth_state = new int[ Define.MAX_LPC_ORDER ];
+     int     CNG_smth_Gain_Q16;
+     int     rand_seed;
+     int     fs_kHz;
+ }
+
+ /**
+  * Deocder state
+  *
+  * @author Jing Dai
+  * @author Dingxin Xu
+  */
+ class SKP_Silk_decoder_state
+ {
+    SKP_Silk_range_coder_state  sRC = new  SKP_Silk_range_coder_state();                            /* Range coder state */
+    int       prev_inv_gain_Q16;
+    int[]     sLTP_Q16 = new int[ 2 * Define.MAX_FRAME_LENGTH ];
+    int[]     sLPC_Q14 = new int[ Define.MAX_FRAME_LENGTH / Define.NB_SUBFR + Define.MAX_LPC_ORDER ];
+    int[]     exc_Q10 = new int [ Define.MAX_FRAME_LENGTH ];
+    int[]     res_Q10 = new int [ Define.MAX_FRAME_LENGTH ];
+    short[]   outBuf = new short[ 2 * Define.MAX_FRAME_LENGTH ];             /* Buffer for output signal                                             */
+    int       sLTP_buf_idx;                               /* LTP_buf_index                                                        */
+    int       lagPrev;                                    /* Previous Lag                                                         */
+    int       LastGainIndex;                              /* Previous gain index                                                  */
+    int       LastGainIndex_EnhLayer;                     /* Previous gain index                                                  */
+    int       typeOffsetPrev;                             /* Previous signal type and quantization offset                         */
+    int[]     HPState = new int[ Define.DEC_HP_ORDER ];                    /* HP filter state                                                      */
+    short[]   HP_A;                                        /* HP filter AR coefficients                                            */
+    short[]   HP_B;                                        /* HP filter MA coefficients                                            */
+    int       fs_kHz;                                     /* Sampling frequency in kHz                                            */
+    int       prev_API_sampleRate;                        /* Previous API sample frequency (Hz)                                   */
+    int         frame_length;                               /* Frame length (samples)                                               */
+    int         subfr_length;                               /* Subframe length (samples)                                            */
+    int         LPC_order;                                  /* LPC order                                                            */
+    int[]       prevNLSF_Q15 = new int[ Define.MAX_LPC_ORDER ];              /* Used to interpolate LSFs                                             */
+    int         first_frame_after_reset;                    /* Flag for deactivating NLSF interp. and fluc. reduction after resets  */
+
+    /* For buffering payload in case of more frames per packet */
+    int         nBytesLeft;
+    int         nFramesDecoded;
+    int         nFramesInPacket;
+    int         moreInternalDecoderFrames;
+    int         FrameTermination;
+
+    SKP_Silk_resampler_state_struct  resampler_state = new SKP_Silk_resampler_state_struct();
+
+    SKP_Silk_NLSF_CB_struct[]  psNLSF_CB= new SKP_Silk_NLSF_CB_struct[ 2 ];      /* Pointers to voiced/unvoiced NLSF codebooks */
+
+    /* Parameters used to investigate if inband FEC is used */
+    int         vadFlag;
+    int         no_FEC_counter;                             /* Counts number of frames wo inband FEC                                */
+    int         inband_FEC_offset;                          /* 0: no FEC, 1: FEC with 1 packet offset, 2: FEC w 2 packets offset    */
+
+    SKP_Silk_CNG_struct sCNG = new SKP_Silk_CNG_struct();
+
+    /* Stuff used for PLC */
+    SKP_Silk_PLC_struct sPLC = new SKP_Silk_PLC_struct();
+    int         lossCnt;
+    int         prev_sigtype;                               /* Previous sigtype                                                     */
+
+    /* Scratch memory reused for every frame */
+    SKP_Silk_decoder_scratch sDecScratch = new SKP_Silk_decoder_scratch();
+}
+
+/**
+ * Scratch memory of the decoder which is reused for every frame rather than
+ * allocated.
+ */
+class DecoderScratch
+{
+    /* SKP_Silk_SDK_Decode */
+    int[]     used_bytes = new int[ 1 ];
+    short[]   samplesOut_tmp = new short[ Define.MAX_API_FS_KHZ * Define.FRAME_LENGTH_MS ];
+
+    /* SKP_Silk_decode_frame */
+    SKP_Silk_decoder_control sDecCtrl = new SKP_Silk_decoder_control();
+    int[]     Pulses = new int[ Define.MAX_FRAME_LENGTH ];
+
+    /* SKP_Silk_decode_parameters */
+    int[]     Ix = new int[ 1 ];
+    int[]     Ixs = new int[ Define.NB_SUBFR ];
+    int[]     GainsIndices = new int[ Define.NB_SUBFR ];
+    int[]     NLSFIndices = new int[ Define.NLSF_MSVQ_MAX_CB_STAGES ];
+    int[]     pNLSF_Q15 = new int[ Define.MAX_LPC_ORDER ];
+    int[]     pNLSF0_Q15 = new int[ Define.MAX_LPC_ORDER ];
+    int[]     value = new int[ 1 ];
+
+    /* SKP_Silk_decode_pulses */
+    int[]     sum_pulses = new int[ Define.MAX_NB_SHELL_BLOCKS ];
+    int[]     nLshifts = new int[ Define.MAX_NB_SHELL_BLOCKS ];
+    int[]     pulses_value = new int[ 1 ];
+
+    /* SKP_Silk_decode_core */
+    short[]   A_Q12_tmp = new short[ Define.MAX_LPC_ORDER ];
+    short[]   sLTP = new short[ Define.MAX_FRAME_LENGTH ];
+    int[]     vec_Q10 = new int[ Define.MAX_FRAME_LENGTH / Define.NB_SUBFR ];
+    int[]     FiltState = new int[ Define.MAX_LPC_ORDER ];
+
+    /* SKP_Silk_CNG */
+    short[]   LPC_buf = new short[ Define.MAX_LPC_ORDER ];
+    short[]   CNG_sig = new short[ Define.MAX_FRAME_LENGTH ];
+    int[]     rand_seed = new int[ 1 ];
+}
@@ -40,22 +40,33 @@ public class EncodeFrameFLP
               int                       pIn_offset
     )
     {
-        SKP_Silk_encoder_control_FLP sEncCtrl = new SKP_Silk_encoder_control_FLP();
-        int     k, nBytes[] = new int[1], ret = 0;
+        SKP_Silk_encode_frame_scratch_FLP scratch = psEnc.sFrameScratch;
+        SKP_Silk_encoder_control_FLP sEncCtrl = scratch.sEncCtrl;
+        int     k, nBytes[] = scratch.nBytes, ret = 0;
         float[]   x_frame, res_pitch_frame;
         int x_frame_offset, res_pitch_frame_offset;
-        short[]   pIn_HP = new short[    Define.MAX_FRAME_LENGTH ];
-        short[]   pIn_HP_LP = new short[ Define.MAX_FRAME_LENGTH ];
-        float[]   xfw = new float[       Define.MAX_FRAME_LENGTH ];
-        float[]   res_pitch = new float[ 2 * Define.MAX_FRAME_LENGTH + Define.LA_PITCH_MAX ];
+        short[]   pIn_HP = scratch.pIn_HP;
+        short[]   pIn_HP_LP = scratch.pIn_HP_LP;
+        float[]   xfw = scratch.xfw;
+        float[]   res_pitch = scratch.res_pitch;
         int     LBRR_idx, frame_terminator;
 
         /* Low bitrate redundancy parameters */
-        byte[] LBRRpayload = new byte[Define.MAX_ARITHM_BYTES];
-        short[]   nBytesLBRR = new short[1];
+        byte[] LBRRpayload = scratch.LBRRpayload;
+        short[]   nBytesLBRR = scratch.nBytesLBRR;
 
         int[] FrameTermination_CDF;
 
+        /* The scratch memory is reused so clear it as if it were allocated */
+        sEncCtrl.memZero();
+        nBytes[0] = 0;
+        Arrays.fill(pIn_HP, (short)0);
+        Arrays.fill(pIn_HP_LP, (short)0);
+        Arrays.fill(xfw, 0);
+        Arrays.fill(res_pitch, 0);
+        Arrays.fill(LBRRpayload, (byte)0);
+        nBytesLBRR[0] = 0;
+
 
         sEncCtrl.sCmn.Seed = psEnc.sCmn.frameCounter++ & 3;
         /**************************************************************/
@@ -573,10 +584,11 @@ public class EncodeFrameFLP
               float                     xfw[]               /* I    Input signal                            */
     )
     {
-        int[]   Gains_Q16 = new int[ Define.NB_SUBFR ];
-        int     k, TempGainsIndices[] = new int[ Define.NB_SUBFR ], frame_terminator;
-        int     nBytes[] = new int[1], nFramesInPayloadBuf;
-        float   TempGains[] = new float[ Define.NB_SUBFR ];
+        SKP_Silk_encode_frame_scratch_FLP scratch = psEnc.sFrameScratch;
+        int[]   Gains_Q16 = scratch.Gains_Q16;
+        int     k, TempGainsIndices[] = scratch.TempGainsIndices, frame_terminator;
+        int     nBytes[] = scratch.LBRR_nBytes, nFramesInPayloadBuf;
+        float   TempGains[] = scratch.TempGains;
         int     typeOffset, LTP_scaleIndex, Rate_only_parameters = 0;
         /* Control use of inband LBRR */
         ControlCodecFLP.SKP_Silk_LBRR_ctrl_FLP( psEnc, psEncCtrl.sCmn );
@@ -614,7 +626,7 @@ public class EncodeFrameFLP
                     psEncCtrl.sCmn.GainsIndices[ 0 ]  = SigProcFIX.SKP_LIMIT( psEncCtrl.sCmn.GainsIndices[ 0 ], 0, Define.N_LEVELS_QGAIN - 1 );
                 }
                 /* Decode to get Gains in sync with decoder */
-                int LBRRprevLastGainIndex_ptr[] = new int[1];
+                int LBRRprevLastGainIndex_ptr[] = scratch.LBRRprevLastGainIndex;
                 LBRRprevLastGainIndex_ptr[0] = psEnc.sCmn.LBRRprevLastGainIndex;
                 GainQuant.SKP_Silk_gains_dequant( Gains_Q16, psEncCtrl.sCmn.GainsIndices,
                     LBRRprevLastGainIndex_ptr, psEnc.sCmn.nFramesInPayloadBuf );
@@ -142,7 +142,7 @@ public class EncodeParameters
         /*********************************************/
         /* Encode quantization indices of excitation */
         /*********************************************/
-        EncodePulses.SKP_Silk_encode_pulses( psRC, psEncCtrlC.sigtype, psEncCtrlC.QuantOffsetType, q, psEncC.frame_length );
+        EncodePulses.SKP_Silk_encode_pulses( psRC, psEncCtrlC.sigtype, psEncCtrlC.QuantOffsetType, q, psEncC.frame_length, psEncC.sPulsesScratch );
 
 
         /*********************************************/
@@ -49,21 +49,23 @@ public class EncodePulses
      * @param QuantOffsetType QuantOffsetType
      * @param q quantization
      * @param frame_length Frame length
+     * @param scratch Scratch memory
      */
     static void SKP_Silk_encode_pulses(
             SKP_Silk_range_coder_state  psRC,           /* I/O  Range coder state               */
             final int                   sigtype,        /* I    Sigtype                         */
             final int                   QuantOffsetType,/* I    QuantOffsetType                 */
             final byte                  q[],            /* I    quantization indices            */
-            final int                   frame_length    /* I    Frame length                    */
+            final int                   frame_length,   /* I    Frame length                    */
+            SKP_Silk_encode_pulses_scratch scratch      /*      Scratch memory                  */
     )
     {
         int   i, k, j, iter, bit, nLS, scale_down, RateLevelIndex = 0;
         int abs_q, minSumBits_Q6, sumBits_Q6;
-        int[]   abs_pulses = new int[ Define.MAX_FRAME_LENGTH ];
-        int[]   sum_pulses = new int[ Define.MAX_NB_SHELL_BLOCKS ];
-        int[]   nRshifts   = new int[ Define.MAX_NB_SHELL_BLOCKS ];
-        int[]   pulses_comb = new int[ 8 ];
+        int[]   abs_pulses = scratch.abs_pulses;
+        int[]   sum_pulses = scratch.sum_pulses;
+        int[]   nRshifts   = scratch.nRshifts;
+        int[]   pulses_comb = scratch.pulses_comb;
         int   []abs_pulses_ptr;
         int abs_pulses_ptr_offset;
         byte []pulses_ptr;
@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  *
  * @author Dingxin Xu
@@ -21,6 +23,7 @@ public class FindLPCFLP
      * @param LPC_order LPC order.
      * @param x Input signal.
      * @param subfr_length Subframe length incl preceeding samples.
+     * @param scratch Scratch memory.
      */
     static void SKP_Silk_find_LPC_FLP(
               float                 NLSF[],             /* O    NLSFs                                   */
@@ -29,30 +32,37 @@ public class FindLPCFLP
         final int                   useInterpNLSFs,     /* I    Flag                                    */
         final int                   LPC_order,          /* I    LPC order                               */
         final float                 x[],                /* I    Input signal                            */
-        final int                   subfr_length        /* I    Subframe length incl preceeding samples */
+        final int                   subfr_length,       /* I    Subframe length incl preceeding samples */
+        SKP_Silk_find_pred_coefs_scratch_FLP scratch    /*      Scratch memory                          */
     )
     {
         int     k;
-        float[]   a = new float[ Define.MAX_LPC_ORDER ];
+        float[]   a = scratch.a;
 
         /* Used only for NLSF interpolation */
         double      res_nrg, res_nrg_2nd, res_nrg_interp;
-        float   a_tmp[] = new float[ Define.MAX_LPC_ORDER ], NLSF0[] = new float[ Define.MAX_LPC_ORDER ];
-        float   LPC_res[] = new float[ ( Define.MAX_FRAME_LENGTH + Define.NB_SUBFR * Define.MAX_LPC_ORDER ) / 2 ];
+        float   a_tmp[] = scratch.a_tmp, NLSF0[] = scratch.NLSF0;
+        float   LPC_res[] = scratch.LPC_res;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(a, 0);
+        Arrays.fill(a_tmp, 0);
+        Arrays.fill(NLSF0, 0);
+        Arrays.fill(LPC_res, 0);
 
         /* Default: No interpolation */
         interpIndex[0] = 4;
 
         /* Burg AR analysis for the full frame */
         res_nrg = BurgModifiedFLP.SKP_Silk_burg_modified_FLP( a, x, 0, subfr_length, Define.NB_SUBFR,
-                DefineFLP.FIND_LPC_COND_FAC, LPC_order );
+                DefineFLP.FIND_LPC_COND_FAC, LPC_order, scratch );
 
         if( useInterpNLSFs == 1 ) {
 
             /* Optimal solution for last 10 ms; subtract residual energy here, as that's easier than        */
             /* adding it to the residual energy of the first 10 ms in each iteration of the search below    */
             res_nrg -= BurgModifiedFLP.SKP_Silk_burg_modified_FLP( a_tmp, x, ( Define.NB_SUBFR / 2 ) * subfr_length,
-                subfr_length, Define.NB_SUBFR / 2, DefineFLP.FIND_LPC_COND_FAC, LPC_order );
+                subfr_length, Define.NB_SUBFR / 2, DefineFLP.FIND_LPC_COND_FAC, LPC_order, scratch );
 
             /* Convert to NLSFs */
             WrappersFLP.SKP_Silk_A2NLSF_FLP( NLSF, a_tmp, LPC_order );
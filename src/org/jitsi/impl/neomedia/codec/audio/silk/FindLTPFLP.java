@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  *
  * @author Jing Dai
@@ -25,6 +27,7 @@ public class FindLTPFLP
      * @param Wght Weights.
      * @param subfr_length Subframe length.
      * @param mem_offset Number of samples in LTP memory.
+     * @param scratch Scratch memory.
      */
     static void SKP_Silk_find_LTP_FLP(
         float b[],                      /* O    LTP coefs                               */
@@ -36,18 +39,27 @@ public class FindLTPFLP
         final int   lag[   ],           /* I    LTP lags                                */
         final float Wght[  ],           /* I    Weights                                 */
         final int   subfr_length,       /* I    Subframe length                         */
-        final int   mem_offset          /* I    Number of samples in LTP memory         */
+        final int   mem_offset,         /* I    Number of samples in LTP memory         */
+        SKP_Silk_find_pred_coefs_scratch_FLP scratch /* Scratch memory                  */
     )
     {
         int i,k;
         float b_ptr[], temp, WLTP_ptr[];
         float LPC_res_nrg, LPC_LTP_res_nrg;
-        float d[] = new float[Define.NB_SUBFR], m, g, delta_b[]=new float[Define.LTP_ORDER];
-        float w[] = new float[Define.NB_SUBFR], nrg[] = new float[Define.NB_SUBFR], regu;
-        float Rr[] = new float[Define.LTP_ORDER], rr[] = new float[Define.NB_SUBFR];
+        float d[] = scratch.d, m, g, delta_b[] = scratch.delta_b;
+        float w[] = scratch.w, nrg[] = scratch.nrg, regu;
+        float Rr[] = scratch.Rr, rr[] = scratch.rr;
         float r_ptr[], lag_ptr[];
         int r_ptr_offset, lag_ptr_offset;
 
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(d, 0);
+        Arrays.fill(delta_b, 0);
+        Arrays.fill(w, 0);
+        Arrays.fill(nrg, 0);
+        Arrays.fill(Rr, 0);
+        Arrays.fill(rr, 0);
+
         b_ptr    = b;
         int b_ptr_offset = 0;
         WLTP_ptr = WLTP;
@@ -72,7 +84,7 @@ public class FindLTPFLP
             regu = DefineFLP.LTP_DAMPING * ( rr[ k ] + 1.0f );
 
             RegularizeCorrelationsFLP.SKP_Silk_regularize_correlations_FLP(WLTP_ptr, WLTP_ptr_offset, rr, k, regu, Define.LTP_ORDER);
-            SolveLSFLP.SKP_Silk_solve_LDL_FLP( WLTP_ptr, WLTP_ptr_offset, Define.LTP_ORDER, Rr, b_ptr, b_ptr_offset );
+            SolveLSFLP.SKP_Silk_solve_LDL_FLP( WLTP_ptr, WLTP_ptr_offset, Define.LTP_ORDER, Rr, b_ptr, b_ptr_offset, scratch );
 
             /* Calculate residual energy */
             nrg[ k ] = ResidualEnergyFLP.SKP_Silk_residual_energy_covar_FLP( b_ptr, b_ptr_offset,
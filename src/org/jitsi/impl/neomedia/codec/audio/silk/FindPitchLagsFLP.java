@@ -33,10 +33,11 @@ public class FindPitchLagsFLP
 //            const SKP_float *x_buf_ptr, *x_buf;
             float[] x_buf_ptr, x_buf;
             int x_buf_ptr_offset, x_buf_offset;
-            float[] auto_corr = new float[ Define.FIND_PITCH_LPC_ORDER_MAX + 1 ];
-            float[] A = new float[         Define.FIND_PITCH_LPC_ORDER_MAX ];
-            float[] refl_coef = new float[ Define.FIND_PITCH_LPC_ORDER_MAX ];
-            float[] Wsig = new float[      Define.FIND_PITCH_LPC_WIN_MAX ];
+            SKP_Silk_pitch_analysis_scratch_FLP scratch = psEnc.sPitchScratch;
+            float[] auto_corr = scratch.auto_corr;
+            float[] A = scratch.A;
+            float[] refl_coef = scratch.refl_coef;
+            float[] Wsig = scratch.Wsig;
             float thrhld;
             float[] Wsig_ptr;
             int Wsig_ptr_offset;
@@ -113,12 +114,15 @@ public class FindPitchLagsFLP
             /*****************************************/
             /* Call Pitch estimator */
             /*****************************************/
-            int[] lagIndex_djinnaddress = {psEncCtrl.sCmn.lagIndex};
-            int[] contourIndex_djinnaddress = {psEncCtrl.sCmn.contourIndex};
-            float[] LTPCorr_djinnaddress = {psEnc.LTPCorr};
+            int[] lagIndex_djinnaddress = scratch.lagIndex;
+            int[] contourIndex_djinnaddress = scratch.contourIndex;
+            float[] LTPCorr_djinnaddress = scratch.LTPCorr;
+            lagIndex_djinnaddress[0] = psEncCtrl.sCmn.lagIndex;
+            contourIndex_djinnaddress[0] = psEncCtrl.sCmn.contourIndex;
+            LTPCorr_djinnaddress[0] = psEnc.LTPCorr;
             psEncCtrl.sCmn.sigtype = PitchAnalysisCoreFLP.SKP_Silk_pitch_analysis_core_FLP( res, psEncCtrl.sCmn.pitchL, lagIndex_djinnaddress,
                     contourIndex_djinnaddress, LTPCorr_djinnaddress, psEnc.sCmn.prevLag, psEnc.pitchEstimationThreshold,
-                thrhld, psEnc.sCmn.fs_kHz, psEnc.sCmn.pitchEstimationComplexity );
+                thrhld, psEnc.sCmn.fs_kHz, psEnc.sCmn.pitchEstimationComplexity, scratch );
             psEncCtrl.sCmn.lagIndex = lagIndex_djinnaddress[0];
             psEncCtrl.sCmn.contourIndex = contourIndex_djinnaddress[0];
             psEnc.LTPCorr = LTPCorr_djinnaddress[0];
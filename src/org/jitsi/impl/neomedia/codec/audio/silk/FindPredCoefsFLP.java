@@ -33,15 +33,23 @@ public class FindPredCoefsFLP
             float                           res_pitch[]     /* I    Residual from pitch analysis    */
     )
     {
+        SKP_Silk_find_pred_coefs_scratch_FLP scratch = psEnc.sPredCoefsScratch;
         int         i;
-        float[]       WLTP = new float[ Define.NB_SUBFR * Define.LTP_ORDER * Define.LTP_ORDER ];
-        float[]       invGains = new float[ Define.NB_SUBFR ], Wght = new float[ Define.NB_SUBFR ];
-        float[]       NLSF = new float[ Define.MAX_LPC_ORDER ];
+        float[]       WLTP = scratch.WLTP;
+        float[]       invGains = scratch.invGains, Wght = scratch.Wght;
+        float[]       NLSF = scratch.NLSF;
         float[] x_ptr;
         int x_ptr_offset;
-        float[]       x_pre_ptr, LPC_in_pre = new float[ Define.NB_SUBFR * Define.MAX_LPC_ORDER + Define.MAX_FRAME_LENGTH ];
+        float[]       x_pre_ptr, LPC_in_pre = scratch.LPC_in_pre;
         int x_pre_ptr_offset;
 
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(WLTP, 0);
+        Arrays.fill(invGains, 0);
+        Arrays.fill(Wght, 0);
+        Arrays.fill(NLSF, 0);
+        Arrays.fill(LPC_in_pre, 0);
+
         /* Weighting for weighted least squares */
         for( i = 0; i < Define.NB_SUBFR; i++ )
         {
@@ -58,16 +66,16 @@ public class FindPredCoefsFLP
             assert( psEnc.sCmn.frame_length - psEnc.sCmn.predictLPCOrder >= psEncCtrl.sCmn.pitchL[ 0 ] + Define.LTP_ORDER / 2 );
 
             /* LTP analysis */
-            float[] LTPredCodGain_ptr = new float[1];
+            float[] LTPredCodGain_ptr = scratch.LTPredCodGain;
             LTPredCodGain_ptr[0] = psEncCtrl.LTPredCodGain;
             FindLTPFLP.SKP_Silk_find_LTP_FLP( psEncCtrl.LTPCoef, WLTP, LTPredCodGain_ptr, res_pitch,
                 res_pitch,( psEnc.sCmn.frame_length >> 1 ), psEncCtrl.sCmn.pitchL, Wght,
-                psEnc.sCmn.subfr_length, psEnc.sCmn.frame_length );
+                psEnc.sCmn.subfr_length, psEnc.sCmn.frame_length, scratch );
             psEncCtrl.LTPredCodGain = LTPredCodGain_ptr[0];
 
 
             /* Quantize LTP gain parameters */
-            int[] PERIndex_ptr = new int[1];
+            int[] PERIndex_ptr = scratch.PERIndex;
             PERIndex_ptr[0] = psEncCtrl.sCmn.PERIndex;
             QuantLTPGainsFLP.SKP_Silk_quant_LTP_gains_FLP( psEncCtrl.LTPCoef, psEncCtrl.sCmn.LTPIndex, PERIndex_ptr,
                 WLTP, psEnc.mu_LTP, psEnc.sCmn.LTPQuantLowComplexity );
@@ -102,11 +110,11 @@ public class FindPredCoefsFLP
         }
 
         /* LPC_in_pre contains the LTP-filtered input for voiced, and the unfiltered input for unvoiced */
-        int[] NLSFInterpCoef_Q2_ptr = new int[1];
+        int[] NLSFInterpCoef_Q2_ptr = scratch.NLSFInterpCoef_Q2;
         NLSFInterpCoef_Q2_ptr[0] = psEncCtrl.sCmn.NLSFInterpCoef_Q2;
         FindLPCFLP.SKP_Silk_find_LPC_FLP( NLSF, NLSFInterpCoef_Q2_ptr, psEnc.sPred.prev_NLSFq,
             psEnc.sCmn.useInterpolatedNLSFs * ( 1 - psEnc.sCmn.first_frame_after_reset ), psEnc.sCmn.predictLPCOrder,
-            LPC_in_pre, psEnc.sCmn.subfr_length + psEnc.sCmn.predictLPCOrder );
+            LPC_in_pre, psEnc.sCmn.subfr_length + psEnc.sCmn.predictLPCOrder, scratch );
         psEncCtrl.sCmn.NLSFInterpCoef_Q2 = NLSFInterpCoef_Q2_ptr[0];
 
 
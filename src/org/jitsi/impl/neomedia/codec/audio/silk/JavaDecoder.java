@@ -222,6 +222,21 @@ public class JavaDecoder
          * so having the same sequence number as on the previous pass is fine.
          */
         int lostSeqNoCount = calculateLostSeqNoCount(lastSeqNo, seqNo);
+        /*
+         * The jitter buffer may explicitly request the concealment of the lost
+         * packet seqNo with the data of the packet which follows it (FEC) or
+         * with no data at all (PLC).
+         */
+        int concealFlags
+            = inBuffer.getFlags() & (BUFFER_FLAG_FEC | BUFFER_FLAG_PLC);
+
+        if (concealFlags != 0)
+        {
+            lostSeqNoCount = 1;
+            if ((concealFlags & BUFFER_FLAG_FEC) == 0)
+                inLength = 0;
+        }
+
         boolean decodeFEC = (lostSeqNoCount != 0);
 
         if ((inBuffer.getFlags() & Buffer.FLAG_SKIP_FEC) != 0)
@@ -240,10 +255,13 @@ public class JavaDecoder
         if (decodeFEC) /* Decode with FEC. */
         {
             lbrrBytes[0] = 0;
-            DecAPI.SKP_Silk_SDK_search_for_LBRR(
-                    in, inOffset, (short) inLength,
-                    /* lost_offset */ lostSeqNoCount,
-                    lbrrData, 0, lbrrBytes);
+            if (inLength > 0)
+            {
+                DecAPI.SKP_Silk_SDK_search_for_LBRR(
+                        in, inOffset, (short) inLength,
+                        /* lost_offset */ lostSeqNoCount,
+                        lbrrData, 0, lbrrBytes);
+            }
             if (logger.isTraceEnabled())
             {
                 logger.trace(
@@ -278,7 +296,10 @@ public class JavaDecoder
 
                 // We have decoded the expected sequence number from FEC data.
                 lastSeqNo = seqNo;
-                return INPUT_BUFFER_NOT_CONSUMED;
+                return
+                    (concealFlags != 0)
+                        ? BUFFER_PROCESSED_OK
+                        : INPUT_BUFFER_NOT_CONSUMED;
             }
             else
             {
@@ -337,7 +358,14 @@ public class JavaDecoder
                     outBuffer.setFlags(outBuffer.getFlags() & ~BUFFER_FLAG_FEC);
                     outBuffer.setFlags(outBuffer.getFlags() | BUFFER_FLAG_PLC);
 
-                    processed = INPUT_BUFFER_NOT_CONSUMED;
+                    /*
+                     * Unless the concealment has been explicitly requested,
+                     * the packet which has been received is yet to be decoded.
+                     */
+                    processed
+                        = (concealFlags != 0)
+                            ? BUFFER_PROCESSED_OK
+                            : INPUT_BUFFER_NOT_CONSUMED;
                     // We have decoded the expected sequence number with PLC.
                     lastSeqNo = seqNo;
                 }
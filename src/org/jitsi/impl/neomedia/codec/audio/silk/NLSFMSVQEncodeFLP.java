@@ -27,6 +27,7 @@ public class NLSFMSVQEncodeFLP
      * @param NLSF_MSVQ_Survivors  Max survivors from each stage
      * @param LPC_order LPC order
      * @param deactivate_fluc_red Deactivate fluctuation reduction
+     * @param scratch Scratch memory
      */
     static void SKP_Silk_NLSF_MSVQ_encode_FLP(
               int                   []NLSFIndices,       /* O    Codebook path vector [ CB_STAGES ]      */
@@ -38,42 +39,34 @@ public class NLSFMSVQEncodeFLP
         final float                 NLSF_mu_fluc_red,   /* I    Fluctuation reduction error weight      */
         final int                   NLSF_MSVQ_Survivors,/* I    Max survivors from each stage           */
         final int                   LPC_order,          /* I    LPC order                               */
-        final int                   deactivate_fluc_red /* I    Deactivate fluctuation reduction        */
+        final int                   deactivate_fluc_red,/* I    Deactivate fluctuation reduction        */
+        SKP_Silk_NLSF_MSVQ_scratch_FLP scratch          /*      Scratch memory                          */
     )
     {
         int     i, s, k, cur_survivors, prev_survivors, input_index, cb_index, bestIndex;
         float   se, wsse, rateDistThreshold, bestRateDist;
-        float   pNLSF_in[] = new float[ Define.MAX_LPC_ORDER ];
-
-        float   pRateDist[];
-        float   pRate[];
-        float   pRate_new[];
-        int     pTempIndices[];
-        int     pPath[];
-        int     pPath_new[];
-        float   pRes[];
-        float   pRes_new[];
-        if(Define.LOW_COMPLEXITY_ONLY == 1)
-        {
-            pRateDist =    new float[Define.NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED_LC_MODE()];
-            pRate =        new float[Define.MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pRate_new =    new float[Define.MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pTempIndices = new int[Define.MAX_NLSF_MSVQ_SURVIVORS_LC_MODE ];
-            pPath =        new int[Define.MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * Define.NLSF_MSVQ_MAX_CB_STAGES];
-            pPath_new =    new int[Define.MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * Define.NLSF_MSVQ_MAX_CB_STAGES];
-            pRes =         new float[Define.MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * Define.MAX_LPC_ORDER ];
-            pRes_new =     new float[Define.MAX_NLSF_MSVQ_SURVIVORS_LC_MODE * Define.MAX_LPC_ORDER ];
-        }else
-        {
-            pRateDist =    new float[Define.NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED() ];
-            pRate =        new float[Define.MAX_NLSF_MSVQ_SURVIVORS ];
-            pRate_new =    new float[Define.MAX_NLSF_MSVQ_SURVIVORS ];
-            pTempIndices = new int[Define.MAX_NLSF_MSVQ_SURVIVORS ];
-            pPath =        new int[Define.MAX_NLSF_MSVQ_SURVIVORS * Define.NLSF_MSVQ_MAX_CB_STAGES ];
-            pPath_new =    new int[Define.MAX_NLSF_MSVQ_SURVIVORS * Define.NLSF_MSVQ_MAX_CB_STAGES ];
-            pRes =         new float[Define.MAX_NLSF_MSVQ_SURVIVORS * Define.MAX_LPC_ORDER ];
-            pRes_new =     new float[Define.MAX_NLSF_MSVQ_SURVIVORS * Define.MAX_LPC_ORDER ];
-        }
+        float   pNLSF_in[] = scratch.pNLSF_in;
+
+        /* The scratch memory is sized for the survivors of the full complexity mode */
+        float   pRateDist[] = scratch.pRateDist;
+        float   pRate[] = scratch.pRate;
+        float   pRate_new[] = scratch.pRate_new;
+        int     pTempIndices[] = scratch.pTempIndices;
+        int     pPath[] = scratch.pPath;
+        int     pPath_new[] = scratch.pPath_new;
+        float   pRes[] = scratch.pRes;
+        float   pRes_new[] = scratch.pRes_new;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(pNLSF_in, 0);
+        Arrays.fill(pRateDist, 0);
+        Arrays.fill(pRate, 0);
+        Arrays.fill(pRate_new, 0);
+        Arrays.fill(pTempIndices, 0);
+        Arrays.fill(pPath, 0);
+        Arrays.fill(pPath_new, 0);
+        Arrays.fill(pRes, 0);
+        Arrays.fill(pRes_new, 0);
 
         float[] pConstFloat;int pConstFloat_offset;
         float[] pFloat; int pFloat_offset;
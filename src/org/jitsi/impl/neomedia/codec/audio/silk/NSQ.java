@@ -57,12 +57,18 @@ public class NSQ
         int           A_Q12_offset, B_Q14_offset, AR_shp_Q13_offset;
         short   []pxq;
         int     pxq_offset;
-        int     sLTP_Q16[] = new int[ 2 * Define.MAX_FRAME_LENGTH ];
-        short   sLTP[] = new short[ 2 * Define.MAX_FRAME_LENGTH ];
+        SKP_Silk_nsq_scratch scratch = psEncC.sNSQScratch;
+        int     sLTP_Q16[] = scratch.sLTP_Q16;
+        short   sLTP[] = scratch.sLTP;
         int     HarmShapeFIRPacked_Q14;
         int     offset_Q10;
-        int     FiltState[] = new int[ Define.MAX_LPC_ORDER ];
-        int     x_sc_Q10[] = new int[ Define.MAX_FRAME_LENGTH / Define.NB_SUBFR ];
+        int     FiltState[] = scratch.FiltState;
+        int     x_sc_Q10[] = scratch.x_sc_Q10;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(sLTP_Q16, 0);
+        Arrays.fill(sLTP, (short) 0);
+        Arrays.fill(FiltState, 0);
 
         subfr_length = psEncC.frame_length / Define.NB_SUBFR;
 
@@ -85,11 +91,10 @@ public class NSQ
         NSQ.sLTP_buf_idx     = psEncC.frame_length;
         pxq                  = NSQ.xq;
         pxq_offset           = psEncC.frame_length;
-//TODO: use a local copy of the parameter short x[], which is supposed to be input;
-        short[] x_tmp = x.clone();
+        /* x is only read and q is only written so neither needs a local copy */
+        short[] x_tmp = x;
         int     x_tmp_offset = 0;
-//TODO: use a local copy of the parameter byte[] q, which is supposed to be output;
-        byte[]  q_tmp = q.clone();
+        byte[]  q_tmp = q;
         int     q_tmp_offset = 0;
 
         for( k = 0; k < Define.NB_SUBFR; k++ ) {
@@ -149,9 +154,6 @@ public class NSQ
     /* Save quantized speech and noise shaping signals */
         System.arraycopy(NSQ.xq, psEncC.frame_length, NSQ.xq, 0, psEncC.frame_length);
         System.arraycopy(NSQ.sLTP_shp_Q10, psEncC.frame_length, NSQ.sLTP_shp_Q10, 0, psEncC.frame_length);
-
-//TODO: copy back the q_tmp to the output parameter q;
-        System.arraycopy(q_tmp, 0, q, 0, q.length);
     }
 
     /**
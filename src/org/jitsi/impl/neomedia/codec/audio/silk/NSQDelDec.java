@@ -53,6 +53,22 @@ class NSQ_sample_struct implements Cloneable
     int LF_AR_Q12;
     int sLTP_shp_Q10;
     int LPC_exc_Q16;
+
+    /**
+     * Copies all fields of a specific instance into this instance.
+     *
+     * @param src the instance to copy the fields of
+     */
+    public void copyFrom(NSQ_sample_struct src)
+    {
+        this.Q_Q10 = src.Q_Q10;
+        this.RD_Q10 = src.RD_Q10;
+        this.xq_Q14 = src.xq_Q14;
+        this.LF_AR_Q12 = src.LF_AR_Q12;
+        this.sLTP_shp_Q10 = src.sLTP_shp_Q10;
+        this.LPC_exc_Q16 = src.LPC_exc_Q16;
+    }
+
     @Override
     public Object clone()
     {
@@ -99,24 +115,21 @@ public class NSQDelDec
         int           A_Q12_offset, B_Q14_offset, AR_shp_Q13_offset;
         short[] pxq;
         int     pxq_offset;
-        int   sLTP_Q16[] = new int[ 2 * Define.MAX_FRAME_LENGTH ];
-        short   sLTP[] = new short[ 2 * Define.MAX_FRAME_LENGTH ];
+        SKP_Silk_nsq_scratch scratch = psEncC.sNSQScratch;
+        int   sLTP_Q16[] = scratch.sLTP_Q16;
+        short   sLTP[] = scratch.sLTP;
         int   HarmShapeFIRPacked_Q14;
         int     offset_Q10;
-        int   FiltState[] = new int[ Define.MAX_LPC_ORDER ], RDmin_Q10;
-        int   x_sc_Q10[] = new int[ Define.MAX_FRAME_LENGTH / Define.NB_SUBFR ];
-        NSQDelDecStruct psDelDec[] = new NSQDelDecStruct[ Define.DEL_DEC_STATES_MAX ];
-        /*
-         * psDelDec is an array of references, which has to be created manually.
-         */
-        {
-            for(int psDelDecIni_i=0; psDelDecIni_i<Define.DEL_DEC_STATES_MAX; psDelDecIni_i++)
-            {
-                psDelDec[psDelDecIni_i] = new NSQDelDecStruct();
-            }
-        }
+        int   FiltState[] = scratch.FiltState, RDmin_Q10;
+        int   x_sc_Q10[] = scratch.x_sc_Q10;
+        NSQDelDecStruct psDelDec[] = scratch.psDelDec;
         NSQDelDecStruct psDD;
 
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(sLTP_Q16, 0);
+        Arrays.fill(sLTP, (short) 0);
+        Arrays.fill(FiltState, 0);
+
         subfr_length = psEncC.frame_length / Define.NB_SUBFR;
 
         /* Set unvoiced lag to the previous one, overwrite later for voiced */
@@ -124,11 +137,10 @@ public class NSQDelDec
 
         assert( NSQ.prev_inv_gain_Q16 != 0 );
 
-      //TODO: use a local copy of the parameter short x[], which is supposed to be input;
-        short[] x_tmp = x.clone();
+        /* x is only read and q is only written so neither needs a local copy */
+        short[] x_tmp = x;
         int     x_tmp_offset = 0;
-//TODO: use a local copy of the parameter byte[] q, which is supposed to be output;
-        byte[]  q_tmp = q.clone();
+        byte[]  q_tmp = q;
         int     q_tmp_offset = 0;
 
         /* Initialize delayed decision states */
@@ -250,9 +262,9 @@ public class NSQDelDec
                 subfr_length, sLTP, sLTP_Q16, k, psEncC.nStatesDelayedDecision, smpl_buf_idx,
                 LTP_scale_Q14, Gains_Q16, psEncCtrlC.pitchL );
 
-            int smpl_buf_idx_ptr[] = new int[1];
+            int smpl_buf_idx_ptr[] = scratch.smpl_buf_idx;
             smpl_buf_idx_ptr[0] = smpl_buf_idx;
-            SKP_Silk_noise_shape_quantizer_del_dec( NSQ, psDelDec, psEncCtrlC.sigtype, x_sc_Q10, q_tmp, q_tmp_offset, pxq, pxq_offset,
+            SKP_Silk_noise_shape_quantizer_del_dec( NSQ, psDelDec, scratch.psSampleState, psEncCtrlC.sigtype, x_sc_Q10, q_tmp, q_tmp_offset, pxq, pxq_offset,
                     sLTP_Q16, A_Q12, A_Q12_offset, B_Q14, B_Q14_offset, AR_shp_Q13, AR_shp_Q13_offset, lag, HarmShapeFIRPacked_Q14, Tilt_Q14[ k ],
                     LF_shp_Q14[ k ], Gains_Q16[ k ], Lambda_Q10, offset_Q10, psEncC.subfr_length, subfr++, psEncC.shapingLPCOrder, psEncC.predictLPCOrder,
                 psEncC.nStatesDelayedDecision, smpl_buf_idx_ptr, decisionDelay );
@@ -299,14 +311,13 @@ public class NSQDelDec
 //        SKP_memcpy( NSQ.sLTP_shp_Q10, &NSQ.sLTP_shp_Q10[ psEncC.frame_length ], psEncC.frame_length * sizeof( SKP_int32 ) );
         System.arraycopy(NSQ.xq, psEncC.frame_length, NSQ.xq, 0, psEncC.frame_length);
         System.arraycopy(NSQ.sLTP_shp_Q10, psEncC.frame_length, NSQ.sLTP_shp_Q10, 0, psEncC.frame_length);
-//TODO: copy back the q_tmp to the output parameter q;
-        System.arraycopy(q_tmp, 0, q, 0, q.length);
     }
 
     /**
      * Noise shape quantizer for one subframe.
      * @param NSQ NSQ state
      * @param psDelDec Delayed decision states
+     * @param psSampleState Sample states
      * @param sigtype Signal type
      * @param x_Q10
      * @param q
@@ -338,6 +349,7 @@ public class NSQDelDec
     static void SKP_Silk_noise_shape_quantizer_del_dec(
         SKP_Silk_nsq_state  NSQ,                   /* I/O  NSQ state                           */
         NSQDelDecStruct  psDelDec[],             /* I/O  Delayed decision states             */
+        NSQ_sample_struct psSampleState[][],     /* I/O  Sample states                       */
         int                 sigtype,                /* I    Signal type                         */
         final int           x_Q10[],                /* I                                        */
         byte                q[],                    /* O                                        */
@@ -379,19 +391,6 @@ public class NSQDelDec
         int   pred_lag_ptr[], shp_lag_ptr[];
         int   pred_lag_ptr_offset, shp_lag_ptr_offset;
         int   []psLPC_Q14; int psLPC_Q14_offset;
-        NSQ_sample_struct  psSampleState[][] = new NSQ_sample_struct[ Define.DEL_DEC_STATES_MAX ][ 2 ];
-        /*
-         * psSampleState is an two-dimension array of reference, which should be created manually.
-         */
-        {
-            for(int Ini_i=0; Ini_i<Define.DEL_DEC_STATES_MAX; Ini_i++)
-            {
-                for(int Ini_j=0; Ini_j<2; Ini_j++)
-                {
-                    psSampleState[Ini_i][Ini_j] = new NSQ_sample_struct();
-                }
-            }
-        }
         NSQDelDecStruct psDD;
         NSQ_sample_struct[]  psSS;
 
@@ -624,9 +623,8 @@ public class NSQDelDec
             if( RDmin_Q10 < RDmax_Q10 ) {
 //                SKP_Silk_copy_del_dec_state( &psDelDec[ RDmax_ind ], &psDelDec[ RDmin_ind ], i );
                 SKP_Silk_copy_del_dec_state( psDelDec[ RDmax_ind ], psDelDec[ RDmin_ind ], i );
-//TODO:how to copy a struct ???
 //                SKP_memcpy( &psSampleState[ RDmax_ind ][ 0 ], &psSampleState[ RDmin_ind ][ 1 ], sizeof( NSQ_sample_struct ) );
-                psSampleState[ RDmax_ind ][ 0 ] = (NSQ_sample_struct) psSampleState[ RDmin_ind ][ 1 ].clone();
+                psSampleState[ RDmax_ind ][ 0 ].copyFrom( psSampleState[ RDmin_ind ][ 1 ] );
             }
 
             /* Write samples from winner to output and long-term filter states */
@@ -0,0 +1,37 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.codec.audio.silk;
+
+/**
+ * Scratch memory of the noise shaping quantizers (SKP_Silk_NSQ and
+ * SKP_Silk_NSQ_del_dec) which is reused for every frame rather than
+ * allocated.
+ */
+class NSQScratch
+{
+    int[]   sLTP_Q16 = new int[ 2 * Define.MAX_FRAME_LENGTH ];
+    short[] sLTP = new short[ 2 * Define.MAX_FRAME_LENGTH ];
+    int[]   FiltState = new int[ Define.MAX_LPC_ORDER ];
+    int[]   x_sc_Q10 = new int[ Define.MAX_FRAME_LENGTH / Define.NB_SUBFR ];
+    int[]   smpl_buf_idx = new int[ 1 ];
+
+    /* Delayed decision states */
+    NSQDelDecStruct[]     psDelDec = new NSQDelDecStruct[ Define.DEL_DEC_STATES_MAX ];
+    NSQ_sample_struct[][] psSampleState = new NSQ_sample_struct[ Define.DEL_DEC_STATES_MAX ][ 2 ];
+    /*
+     * psDelDec and psSampleState are arrays of references, which have to be
+     * created manually.
+     */
+    {
+        for(int i = 0; i < Define.DEL_DEC_STATES_MAX; i++)
+        {
+            psDelDec[i] = new NSQDelDecStruct();
+            for(int j = 0; j < 2; j++)
+                psSampleState[i][j] = new NSQ_sample_struct();
+        }
+    }
+}
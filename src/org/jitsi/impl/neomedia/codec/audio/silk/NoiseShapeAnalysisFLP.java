@@ -37,8 +37,8 @@ public class NoiseShapeAnalysisFLP
         float   SNR_adj_dB, HarmBoost, HarmShapeGain, Tilt;
         float   nrg, pre_nrg=0, log_energy, log_energy_prev, energy_variation;
         float   delta, BWExp1, BWExp2, gain_mult, gain_add, strength, b;
-        float[]   x_windowed = new float[ Define.SHAPE_LPC_WIN_MAX ];
-        float[]   auto_corr = new float[ Define.SHAPE_LPC_ORDER_MAX + 1 ];
+        float[]   x_windowed = psShapeSt.x_windowed;
+        float[]   auto_corr = psShapeSt.auto_corr;
         float[] x_ptr, pitch_res_ptr;
         int x_ptr_offset, pitch_res_ptr_offset=0;
 
@@ -167,7 +167,7 @@ public class NoiseShapeAnalysisFLP
             BwexpanderFLP.SKP_Silk_bwexpander_FLP( psEncCtrl.AR2,k * Define.SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder, BWExp2 );
 
             /* Make sure to fit in Q13 SKP_int16 */
-            LPC_fit_int16( psEncCtrl.AR2,k * Define.SHAPE_LPC_ORDER_MAX, 1.0f, psEnc.sCmn.shapingLPCOrder, 3.999f );
+            LPC_fit_int16( psEncCtrl.AR2,k * Define.SHAPE_LPC_ORDER_MAX, 1.0f, psEnc.sCmn.shapingLPCOrder, 3.999f, psShapeSt );
 
             /* Compute noise shaping filter coefficients */
 //            SKP_memcpy(
@@ -185,11 +185,13 @@ public class NoiseShapeAnalysisFLP
             psEncCtrl.Gains[ k ] = ( float )Math.sqrt( nrg );
 
             /* Ratio of prediction gains, in energy domain */
-            float[] pre_nrg_djinnaddress = {pre_nrg};
-            LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( pre_nrg_djinnaddress, psEncCtrl.AR2,k * Define.SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder );
+            float[] pre_nrg_djinnaddress = psShapeSt.invGain;
+            pre_nrg_djinnaddress[0] = pre_nrg;
+            LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( pre_nrg_djinnaddress, psEncCtrl.AR2,k * Define.SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder, psShapeSt.Atmp );
             pre_nrg = pre_nrg_djinnaddress[0];
-            float[] nrg_djinnaddress = {nrg};
-            LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( nrg_djinnaddress,     psEncCtrl.AR1,k * Define.SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder );
+            float[] nrg_djinnaddress = psShapeSt.invGain;
+            nrg_djinnaddress[0] = nrg;
+            LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( nrg_djinnaddress,     psEncCtrl.AR1,k * Define.SHAPE_LPC_ORDER_MAX, psEnc.sCmn.shapingLPCOrder, psShapeSt.Atmp );
             nrg = nrg_djinnaddress[0];
             psEncCtrl.GainsPre[ k ] = ( float )Math.sqrt( pre_nrg / nrg );
             //psEncCtrl->GainsPre[ k ] = 1.0f - 0.7f * ( 1.0f - pre_nrg / nrg );
@@ -313,18 +315,23 @@ public class NoiseShapeAnalysisFLP
      * @param bwe Bandwidth expansion factor.
      * @param L Number of LPC parameters in the input vector.
      * @param maxVal Maximum value allowed.
+     * @param psShapeSt Noise shaping analysis state providing scratch memory.
      */
     static void LPC_fit_int16(
               float[] a,                    /* I/O: Unstable/stabilized LPC vector [L]              */
               int a_offset,
         final float  bwe,                   /* I:   Bandwidth expansion factor                      */
         final int    L,                     /* I:   Number of LPC parameters in the input vector    */
-        float       maxVal                  /* I    Maximum value allowed                           */
+        float       maxVal,                 /* I    Maximum value allowed                           */
+        SKP_Silk_shape_state_FLP psShapeSt  /*      Scratch memory                                  */
     )
     {
         float   maxabs, absval, sc;
         int     k, i, idx = 0;
-        float[]   invGain = new float[1];
+        float[]   invGain = psShapeSt.invGain;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        invGain[0] = 0;
 
         BwexpanderFLP.SKP_Silk_bwexpander_FLP( a,a_offset, L, bwe );
 
@@ -367,7 +374,7 @@ public class NoiseShapeAnalysisFLP
         /**********************/
         for( k = 0; k < 1000; k++ )
         {
-            if( LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( invGain, a,a_offset, L ) == 1 )
+            if( LPCInvPredGainFLP.SKP_Silk_LPC_inverse_pred_gain_FLP( invGain, a,a_offset, L, psShapeSt.Atmp ) == 1 )
             {
                 BwexpanderFLP.SKP_Silk_bwexpander_FLP( a,a_offset, L, 0.997f );
             }
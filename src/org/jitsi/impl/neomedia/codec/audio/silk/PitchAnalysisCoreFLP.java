@@ -37,6 +37,7 @@ public class PitchAnalysisCoreFLP
      * @param search_thres2 final threshold for lag candidates 0 - 1
      * @param Fs_kHz sample frequency (kHz)
      * @param complexity Complexity setting, 0-2, where 2 is highest
+     * @param scratch scratch memory reused across frames
      * @return voicing estimate: 0 voiced, 1 unvoiced
      */
     static int SKP_Silk_pitch_analysis_core_FLP( /* O voicing estimate: 0 voiced, 1 unvoiced                 */
@@ -49,29 +50,30 @@ public class PitchAnalysisCoreFLP
         final float search_thres1,      /* I first stage threshold for lag candidates 0 - 1                 */
         final float search_thres2,      /* I final threshold for lag candidates 0 - 1                       */
         final int   Fs_kHz,             /* I sample frequency (kHz)                                         */
-        final int   complexity          /* I Complexity setting, 0-2, where 2 is highest                    */
+        final int   complexity,         /* I Complexity setting, 0-2, where 2 is highest                    */
+        SKP_Silk_pitch_analysis_scratch_FLP scratch /* I/O scratch memory reused across frames      */
     )
     {
-        float[] signal_8kHz = new float[ CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS * 8 ];
-        float[] signal_4kHz = new float[ CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS * 4 ];
-        float[] scratch_mem = new float[ CommonPitchEstDefines.PITCH_EST_MAX_FRAME_LENGTH * 3 ];
-        float[] filt_state = new float[ CommonPitchEstDefines.PITCH_EST_MAX_DECIMATE_STATE_LENGTH ];
+        float[] signal_8kHz = scratch.signal_8kHz;
+        float[] signal_4kHz = scratch.signal_4kHz;
+        float[] scratch_mem = scratch.scratch_mem;
+        float[] filt_state = scratch.filt_state;
         int   i, k, d, j;
         float threshold, contour_bias;
-        float[][] C = new float[CommonPitchEstDefines.PITCH_EST_NB_SUBFR][(CommonPitchEstDefines.PITCH_EST_MAX_LAG >> 1) + 5]; /* use to be +2 but then valgrind reported errors for SWB */
-        float[] CC = new float[CommonPitchEstDefines.PITCH_EST_NB_CBKS_STAGE2_EXT];
+        float[][] C = scratch.C;
+        float[] CC = scratch.CC;
         float[] target_ptr, basis_ptr;
         int target_ptr_offset, basis_ptr_offset;
         double    cross_corr, normalizer, energy, energy_tmp;
-        int[]   d_srch = new int[CommonPitchEstDefines.PITCH_EST_D_SRCH_LENGTH];
-        short[] d_comp = new short[(CommonPitchEstDefines.PITCH_EST_MAX_LAG >> 1) + 5];
+        int[]   d_srch = scratch.d_srch;
+        short[] d_comp = scratch.d_comp;
         int   length_d_srch, length_d_comp;
         float Cmax, CCmax, CCmax_b, CCmax_new_b, CCmax_new;
         int   CBimax, CBimax_new, lag, start_lag, end_lag, lag_new;
         int   cbk_offset, cbk_size;
         float lag_log2, prevLag_log2, delta_lag_log2_sqr;
-        float[][][] energies_st3 = new float[ CommonPitchEstDefines.PITCH_EST_NB_SUBFR ][ CommonPitchEstDefines.PITCH_EST_NB_CBKS_STAGE3_MAX ][ CommonPitchEstDefines.PITCH_EST_NB_STAGE3_LAGS ];
-        float[][][] cross_corr_st3 = new float[ CommonPitchEstDefines.PITCH_EST_NB_SUBFR ][ CommonPitchEstDefines.PITCH_EST_NB_CBKS_STAGE3_MAX ][ CommonPitchEstDefines.PITCH_EST_NB_STAGE3_LAGS ];
+        float[][][] energies_st3 = scratch.energies_st3;
+        float[][][] cross_corr_st3 = scratch.cross_corr_st3;
 
         int diff, lag_counter;
         int frame_length, frame_length_8kHz, frame_length_4kHz;
@@ -112,9 +114,9 @@ public class PitchAnalysisCoreFLP
         /* Resample from input sampled at Fs_kHz to 8 kHz */
         if( Fs_kHz == 12 )
         {
-            short[] signal_12 = new short[ 12 * CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS ];
-            short[] signal_8 = new short[   8 * CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS ];
-            int[] R23 = new int[ 6 ];
+            short[] signal_12 = scratch.signal_12;
+            short[] signal_8 = scratch.signal_8;
+            int[] R23 = scratch.R23;
 
             /* Resample to 12 -> 8 khz */
             for(int i_djinn=0; i_djinn<6; i_djinn++)
@@ -146,9 +148,9 @@ public class PitchAnalysisCoreFLP
         }
         else if( Fs_kHz == 24 )
         {
-            short[] signal_24 = new short[ CommonPitchEstDefines.PITCH_EST_MAX_FRAME_LENGTH ];
-            short[] signal_8 = new short[ 8 * CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS ];
-            int[] filt_state_fix = new int[ 8 ];
+            short[] signal_24 = scratch.signal_24;
+            short[] signal_8 = scratch.signal_8;
+            int[] filt_state_fix = scratch.filt_state_fix;
 
             /* Resample to 24 -> 8 khz */
             SigProcFLP.SKP_float2short_array( signal_24,0, signal,0, 24 * CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS );
@@ -483,8 +485,8 @@ public class PitchAnalysisCoreFLP
             CCmax = -1000.0f;
 
             /* Calculate the correlations and energies needed in stage 3 */
-            SKP_P_Ana_calc_corr_st3( cross_corr_st3, signal,0, start_lag, sf_length, complexity );
-            SKP_P_Ana_calc_energy_st3( energies_st3, signal,0, start_lag, sf_length, complexity );
+            SKP_P_Ana_calc_corr_st3( cross_corr_st3, signal,0, start_lag, sf_length, complexity, scratch.scratch_mem_st3 );
+            SKP_P_Ana_calc_energy_st3( energies_st3, signal,0, start_lag, sf_length, complexity, scratch.scratch_mem_st3 );
 
             lag_counter = 0;
             assert( lag == SigProcFIX.SKP_SAT16( lag ) );
@@ -560,6 +562,7 @@ public class PitchAnalysisCoreFLP
      * @param start_lag start lag.
      * @param sf_length sub frame length.
      * @param complexity Complexity setting.
+     * @param scratch_mem scratch memory of length SCRATCH_SIZE.
      */
     static void SKP_P_Ana_calc_corr_st3
     (
@@ -568,7 +571,8 @@ public class PitchAnalysisCoreFLP
         int signal_offset,
         int start_lag,                  /* I start lag                                                      */
         int sf_length,                  /* I sub frame length                                               */
-        int complexity                  /* I Complexity setting                                             */
+        int complexity,                 /* I Complexity setting                                             */
+        float[] scratch_mem             /* I scratch memory of length SCRATCH_SIZE                          */
     )
         /***********************************************************************
          Calculates the correlations used in stage 3 search. In order to cover
@@ -588,7 +592,6 @@ public class PitchAnalysisCoreFLP
         int target_ptr_offset, basis_ptr_offset;
         int     i, j, k, lag_counter;
         int     cbk_offset, cbk_size, delta, idx;
-        float[]   scratch_mem = new float[ SCRATCH_SIZE ];
 
         assert( complexity >= SigProcFIX.SKP_Silk_PITCH_EST_MIN_COMPLEX );
         assert( complexity <= SigProcFIX.SKP_Silk_PITCH_EST_MAX_COMPLEX );
@@ -636,6 +639,7 @@ public class PitchAnalysisCoreFLP
      * @param start_lag start lag.
      * @param sf_length sub frame length.
      * @param complexity Complexity setting.
+     * @param scratch_mem scratch memory of length SCRATCH_SIZE.
      */
     static void SKP_P_Ana_calc_energy_st3
     (
@@ -644,7 +648,8 @@ public class PitchAnalysisCoreFLP
         int signal_offset,
         int start_lag,                  /* I start lag                                                      */
         int sf_length,                  /* I sub frame length                                               */
-        int complexity                  /* I Complexity setting                                             */
+        int complexity,                 /* I Complexity setting                                             */
+        float[] scratch_mem             /* I scratch memory of length SCRATCH_SIZE                          */
     )
     /****************************************************************
     Calculate the energies for first two subframes. The energies are
@@ -656,7 +661,6 @@ public class PitchAnalysisCoreFLP
         double      energy;
         int     k, i, j, lag_counter;
         int     cbk_offset, cbk_size, delta, idx;
-        float[]   scratch_mem = new float[ SCRATCH_SIZE ];
 
         assert( complexity >= SigProcFIX.SKP_Silk_PITCH_EST_MIN_COMPLEX );
         assert( complexity <= SigProcFIX.SKP_Silk_PITCH_EST_MAX_COMPLEX );
@@ -77,7 +77,7 @@ public class ProcessNLSFsFLP
         /* Quantize NLSF parameters given the trained NLSF codebooks */
         NLSFMSVQEncodeFLP.SKP_Silk_NLSF_MSVQ_encode_FLP( psEncCtrl.sCmn.NLSFIndices, pNLSF, psNLSF_CB_FLP, psEnc.sPred.prev_NLSFq,
                 pNLSFW, NLSF_mu, NLSF_mu_fluc_red, psEnc.sCmn.NLSF_MSVQ_Survivors,
-                psEnc.sCmn.predictLPCOrder, psEnc.sCmn.first_frame_after_reset );
+                psEnc.sCmn.predictLPCOrder, psEnc.sCmn.first_frame_after_reset, psEnc.sNLSFScratch );
 
         /* Convert quantized NLSFs back to LPC coefficients */
         WrappersFLP.SKP_Silk_NLSF2A_stable_FLP( psEncCtrl.PredCoef[ 1 ], pNLSF, psEnc.sCmn.predictLPCOrder );
@@ -383,8 +383,8 @@ public class Resampler
             if( S.nPreDownsamplers + S.nPostUpsamplers > 0 ) {
                 /* The input and/or output sampling rate is above 48000 Hz */
                 int       nSamplesIn, nSamplesOut;
-                short[]        in_buf = new short[ 480 ];
-                short[]     out_buf = new short[ 480 ];
+                short[]        in_buf = S.in_buf;
+                short[]     out_buf = S.out_buf;
 
                 while( inLen > 0 ) {
                     /* Number of input and output samples to process */
@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  * Resample with a 2x downsampler (optional), a 2nd order AR filter followed by FIR interpolation.
  *
@@ -36,13 +38,17 @@ public class ResamplerPrivateDownFIR
         SKP_Silk_resampler_state_struct S = (SKP_Silk_resampler_state_struct)SS;
         int nSamplesIn, interpol_ind;
         int max_index_Q16, index_Q16, index_increment_Q16, res_Q6;
-        short[] buf1 = new short[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN / 2 ];
-        int[] buf2 = new int[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ResamplerRom.RESAMPLER_DOWN_ORDER_FIR ];
+        short[] buf1 = S.buf1_down_FIR;
+        int[] buf2 = S.buf2_down_FIR;
         int[] buf_ptr;
         int buf_ptr_offset;
         short[] interpol_ptr, FIR_Coefs;
         int interpol_ptr_offset, FIR_Coefs_offset;
 
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(buf1, (short)0);
+        Arrays.fill(buf2, 0);
+
         /* Copy buffered samples to start of buffer */
 //TODO: arrayCopy();
 //        SKP_memcpy( buf2, S->sFIR, RESAMPLER_DOWN_ORDER_FIR * sizeof( SKP_int32 ) );
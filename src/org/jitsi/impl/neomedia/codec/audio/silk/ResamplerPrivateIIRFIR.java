@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  * Upsample using a combination of allpass-based 2x upsampling and FIR interpolation.
  *
@@ -36,9 +38,12 @@ public class ResamplerPrivateIIRFIR
 
         int nSamplesIn, table_index;
         int max_index_Q16, index_Q16, index_increment_Q16, res_Q15;
-        short[] buf = new short[ 2 * ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ResamplerRom.RESAMPLER_ORDER_FIR_144 ];
+        short[] buf = S.buf_IIR_FIR;
         int buf_ptr;
 
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(buf, (short)0);
+
         /* Copy buffered samples to start of buffer */
 //TODO:litter-endian or big-endian???
 //        SKP_memcpy( buf, S->sFIR, RESAMPLER_ORDER_FIR_144 * sizeof( SKP_int32 ) );
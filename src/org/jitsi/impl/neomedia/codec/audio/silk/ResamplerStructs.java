@@ -74,6 +74,16 @@ public class ResamplerStructs
     int       nPostUpsamplers;
     int magic_number;
 
+    /*
+     * Scratch memory of the resampler functions which is kept with the state
+     * so that it is not allocated for every call.
+     */
+    short[] buf1_down_FIR = new short[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN / 2 ];
+    int[] buf2_down_FIR = new int[ ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ResamplerRom.RESAMPLER_DOWN_ORDER_FIR ];
+    short[] buf_IIR_FIR = new short[ 2 * ResamplerPrivate.RESAMPLER_MAX_BATCH_SIZE_IN + ResamplerRom.RESAMPLER_ORDER_FIR_144 ];
+    short[] in_buf = new short[ 480 ];
+    short[] out_buf = new short[ 480 ];
+
     /**
      * set all fields of the instance to zero.
      */
@@ -113,7 +113,7 @@ public class ShellCoder
         int                        pulses0_offset
     )
     {
-        int[] pulses1 = new int[ 8 ], pulses2 = new int[ 4 ], pulses3 = new int[ 2 ], pulses4 = new int[ 1 ];
+        int[] pulses1 = sRC.shell_pulses1, pulses2 = sRC.shell_pulses2, pulses3 = sRC.shell_pulses3, pulses4 = sRC.shell_pulses4;
 
         /* this function operates on one shell code frame of 16 pulses */
         assert( Define.SHELL_CODEC_FRAME_LENGTH == 16 );
@@ -161,7 +161,7 @@ public class ShellCoder
             final int                   pulses4             /* I    number of pulses per pulse-subframe         */
     )
     {
-        int[] pulses3 = new int[ 2 ], pulses2 = new int[ 4 ], pulses1 = new int[ 8 ];
+        int[] pulses3 = sRC.shell_pulses3, pulses2 = sRC.shell_pulses2, pulses1 = sRC.shell_pulses1;
 
         /* this function operates on one shell code frame of 16 pulses */
         Typedef.SKP_assert( Define.SHELL_CODEC_FRAME_LENGTH == 16 );
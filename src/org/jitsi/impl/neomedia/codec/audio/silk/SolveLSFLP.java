@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 public class SolveLSFLP
 {
     /**
@@ -17,6 +19,7 @@ public class SolveLSFLP
      * @param b Pointer to b vector
      * @param x Pointer to x solution vector
      * @param x_offset offset of valid data.
+     * @param scratch Scratch memory.
      */
     static void SKP_Silk_solve_LDL_FLP(
               float                 []A,                 /* I/O  Symmetric square matrix, out: reg.      */
@@ -24,15 +27,21 @@ public class SolveLSFLP
         final int                   M,                  /* I    Size of matrix                          */
         final float                 []b,                 /* I    Pointer to b vector                     */
               float                 []x,                  /* O    Pointer to x solution vector            */
-              int                   x_offset
+              int                   x_offset,
+        SKP_Silk_find_pred_coefs_scratch_FLP scratch    /*      Scratch memory                          */
     )
     {
         int i;
 //        float L[][] = new float[Define.MAX_MATRIX_SIZE][Define.MAX_MATRIX_SIZE];
 //TODO:change L from two dimension to one dimension.
-        float L_tmp[] = new float[Define.MAX_MATRIX_SIZE*Define.MAX_MATRIX_SIZE];
-        float T[] = new float[Define.MAX_MATRIX_SIZE];
-        float Dinv[] = new float[Define.MAX_MATRIX_SIZE];// inverse diagonal elements of D
+        float L_tmp[] = scratch.L_tmp;
+        float T[] = scratch.T;
+        float Dinv[] = scratch.Dinv;// inverse diagonal elements of D
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(L_tmp, 0);
+        Arrays.fill(T, 0);
+        Arrays.fill(Dinv, 0);
 
         assert( M <= Define.MAX_MATRIX_SIZE );
 
@@ -41,7 +50,7 @@ public class SolveLSFLP
         where L is lower triangular with ones on diagonal
         ****************************************************/
 //        SKP_Silk_LDL_FLP( A, M, &L[ 0 ][ 0 ], Dinv );
-        SKP_Silk_LDL_FLP(A, A_offset, M, L_tmp, Dinv);
+        SKP_Silk_LDL_FLP(A, A_offset, M, L_tmp, Dinv, scratch);
 
         /****************************************************
         * substitute D*(L^T) = T. ie:
@@ -150,13 +159,15 @@ public class SolveLSFLP
      * @param M Size of Matrix
      * @param L Pointer to Square Upper triangular Matrix
      * @param Dinv Pointer to vector holding the inverse diagonal elements of D
+     * @param scratch Scratch memory
      */
     static void SKP_Silk_LDL_FLP(
         float           []A,      /* (I/O) Pointer to Symetric Square Matrix */
         int             A_offset,
         int             M,       /* (I) Size of Matrix */
         float           []L,      /* (I/O) Pointer to Square Upper triangular Matrix */
-        float           []Dinv    /* (I/O) Pointer to vector holding the inverse diagonal elements of D */
+        float           []Dinv,   /* (I/O) Pointer to vector holding the inverse diagonal elements of D */
+        SKP_Silk_find_pred_coefs_scratch_FLP scratch /* Scratch memory */
     )
     {
 /*        SKP_int i, j, k, loop_count, err = 1;
@@ -168,7 +179,11 @@ public class SolveLSFLP
         float ptr1[], ptr2[];
         int ptr1_offset, ptr2_offset;
         double temp, diag_min_value;
-        float v[] = new float[ Define.MAX_MATRIX_SIZE ], D[] = new float[ Define.MAX_MATRIX_SIZE ]; // temp arrays
+        float v[] = scratch.v, D[] = scratch.D; // temp arrays
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(v, 0);
+        Arrays.fill(D, 0);
 
         assert( M <= Define.MAX_MATRIX_SIZE );
 
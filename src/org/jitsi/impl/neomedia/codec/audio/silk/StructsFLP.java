@@ -30,6 +30,12 @@ class SKP_Silk_shape_state_FLP
     float   HarmShapeGain_smth;
     float   Tilt_smth;
 
+    /* Scratch memory of SKP_Silk_noise_shape_analysis_FLP reused for every frame */
+    float[] x_windowed = new float[ Define.SHAPE_LPC_WIN_MAX ];
+    float[] auto_corr = new float[ Define.SHAPE_LPC_ORDER_MAX + 1 ];
+    float[] invGain = new float[ 1 ];
+    float[][] Atmp = new float[ 2 ][ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+
     /**
      * set all fields of the instance to zero
      */
@@ -237,6 +243,13 @@ class SKP_Silk_encoder_state_FLP
     float                           inBandFEC_SNR_comp;         /* Compensation to SNR_DB when using inband FEC Voiced */
 
     SKP_Silk_NLSF_CB_FLP[]  psNLSF_CB_FLP = new SKP_Silk_NLSF_CB_FLP[ 2 ];        /* Pointers to voiced/unvoiced NLSF codebooks */
+
+    /* Scratch memory reused for every frame */
+    SKP_Silk_encode_frame_scratch_FLP   sFrameScratch = new SKP_Silk_encode_frame_scratch_FLP();
+    SKP_Silk_NLSF_MSVQ_scratch_FLP      sNLSFScratch = new SKP_Silk_NLSF_MSVQ_scratch_FLP();
+    SKP_Silk_pitch_analysis_scratch_FLP sPitchScratch = new SKP_Silk_pitch_analysis_scratch_FLP();
+    SKP_Silk_find_pred_coefs_scratch_FLP sPredCoefsScratch = new SKP_Silk_find_pred_coefs_scratch_FLP();
+    SKP_Silk_wrappers_scratch_FLP       sWrappersScratch = new SKP_Silk_wrappers_scratch_FLP();
 }
 
 /**
@@ -296,6 +309,198 @@ class SKP_Silk_encoder_control_FLP
     float[]                   input_quality_bands = new float[ Define.VAD_N_BANDS ];
     float                   input_tilt;
     float[]                   ResNrg = new float[ Define.NB_SUBFR ];                 /* Residual energy per subframe */
+
+    /**
+     * set all fields of the instance to zero
+     */
+    public void memZero()
+    {
+        this.sCmn.memZero();
+
+        Arrays.fill(this.AR1, 0);
+        Arrays.fill(this.AR2, 0);
+        Arrays.fill(this.AR2_Q13, (short)0);
+        Arrays.fill(this.Gains, 0);
+        Arrays.fill(this.GainsPre, 0);
+        Arrays.fill(this.Gains_Q16, 0);
+        Arrays.fill(this.HarmBoost, 0);
+        Arrays.fill(this.HarmShapeGain, 0);
+        Arrays.fill(this.HarmShapeGain_Q14, 0);
+        Arrays.fill(this.LF_AR_shp, 0);
+        Arrays.fill(this.LF_MA_shp, 0);
+        Arrays.fill(this.LF_shp_Q14, 0);
+        Arrays.fill(this.LTPCoef, 0);
+        Arrays.fill(this.LTPCoef_Q14, (short)0);
+        for (int i = 0; i < 2; i++)
+        {
+            Arrays.fill(this.PredCoef[i], 0);
+            Arrays.fill(this.PredCoef_Q12[i], (short)0);
+        }
+        Arrays.fill(this.ResNrg, 0);
+        Arrays.fill(this.Tilt, 0);
+        Arrays.fill(this.Tilt_Q14, 0);
+        Arrays.fill(this.dummy_int32PredCoef_Q12, 0);
+        Arrays.fill(this.input_quality_bands, 0);
+
+        this.LTP_scale = 0;
+        this.LTP_scale_Q14 = 0;
+        this.LTPredCodGain = 0;
+        this.Lambda = 0;
+        this.Lambda_Q10 = 0;
+        this.coding_quality = 0;
+        this.current_SNR_dB = 0;
+        this.dummy_int32AR2_Q13 = 0;
+        this.input_quality = 0;
+        this.input_tilt = 0;
+        this.pitch_freq_low_Hz = 0;
+        this.sparseness = 0;
+    }
+}
+
+/**
+ * Scratch memory of SKP_Silk_encode_frame_FLP and SKP_Silk_LBRR_encode_FLP
+ * which is reused for every frame rather than allocated.
+ */
+class SKP_Silk_encode_frame_scratch_FLP
+{
+    /* SKP_Silk_encode_frame_FLP */
+    SKP_Silk_encoder_control_FLP sEncCtrl = new SKP_Silk_encoder_control_FLP();
+    int[]   nBytes = new int[ 1 ];
+    short[] pIn_HP = new short[ Define.MAX_FRAME_LENGTH ];
+    short[] pIn_HP_LP = new short[ Define.MAX_FRAME_LENGTH ];
+    float[] xfw = new float[ Define.MAX_FRAME_LENGTH ];
+    float[] res_pitch = new float[ 2 * Define.MAX_FRAME_LENGTH + Define.LA_PITCH_MAX ];
+    byte[]  LBRRpayload = new byte[ Define.MAX_ARITHM_BYTES ];
+    short[] nBytesLBRR = new short[ 1 ];
+
+    /* SKP_Silk_LBRR_encode_FLP */
+    int[]   Gains_Q16 = new int[ Define.NB_SUBFR ];
+    int[]   TempGainsIndices = new int[ Define.NB_SUBFR ];
+    float[] TempGains = new float[ Define.NB_SUBFR ];
+    int[]   LBRR_nBytes = new int[ 1 ];
+    int[]   LBRRprevLastGainIndex = new int[ 1 ];
+}
+
+/**
+ * Scratch memory of SKP_Silk_find_pred_coefs_FLP and the functions it calls
+ * (SKP_Silk_find_LTP_FLP, SKP_Silk_solve_LDL_FLP, SKP_Silk_find_LPC_FLP and
+ * SKP_Silk_burg_modified_FLP) which is reused for every frame rather than
+ * allocated.
+ */
+class SKP_Silk_find_pred_coefs_scratch_FLP
+{
+    /* SKP_Silk_find_pred_coefs_FLP */
+    float[] WLTP = new float[ Define.NB_SUBFR * Define.LTP_ORDER * Define.LTP_ORDER ];
+    float[] invGains = new float[ Define.NB_SUBFR ];
+    float[] Wght = new float[ Define.NB_SUBFR ];
+    float[] NLSF = new float[ Define.MAX_LPC_ORDER ];
+    float[] LPC_in_pre = new float[ Define.NB_SUBFR * Define.MAX_LPC_ORDER + Define.MAX_FRAME_LENGTH ];
+    float[] LTPredCodGain = new float[ 1 ];
+    int[]   PERIndex = new int[ 1 ];
+    int[]   NLSFInterpCoef_Q2 = new int[ 1 ];
+
+    /* SKP_Silk_find_LTP_FLP */
+    float[] d = new float[ Define.NB_SUBFR ];
+    float[] delta_b = new float[ Define.LTP_ORDER ];
+    float[] w = new float[ Define.NB_SUBFR ];
+    float[] nrg = new float[ Define.NB_SUBFR ];
+    float[] Rr = new float[ Define.LTP_ORDER ];
+    float[] rr = new float[ Define.NB_SUBFR ];
+
+    /* SKP_Silk_solve_LDL_FLP and SKP_Silk_LDL_FLP */
+    float[] L_tmp = new float[ Define.MAX_MATRIX_SIZE * Define.MAX_MATRIX_SIZE ];
+    float[] T = new float[ Define.MAX_MATRIX_SIZE ];
+    float[] Dinv = new float[ Define.MAX_MATRIX_SIZE ];
+    float[] v = new float[ Define.MAX_MATRIX_SIZE ];
+    float[] D = new float[ Define.MAX_MATRIX_SIZE ];
+
+    /* SKP_Silk_find_LPC_FLP */
+    float[] a = new float[ Define.MAX_LPC_ORDER ];
+    float[] a_tmp = new float[ Define.MAX_LPC_ORDER ];
+    float[] NLSF0 = new float[ Define.MAX_LPC_ORDER ];
+    float[] LPC_res = new float[ ( Define.MAX_FRAME_LENGTH + Define.NB_SUBFR * Define.MAX_LPC_ORDER ) / 2 ];
+
+    /* SKP_Silk_burg_modified_FLP */
+    double[] C_first_row = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    double[] C_last_row = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+    double[] CAf = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
+    double[] CAb = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC + 1 ];
+    double[] Af = new double[ SigProcFIX.SKP_Silk_MAX_ORDER_LPC ];
+}
+
+/**
+ * Scratch memory of SKP_Silk_NLSF_MSVQ_encode_FLP which is reused for every
+ * frame rather than allocated.
+ */
+class SKP_Silk_NLSF_MSVQ_scratch_FLP
+{
+    float[] pNLSF_in = new float[ Define.MAX_LPC_ORDER ];
+    float[] pRateDist = new float[ Define.NLSF_MSVQ_TREE_SEARCH_MAX_VECTORS_EVALUATED() ];
+    float[] pRate = new float[ Define.MAX_NLSF_MSVQ_SURVIVORS ];
+    float[] pRate_new = new float[ Define.MAX_NLSF_MSVQ_SURVIVORS ];
+    int[]   pTempIndices = new int[ Define.MAX_NLSF_MSVQ_SURVIVORS ];
+    int[]   pPath = new int[ Define.MAX_NLSF_MSVQ_SURVIVORS * Define.NLSF_MSVQ_MAX_CB_STAGES ];
+    int[]   pPath_new = new int[ Define.MAX_NLSF_MSVQ_SURVIVORS * Define.NLSF_MSVQ_MAX_CB_STAGES ];
+    float[] pRes = new float[ Define.MAX_NLSF_MSVQ_SURVIVORS * Define.MAX_LPC_ORDER ];
+    float[] pRes_new = new float[ Define.MAX_NLSF_MSVQ_SURVIVORS * Define.MAX_LPC_ORDER ];
+}
+
+/**
+ * Scratch memory of SKP_Silk_VAD_FLP and SKP_Silk_NSQ_wrapper_FLP which is
+ * reused for every frame rather than allocated.
+ */
+class SKP_Silk_wrappers_scratch_FLP
+{
+    /* SKP_Silk_VAD_FLP */
+    int[]     SA_Q8 = new int[ 1 ];
+    int[]     SNR_dB_Q7 = new int[ 1 ];
+    int[]     Tilt_Q15 = new int[ 1 ];
+    int[]     Quality_Bands_Q15 = new int[ Define.VAD_N_BANDS ];
+
+    /* SKP_Silk_NSQ_wrapper_FLP */
+    short[]   x_16 = new short[ Define.MAX_FRAME_LENGTH ];
+    int[]     Gains_Q16 = new int[ Define.NB_SUBFR ];
+    short[][] PredCoef_Q12 = new short[ 2 ][ Define.MAX_LPC_ORDER ];
+    short[]   PredCoef_Q12_dim1_tmp = new short[ 2 * Define.MAX_LPC_ORDER ];
+    short[]   LTPCoef_Q14 = new short[ Define.LTP_ORDER * Define.NB_SUBFR ];
+    short[]   AR2_Q13 = new short[ Define.NB_SUBFR * Define.SHAPE_LPC_ORDER_MAX ];
+    int[]     LF_shp_Q14 = new int[ Define.NB_SUBFR ];
+    int[]     Tilt_Q14 = new int[ Define.NB_SUBFR ];
+    int[]     HarmShapeGain_Q14 = new int[ Define.NB_SUBFR ];
+}
+
+/**
+ * Scratch memory of the pitch analysis which is reused for every frame rather
+ * than allocated.
+ */
+class SKP_Silk_pitch_analysis_scratch_FLP
+{
+    /* SKP_Silk_find_pitch_lags_FLP */
+    float[] auto_corr = new float[ Define.FIND_PITCH_LPC_ORDER_MAX + 1 ];
+    float[] A = new float[         Define.FIND_PITCH_LPC_ORDER_MAX ];
+    float[] refl_coef = new float[ Define.FIND_PITCH_LPC_ORDER_MAX ];
+    float[] Wsig = new float[      Define.FIND_PITCH_LPC_WIN_MAX ];
+    int[]   lagIndex = new int[ 1 ];
+    int[]   contourIndex = new int[ 1 ];
+    float[] LTPCorr = new float[ 1 ];
+
+    /* SKP_Silk_pitch_analysis_core_FLP */
+    float[] signal_8kHz = new float[ CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS * 8 ];
+    float[] signal_4kHz = new float[ CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS * 4 ];
+    float[] scratch_mem = new float[ CommonPitchEstDefines.PITCH_EST_MAX_FRAME_LENGTH * 3 ];
+    float[] filt_state = new float[ CommonPitchEstDefines.PITCH_EST_MAX_DECIMATE_STATE_LENGTH ];
+    float[][] C = new float[ CommonPitchEstDefines.PITCH_EST_NB_SUBFR ][ ( CommonPitchEstDefines.PITCH_EST_MAX_LAG >> 1 ) + 5 ];
+    float[] CC = new float[ CommonPitchEstDefines.PITCH_EST_NB_CBKS_STAGE2_EXT ];
+    int[]   d_srch = new int[ CommonPitchEstDefines.PITCH_EST_D_SRCH_LENGTH ];
+    short[] d_comp = new short[ ( CommonPitchEstDefines.PITCH_EST_MAX_LAG >> 1 ) + 5 ];
+    float[][][] energies_st3 = new float[ CommonPitchEstDefines.PITCH_EST_NB_SUBFR ][ CommonPitchEstDefines.PITCH_EST_NB_CBKS_STAGE3_MAX ][ CommonPitchEstDefines.PITCH_EST_NB_STAGE3_LAGS ];
+    float[][][] cross_corr_st3 = new float[ CommonPitchEstDefines.PITCH_EST_NB_SUBFR ][ CommonPitchEstDefines.PITCH_EST_NB_CBKS_STAGE3_MAX ][ CommonPitchEstDefines.PITCH_EST_NB_STAGE3_LAGS ];
+    float[] scratch_mem_st3 = new float[ PitchAnalysisCoreFLP.SCRATCH_SIZE ];
+    short[] signal_12 = new short[ 12 * CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS ];
+    short[] signal_24 = new short[ CommonPitchEstDefines.PITCH_EST_MAX_FRAME_LENGTH ];
+    short[] signal_8 = new short[   8 * CommonPitchEstDefines.PITCH_EST_FRAME_LENGTH_MS ];
+    int[]   R23 = new int[ 6 ];
+    int[]   filt_state_fix = new int[ 8 ];
 }
 
 interface NoiseShapingQuantizerFP
@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  *
  * @author Jing Dai
@@ -78,17 +80,24 @@ public class VAD
     )
     {
         int   SA_Q15, input_tilt;
-        int[] scratch = new int[ 3 * Define.MAX_FRAME_LENGTH / 2 ];
+        int[] scratch = psSilk_VAD.scratch;
         int   decimated_framelength, dec_subframe_length, dec_subframe_offset, SNR_Q7, i, b, s;
         int sumSquared=0, smooth_coef_Q16;
         short HPstateTmp;
 
-        short[][] X = new short[ Define.VAD_N_BANDS ][ Define.MAX_FRAME_LENGTH / 2 ];
-        int[] Xnrg = new int[ Define.VAD_N_BANDS ];
-        int[] NrgToNoiseRatio_Q8 = new int[ Define.VAD_N_BANDS ];
+        short[][] X = psSilk_VAD.X;
+        int[] Xnrg = psSilk_VAD.Xnrg;
+        int[] NrgToNoiseRatio_Q8 = psSilk_VAD.NrgToNoiseRatio_Q8;
         int speech_nrg, x_tmp;
         int   ret = 0;
 
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(scratch, 0);
+        for( b = 0; b < Define.VAD_N_BANDS; b++ )
+            Arrays.fill(X[ b ], (short)0);
+        Arrays.fill(Xnrg, 0);
+        Arrays.fill(NrgToNoiseRatio_Q8, 0);
+
         /* Safety checks */
         assert( Define.VAD_N_BANDS == 4 );
         assert( Define.MAX_FRAME_LENGTH >= framelength );
@@ -6,6 +6,8 @@
  */
 package org.jitsi.impl.neomedia.codec.audio.silk;
 
+import java.util.*;
+
 /**
  *
  * @author Jing Dai
@@ -131,9 +133,16 @@ public class WrappersFLP
         int pIn_offset
     )
     {
+        SKP_Silk_wrappers_scratch_FLP scratch = psEnc.sWrappersScratch;
         int i, ret;
-        int[] SA_Q8 = new int[1], SNR_dB_Q7 = new int[1], Tilt_Q15 = new int[1];
-        int[] Quality_Bands_Q15 = new int[ Define.VAD_N_BANDS ];
+        int[] SA_Q8 = scratch.SA_Q8, SNR_dB_Q7 = scratch.SNR_dB_Q7, Tilt_Q15 = scratch.Tilt_Q15;
+        int[] Quality_Bands_Q15 = scratch.Quality_Bands_Q15;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        SA_Q8[0] = 0;
+        SNR_dB_Q7[0] = 0;
+        Tilt_Q15[0] = 0;
+        Arrays.fill(Quality_Bands_Q15, 0);
 
         ret = VAD.SKP_Silk_VAD_GetSA_Q8( psEnc.sCmn.sVAD, SA_Q8, SNR_dB_Q7, Quality_Bands_Q15, Tilt_Q15,
             pIn,pIn_offset, psEnc.sCmn.frame_length );
@@ -161,22 +170,26 @@ public class WrappersFLP
         final int                   useLBRR         /* I    LBRR flag                                   */
     )
     {
+        SKP_Silk_wrappers_scratch_FLP scratch = psEnc.sWrappersScratch;
         int     i, j;
         float   tmp_float;
-        short[]   x_16 = new short[ Define.MAX_FRAME_LENGTH ];
+        short[]   x_16 = scratch.x_16;
         /* Prediction and coding parameters */
-        int[]   Gains_Q16 = new int[ Define.NB_SUBFR ];
-        short[][] PredCoef_Q12 = new short[ 2 ][ Define.MAX_LPC_ORDER ];
-        short[]   LTPCoef_Q14 = new short[ Define.LTP_ORDER * Define.NB_SUBFR ];
+        int[]   Gains_Q16 = scratch.Gains_Q16;
+        short[][] PredCoef_Q12 = scratch.PredCoef_Q12;
+        short[]   LTPCoef_Q14 = scratch.LTPCoef_Q14;
         int     LTP_scale_Q14;
 
         /* Noise shaping parameters */
         /* Testing */
-        short[] AR2_Q13 = new short[ Define.NB_SUBFR * Define.SHAPE_LPC_ORDER_MAX ];
-        int[]   LF_shp_Q14 = new int[ Define.NB_SUBFR ];         /* Packs two int16 coefficients per int32 value             */
+        short[] AR2_Q13 = scratch.AR2_Q13;
+        int[]   LF_shp_Q14 = scratch.LF_shp_Q14;         /* Packs two int16 coefficients per int32 value             */
         int     Lambda_Q10;
-        int[]     Tilt_Q14 = new int[ Define.NB_SUBFR ];
-        int[]     HarmShapeGain_Q14 = new int[ Define.NB_SUBFR ];
+        int[]     Tilt_Q14 = scratch.Tilt_Q14;
+        int[]     HarmShapeGain_Q14 = scratch.HarmShapeGain_Q14;
+
+        /* The scratch memory is reused so clear it as if it were allocated */
+        Arrays.fill(x_16, (short)0);
 
         /* Convert control struct to fix control struct */
         /* Noise shape parameters */
@@ -501,7 +514,7 @@ public class WrappersFLP
         /*TEST END************************************************************************/
 
         /* Call NSQ */
-        short[] PredCoef_Q12_dim1_tmp= new short[PredCoef_Q12.length * PredCoef_Q12[0].length];
+        short[] PredCoef_Q12_dim1_tmp= scratch.PredCoef_Q12_dim1_tmp;
         int PredCoef_Q12_offset = 0;
         for(int PredCoef_Q12_i = 0; PredCoef_Q12_i < PredCoef_Q12.length; PredCoef_Q12_i++)
         {
@@ -8,7 +8,6 @@ package org.jitsi.impl.neomedia.codec.video.h263p;
 
 import java.awt.*;
 import java.util.*;
-import java.util.List;
 
 import javax.media.*;
 import javax.media.format.*;
@@ -16,6 +15,7 @@ import javax.media.format.*;
 import net.sf.fmj.media.*;
 
 import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.impl.neomedia.control.*;
 import org.jitsi.service.neomedia.codec.*;
 
 /**
@@ -34,11 +34,6 @@ public class Packetizer
     private static final Format[] DEFAULT_OUTPUT_FORMATS
         = { new VideoFormat(Constants.H263P_RTP) };
 
-    /**
-     * Maximum payload size without the headers.
-     */
-    public static final int MAX_PAYLOAD_SIZE = 1024;
-
     /**
      * Name of the plugin.
      */
@@ -71,6 +66,48 @@ public class Packetizer
         return endIndex;
     }
 
+    /**
+     * The <tt>PacketSizeControl</tt> which specifies the maximum size in
+     * bytes of the RTP payloads output by this <tt>Packetizer</tt>.
+     */
+    private final PacketSizeControlImpl packetSizeControl
+        = new PacketSizeControlImpl();
+
+    /**
+     * The number of H263+ video packets of the current input which are to be
+     * sent as payload in RTP packets.
+     */
+    private int pktCount;
+
+    /**
+     * The input (i.e. the H.263+ encoded data) which the H263+ video packets
+     * to be sent are views into.
+     */
+    private byte[] pktData;
+
+    /**
+     * The first bytes of the payload headers of the H263+ video packets to be
+     * sent.
+     */
+    private byte[] pktHeaders = new byte[16];
+
+    /**
+     * The index of the next H263+ video packet to be sent.
+     */
+    private int pktIndex;
+
+    /**
+     * The lengths of the data (following the payload headers) of the H263+
+     * video packets to be sent.
+     */
+    private int[] pktLengths = new int[16];
+
+    /**
+     * The offsets in {@link #pktData} of the data (following the payload
+     * headers) of the H263+ video packets to be sent.
+     */
+    private int[] pktOffsets = new int[16];
+
     /**
      * The sequence number of the next RTP packet to be output by this
      * <tt>Packetizer</tt>.
@@ -82,12 +119,6 @@ public class Packetizer
      */
     private long timeStamp = 0;
 
-    /**
-     * The list of H263+ "Start code" video packets to be sent as payload in RTP
-     * packets.
-     */
-    private final List<byte[]> videoPkts = new LinkedList<byte[]>();
-
     /**
      * Initializes a new <tt>Packetizer</tt> instance which is to packetize
      * H.263+ encoded data into RTP packets in accord with
@@ -99,6 +130,34 @@ public class Packetizer
 
         inputFormat = null;
         outputFormat = null;
+
+        addControl(packetSizeControl);
+    }
+
+    /**
+     * Adds an H263+ video packet to be sent.
+     *
+     * @param header the first byte of the payload header
+     * @param offset the offset in {@link #pktData} of the data following the
+     * payload header
+     * @param length the length of the data following the payload header
+     * @return <tt>true</tt>
+     */
+    private boolean addPkt(byte header, int offset, int length)
+    {
+        if (pktCount == pktHeaders.length)
+        {
+            int newLength = 2 * pktCount;
+
+            pktHeaders = Arrays.copyOf(pktHeaders, newLength);
+            pktLengths = Arrays.copyOf(pktLengths, newLength);
+            pktOffsets = Arrays.copyOf(pktOffsets, newLength);
+        }
+        pktHeaders[pktCount] = header;
+        pktLengths[pktCount] = length;
+        pktOffsets[pktCount] = offset;
+        pktCount++;
+        return true;
     }
 
     /**
@@ -109,7 +168,9 @@ public class Packetizer
     {
         if (opened)
         {
-            videoPkts.clear();
+            pktCount = 0;
+            pktData = null;
+            pktIndex = 0;
             opened = false;
             super.close();
         }
@@ -183,7 +244,9 @@ public class Packetizer
     {
         if (!opened)
         {
-            videoPkts.clear();
+            pktCount = 0;
+            pktData = null;
+            pktIndex = 0;
             sequenceNumber = 0;
 
             super.open();
@@ -193,7 +256,8 @@ public class Packetizer
 
     /**
      * Packetizes H.263+ encoded data so that it becomes ready to be sent as the
-     * payload of RTP packets.
+     * payload of RTP packets. The packets are views into <tt>data</tt> which
+     * are written into the output when they are sent.
      *
      * @param data the bytes which contain the H.263+ encoded data to be
      * packetized
@@ -205,13 +269,13 @@ public class Packetizer
     private boolean packetize(byte[] data, int offset, int length)
     {
         boolean pktAdded = false;
+        int packetSize = packetSizeControl.getPacketSize();
 
         while(length > 0)
         {
             boolean isPsc = false;
             int pos = 0;
-            int maxPayloadLength = MAX_PAYLOAD_SIZE;
-            byte pkt[] = null;
+            int maxPayloadLength = packetSize;
             int payloadLength = 0;
 
             /* is we are at synchronization point (PSC, GSBC, EOS, EOSBS) */
@@ -235,15 +299,13 @@ public class Packetizer
                 payloadLength = length;
             }
 
-            pkt = new byte[payloadLength + (isPsc ? 0 : 2)];
-
-            /* add H263+ payload header */
-            /* no VRC and no extra picture header */
-            pkt[0] = (byte)(isPsc ? 0x04 : 0x00);
-            pkt[1] = 0x00;
-
-            System.arraycopy(data, offset + pos, pkt, 2, payloadLength - pos);
-            pktAdded = videoPkts.add(pkt) || pktAdded;
+            /* H263+ payload header, the P bit replaces the PSC zeros */
+            pktAdded
+                = addPkt(
+                        (byte)(isPsc ? 0x04 : 0x00),
+                        offset + pos,
+                        payloadLength - pos)
+                    || pktAdded;
 
             offset += payloadLength;
             length -= payloadLength;
@@ -268,19 +330,30 @@ public class Packetizer
         int inOffset = inBuffer.getOffset();
         boolean pktAdded = false;
 
-        if (videoPkts.size() > 0)
+        if (pktIndex < pktCount)
         {
-            byte[] pktData = videoPkts.remove(0);
+            int index = pktIndex++;
+            int length = pktLengths[index];
+            byte[] out
+                = AbstractCodec2.validateByteArraySize(
+                        outBuffer,
+                        2 + length,
+                        false);
+
+            /* add H263+ payload header */
+            /* no VRC and no extra picture header */
+            out[0] = pktHeaders[index];
+            out[1] = 0x00;
+            System.arraycopy(pktData, pktOffsets[index], out, 2, length);
 
             // Send the packet.
-            outBuffer.setData(pktData);
-            outBuffer.setLength(pktData.length);
+            outBuffer.setLength(2 + length);
             outBuffer.setOffset(0);
             outBuffer.setTimeStamp(timeStamp);
             outBuffer.setSequenceNumber(sequenceNumber++);
 
             // If there are other packets, send them as well.
-            if(videoPkts.size() > 0)
+            if(pktIndex < pktCount)
             {
                 return (BUFFER_PROCESSED_OK | INPUT_BUFFER_NOT_CONSUMED);
             }
@@ -289,6 +362,7 @@ public class Packetizer
                 // It's the last packet of the current frame so mark it.
                 outBuffer.setFlags(
                     outBuffer.getFlags() | Buffer.FLAG_RTP_MARKER);
+                pktData = null;
 
                 return BUFFER_PROCESSED_OK;
             }
@@ -316,6 +390,10 @@ public class Packetizer
         int endIndex = inOffset + inLength;
         int beginIndex = findStartcode(inData, inOffset, endIndex);
 
+        pktCount = 0;
+        pktData = inData;
+        pktIndex = 0;
+
         if (beginIndex < endIndex)
         {
             for (int nextBeginIndex;
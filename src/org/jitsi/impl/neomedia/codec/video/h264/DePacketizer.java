@@ -35,6 +35,27 @@ public class DePacketizer
      */
     private static final Logger logger = Logger.getLogger(DePacketizer.class);
 
+    /**
+     * The maximum number of complete access units (i.e. RTP packets with the
+     * marker bit set) which this <tt>DePacketizer</tt> holds while it waits
+     * for an earlier RTP packet which has been reordered by the network. The
+     * RTP packets awaited are considered lost once the limit is exceeded.
+     */
+    private static final int MAX_REORDERED_ACCESS_UNITS = 2;
+
+    /**
+     * The maximum number of RTP packets which this <tt>DePacketizer</tt> holds
+     * while it waits for an earlier RTP packet which has been reordered by the
+     * network. The RTP packets awaited are considered lost once the limit is
+     * exceeded.
+     */
+    private static final int MAX_REORDERED_PACKETS = 16;
+
+    /**
+     * The number of distinct RTP sequence numbers.
+     */
+    private static final int SEQUENCE_NUMBER_MODULO = 1 << 16;
+
     /**
      * The bytes to prefix any NAL unit to be output by this
      * <tt>DePacketizer</tt> and given to a H.264 decoder. Includes
@@ -120,6 +141,13 @@ public class DePacketizer
      */
     private long lastSequenceNumber = -1;
 
+    /**
+     * The <tt>ReorderedPacket</tt> instances which are not in use and may be
+     * reused by {@link #holdPacket(Buffer, int)}.
+     */
+    private final List<ReorderedPacket> freeReorderedPackets
+        = new ArrayList<ReorderedPacket>();
+
     /**
      * The <tt>nal_unit_type</tt> as defined by the ITU-T Recommendation for
      * H.264 of the last NAL unit given to this <tt>DePacketizer</tt> for
@@ -135,6 +163,29 @@ public class DePacketizer
     private final int outputPaddingSize
         = FFmpeg.FF_INPUT_BUFFER_PADDING_SIZE;
 
+    /**
+     * The indicator which determines whether RTP packets have been found lost
+     * and the next RTP packet in {@link #reorderedPackets} is to be processed
+     * as the first one after the loss.
+     */
+    private boolean packetsLost = false;
+
+    /**
+     * The RTP packets which have been received before an earlier RTP packet
+     * and are held until the latter is received or considered lost, in the
+     * order of their sequence numbers.
+     */
+    private final List<ReorderedPacket> reorderedPackets
+        = new ArrayList<ReorderedPacket>();
+
+    /**
+     * The indicator which determines whether the first RTP packet in
+     * {@link #reorderedPackets} is the next one in order and is to be
+     * processed during the next call to {@link #doProcess(Buffer, Buffer)}
+     * instead of its input <tt>Buffer</tt> (which has been consumed already).
+     */
+    private boolean reorderedPacketsReady = false;
+
     /**
      * The indicator which determines whether this <tt>DePacketizer</tt> is to
      * request a key frame from the remote peer associated with
@@ -277,6 +328,106 @@ public class DePacketizer
             return OUTPUT_BUFFER_NOT_FILLED;
     }
 
+    /**
+     * Extracts the NAL units aggregated into a specific STAP-A RTP packet
+     * payload. The NAL units are output together, each one prefixed with
+     * {@link #NAL_PREFIX}.
+     *
+     * @param in the payload of the RTP packet from which the NAL units are to
+     * be extracted
+     * @param inOffset the offset in <tt>in</tt> at which the payload begins
+     * @param inLength the length of the payload in <tt>in</tt> beginning at
+     * <tt>inOffset</tt>
+     * @param outBuffer the <tt>Buffer</tt> which is to receive the extracted
+     * NAL units
+     * @return the flags such as <tt>BUFFER_PROCESSED_OK</tt> and
+     * <tt>OUTPUT_BUFFER_NOT_FILLED</tt> to be returned by
+     * {@link #process(Buffer, Buffer)}
+     */
+    private int dePacketizeSTAPA(
+            byte[] in, int inOffset, int inLength,
+            Buffer outBuffer)
+    {
+        // Skip the STAP-A NAL HDR.
+        int begin = inOffset + 1;
+        int end = inOffset + inLength;
+        int newOutLength = 0;
+        int nal_unit_type = UNSPECIFIED_NAL_UNIT_TYPE;
+
+        /*
+         * Validate the NAL unit sizes and calculate the length of the output
+         * before writing anything.
+         */
+        for (int i = begin; i < end;)
+        {
+            if (i + 2 >= end)
+            {
+                newOutLength = 0;
+                break;
+            }
+
+            int nalUnitSize = ((in[i] & 0xFF) << 8) | (in[i + 1] & 0xFF);
+
+            i += 2;
+            if ((nalUnitSize == 0) || (i + nalUnitSize > end))
+            {
+                newOutLength = 0;
+                break;
+            }
+
+            int aggregatedType = in[i] & 0x1F;
+
+            /*
+             * Remember the most significant of the aggregated nal_unit_types
+             * for the purposes of the key frame-related logic.
+             */
+            if ((nal_unit_type != 5 /* Coded slice of an IDR picture */)
+                    && ((aggregatedType == 5)
+                        || (aggregatedType == 7)
+                        || (aggregatedType == 8)
+                        || (nal_unit_type == UNSPECIFIED_NAL_UNIT_TYPE)))
+                nal_unit_type = aggregatedType;
+
+            newOutLength += NAL_PREFIX.length + nalUnitSize;
+            i += nalUnitSize;
+        }
+        if (newOutLength == 0)
+        {
+            if (logger.isTraceEnabled())
+                logger.trace("Dropping malformed STAP-A.");
+            this.nal_unit_type = UNSPECIFIED_NAL_UNIT_TYPE;
+            outBuffer.setDiscard(true);
+            return BUFFER_PROCESSED_OK;
+        }
+
+        this.nal_unit_type = nal_unit_type;
+
+        int outOffset = outBuffer.getOffset();
+        byte[] out
+            = validateByteArraySize(
+                outBuffer,
+                outOffset + newOutLength + outputPaddingSize,
+                true);
+
+        for (int i = begin; i < end;)
+        {
+            int nalUnitSize = ((in[i] & 0xFF) << 8) | (in[i + 1] & 0xFF);
+
+            i += 2;
+            System.arraycopy(NAL_PREFIX, 0, out, outOffset, NAL_PREFIX.length);
+            outOffset += NAL_PREFIX.length;
+            System.arraycopy(in, i, out, outOffset, nalUnitSize);
+            outOffset += nalUnitSize;
+            i += nalUnitSize;
+        }
+
+        padOutput(out, outOffset);
+
+        outBuffer.setLength(newOutLength);
+
+        return BUFFER_PROCESSED_OK;
+    }
+
     /**
      * Extract a single (complete) NAL unit from RTP payload.
      *
@@ -350,72 +501,43 @@ public class DePacketizer
         lastRequestKeyFrameTime = -1;
         lastSequenceNumber = -1;
         nal_unit_type = UNSPECIFIED_NAL_UNIT_TYPE;
+        packetsLost = false;
+        reorderedPackets.clear();
+        reorderedPacketsReady = false;
         requestKeyFrame = false;
         requestKeyFrameThread = null;
     }
 
     /**
-     * Processes (depacketizes) a buffer.
+     * Depacketizes a specific RTP packet which is the next one in order or
+     * the first one after a loss of RTP packets.
      *
-     * @param inBuffer input buffer
-     * @param outBuffer output buffer
-     * @return <tt>BUFFER_PROCESSED_OK</tt> if buffer has been successfully
-     * processed
+     * @param in the payload of the RTP packet
+     * @param inOffset the offset in <tt>in</tt> at which the payload begins
+     * @param inLength the length of the payload in <tt>in</tt> beginning at
+     * <tt>inOffset</tt>
+     * @param inFlags the <tt>Buffer</tt> flags of the RTP packet
+     * @param sequenceNumber the sequence number of the RTP packet
+     * @param lost <tt>true</tt> if RTP packets have been lost before the
+     * specified RTP packet; otherwise, <tt>false</tt>
+     * @param outBuffer the output <tt>Buffer</tt>
+     * @return the flags such as <tt>BUFFER_PROCESSED_OK</tt> and
+     * <tt>OUTPUT_BUFFER_NOT_FILLED</tt> to be returned by
+     * {@link #process(Buffer, Buffer)}
      */
-    @Override
     @SuppressWarnings("fallthrough")
-    protected int doProcess(Buffer inBuffer, Buffer outBuffer)
+    private int dePacketize(
+            byte[] in, int inOffset, int inLength,
+            int inFlags,
+            long sequenceNumber,
+            boolean lost,
+            Buffer outBuffer)
     {
+        int ret;
         /*
-         * We'll only be depacketizing, we'll not act as an H.264 parser.
-         * Consequently, we'll only care about the rules of
-         * packetizing/depacketizing. For example, we'll have to make sure that
-         * no packets are lost and no other packets are received when
-         * depacketizing FU-A Fragmentation Units (FUs).
+         * If a frame has been lost, then we may be in a need of a key frame.
          */
-        long sequenceNumber = inBuffer.getSequenceNumber();
-        int ret;
-        boolean requestKeyFrame = (lastKeyFrameTime == -1);
-
-        if ((lastSequenceNumber != -1)
-                && ((sequenceNumber - lastSequenceNumber) != 1))
-        {
-            /*
-             * Even if (the new) sequenceNumber is less than lastSequenceNumber,
-             * we have to use it because the received sequence numbers may have
-             * reached their maximum value and wrapped around starting from
-             * their minimum value again.
-             */
-            if (logger.isTraceEnabled())
-                logger.trace(
-                        "Dropped RTP packets upto sequenceNumber "
-                            + lastSequenceNumber
-                            + " and continuing with sequenceNumber "
-                            + sequenceNumber);
-
-            /*
-             * If a frame has been lost, then we may be in a need of a key
-             * frame.
-             */
-            requestKeyFrame = true;
-
-            ret = reset(outBuffer);
-
-            if ((ret & OUTPUT_BUFFER_NOT_FILLED) == 0)
-            {
-                /*
-                 * TODO Do we have to reset the nal_unit_type field of this
-                 * DePacketizer to UNSPECIFIED_NAL_UNIT_TYPE here? If ret
-                 * contains INPUT_BUFFER_NOT_CONSUMED, it seems safe to not
-                 * reset it because the input Buffer will be returned for
-                 * processing during the next call.
-                 */
-
-                setRequestKeyFrame(requestKeyFrame);
-
-                return ret;
-            }
-        }
+        boolean requestKeyFrame = lost || (lastKeyFrameTime == -1);
 
         /*
          * Ignore the RTP time stamp reported by JMF because it is not the
@@ -425,8 +547,6 @@ public class DePacketizer
 
         lastSequenceNumber = sequenceNumber;
 
-        byte[] in = (byte[]) inBuffer.getData();
-        int inOffset = inBuffer.getOffset();
         byte octet = in[inOffset];
 
         /*
@@ -454,12 +574,17 @@ public class DePacketizer
             ret
                 = dePacketizeSingleNALUnitPacket(
                     nal_unit_type,
-                    in, inOffset, inBuffer.getLength(),
+                    in, inOffset, inLength,
                     outBuffer);
         }
+        else if (nal_unit_type == 24) // STAP-A Single-time aggregation packet
+        {
+            fuaStartedAndNotEnded = false;
+            ret = dePacketizeSTAPA(in, inOffset, inLength, outBuffer);
+        }
         else if (nal_unit_type == 28) // FU-A Fragmentation unit (FU)
         {
-            ret = dePacketizeFUA(in, inOffset, inBuffer.getLength(), outBuffer);
+            ret = dePacketizeFUA(in, inOffset, inLength, outBuffer);
             if (outBuffer.isDiscard())
                 fuaStartedAndNotEnded = false;
         }
@@ -481,7 +606,7 @@ public class DePacketizer
          * indicated by the RTP time stamp to allow an efficient playout buffer
          * handling. Consequently, we have to output it as well.
          */
-        if ((inBuffer.getFlags() & Buffer.FLAG_RTP_MARKER) != 0)
+        if ((inFlags & Buffer.FLAG_RTP_MARKER) != 0)
             outBuffer.setFlags(outBuffer.getFlags() | Buffer.FLAG_RTP_MARKER);
 
         // Should we request a key frame.
@@ -508,6 +633,260 @@ public class DePacketizer
         return ret;
     }
 
+    /**
+     * Depacketizes the first RTP packet held in {@link #reorderedPackets}
+     * which is the next one in order or the first one after a loss of RTP
+     * packets.
+     *
+     * @param outBuffer the output <tt>Buffer</tt>
+     * @return the flags such as <tt>BUFFER_PROCESSED_OK</tt> and
+     * <tt>OUTPUT_BUFFER_NOT_FILLED</tt> to be returned by
+     * {@link #process(Buffer, Buffer)}
+     */
+    private int dePacketizeReorderedPacket(Buffer outBuffer)
+    {
+        if (packetsLost)
+        {
+            int ret = reset(outBuffer);
+
+            if ((ret & OUTPUT_BUFFER_NOT_FILLED) == 0)
+            {
+                /*
+                 * The incomplete NAL unit is output now and the RTP packet
+                 * will be processed during the next call because ret contains
+                 * INPUT_BUFFER_NOT_CONSUMED.
+                 */
+                setRequestKeyFrame(true);
+                return ret;
+            }
+        }
+
+        ReorderedPacket packet = reorderedPackets.remove(0);
+        boolean lost = packetsLost;
+
+        packetsLost = false;
+
+        int ret
+            = dePacketize(
+                    packet.data, 0, packet.length,
+                    packet.flags,
+                    packet.sequenceNumber,
+                    lost,
+                    outBuffer);
+
+        freeReorderedPackets.add(packet);
+
+        if (!reorderedPackets.isEmpty()
+                && (getSequenceNumberDistance(
+                            lastSequenceNumber,
+                            reorderedPackets.get(0).sequenceNumber)
+                        == 1))
+        {
+            // Have the next held RTP packet processed during the next call.
+            ret |= INPUT_BUFFER_NOT_CONSUMED;
+        }
+        else
+            reorderedPacketsReady = false;
+        return ret;
+    }
+
+    /**
+     * Processes (depacketizes) a buffer.
+     *
+     * @param inBuffer input buffer
+     * @param outBuffer output buffer
+     * @return <tt>BUFFER_PROCESSED_OK</tt> if buffer has been successfully
+     * processed
+     */
+    @Override
+    protected int doProcess(Buffer inBuffer, Buffer outBuffer)
+    {
+        /*
+         * We'll only be depacketizing, we'll not act as an H.264 parser.
+         * Consequently, we'll only care about the rules of
+         * packetizing/depacketizing. For example, we'll have to make sure that
+         * no packets are lost and no other packets are received when
+         * depacketizing FU-A Fragmentation Units (FUs).
+         */
+        if (reorderedPacketsReady)
+            return dePacketizeReorderedPacket(outBuffer);
+
+        long sequenceNumber = inBuffer.getSequenceNumber();
+
+        if ((lastSequenceNumber == -1)
+                || (reorderedPackets.isEmpty()
+                    && (getSequenceNumberDistance(
+                                lastSequenceNumber,
+                                sequenceNumber)
+                            == 1)))
+        {
+            // The RTP packet is in order so process it without holding it.
+            return
+                dePacketize(
+                        (byte[]) inBuffer.getData(),
+                        inBuffer.getOffset(),
+                        inBuffer.getLength(),
+                        inBuffer.getFlags(),
+                        sequenceNumber,
+                        false,
+                        outBuffer);
+        }
+
+        int distance
+            = getSequenceNumberDistance(lastSequenceNumber, sequenceNumber);
+
+        if ((distance == 0)
+                || (SEQUENCE_NUMBER_MODULO - distance <= MAX_REORDERED_PACKETS))
+        {
+            /*
+             * A duplicate or an RTP packet which arrived after it was
+             * considered lost.
+             */
+            if (logger.isTraceEnabled())
+                logger.trace(
+                        "Dropping late RTP packet with sequenceNumber "
+                            + sequenceNumber);
+            return OUTPUT_BUFFER_NOT_FILLED;
+        }
+        if (distance >= SEQUENCE_NUMBER_MODULO / 2)
+        {
+            /*
+             * Even if (the new) sequenceNumber is less than lastSequenceNumber,
+             * we have to use it because the received sequence numbers may have
+             * been reset (e.g. by a restart of the remote peer).
+             */
+            recycleReorderedPackets();
+            lastSequenceNumber
+                = (sequenceNumber - 1) & (SEQUENCE_NUMBER_MODULO - 1);
+            packetsLost = true;
+            distance = 1;
+        }
+
+        holdPacket(inBuffer, distance);
+
+        ReorderedPacket first = reorderedPackets.get(0);
+
+        if (!packetsLost
+                && (getSequenceNumberDistance(
+                            lastSequenceNumber,
+                            first.sequenceNumber)
+                        != 1)
+                && isReorderingExceeded())
+        {
+            if (logger.isTraceEnabled())
+                logger.trace(
+                        "Dropped RTP packets upto sequenceNumber "
+                            + lastSequenceNumber
+                            + " and continuing with sequenceNumber "
+                            + first.sequenceNumber);
+
+            lastSequenceNumber
+                = (first.sequenceNumber - 1) & (SEQUENCE_NUMBER_MODULO - 1);
+            packetsLost = true;
+        }
+
+        if (packetsLost
+                || (getSequenceNumberDistance(
+                            lastSequenceNumber,
+                            first.sequenceNumber)
+                        == 1))
+        {
+            reorderedPacketsReady = true;
+            return dePacketizeReorderedPacket(outBuffer);
+        }
+        else
+        {
+            // Wait for the reordered RTP packet.
+            return OUTPUT_BUFFER_NOT_FILLED;
+        }
+    }
+
+    /**
+     * Gets the distance from a specific RTP sequence number to another in
+     * the (wrapping) 16-bit space of RTP sequence numbers.
+     *
+     * @param from the RTP sequence number to get the distance from
+     * @param to the RTP sequence number to get the distance to
+     * @return the number of increments of <tt>from</tt> which result in
+     * <tt>to</tt> i.e. a value between <tt>0</tt> and
+     * <tt>SEQUENCE_NUMBER_MODULO - 1</tt>
+     */
+    private static int getSequenceNumberDistance(long from, long to)
+    {
+        return (int) ((to - from) & (SEQUENCE_NUMBER_MODULO - 1));
+    }
+
+    /**
+     * Holds a copy of a specific RTP packet in {@link #reorderedPackets} in
+     * the order of the sequence numbers unless it is held already.
+     *
+     * @param inBuffer the RTP packet to hold
+     * @param distance the distance from {@link #lastSequenceNumber} to the
+     * sequence number of <tt>inBuffer</tt>
+     */
+    private void holdPacket(Buffer inBuffer, int distance)
+    {
+        long sequenceNumber = inBuffer.getSequenceNumber();
+        int index = 0;
+
+        for (int count = reorderedPackets.size(); index < count; index++)
+        {
+            int heldDistance
+                = getSequenceNumberDistance(
+                        lastSequenceNumber,
+                        reorderedPackets.get(index).sequenceNumber);
+
+            if (heldDistance == distance)
+                return; // A duplicate.
+            else if (heldDistance > distance)
+                break;
+        }
+
+        int length = inBuffer.getLength();
+        ReorderedPacket packet
+            = freeReorderedPackets.isEmpty()
+                ? new ReorderedPacket()
+                : freeReorderedPackets.remove(freeReorderedPackets.size() - 1);
+
+        if ((packet.data == null) || (packet.data.length < length))
+            packet.data = new byte[length];
+        System.arraycopy(
+                inBuffer.getData(), inBuffer.getOffset(),
+                packet.data, 0,
+                length);
+        packet.flags = inBuffer.getFlags();
+        packet.length = length;
+        packet.sequenceNumber = sequenceNumber;
+
+        reorderedPackets.add(index, packet);
+    }
+
+    /**
+     * Determines whether the RTP packets awaited before the ones held in
+     * {@link #reorderedPackets} are to be considered lost i.e. whether too
+     * many RTP packets or access units are held.
+     *
+     * @return <tt>true</tt> if the awaited RTP packets are to be considered
+     * lost; otherwise, <tt>false</tt>
+     */
+    private boolean isReorderingExceeded()
+    {
+        int count = reorderedPackets.size();
+
+        if (count > MAX_REORDERED_PACKETS)
+            return true;
+
+        int markers = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            if (((reorderedPackets.get(i).flags & Buffer.FLAG_RTP_MARKER) != 0)
+                    && (++markers > MAX_REORDERED_ACCESS_UNITS))
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Appends {@link #outputPaddingSize} number of bytes to <tt>out</tt>
      * beginning at index <tt>outOffset</tt>. The specified <tt>out</tt> is
@@ -523,6 +902,17 @@ public class DePacketizer
         Arrays.fill(out, outOffset, outOffset + outputPaddingSize, (byte) 0);
     }
 
+    /**
+     * Returns the RTP packets held in {@link #reorderedPackets} to
+     * {@link #freeReorderedPackets}.
+     */
+    private void recycleReorderedPackets()
+    {
+        freeReorderedPackets.addAll(reorderedPackets);
+        reorderedPackets.clear();
+        reorderedPacketsReady = false;
+    }
+
     /**
      * Requests a key frame from the remote peer associated with this
      * <tt>DePacketizer</tt> using the logic of <tt>DePacketizer</tt>.
@@ -758,4 +1148,31 @@ public class DePacketizer
             notifyAll();
         }
     }
+
+    /**
+     * Represents a copy of an RTP packet held by a <tt>DePacketizer</tt>
+     * until the RTP packets before it are received or considered lost.
+     */
+    private static class ReorderedPacket
+    {
+        /**
+         * The payload of the RTP packet.
+         */
+        byte[] data;
+
+        /**
+         * The <tt>Buffer</tt> flags of the RTP packet.
+         */
+        int flags;
+
+        /**
+         * The length of the payload in {@link #data}.
+         */
+        int length;
+
+        /**
+         * The sequence number of the RTP packet.
+         */
+        long sequenceNumber;
+    }
 }
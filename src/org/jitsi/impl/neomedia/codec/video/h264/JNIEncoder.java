@@ -16,6 +16,7 @@ import net.sf.fmj.media.*;
 
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.impl.neomedia.control.*;
 import org.jitsi.impl.neomedia.format.*;
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
@@ -239,6 +240,12 @@ public class JNIEncoder
      */
     private String packetizationMode;
 
+    /**
+     * The maximum size in bytes of the RTP payloads output by the associated
+     * packetizer. In packetization-mode 0, the slices are limited to it.
+     */
+    private int packetSize = PacketSizeControlImpl.getMaxPacketSize();
+
     /**
      * The raw frame buffer.
      */
@@ -598,8 +605,7 @@ public class JNIEncoder
 
         if ((null == packetizationMode) || "0".equals(packetizationMode))
         {
-            FFmpeg.avcodeccontext_set_rtp_payload_size(avctx,
-                    Packetizer.MAX_PAYLOAD_SIZE);
+            FFmpeg.avcodeccontext_set_rtp_payload_size(avctx, packetSize);
         }
 
         try
@@ -885,6 +891,20 @@ public class JNIEncoder
         return outputFormat;
     }
 
+    /**
+     * Sets the maximum size in bytes of the RTP payloads output by the
+     * associated packetizer. Takes effect when this <tt>JNIEncoder</tt> is
+     * opened.
+     *
+     * @param packetSize the maximum size in bytes of the RTP payloads output
+     * by the associated packetizer
+     */
+    public void setPacketSize(int packetSize)
+    {
+        this.packetSize
+            = Math.max(PacketSizeControlImpl.MIN_PACKET_SIZE, packetSize);
+    }
+
     /**
      * Sets the packetization mode to be used for the H.264 RTP payload output
      * by this <tt>JNIEncoder</tt> and the associated packetizer.
@@ -8,7 +8,6 @@ package org.jitsi.impl.neomedia.codec.video.h264;
 
 import java.awt.*;
 import java.util.*;
-import java.util.List;
 
 import javax.media.*;
 import javax.media.format.*;
@@ -16,6 +15,7 @@ import javax.media.format.*;
 import net.sf.fmj.media.*;
 
 import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.impl.neomedia.control.*;
 import org.jitsi.impl.neomedia.format.*;
 import org.jitsi.service.neomedia.codec.*;
 
@@ -30,15 +30,27 @@ public class Packetizer
     extends AbstractPacketizer
 {
     /**
-     * Maximum payload size without the headers.
+     * The type of a pending RTP payload which is a Fragmentation Unit (FU) of
+     * type FU-A.
      */
-    public static final int MAX_PAYLOAD_SIZE = 1024;
+    private static final int FU_A = 28;
 
     /**
      * Name of the plugin.
      */
     private static final String PLUGIN_NAME = "H264 Packetizer";
 
+    /**
+     * The type of a pending RTP payload which is a Single NAL Unit Packet.
+     */
+    private static final int SINGLE_NAL_UNIT_PACKET = 0;
+
+    /**
+     * The type of a pending RTP payload which is a Single-time aggregation
+     * packet (STAP) of type STAP-A.
+     */
+    private static final int STAP_A = 24;
+
     /**
      * The <tt>Formats</tt> supported by <tt>Packetizer</tt> instances as
      * output.
@@ -86,14 +98,93 @@ public class Packetizer
     }
 
     /**
-     * The list of NAL units to be sent as payload in RTP packets.
+     * The number of NAL units of the current input which have been aggregated
+     * into STAP-As.
+     */
+    private int aggregatedNALCount;
+
+    /**
+     * The lengths of the NAL units of the current input which have been
+     * aggregated into STAP-As.
+     */
+    private int[] aggregatedNALLengths = new int[8];
+
+    /**
+     * The offsets in the input of the NAL units of the current input which
+     * have been aggregated into STAP-As.
+     */
+    private int[] aggregatedNALOffsets = new int[8];
+
+    /**
+     * The length of the next STAP-A i.e. its STAP-A NAL HDR and the NAL unit
+     * sizes and the NAL units which are to be aggregated into it.
+     */
+    private int aggregationLength;
+
+    /**
+     * The index in {@link #aggregatedNALOffsets} of the first NAL unit which
+     * is to be aggregated into the next STAP-A.
+     */
+    private int aggregationStart;
+
+    /**
+     * The maximum size in bytes of the RTP payloads of the current input.
+     */
+    private int packetSize;
+
+    /**
+     * The <tt>PacketSizeControl</tt> which specifies the maximum size in
+     * bytes of the RTP payloads output by this <tt>Packetizer</tt>.
      */
-    private final List<byte[]> nals = new LinkedList<byte[]>();
+    private final PacketSizeControlImpl packetSizeControl
+        = new PacketSizeControlImpl();
 
     /**
-     * The timeStamp of the RTP packets in which <tt>nals</tt> are to be sent.
+     * The number of RTP payloads of the current input which are to be sent.
      */
-    private long nalsTimeStamp;
+    private int payloadCount;
+
+    /**
+     * The input (i.e. the H.264 encoded data) which the RTP payloads to be
+     * sent are views into.
+     */
+    private byte[] payloadData;
+
+    /**
+     * The FU indicators and the FU headers (in the second and the first
+     * bytes, respectively) of the RTP payloads to be sent which are FU-As.
+     */
+    private int[] payloadHeaders = new int[16];
+
+    /**
+     * The index of the next RTP payload to be sent.
+     */
+    private int payloadIndex;
+
+    /**
+     * The lengths of the NAL units (or fragments thereof) of the RTP payloads
+     * to be sent or, for STAP-As, the numbers of aggregated NAL units.
+     */
+    private int[] payloadLengths = new int[16];
+
+    /**
+     * The offsets in {@link #payloadData} of the NAL units (or fragments
+     * thereof) of the RTP payloads to be sent or, for STAP-As, the indexes in
+     * {@link #aggregatedNALOffsets} of the first aggregated NAL units.
+     */
+    private int[] payloadOffsets = new int[16];
+
+    /**
+     * The timeStamp of the RTP packets in which the RTP payloads are to be
+     * sent.
+     */
+    private long payloadTimeStamp;
+
+    /**
+     * The types of the RTP payloads to be sent i.e.
+     * {@link #SINGLE_NAL_UNIT_PACKET}, {@link #FU_A} or {@link #STAP_A}.
+     */
+    private int[] payloadTypes = new int[16];
 
     /**
      * The sequence number of the next RTP packet to be output by this
@@ -112,6 +203,74 @@ public class Packetizer
 
         inputFormat = null;
         outputFormat = null;
+
+        addControl(packetSizeControl);
+    }
+
+    /**
+     * Adds an RTP payload to be sent.
+     *
+     * @param type the type of the RTP payload
+     * @param offset the offset in the input of the NAL unit (or the fragment
+     * thereof) to be sent or, for a STAP-A, the index of the first aggregated
+     * NAL unit
+     * @param length the length of the NAL unit (or the fragment thereof) to be
+     * sent or, for a STAP-A, the number of aggregated NAL units
+     * @param header the FU indicator and the FU header of a FU-A
+     * @return <tt>true</tt>
+     */
+    private boolean addPayload(int type, int offset, int length, int header)
+    {
+        if (payloadCount == payloadTypes.length)
+        {
+            int newLength = 2 * payloadCount;
+
+            payloadHeaders = Arrays.copyOf(payloadHeaders, newLength);
+            payloadLengths = Arrays.copyOf(payloadLengths, newLength);
+            payloadOffsets = Arrays.copyOf(payloadOffsets, newLength);
+            payloadTypes = Arrays.copyOf(payloadTypes, newLength);
+        }
+        payloadHeaders[payloadCount] = header;
+        payloadLengths[payloadCount] = length;
+        payloadOffsets[payloadCount] = offset;
+        payloadTypes[payloadCount] = type;
+        payloadCount++;
+        return true;
+    }
+
+    /**
+     * Aggregates a specific NAL unit into the next STAP-A (i.e. Single-time
+     * aggregation packet) which is to be packetized by
+     * {@link #packetizeAggregatedNALs()}. If the NAL unit does not fit into
+     * the STAP-A, the latter is packetized first.
+     *
+     * @param nalOffset the offset in <tt>nal</tt> at which the NAL unit
+     * begins
+     * @param nalLength the length in <tt>payloadData</tt> beginning at
+     * <tt>nalOffset</tt> of the NAL unit
+     * @return <tt>true</tt> if at least one RTP packet payload has been
+     * packetized i.e. prepared for sending; otherwise, <tt>false</tt>
+     */
+    private boolean aggregateNAL(int nalOffset, int nalLength)
+    {
+        boolean nalsAdded = false;
+
+        if (aggregationLength + 2 /* NALU size */ + nalLength > packetSize)
+            nalsAdded = packetizeAggregatedNALs();
+        if (aggregatedNALCount == aggregatedNALOffsets.length)
+        {
+            aggregatedNALOffsets
+                = Arrays.copyOf(aggregatedNALOffsets, 2 * aggregatedNALCount);
+            aggregatedNALLengths
+                = Arrays.copyOf(aggregatedNALLengths, 2 * aggregatedNALCount);
+        }
+        if (aggregatedNALCount == aggregationStart)
+            aggregationLength = 1 /* STAP-A NAL HDR */;
+        aggregatedNALOffsets[aggregatedNALCount] = nalOffset;
+        aggregatedNALLengths[aggregatedNALCount] = nalLength;
+        aggregatedNALCount++;
+        aggregationLength += 2 /* NALU size */ + nalLength;
+        return nalsAdded;
     }
 
     /**
@@ -222,7 +381,11 @@ public class Packetizer
     {
         if (!opened)
         {
-            nals.clear();
+            aggregatedNALCount = 0;
+            aggregationStart = 0;
+            payloadCount = 0;
+            payloadData = null;
+            payloadIndex = 0;
             sequenceNumber = 0;
 
             super.open();
@@ -230,37 +393,84 @@ public class Packetizer
         }
     }
 
+    /**
+     * Packetizes the NAL units aggregated by {@link #aggregateNAL(int, int)}
+     * into a STAP-A or, if there is a single one, into a "Single NAL Unit
+     * Packet".
+     *
+     * @return <tt>true</tt> if at least one RTP packet payload has been
+     * packetized i.e. prepared for sending; otherwise, <tt>false</tt>
+     */
+    private boolean packetizeAggregatedNALs()
+    {
+        int start = aggregationStart;
+        int count = aggregatedNALCount - start;
+
+        if (count == 0)
+            return false;
+        if (count == 1)
+        {
+            aggregatedNALCount = start;
+            return
+                addPayload(
+                        SINGLE_NAL_UNIT_PACKET,
+                        aggregatedNALOffsets[start],
+                        aggregatedNALLengths[start],
+                        0);
+        }
+
+        aggregationStart = aggregatedNALCount;
+        return addPayload(STAP_A, start, count, 0);
+    }
+
     /**
      * Packetizes a specific NAL unit of H.264 encoded data so that it becomes
      * ready to be sent as the payload of RTP packets. If the specified NAL unit
      * does not fit into a single RTP packet i.e. will not become a "Single NAL
      * Unit Packet", splits it into "Fragmentation Units (FUs)" of type FU-A.
+     * The RTP payloads are views into {@link #payloadData} which are written
+     * into the output when they are sent.
      *
-     * @param nal the bytes which contain the NAL unit of H.264 encoded data to
-     * be packetized
-     * @param nalOffset the offset in <tt>nal</tt> at which the NAL unit of
+     * @param nalOffset the offset in <tt>payloadData</tt> at which the NAL unit of
      * H.264 encoded data to be packetized begins
-     * @param nalLength the length in <tt>nal</tt> beginning at
+     * @param nalLength the length in <tt>payloadData</tt> beginning at
      * <tt>nalOffset</tt> of the NAL unit of H.264 encoded data to be packetized
+     * @param aggregate <tt>true</tt> if the NAL unit may be aggregated with
+     * the next ones into a STAP-A (which requires packetization-mode 1)
      * @return <tt>true</tt> if at least one RTP packet payload has been
      * packetized i.e. prepared for sending; otherwise, <tt>false</tt>
      */
-    private boolean packetizeNAL(byte[] nal, int nalOffset, int nalLength)
+    private boolean packetizeNAL(
+            int nalOffset, int nalLength,
+            boolean aggregate)
     {
+        /*
+         * If the NAL fits into a STAP-A along with another NAL, aggregate it.
+         * SPS, PPS and the slices of small pictures will share RTP packets
+         * (and their headers) that way.
+         */
+        if (aggregate
+                && (1 /* STAP-A NAL HDR */ + 2 /* NALU size */ + nalLength
+                        < packetSize))
+        {
+            return aggregateNAL(nalOffset, nalLength);
+        }
+
+        boolean nalsAdded = packetizeAggregatedNALs();
+
         /*
          * If the NAL fits into a "Single NAL Unit Packet", it's already
          * packetized.
          */
-        if (nalLength <= MAX_PAYLOAD_SIZE)
+        if (nalLength <= packetSize)
         {
-            byte[] singleNALUnitPacket = new byte[nalLength];
-
-            System.arraycopy(nal, nalOffset, singleNALUnitPacket, 0, nalLength);
-            return nals.add(singleNALUnitPacket);
+            return
+                addPayload(SINGLE_NAL_UNIT_PACKET, nalOffset, nalLength, 0)
+                    || nalsAdded;
         }
 
         // Otherwise, split it into "Fragmentation Units (FUs)".
-        byte octet = nal[nalOffset];
+        byte octet = payloadData[nalOffset];
         int forbidden_zero_bit = octet & 0x80;
         int nri = octet & 0x60;
         int nal_unit_type = octet & 0x1F;
@@ -283,8 +493,7 @@ public class Packetizer
         nalLength--;
 
         int maxFUPayloadLength
-            = MAX_PAYLOAD_SIZE - 2 /* FU indicator & FU header */;
-        boolean nalsAdded = false;
+            = packetSize - 2 /* FU indicator & FU header */;
 
         while (nalLength > 0)
         {
@@ -298,24 +507,15 @@ public class Packetizer
                 fuHeader |= 0x40; // Turn on the End bit.
             }
 
-            /*
-             * Tests with Asterisk suggest that the fragments of a fragmented
-             * NAL unit must be with one and the same size. There is also a
-             * similar question on the x264-devel mailing list but,
-             * unfortunately, it is unanswered.
-             */
-            byte[] fua
-                = new byte[
-                        2 /* FU indicator & FU header */ + maxFUPayloadLength];
-
-            fua[0] = fuIndicator;
-            fua[1] = fuHeader;
-            System.arraycopy(nal, nalOffset, fua, 2, fuPayloadLength);
+            nalsAdded
+                = addPayload(
+                        FU_A,
+                        nalOffset, fuPayloadLength,
+                        ((fuIndicator & 0xFF) << 8) | (fuHeader & 0xFF))
+                    || nalsAdded;
             nalOffset += fuPayloadLength;
             nalLength -= fuPayloadLength;
 
-            nalsAdded = nals.add(fua) || nalsAdded;
-
             fuHeader &= ~0x80; // Turn off the Start bit.
         }
         return nalsAdded;
@@ -333,19 +533,17 @@ public class Packetizer
     public int process(Buffer inBuffer, Buffer outBuffer)
     {
         // if there are some nals we check and send them
-        if (nals.size() > 0)
+        if (payloadIndex < payloadCount)
         {
-            byte[] nal = nals.remove(0);
+            int index = payloadIndex++;
 
             // Send the NAL.
-            outBuffer.setData(nal);
-            outBuffer.setLength(nal.length);
-            outBuffer.setOffset(0);
-            outBuffer.setTimeStamp(nalsTimeStamp);
+            writePayload(index, outBuffer);
+            outBuffer.setTimeStamp(payloadTimeStamp);
             outBuffer.setSequenceNumber(sequenceNumber++);
 
             // If there are other NALs, send them as well.
-            if(nals.size() > 0)
+            if (payloadIndex < payloadCount)
                 return (BUFFER_PROCESSED_OK | INPUT_BUFFER_NOT_CONSUMED);
             else
             {
@@ -359,38 +557,49 @@ public class Packetizer
                  * the last NALs in an access unit should probably NOT be
                  * marked anyway.
                  */
-                if (nal.length > 0)
-                {
-                    int nal_unit_type = nal[0] & 0x1F;
+                int nal_unit_type;
 
-                    if ((nal_unit_type == 28 /* FU-A */) && (nal.length > 1))
-                    {
-                        byte fuHeader = nal[1];
-
-                        if ((fuHeader & 0x40 /* End bit */) == 0)
-                        {
-                            /*
-                             * A FU-A without the End bit cannot possibly be the
-                             * last NAL unit of an access unit.
-                             */
-                            flags &= ~Buffer.FLAG_RTP_MARKER;
-                        }
-                        else
-                            nal_unit_type = fuHeader & 0x1F;
-                    }
+                switch (payloadTypes[index])
+                {
+                case FU_A:
+                    int fuHeader = payloadHeaders[index];
 
-                    switch (nal_unit_type)
+                    if ((fuHeader & 0x40 /* End bit */) == 0)
                     {
-                    case 6 /* Supplemental enhancement information (SEI) */:
-                    case 7 /* Sequence parameter set */:
-                    case 8 /* Picture parameter set */:
-                    case 9 /* Access unit delimiter */:
+                        /*
+                         * A FU-A without the End bit cannot possibly be the
+                         * last NAL unit of an access unit.
+                         */
                         flags &= ~Buffer.FLAG_RTP_MARKER;
-                        break;
                     }
+                    nal_unit_type = fuHeader & 0x1F;
+                    break;
+                case STAP_A:
+                    nal_unit_type
+                        = payloadData[
+                                aggregatedNALOffsets[
+                                        payloadOffsets[index]
+                                            + payloadLengths[index]
+                                            - 1]]
+                            & 0x1F;
+                    break;
+                default:
+                    nal_unit_type = payloadData[payloadOffsets[index]] & 0x1F;
+                    break;
+                }
+
+                switch (nal_unit_type)
+                {
+                case 6 /* Supplemental enhancement information (SEI) */:
+                case 7 /* Sequence parameter set */:
+                case 8 /* Picture parameter set */:
+                case 9 /* Access unit delimiter */:
+                    flags &= ~Buffer.FLAG_RTP_MARKER;
+                    break;
                 }
 
                 outBuffer.setFlags(flags);
+                payloadData = null;
                 return BUFFER_PROCESSED_OK;
             }
         }
@@ -430,6 +639,19 @@ public class Packetizer
         int inOffset = inBuffer.getOffset();
         boolean nalsAdded = false;
 
+        aggregatedNALCount = 0;
+        aggregationStart = 0;
+        packetSize = packetSizeControl.getPacketSize();
+        payloadCount = 0;
+        payloadData = inData;
+        payloadIndex = 0;
+        boolean aggregate
+            = "1".equals(
+                    getPacketizationMode(
+                            (outputFormat == null)
+                                ? inputFormat
+                                : outputFormat));
+
         /*
          * Split the H.264 encoded data into NAL units. Each NAL unit begins
          * with start_code_prefix_one_3bytes. Refer to "B.1 Byte stream NAL unit
@@ -461,12 +683,13 @@ public class Packetizer
 
                 if (nalLength > 0)
                     nalsAdded
-                        = packetizeNAL(inData, beginIndex, nalLength)
+                        = packetizeNAL(beginIndex, nalLength, aggregate)
                             || nalsAdded;
             }
+            nalsAdded = packetizeAggregatedNALs() || nalsAdded;
         }
 
-        nalsTimeStamp = inBuffer.getTimeStamp();
+        payloadTimeStamp = inBuffer.getTimeStamp();
 
         return
             nalsAdded ? process(inBuffer, outBuffer) : OUTPUT_BUFFER_NOT_FILLED;
@@ -554,4 +777,98 @@ public class Packetizer
         // Return the outputFormat which is actually set.
         return outputFormat;
     }
+
+    /**
+     * Writes a specific RTP payload (i.e. its headers and the NAL units or
+     * the fragment thereof it is a view of) into a specific <tt>Buffer</tt>.
+     *
+     * @param index the index of the RTP payload to write
+     * @param outBuffer the <tt>Buffer</tt> to write the RTP payload into
+     */
+    private void writePayload(int index, Buffer outBuffer)
+    {
+        int offset = payloadOffsets[index];
+        int length = payloadLengths[index];
+        byte[] out;
+        int outLength;
+
+        switch (payloadTypes[index])
+        {
+        case FU_A:
+            /*
+             * Tests with Asterisk suggest that the fragments of a fragmented
+             * NAL unit must be with one and the same size. There is also a
+             * similar question on the x264-devel mailing list but,
+             * unfortunately, it is unanswered.
+             */
+            outLength = packetSize;
+            out
+                = AbstractCodec2.validateByteArraySize(
+                        outBuffer,
+                        outLength,
+                        false);
+
+            int header = payloadHeaders[index];
+
+            out[0] = (byte) (header >> 8); // FU indicator
+            out[1] = (byte) header; // FU header
+            System.arraycopy(payloadData, offset, out, 2, length);
+            Arrays.fill(out, 2 + length, outLength, (byte) 0);
+            break;
+
+        case STAP_A:
+            int end = offset + length;
+
+            outLength = 1 /* STAP-A NAL HDR */;
+            for (int i = offset; i < end; i++)
+                outLength += 2 /* NALU size */ + aggregatedNALLengths[i];
+            out
+                = AbstractCodec2.validateByteArraySize(
+                        outBuffer,
+                        outLength,
+                        false);
+
+            int forbidden_zero_bit = 0;
+            int nri = 0;
+            int outOffset = 1 /* STAP-A NAL HDR */;
+
+            for (int i = offset; i < end; i++)
+            {
+                int nalOffset = aggregatedNALOffsets[i];
+                int nalLength = aggregatedNALLengths[i];
+                byte octet = payloadData[nalOffset];
+
+                /*
+                 * The F bit MUST be cleared if all F bits of the aggregated
+                 * NAL units are zero and the NRI MUST be the maximum of their
+                 * NRIs.
+                 */
+                forbidden_zero_bit |= octet & 0x80;
+                nri = Math.max(nri, octet & 0x60);
+
+                out[outOffset++] = (byte) (nalLength >> 8);
+                out[outOffset++] = (byte) nalLength;
+                System.arraycopy(
+                        payloadData, nalOffset,
+                        out, outOffset,
+                        nalLength);
+                outOffset += nalLength;
+            }
+            out[0] = (byte) (forbidden_zero_bit | nri | STAP_A);
+            break;
+
+        default:
+            outLength = length;
+            out
+                = AbstractCodec2.validateByteArraySize(
+                        outBuffer,
+                        outLength,
+                        false);
+            System.arraycopy(payloadData, offset, out, 0, length);
+            break;
+        }
+
+        outBuffer.setLength(outLength);
+        outBuffer.setOffset(0);
+    }
 }
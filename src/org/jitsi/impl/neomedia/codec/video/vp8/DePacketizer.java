@@ -6,8 +6,11 @@
  */
 package org.jitsi.impl.neomedia.codec.video.vp8;
 
+import java.util.*;
+
 import org.jitsi.impl.neomedia.codec.*;
 import org.jitsi.service.neomedia.codec.*;
+import org.jitsi.service.neomedia.control.*;
 import org.jitsi.util.*;
 import javax.media.*;
 import javax.media.format.*;
@@ -18,20 +21,19 @@ import javax.media.format.*;
  *
  * It is not yet fully compliant with the draft above, it can't successfully
  * process all valid streams.
- * It works by concatenating packets' payload (stripping the payload descriptor),
- * until it encounters a packet with it's Start of Partition bit set, at which
- * point it outputs the concatenated data and starts again.
+ * It works by grouping the packets' payloads (stripping the payload
+ * descriptor) into frames by their RTP timestamps. A frame is output as soon
+ * as it is complete i.e. its packets from the one with the 'start of
+ * partition' bit set (and PartID 0) to the one with the RTP marker bit set have
+ * all been received. Packets reordered by the network are held for a window of
+ * a few frames, the frames are output in order and key frames are requested
+ * only when a frame which other frames reference has been lost.
  *
  * @author Boris Grozev
  */
 public class DePacketizer
     extends AbstractCodec2
 {
-    /**
-     * Size of <tt>buffer</tt>
-     */
-    private static final int BUFFER_SIZE = 100000;
-
     /**
      * The <tt>Logger</tt> used by the <tt>DePacketizer</tt> class and its
      * instances for logging output.
@@ -39,32 +41,119 @@ public class DePacketizer
     private static final Logger logger = Logger.getLogger(DePacketizer.class);
 
     /**
-     * Certain output will only be logged if this is set to true in addition to
-     * 'trace' being enable in the logger. This is because the output is long
-     * and would be rarely used and to let compiler optimise the conditionals.
+     * The maximum number of frames which are held while an earlier frame is
+     * incomplete. Once it is exceeded, the earlier frame is considered lost.
+     */
+    private static final int MAX_PENDING_FRAMES = 3;
+
+    /**
+     * The maximum number of packets which are held in {@link #frames}. Once
+     * it is exceeded, the earliest frame is considered lost.
+     */
+    private static final int MAX_PENDING_PACKETS = 1024;
+
+    /**
+     * The number of distinct RTP sequence numbers.
+     */
+    private static final int SEQUENCE_NUMBER_MODULO = 1 << 16;
+
+    /**
+     * The interval of time in milliseconds between two consecutive requests
+     * for a key frame from the remote peer associated with
+     * {@link #keyFrameControl}.
+     */
+    private static final long TIME_BETWEEN_REQUEST_KEY_FRAME = 500;
+
+    /**
+     * The <tt>Format</tt> of the output of <tt>DePacketizer</tt>.
+     */
+    private static final VideoFormat VP8_FORMAT
+        = new VideoFormat(Constants.VP8);
+
+    /**
+     * Gets the distance from a specific RTP sequence number to another in
+     * the (wrapping) 16-bit space of RTP sequence numbers.
+     *
+     * @param from the RTP sequence number to get the distance from
+     * @param to the RTP sequence number to get the distance to
+     * @return the number of increments of <tt>from</tt> which result in
+     * <tt>to</tt> i.e. a value between <tt>0</tt> and
+     * <tt>SEQUENCE_NUMBER_MODULO - 1</tt>
+     */
+    private static int getSequenceNumberDistance(long from, long to)
+    {
+        return (int) ((to - from) & (SEQUENCE_NUMBER_MODULO - 1));
+    }
+
+    /**
+     * Determines whether a specific RTP sequence number is after another one
+     * in the (wrapping) 16-bit space of RTP sequence numbers.
+     *
+     * @param a the RTP sequence number to compare
+     * @param b the RTP sequence number to compare <tt>a</tt> with
+     * @return <tt>true</tt> if <tt>a</tt> is after <tt>b</tt>; otherwise,
+     * <tt>false</tt>
+     */
+    private static boolean isAfter(long a, long b)
+    {
+        int distance = getSequenceNumberDistance(b, a);
+
+        return (distance != 0) && (distance < SEQUENCE_NUMBER_MODULO / 2);
+    }
+
+    /**
+     * The frames which are being assembled, in the order of their RTP
+     * sequence numbers.
      */
-    private static final boolean TRACE = false;
+    private final List<Frame> frames = new ArrayList<Frame>();
 
     /**
-     * Buffer used to store the payload of packets
+     * The indicator which determines whether the first frame in
+     * {@link #frames} is ready to be output during the next call to
+     * {@link #doProcess(Buffer, Buffer)} (the input <tt>Buffer</tt> of which
+     * has been consumed already).
      */
-    private byte[] buffer = new byte[BUFFER_SIZE];
+    private boolean framesReady = false;
 
     /**
-     * Pointer to the last byte used in buffer.
+     * The <tt>Frame</tt> instances which are not in use and may be reused.
      */
-    private int bufferPointer = 0;
+    private final List<Frame> freeFrames = new ArrayList<Frame>();
 
     /**
-     * Whether a frame has been output
+     * The <tt>Packet</tt> instances which are not in use and may be reused.
      */
-    private boolean haveSent = false;
+    private final List<Packet> freePackets = new ArrayList<Packet>();
 
     /**
-     * The buffer was corrupted for some reason, wait for a new 'start of
-     * partition' packet before resuming.
+     * The <tt>KeyFrameControl</tt> used by this <tt>DePacketizer</tt> to
+     * request key frames from the remote peer.
      */
-    private boolean waitForNewStart = false;
+    private KeyFrameControl keyFrameControl;
+
+    /**
+     * The RTP sequence number of the last packet of the last frame output by
+     * this <tt>DePacketizer</tt> or <tt>-1</tt> if no frame has been output.
+     */
+    private long lastSequenceNumber = -1;
+
+    /**
+     * The time of the last request for a key frame from the remote peer
+     * associated with {@link #keyFrameControl}.
+     */
+    private long lastRequestKeyFrameTime = -1;
+
+    /**
+     * The indicator which determines whether the frames output by this
+     * <tt>DePacketizer</tt> cannot be decoded until a key frame is output
+     * (e.g. because a frame they reference has been lost).
+     */
+    private boolean needKeyFrame = true;
+
+    /**
+     * The number of packets held in {@link #frames}.
+     */
+    private int pendingPacketCount = 0;
 
     /**
      * Initializes a new <tt>JNIEncoder</tt> instance.
@@ -77,13 +166,84 @@ public class DePacketizer
         inputFormats = new VideoFormat[] {new VideoFormat(Constants.VP8_RTP)};
     }
 
+    /**
+     * Holds a copy of a specific packet in the frame it belongs to.
+     *
+     * @param inputBuffer the packet
+     * @param pdSize the size of the Payload Descriptor of the packet
+     */
+    private void addPacket(Buffer inputBuffer, int pdSize)
+    {
+        byte[] input = (byte[]) inputBuffer.getData();
+        int inputOffset = inputBuffer.getOffset();
+        int payloadLength = inputBuffer.getLength() - pdSize;
+        Packet packet
+            = freePackets.isEmpty()
+                ? new Packet()
+                : freePackets.remove(freePackets.size() - 1);
+
+        if ((packet.payload == null) || (packet.payload.length < payloadLength))
+            packet.payload = new byte[payloadLength];
+        System.arraycopy(
+                input, inputOffset + pdSize,
+                packet.payload, 0,
+                payloadLength);
+        packet.length = payloadLength;
+        packet.marker
+            = (inputBuffer.getFlags() & Buffer.FLAG_RTP_MARKER) != 0;
+        packet.nonReference
+            = VP8PayloadDescriptor.isNonReference(input, inputOffset);
+        packet.sequenceNumber = inputBuffer.getSequenceNumber();
+        packet.start
+            = VP8PayloadDescriptor.isStartOfPartition(input, inputOffset)
+                && (VP8PayloadDescriptor.getPartitionId(input, inputOffset)
+                        == 0);
+        packet.timeStamp = inputBuffer.getTimeStamp();
+
+        Frame frame = null;
+
+        for (Frame f : frames)
+        {
+            if (f.accepts(packet))
+            {
+                frame = f;
+                break;
+            }
+        }
+        if (frame == null)
+        {
+            frame
+                = freeFrames.isEmpty()
+                    ? new Frame()
+                    : freeFrames.remove(freeFrames.size() - 1);
+            frame.timeStamp = packet.timeStamp;
+            frames.add(frame);
+        }
+        if (frame.add(packet))
+            pendingPacketCount++;
+        else
+            freePackets.add(packet); // A duplicate.
+
+        // Keep the frames in the order of their RTP sequence numbers.
+        for (int i = frames.indexOf(frame); i > 0; i--)
+        {
+            Frame previous = frames.get(i - 1);
+
+            if (!isAfter(previous.getFirstSequenceNumber(),
+                    frame.getFirstSequenceNumber()))
+                break;
+            frames.set(i, previous);
+            frames.set(i - 1, frame);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected void doClose()
     {
-        return;
+        reset();
     }
 
     /**
@@ -92,115 +252,493 @@ public class DePacketizer
     @Override
     protected void doOpen() throws ResourceUnavailableException
     {
+        reset();
+        lastRequestKeyFrameTime = -1;
         if(logger.isTraceEnabled())
             logger.trace("Opened VP8 de-packetizer");
-        return;
     }
 
-
     /**
      * {@inheritDoc}
      */
     @Override
     protected int doProcess(Buffer inputBuffer, Buffer outputBuffer)
     {
-        int ret;
+        if (framesReady)
+            return outputFrame(outputBuffer);
+
         byte[] input = (byte[]) inputBuffer.getData();
-        boolean start = VP8PayloadDescriptor.
-                            isStartOfPartition(input, inputBuffer.getOffset());
-        if(waitForNewStart)
+        int pdSize;
+
+        try
         {
-            if(start)
+            pdSize
+                = VP8PayloadDescriptor.getSize(input, inputBuffer.getOffset());
+        }
+        catch (Exception e)
+        {
+            outputBuffer.setDiscard(true);
+            return BUFFER_PROCESSED_FAILED;
+        }
+
+        long sequenceNumber = inputBuffer.getSequenceNumber();
+
+        if ((lastSequenceNumber != -1)
+                && !isAfter(sequenceNumber, lastSequenceNumber))
+        {
+            if (getSequenceNumberDistance(sequenceNumber, lastSequenceNumber)
+                    <= MAX_PENDING_PACKETS)
             {
-                waitForNewStart = false;
+                /*
+                 * A duplicate or a packet of a frame which has been output or
+                 * considered lost already.
+                 */
+                if (logger.isTraceEnabled())
+                    logger.trace("Dropping late packet " + sequenceNumber);
+                return OUTPUT_BUFFER_NOT_FILLED;
             }
             else
             {
-                outputBuffer.setDiscard(true);
-                return BUFFER_PROCESSED_OK;
+                // The RTP sequence numbers have been reset.
+                reset();
             }
         }
 
-        int pdSize;
-        try
+        addPacket(inputBuffer, pdSize);
+
+        return
+            isFirstFrameReady()
+                ? outputFrame(outputBuffer)
+                : OUTPUT_BUFFER_NOT_FILLED;
+    }
+
+    /**
+     * Determines whether the first frame in {@link #frames} is to be output.
+     * Drops the first frames which are considered lost (i.e. which are still
+     * incomplete while the reorder window is exceeded).
+     *
+     * @return <tt>true</tt> if the first frame in {@link #frames} is to be
+     * output; otherwise, <tt>false</tt>
+     */
+    private boolean isFirstFrameReady()
+    {
+        while (!frames.isEmpty())
         {
-            pdSize = VP8PayloadDescriptor.getSize(input, inputBuffer.getOffset());
+            Frame frame = frames.get(0);
+            Frame next = (frames.size() > 1) ? frames.get(1) : null;
+            boolean complete = frame.isComplete(next);
+            boolean inOrder
+                = (lastSequenceNumber == -1)
+                    || (getSequenceNumberDistance(
+                                lastSequenceNumber,
+                                frame.getFirstSequenceNumber())
+                            == 1);
+
+            if (complete && inOrder)
+                return true;
+            if ((frames.size() <= MAX_PENDING_FRAMES)
+                    && (pendingPacketCount <= MAX_PENDING_PACKETS))
+                return false;
+
+            // Stop waiting for the packets which are missing.
+            if (complete)
+            {
+                /*
+                 * Whole frames before this one have been lost and it is
+                 * unknown whether other frames reference them.
+                 */
+                if (logger.isTraceEnabled())
+                {
+                    logger.trace(
+                            "Lost packets before "
+                                + frame.getFirstSequenceNumber());
+                }
+                needKeyFrame = true;
+                return true;
+            }
+
+            if (logger.isTraceEnabled())
+            {
+                logger.trace(
+                        "Dropping incomplete frame with packets from "
+                            + frame.getFirstSequenceNumber());
+            }
+            if (!frame.isNonReference())
+                needKeyFrame = true;
+            frames.remove(0);
+            lastSequenceNumber = frame.getLastSequenceNumber();
+            recycle(frame);
         }
-        catch (Exception e)
+        return false;
+    }
+
+    /**
+     * Outputs the first frame in {@link #frames} (which is ready to be output)
+     * into a specific <tt>Buffer</tt>.
+     *
+     * @param outputBuffer the <tt>Buffer</tt> to output the frame into
+     * @return the flags such as <tt>BUFFER_PROCESSED_OK</tt> and
+     * <tt>INPUT_BUFFER_NOT_CONSUMED</tt> to be returned by
+     * {@link #process(Buffer, Buffer)}
+     */
+    private int outputFrame(Buffer outputBuffer)
+    {
+        Frame frame = frames.remove(0);
+        int length = frame.getLength();
+
+        if(logger.isTraceEnabled())
+            logger.trace("Sending a frame, size=" + length);
+
+        byte[] output = validateByteArraySize(outputBuffer, length, false);
+        int outputOffset = 0;
+
+        for (Packet packet : frame.packets)
         {
-            outputBuffer.setDiscard(true);
-            return BUFFER_PROCESSED_FAILED;
+            System.arraycopy(
+                    packet.payload, 0,
+                    output, outputOffset,
+                    packet.length);
+            outputOffset += packet.length;
         }
+        outputBuffer.setFormat(VP8_FORMAT);
+        outputBuffer.setLength(length);
+        outputBuffer.setOffset(0);
+        outputBuffer.setTimeStamp(frame.timeStamp);
+        outputBuffer.setSequenceNumber(frame.getLastSequenceNumber());
+
+        lastSequenceNumber = frame.getLastSequenceNumber();
+        if (frame.isKeyFrame())
+            needKeyFrame = false;
+        else if (needKeyFrame)
+            requestKeyFrame();
+        recycle(frame);
+
+        if (isFirstFrameReady())
+        {
+            // Output the next frame during the next call.
+            framesReady = true;
+            return BUFFER_PROCESSED_OK | INPUT_BUFFER_NOT_CONSUMED;
+        }
+        else
+        {
+            framesReady = false;
+            return BUFFER_PROCESSED_OK;
+        }
+    }
 
-        if(logger.isTraceEnabled() && TRACE)
+    /**
+     * Returns a specific frame to {@link #freeFrames} and its packets to
+     * {@link #freePackets}.
+     *
+     * @param frame the frame to recycle
+     */
+    private void recycle(Frame frame)
+    {
+        pendingPacketCount -= frame.packets.size();
+        freePackets.addAll(frame.packets);
+        frame.packets.clear();
+        frame.marker = null;
+        frame.start = null;
+        freeFrames.add(frame);
+    }
+
+    /**
+     * Requests a key frame from the remote peer associated with
+     * {@link #keyFrameControl} unless one has been requested recently.
+     */
+    private void requestKeyFrame()
+    {
+        KeyFrameControl keyFrameControl = this.keyFrameControl;
+
+        if (keyFrameControl == null)
+            return;
+
+        long now = System.currentTimeMillis();
+
+        if ((lastRequestKeyFrameTime != -1)
+                && (now - lastRequestKeyFrameTime
+                        < TIME_BETWEEN_REQUEST_KEY_FRAME))
+            return;
+        lastRequestKeyFrameTime = now;
+
+        List<KeyFrameControl.KeyFrameRequester> keyFrameRequesters
+            = keyFrameControl.getKeyFrameRequesters();
+
+        if (keyFrameRequesters != null)
         {
-            logger.trace("Packet: "+inputBuffer.getSequenceNumber()
-                    + ", length=" + inputBuffer.getLength()
-                    + ", pdSize=" + pdSize
-                    + ", start="+start
-                    + "\nPayload descriptor:" );
-            for(int i = inputBuffer.getOffset();
-                i < inputBuffer.getOffset() + pdSize + 1;
-                i++)
+            for (KeyFrameControl.KeyFrameRequester keyFrameRequester
+                    : keyFrameRequesters)
             {
-                logger.trace("\t\t"
-                        + ((input[i]&0x80)==0?"0":"1")
-                        + ((input[i]&0x40)==0?"0":"1")
-                        + ((input[i]&0x20)==0?"0":"1")
-                        + ((input[i]&0x10)==0?"0":"1")
-                        + ((input[i]&0x08)==0?"0":"1")
-                        + ((input[i]&0x04)==0?"0":"1")
-                        + ((input[i]&0x02)==0?"0":"1")
-                        + ((input[i]&0x01)==0?"0":"1"));
+                try
+                {
+                    if (keyFrameRequester.requestKeyFrame())
+                        break;
+                }
+                catch (Exception e)
+                {
+                    /*
+                     * A KeyFrameRequester has malfunctioned, do not let it
+                     * interfere with the others.
+                     */
+                }
             }
         }
+    }
 
-        if(start && haveSent)
+    /**
+     * {@inheritDoc}
+     *
+     * Drops the frames which are being assembled and forgets the last frame
+     * output.
+     */
+    @Override
+    public void reset()
+    {
+        for (Frame frame : frames)
+            recycle(frame);
+        frames.clear();
+        framesReady = false;
+        lastSequenceNumber = -1;
+        needKeyFrame = true;
+        pendingPacketCount = 0;
+    }
+
+    /**
+     * Sets the <tt>KeyFrameControl</tt> to be used by this
+     * <tt>DePacketizer</tt> to request key frames from the remote peer.
+     *
+     * @param keyFrameControl the <tt>KeyFrameControl</tt> to be used by this
+     * <tt>DePacketizer</tt> to request key frames from the remote peer
+     */
+    public void setKeyFrameControl(KeyFrameControl keyFrameControl)
+    {
+        this.keyFrameControl = keyFrameControl;
+    }
+
+    /**
+     * Represents a frame which is being assembled from packets.
+     */
+    private static class Frame
+    {
+        /**
+         * The packet of this frame which has the RTP marker bit set or
+         * <tt>null</tt> if it has not been received.
+         */
+        Packet marker;
+
+        /**
+         * The packets of this frame in the order of their RTP sequence
+         * numbers.
+         */
+        final List<Packet> packets = new ArrayList<Packet>();
+
+        /**
+         * The packet which starts this frame or <tt>null</tt> if it has not
+         * been received.
+         */
+        Packet start;
+
+        /**
+         * The time stamp of the packets of this frame.
+         */
+        long timeStamp;
+
+        /**
+         * Determines whether a specific packet belongs to this frame. In
+         * addition to the time stamps, the boundaries of the frame are taken
+         * into account in case the time stamps are not known.
+         *
+         * @param packet the packet
+         * @return <tt>true</tt> if <tt>packet</tt> belongs to this frame;
+         * otherwise, <tt>false</tt>
+         */
+        boolean accepts(Packet packet)
         {
-            //start of a new frame, flush the buffer
-            if(logger.isTraceEnabled())
-                logger.trace("Sending a frame, size=" + bufferPointer);
+            if (packet.timeStamp != timeStamp)
+                return false;
+            if (packet.start)
+            {
+                // Only the first packet of a frame starts it.
+                if (isAfter(packet.sequenceNumber, getFirstSequenceNumber())
+                        || ((start != null)
+                            && (start.sequenceNumber
+                                    != packet.sequenceNumber)))
+                    return false;
+            }
+            // Only the last packet of a frame has the marker bit set.
+            return
+                (marker == null)
+                    || !isAfter(packet.sequenceNumber, marker.sequenceNumber);
+        }
 
-            byte[] output
-                = validateByteArraySize(outputBuffer, bufferPointer, false);
+        /**
+         * Adds a specific packet to this frame in the order of the RTP
+         * sequence numbers unless it is a duplicate.
+         *
+         * @param packet the packet to add
+         * @return <tt>true</tt> if <tt>packet</tt> was added; otherwise,
+         * <tt>false</tt>
+         */
+        boolean add(Packet packet)
+        {
+            int i = packets.size();
 
-            System.arraycopy(buffer, 0, output, 0, bufferPointer);
-            outputBuffer.setFormat(new VideoFormat(Constants.VP8));
-            outputBuffer.setLength(bufferPointer);
-            outputBuffer.setOffset(0);
+            while (i > 0)
+            {
+                long sequenceNumber = packets.get(i - 1).sequenceNumber;
 
-            bufferPointer = 0;
-            ret = BUFFER_PROCESSED_OK;
+                if (sequenceNumber == packet.sequenceNumber)
+                    return false;
+                if (isAfter(packet.sequenceNumber, sequenceNumber))
+                    break;
+                i--;
+            }
+            packets.add(i, packet);
+            if (packet.marker)
+                marker = packet;
+            if (packet.start)
+                start = packet;
+            return true;
         }
-        else
+
+        /**
+         * Gets the RTP sequence number of the first packet of this frame
+         * received so far.
+         *
+         * @return the RTP sequence number of the first packet of this frame
+         * received so far
+         */
+        long getFirstSequenceNumber()
         {
-            ret = OUTPUT_BUFFER_NOT_FILLED;
+            return packets.get(0).sequenceNumber;
         }
 
-        int len = inputBuffer.getLength();
-        if(bufferPointer + len - pdSize >= BUFFER_SIZE)
+        /**
+         * Gets the RTP sequence number of the last packet of this frame
+         * received so far.
+         *
+         * @return the RTP sequence number of the last packet of this frame
+         * received so far
+         */
+        long getLastSequenceNumber()
         {
-            //our buffer is not big enough
-            bufferPointer = 0;
-            outputBuffer.setDiscard(true);
-            waitForNewStart = true;
-            return BUFFER_PROCESSED_FAILED;
+            return packets.get(packets.size() - 1).sequenceNumber;
+        }
+
+        /**
+         * Gets the length of the payloads of the packets of this frame.
+         *
+         * @return the length of the payloads of the packets of this frame
+         */
+        int getLength()
+        {
+            int length = 0;
+
+            for (Packet packet : packets)
+                length += packet.length;
+            return length;
+        }
+
+        /**
+         * Determines whether all packets of this frame have been received.
+         * The end of a frame is signalled by the RTP marker bit or, if the
+         * remote peer does not set it, by the start of the next frame.
+         *
+         * @param next the frame which follows this one or <tt>null</tt>
+         * @return <tt>true</tt> if all packets of this frame have been
+         * received; otherwise, <tt>false</tt>
+         */
+        boolean isComplete(Frame next)
+        {
+            Packet first = packets.get(0);
+            Packet last = packets.get(packets.size() - 1);
+
+            if (!first.start
+                    || (getSequenceNumberDistance(
+                                first.sequenceNumber,
+                                last.sequenceNumber)
+                            != packets.size() - 1))
+                return false;
+            return
+                last.marker
+                    || ((next != null)
+                        && next.packets.get(0).start
+                        && (getSequenceNumberDistance(
+                                    last.sequenceNumber,
+                                    next.getFirstSequenceNumber())
+                                == 1));
         }
-        System.arraycopy(input,
-                         inputBuffer.getOffset() + pdSize,
-                         buffer,
-                         bufferPointer,
-                         len - pdSize);
-        bufferPointer += len - pdSize;
 
+        /**
+         * Determines whether this frame is a key frame. Requires the first
+         * packet of this frame.
+         *
+         * @return <tt>true</tt> if this frame is a key frame; otherwise,
+         * <tt>false</tt>
+         */
+        boolean isKeyFrame()
+        {
+            Packet first = packets.get(0);
 
-        if(logger.isTraceEnabled() && TRACE)
-            logger.trace("Saving payload to buffer, seq num:"
-                    + inputBuffer.getSequenceNumber()
-                    + ", bufferPointer=" + bufferPointer);
+            return
+                first.start
+                    && (first.length > 0)
+                    && ((first.payload[0] & 0x01) == 0); // The P bit.
+        }
 
-        haveSent = true;
-        return ret;
+        /**
+         * Determines whether this frame is not used for the prediction of
+         * other frames.
+         *
+         * @return <tt>true</tt> if this frame is not used for the prediction
+         * of other frames; otherwise, <tt>false</tt>
+         */
+        boolean isNonReference()
+        {
+            return packets.get(0).nonReference;
+        }
+    }
+
+    /**
+     * Represents a copy of the payload (without the Payload Descriptor) of a
+     * packet held in a <tt>Frame</tt>.
+     */
+    private static class Packet
+    {
+        /**
+         * The length of the payload in {@link #payload}.
+         */
+        int length;
+
+        /**
+         * Whether the RTP marker bit of the packet is set.
+         */
+        boolean marker;
+
+        /**
+         * Whether the N bit of the Payload Descriptor of the packet is set.
+         */
+        boolean nonReference;
+
+        /**
+         * The payload of the packet.
+         */
+        byte[] payload;
+
+        /**
+         * The RTP sequence number of the packet.
+         */
+        long sequenceNumber;
+
+        /**
+         * Whether the packet starts the first partition of a frame.
+         */
+        boolean start;
+
+        /**
+         * The time stamp of the packet.
+         */
+        long timeStamp;
     }
 
     /**
@@ -227,10 +765,20 @@ public class DePacketizer
          * I bit from the I byte of the Payload Descriptor
          */
         private static final byte M_BIT = (byte) 0x80;
+        /**
+         * N bit from the first byte of the Payload Descriptor
+         */
+        private static final byte N_BIT = (byte) 0x20;
+
         /**
          * Maximum length of a VP8 Payload Descriptor
          */
         public static final int MAX_LENGTH = 6;
+        /**
+         * PartID field from the first byte of the Payload Descriptor
+         */
+        private static final byte PART_ID = (byte) 0x0F;
+
         /**
          * S bit from the first byte of the Payload Descriptor
          */
@@ -308,5 +856,34 @@ public class DePacketizer
         {
             return (input[offset] & S_BIT) != 0;
         }
+
+        /**
+         * Gets the PartID field of the Payload Descriptor at offset
+         * <tt>offset</tt> in <tt>input</tt>.
+         *
+         * @param input input
+         * @param offset offset
+         * @return the PartID field of the Payload Descriptor at offset
+         * <tt>offset</tt> in <tt>input</tt>
+         */
+        public static int getPartitionId(byte[] input, int offset)
+        {
+            return input[offset] & PART_ID;
+        }
+
+        /**
+         * Checks whether the N (i.e. non-reference frame) bit is set in the
+         * Payload Descriptor at offset <tt>offset</tt> in <tt>input</tt>.
+         *
+         * @param input input
+         * @param offset offset
+         * @return <tt>true</tt> if the N bit is set in the Payload Descriptor
+         * at offset <tt>offset</tt> in <tt>input</tt>; otherwise,
+         * <tt>false</tt>
+         */
+        public static boolean isNonReference(byte[] input, int offset)
+        {
+            return (input[offset] & N_BIT) != 0;
+        }
     }
 }
@@ -10,6 +10,7 @@ import javax.media.*;
 import javax.media.format.*;
 
 import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.impl.neomedia.control.*;
 import org.jitsi.service.neomedia.codec.*;
 import org.jitsi.util.*;
 
@@ -34,15 +35,22 @@ public class Packetizer
     private static final Logger logger = Logger.getLogger(Packetizer.class);
 
     /**
-     * Maximum size of packets (excluding the payload descriptor and any other
-     * headers (RTP, UDP))
+     * Whether this is the first packet from the frame.
      */
-    private static final int MAX_SIZE = 1350;
+    private boolean firstPacket = true;
 
     /**
-     * Whether this is the first packet from the frame.
+     * The maximum size in bytes of the VP8 payload (i.e. without the Payload
+     * Descriptor) of the packets of the current frame.
      */
-    private boolean firstPacket = true;
+    private int maxSize;
+
+    /**
+     * The <tt>PacketSizeControl</tt> which specifies the maximum size in
+     * bytes of the RTP payloads output by this <tt>Packetizer</tt>.
+     */
+    private final PacketSizeControlImpl packetSizeControl
+        = new PacketSizeControlImpl();
 
     /**
      * Initializes a new <tt>Packetizer</tt> instance.
@@ -55,6 +63,8 @@ public class Packetizer
                 new VideoFormat[] { new VideoFormat(Constants.VP8_RTP) });
 
         inputFormats = new VideoFormat[] { new VideoFormat(Constants.VP8)};
+
+        addControl(packetSizeControl);
     }
 
     /**
@@ -93,9 +103,18 @@ public class Packetizer
         int offset;
         int pdMaxLen = DePacketizer.VP8PayloadDescriptor.MAX_LENGTH;
 
+        if (firstPacket)
+        {
+            /*
+             * The packets of a frame have one and the same maximum size even
+             * if the PacketSizeControl changes in the meantime.
+             */
+            maxSize = packetSizeControl.getPacketSize() - 1 /* descriptor */;
+        }
+
         //The input will fit in a single packet
         int inOff = inputBuffer.getOffset();
-        int len = (inLen <= MAX_SIZE) ? inLen : MAX_SIZE;
+        int len = (inLen <= maxSize) ? inLen : maxSize;
 
         offset = pdMaxLen;
         output = validateByteArraySize(outputBuffer, offset + len, true);
@@ -116,17 +135,23 @@ public class Packetizer
         outputBuffer.setFormat(new VideoFormat(Constants.VP8_RTP));
         outputBuffer.setOffset(offset);
         outputBuffer.setLength(len + pd.length);
+        outputBuffer.setTimeStamp(inputBuffer.getTimeStamp());
 
-        if(inLen <= MAX_SIZE)
+        if(inLen <= maxSize)
         {
+            // The last packet of the frame carries the RTP marker bit.
+            outputBuffer.setFlags(
+                    outputBuffer.getFlags() | Buffer.FLAG_RTP_MARKER);
             firstPacket = true;
             return BUFFER_PROCESSED_OK;
         }
         else
         {
+            outputBuffer.setFlags(
+                    outputBuffer.getFlags() & ~Buffer.FLAG_RTP_MARKER);
             firstPacket = false;
-            inputBuffer.setLength(inLen - MAX_SIZE);
-            inputBuffer.setOffset(inOff + MAX_SIZE);
+            inputBuffer.setLength(inLen - maxSize);
+            inputBuffer.setOffset(inOff + maxSize);
             return INPUT_BUFFER_NOT_CONSUMED;
         }
     }
@@ -67,6 +67,18 @@ public class AudioMixer
      */
     private static final Logger logger = Logger.getLogger(AudioMixer.class);
 
+    /**
+     * The name of the <tt>boolean</tt> <tt>ConfigurationService</tt> property
+     * which indicates whether the <tt>AudioMixer</tt> is to compute the sum of
+     * all of its inputs once per mixing period and have each of its outputs
+     * subtract the inputs which are to not be included in it (i.e. mix-minus)
+     * instead of having each of its outputs mix its inputs from scratch. The
+     * mix-minus mode is applied to 16-bit output only and sums the inputs
+     * linearly with clipping. The default value is <tt>false</tt>.
+     */
+    public static final String MIX_MINUS_PNAME
+        = "org.jitsi.impl.neomedia.conference.AudioMixer.mixMinus";
+
     /**
      * Gets the <tt>Format</tt> in which a specific <tt>DataSource</tt>
      * provides stream data.
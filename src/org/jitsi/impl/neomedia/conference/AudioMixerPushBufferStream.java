@@ -17,8 +17,11 @@ import javax.media.format.*;
 import javax.media.protocol.*;
 
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.codec.audio.resampler.*;
 import org.jitsi.impl.neomedia.control.*;
 import org.jitsi.impl.neomedia.protocol.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.util.*;
 
 /**
@@ -220,6 +223,17 @@ class AudioMixerPushBufferStream
      */
     private AudioFormat lastReadInFormat;
 
+    /**
+     * The indicator which determines whether this instance computes the sum
+     * of all of its input audio samples once per mixing period and pushes it
+     * to its output <tt>AudioMixingPushBufferStream</tt>s which subtract the
+     * input audio samples to not be included in their respective outputs
+     * (i.e. mix-minus).
+     *
+     * @see AudioMixer#MIX_MINUS_PNAME
+     */
+    private final boolean mixMinus;
+
     /**
      * The <tt>AudioFormat</tt> of the data this instance outputs.
      */
@@ -271,6 +285,21 @@ class AudioMixerPushBufferStream
     {
         this.audioMixer = audioMixer;
         this.outFormat = outFormat;
+
+        boolean mixMinus = false;
+
+        /*
+         * The sum of the inputs is computed in an int so mix-minus is only
+         * enabled for 16-bit output which cannot overflow it.
+         */
+        if ((outFormat != null) && (outFormat.getSampleSizeInBits() == 16))
+        {
+            ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+            if (cfg != null)
+                mixMinus = cfg.getBoolean(AudioMixer.MIX_MINUS_PNAME, mixMinus);
+        }
+        this.mixMinus = mixMinus;
     }
 
     /**
@@ -752,20 +781,62 @@ class AudioMixerPushBufferStream
                     inFormat);
         }
 
-        // Warn about different sampleRates.
+        Object inData = inBuffer.getData();
+
+        // Resample if the sampleRates are different.
         double inSampleRate = inFormat.getSampleRate();
         double outSampleRate = outFormat.getSampleRate();
 
-        if (inSampleRate != outSampleRate)
+        if ((inSampleRate != outSampleRate)
+                && (inSampleRate != Format.NOT_SPECIFIED)
+                && (outSampleRate != Format.NOT_SPECIFIED))
         {
-            logger.warn(
-                    "Read inFormat with sampleRate " + inSampleRate
-                        + " while expected outFormat sampleRate is "
-                        + outSampleRate);
+            PolyphaseResampler resampler
+                = (inData instanceof byte[])
+                        && (inFormat.getSampleSizeInBits() == 16)
+                    ? inStreamDesc.getResampler(
+                            (int) inSampleRate,
+                            (int) outSampleRate,
+                            (inChannels == Format.NOT_SPECIFIED)
+                                ? ((outChannels == Format.NOT_SPECIFIED)
+                                        ? 1
+                                        : outChannels)
+                                : inChannels)
+                    : null;
+
+            if (resampler == null)
+            {
+                logger.warn(
+                        "Read inFormat with sampleRate " + inSampleRate
+                            + " while expected outFormat sampleRate is "
+                            + outSampleRate);
+            }
+            else
+            {
+                int frameSize = 2 * resampler.getChannels();
+                int inSampleCount = inLength / frameSize;
+                int resampledLength
+                    = resampler.getMaxOutSampleCount(inSampleCount)
+                        * frameSize;
+                byte[] resampledData = inStreamDesc.resampledData;
+
+                if ((resampledData == null)
+                        || (resampledData.length < resampledLength))
+                {
+                    inStreamDesc.resampledData
+                        = resampledData
+                            = new byte[resampledLength];
+                }
+                inLength
+                    = resampler.process(
+                                (byte[]) inData, inBuffer.getOffset(),
+                                inSampleCount,
+                                resampledData, 0)
+                        * frameSize;
+                inData = resampledData;
+            }
         }
 
-        Object inData = inBuffer.getData();
-
         if (inData == null)
         {
             outBuffer.setDiscard(true);
@@ -797,26 +868,26 @@ class AudioMixerPushBufferStream
                     = audioMixer.intArrayCache.validateIntArraySize(
                             outBuffer,
                             outLength);
-                for (int i = 0; i < outLength; i++)
+                switch (outSampleSizeInBits)
                 {
-                    int sample = ArrayIOUtils.readInt16(inSamples, i * 2);
-
-                    switch (outSampleSizeInBits)
+                case 16:
+                    PcmKernels.decode(inSamples, 0, outSamples, 0, outLength);
+                    break;
+                case 32:
+                    for (int i = 0; i < outLength; i++)
                     {
-                    case 16:
-                        break;
-                    case 32:
-                        sample = Math.round(sample * INT_TO_SHORT_RATIO);
-                        break;
-                    case 8:
-                    case 24:
-                    default:
-                        throw new UnsupportedFormatException(
-                                "AudioFormat.getSampleSizeInBits()",
-                                outFormat);
-                    }
+                        int sample = ArrayIOUtils.readInt16(inSamples, i * 2);
 
-                    outSamples[i] = sample;
+                        outSamples[i]
+                            = Math.round(sample * INT_TO_SHORT_RATIO);
+                    }
+                    break;
+                case 8:
+                case 24:
+                default:
+                    throw new UnsupportedFormatException(
+                            "AudioFormat.getSampleSizeInBits()",
+                            outFormat);
                 }
                 break;
             case 32:
@@ -1100,6 +1171,94 @@ class AudioMixerPushBufferStream
                 inSampleDesc.getTimeStamp());
     }
 
+    /**
+     * Pushes the sum of a specific set of audio samples to a specific
+     * <tt>AudioMixingPushBufferStream</tt> along with the audio samples which
+     * the <tt>AudioMixingPushBufferStream</tt> is to subtract from and add to
+     * the sum in order to produce its output. The audio samples which the
+     * <tt>AudioMixingPushBufferDataSource</tt> owner of the specified
+     * <tt>AudioMixingPushBufferStream</tt> has specified to not be included in
+     * the output mix are subtracted.
+     *
+     * @param outStream the <tt>AudioMixingPushBufferStream</tt> to push the
+     * sum of the specified set of audio samples to
+     * @param inSampleDesc the set of audio samples the sum of which is
+     * <tt>mix</tt>
+     * @param mix the sum of the audio samples of <tt>inSampleDesc</tt>
+     * @param mixSampleCount the number of audio samples in <tt>mix</tt>
+     */
+    private void setInSamples(
+            AudioMixingPushBufferStream outStream,
+            InSampleDesc inSampleDesc,
+            int[] mix,
+            int mixSampleCount)
+    {
+        int[][] inSamples = inSampleDesc.inSamples;
+        InStreamDesc[] inStreams = inSampleDesc.inStreams;
+        int maxInSampleCount = mixSampleCount;
+
+        CaptureDevice captureDevice = audioMixer.captureDevice;
+        AudioMixingPushBufferDataSource outDataSource
+            = outStream.getDataSource();
+        boolean outDataSourceIsSendingDTMF
+            = (captureDevice instanceof AudioMixingPushBufferDataSource)
+                ? outDataSource.isSendingDTMF()
+                : false;
+        boolean outDataSourceIsMute = outDataSource.isMute();
+
+        int[][] minusInSamples = null;
+        int minusInSampleCount = 0;
+        int[] plusInSamples = null;
+
+        for (int i = 0; i < inSamples.length; i++)
+        {
+            int[] inStreamSamples = inSamples[i];
+            InStreamDesc inStreamDesc = inStreams[i];
+            DataSource inDataSource
+                = inStreamDesc.inDataSourceDesc.inDataSource;
+            boolean minus;
+
+            if (outDataSourceIsSendingDTMF && (inDataSource == captureDevice))
+            {
+                PushBufferStream inStream
+                    = (PushBufferStream) inStreamDesc.getInStream();
+                AudioFormat inStreamFormat = (AudioFormat) inStream.getFormat();
+                // Generate the inband DTMF signal.
+                int[] nextToneSignal
+                    = outDataSource.getNextToneSignal(
+                            inStreamFormat.getSampleRate(),
+                            inStreamFormat.getSampleSizeInBits());
+
+                plusInSamples = nextToneSignal;
+                if (maxInSampleCount < nextToneSignal.length)
+                    maxInSampleCount = nextToneSignal.length;
+                minus = true;
+            }
+            else
+            {
+                minus
+                    = outDataSource.equals(inStreamDesc.getOutDataSource())
+                        || (outDataSourceIsMute
+                                && (inDataSource == captureDevice));
+            }
+
+            if (minus && (inStreamSamples != null))
+            {
+                if (minusInSamples == null)
+                    minusInSamples = new int[inSamples.length - i][];
+                minusInSamples[minusInSampleCount++] = inStreamSamples;
+            }
+        }
+
+        outStream.setInSamples(
+                mix,
+                mixSampleCount,
+                minusInSamples,
+                plusInSamples,
+                maxInSampleCount,
+                inSampleDesc.getTimeStamp());
+    }
+
     /**
      * Sets the <tt>SourceStream</tt>s (in the form of <tt>InStreamDesc</tt>)
      * from which this instance is to read audio samples and push them to the
@@ -1328,8 +1487,38 @@ class AudioMixerPushBufferStream
                         new AudioMixingPushBufferStream[
                                 this.outStreams.size()]);
         }
-        for (AudioMixingPushBufferStream outStream : outStreams)
-            setInSamples(outStream, inSampleDesc, maxInSampleCount);
+        if (mixMinus)
+        {
+            /*
+             * Compute the sum of all input samples once rather than have each
+             * output stream sum all but its own. The elements of mix past
+             * maxInSampleCount are zeroed so that it may be read in full.
+             */
+            int[] mix
+                = audioMixer.intArrayCache.allocateIntArray(maxInSampleCount);
+
+            Arrays.fill(mix, 0);
+            for (int[] inStreamSamples : inSamples)
+            {
+                if (inStreamSamples == null)
+                    continue;
+
+                int inStreamSampleCount
+                    = Math.min(inStreamSamples.length, maxInSampleCount);
+
+                PcmKernels.add(inStreamSamples, mix, inStreamSampleCount);
+            }
+
+            for (AudioMixingPushBufferStream outStream : outStreams)
+                setInSamples(outStream, inSampleDesc, mix, maxInSampleCount);
+
+            audioMixer.intArrayCache.deallocateIntArray(mix);
+        }
+        else
+        {
+            for (AudioMixingPushBufferStream outStream : outStreams)
+                setInSamples(outStream, inSampleDesc, maxInSampleCount);
+        }
 
         /*
          * The input samples have already been delivered to the output streams
@@ -92,10 +92,40 @@ public class AudioMixingPushBufferStream
      */
     private int maxInSampleCount;
 
+    /**
+     * The audio sample sets which are included in {@link #mix} but are to not
+     * be included in the output of this <tt>PushBufferStream</tt> or
+     * <tt>null</tt>.
+     */
+    private int[][] minusInSamples;
+
+    /**
+     * The sum of the audio samples of all input streams of
+     * {@link #audioMixerStream} (shared by all of its
+     * <tt>AudioMixingPushBufferStream</tt>s) if it operates in mix-minus mode;
+     * otherwise, <tt>null</tt>. In mix-minus mode, the output of this
+     * <tt>PushBufferStream</tt> is <tt>mix</tt> minus
+     * {@link #minusInSamples} plus {@link #plusInSamples}.
+     */
+    private int[] mix;
+
+    /**
+     * The number of audio samples available through {@link #mix}.
+     */
+    private int mixSampleCount;
+
+    /**
+     * The audio sample set which is not included in {@link #mix} but is to be
+     * included in the output of this <tt>PushBufferStream</tt> (e.g. an inband
+     * DTMF signal) or <tt>null</tt>.
+     */
+    private int[] plusInSamples;
+
     /**
      * The <tt>Object</tt> which synchronizes the access to the data to be read
      * from this <tt>PushBufferStream</tt> i.e. to {@link #inSamples},
-     * {@link #maxInSampleCount} and {@link #timeStamp}.
+     * {@link #maxInSampleCount}, {@link #mix}, {@link #mixSampleCount},
+     * {@link #minusInSamples}, {@link #plusInSamples} and {@link #timeStamp}.
      */
     private final Object readSyncRoot = new Object();
 
@@ -299,6 +329,86 @@ public class AudioMixingPushBufferStream
         return outSamples;
     }
 
+    /**
+     * Produces the output audio sample set of this instance in mix-minus mode
+     * i.e. subtracts from a specific sum of audio sample sets the ones which
+     * are to not be included in the output and adds the ones which are not
+     * included in the sum but are to be included in the output.
+     *
+     * @param mix the sum of the audio sample sets of all input streams
+     * @param mixSampleCount the number of audio samples in <tt>mix</tt>
+     * @param minusInSamples the audio sample sets included in <tt>mix</tt>
+     * which are to be subtracted from it or <tt>null</tt>
+     * @param plusInSamples the audio sample set not included in <tt>mix</tt>
+     * which is to be added to it or <tt>null</tt>
+     * @param outFormat the <tt>AudioFormat</tt> in which the resulting audio
+     * sample set is to be produced
+     * @param outSampleCount the size of the resulting audio sample set to be
+     * produced
+     * @return the resulting audio sample set
+     */
+    private int[] mixMinus(
+            int[] mix,
+            int mixSampleCount,
+            int[][] minusInSamples,
+            int[] plusInSamples,
+            AudioFormat outFormat,
+            int outSampleCount)
+    {
+        int[] outSamples
+            = dataSource.audioMixer.intArrayCache.allocateIntArray(
+                    outSampleCount);
+        int sampleCount = Math.min(mixSampleCount, outSampleCount);
+
+        System.arraycopy(mix, 0, outSamples, 0, sampleCount);
+        if (sampleCount != outSampleCount)
+            Arrays.fill(outSamples, sampleCount, outSampleCount, 0);
+
+        /*
+         * Subtract exactly what AudioMixerPushBufferStream has added to mix
+         * i.e. no more than mixSampleCount samples of each set.
+         */
+        if (minusInSamples != null)
+        {
+            for (int[] inStreamSamples : minusInSamples)
+            {
+                if (inStreamSamples == null)
+                    break;
+
+                int inStreamSampleCount
+                    = Math.min(inStreamSamples.length, sampleCount);
+
+                PcmKernels.subtract(
+                        inStreamSamples,
+                        outSamples,
+                        inStreamSampleCount);
+            }
+        }
+        if (plusInSamples != null)
+        {
+            int inStreamSampleCount
+                = Math.min(plusInSamples.length, outSampleCount);
+
+            PcmKernels.add(plusInSamples, outSamples, inStreamSampleCount);
+        }
+
+        int maxOutSample;
+
+        try
+        {
+            maxOutSample = getMaxOutSample(outFormat);
+        }
+        catch (UnsupportedFormatException ufex)
+        {
+            throw new UnsupportedOperationException(ufex);
+        }
+
+        PcmKernels.clip(
+                outSamples, 0, outSampleCount,
+                -maxOutSample - 1, maxOutSample);
+        return outSamples;
+    }
+
     /**
      * Implements {@link PushBufferStream#read(Buffer)}. If
      * <tt>inSamples</tt> are available, mixes them and writes the mix to the
@@ -314,21 +424,33 @@ public class AudioMixingPushBufferStream
     {
         int[][] inSamples;
         int maxInSampleCount;
+        int[] mix;
+        int mixSampleCount;
+        int[][] minusInSamples;
+        int[] plusInSamples;
         long timeStamp;
 
         synchronized (readSyncRoot)
         {
             inSamples = this.inSamples;
             maxInSampleCount = this.maxInSampleCount;
+            mix = this.mix;
+            mixSampleCount = this.mixSampleCount;
+            minusInSamples = this.minusInSamples;
+            plusInSamples = this.plusInSamples;
             timeStamp = this.timeStamp;
 
             this.inSamples = null;
             this.maxInSampleCount = 0;
+            this.mix = null;
+            this.mixSampleCount = 0;
+            this.minusInSamples = null;
+            this.plusInSamples = null;
             this.timeStamp = Buffer.TIME_UNKNOWN;
         }
 
-        if ((inSamples == null)
-                || (inSamples.length == 0)
+        if (((mix == null)
+                    && ((inSamples == null) || (inSamples.length == 0)))
                 || (maxInSampleCount <= 0))
         {
             buffer.setDiscard(true);
@@ -336,7 +458,15 @@ public class AudioMixingPushBufferStream
         }
 
         AudioFormat outFormat = getFormat();
-        int[] outSamples = mix(inSamples, outFormat, maxInSampleCount);
+        int[] outSamples
+            = (mix == null)
+                ? mix(inSamples, outFormat, maxInSampleCount)
+                : mixMinus(
+                        mix, mixSampleCount,
+                        minusInSamples,
+                        plusInSamples,
+                        outFormat,
+                        maxInSampleCount);
         int outSampleCount = Math.min(maxInSampleCount, outSamples.length);
 
         if (Format.byteArray.equals(outFormat.getDataType()))
@@ -354,8 +484,7 @@ public class AudioMixingPushBufferStream
                 outLength = outSampleCount * 2;
                 if ((outData == null) || (outData.length < outLength))
                     outData = new byte[outLength];
-                for (int i = 0; i < outSampleCount; i++)
-                    ArrayIOUtils.writeInt16(outSamples[i], outData, i * 2);
+                PcmKernels.encode(outSamples, 0, outData, 0, outSampleCount);
                 break;
             case 32:
                 outLength = outSampleCount * 4;
@@ -371,6 +500,8 @@ public class AudioMixingPushBufferStream
                         "AudioMixingPushBufferStream.read(Buffer)");
             }
 
+            dataSource.audioMixer.intArrayCache.deallocateIntArray(outSamples);
+
             buffer.setData(outData);
             buffer.setFormat(outFormat);
             buffer.setLength(outLength);
@@ -402,6 +533,49 @@ public class AudioMixingPushBufferStream
         {
             this.inSamples = inSamples;
             this.maxInSampleCount = maxInSampleCount;
+            this.mix = null;
+        }
+
+        BufferTransferHandler transferHandler = this.transferHandler;
+
+        if (transferHandler != null)
+            transferHandler.transferData(this);
+    }
+
+    /**
+     * Sets the sum of the audio sample sets of all input streams along with
+     * the audio sample sets to be subtracted from and added to it by this
+     * stream in order to produce its output (i.e. mix-minus) when data is read
+     * from it. Triggers a push to the clients of this stream.
+     *
+     * @param mix the sum of the audio sample sets of all input streams
+     * @param mixSampleCount the number of audio samples in <tt>mix</tt>
+     * @param minusInSamples the audio sample sets included in <tt>mix</tt>
+     * which are to not be included in the output of this stream or
+     * <tt>null</tt>
+     * @param plusInSamples the audio sample set not included in <tt>mix</tt>
+     * which is to be included in the output of this stream or <tt>null</tt>
+     * @param maxInSampleCount the maximum number of audio samples to be output
+     * by this stream
+     * @param timeStamp the time stamp of <tt>mix</tt> to be reported in the
+     * specified <tt>Buffer</tt> when data is read from this instance
+     */
+    void setInSamples(
+            int[] mix,
+            int mixSampleCount,
+            int[][] minusInSamples,
+            int[] plusInSamples,
+            int maxInSampleCount,
+            long timeStamp)
+    {
+        synchronized (readSyncRoot)
+        {
+            this.inSamples = null;
+            this.maxInSampleCount = maxInSampleCount;
+            this.mix = mix;
+            this.mixSampleCount = mixSampleCount;
+            this.minusInSamples = minusInSamples;
+            this.plusInSamples = plusInSamples;
         }
 
         BufferTransferHandler transferHandler = this.transferHandler;
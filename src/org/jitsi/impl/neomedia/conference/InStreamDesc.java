@@ -11,6 +11,7 @@ import java.lang.ref.*;
 import javax.media.*;
 import javax.media.protocol.*;
 
+import org.jitsi.impl.neomedia.codec.audio.resampler.*;
 import org.jitsi.util.*;
 
 /**
@@ -54,6 +55,18 @@ class InStreamDesc
      */
     long nonContributingReadCount;
 
+    /**
+     * The array of bytes into which the audio read from {@link #inStream} is
+     * resampled when its sample rate differs from the one of the mix.
+     */
+    byte[] resampledData;
+
+    /**
+     * The <tt>PolyphaseResampler</tt> which converts the audio read from
+     * {@link #inStream} to the sample rate of the mix.
+     */
+    private PolyphaseResampler resampler;
+
     /**
      * Initializes a new <tt>InStreamDesc</tt> instance which is to describe
      * additional information about a specific input audio <tt>SourceStream</tt>
@@ -96,6 +109,48 @@ class InStreamDesc
         return buffer;
     }
 
+    /**
+     * Gets the <tt>PolyphaseResampler</tt> which converts the audio read from
+     * the <tt>SourceStream</tt> described by this instance between specific
+     * sample rates and initializes it if necessary.
+     *
+     * @param inSampleRate the sample rate of the audio read from the
+     * <tt>SourceStream</tt> described by this instance
+     * @param outSampleRate the sample rate of the mix
+     * @param channels the number of channels of the audio
+     * @return the <tt>PolyphaseResampler</tt> which converts the audio read
+     * from the <tt>SourceStream</tt> described by this instance from
+     * <tt>inSampleRate</tt> to <tt>outSampleRate</tt> or <tt>null</tt> if the
+     * pair of sample rates is not supported
+     */
+    public PolyphaseResampler getResampler(
+            int inSampleRate,
+            int outSampleRate,
+            int channels)
+    {
+        PolyphaseResampler resampler = this.resampler;
+
+        if ((resampler == null)
+                || (resampler.getInSampleRate() != inSampleRate)
+                || (resampler.getOutSampleRate() != outSampleRate)
+                || (resampler.getChannels() != channels))
+        {
+            if (PolyphaseResampler.isSupported(inSampleRate, outSampleRate)
+                    && (channels > 0))
+            {
+                resampler
+                    = new PolyphaseResampler(
+                            inSampleRate,
+                            outSampleRate,
+                            channels);
+            }
+            else
+                resampler = null;
+            this.resampler = resampler;
+        }
+        return resampler;
+    }
+
     /**
      * Gets the <tt>SourceStream</tt> described by this instance.
      *
@@ -155,6 +210,7 @@ class InStreamDesc
              * of the old value is not optimal for the new value.
              */
             setBuffer(null);
+            resampler = null;
         }
     }
 }
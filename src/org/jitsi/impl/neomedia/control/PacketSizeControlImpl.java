@@ -0,0 +1,230 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.control;
+
+import java.awt.*;
+import java.net.*;
+
+import javax.media.control.*;
+
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.service.neomedia.*;
+import org.jitsi.util.*;
+
+/**
+ * Implements <tt>PacketSizeControl</tt> for the video packetizers i.e. keeps
+ * track of the maximum size in bytes of the RTP payloads which they output.
+ * The packet size of a stream is derived from the MTU of the network interface
+ * used by its <tt>StreamConnector</tt> and is limited by a configurable
+ * maximum.
+ */
+public class PacketSizeControlImpl
+    implements PacketSizeControl
+{
+    /**
+     * The default maximum size in bytes of the RTP payloads output by the
+     * video packetizers.
+     */
+    public static final int DEFAULT_MAX_PACKET_SIZE = 1200;
+
+    /**
+     * The length in bytes of the header of an IPv4 packet.
+     */
+    private static final int IPV4_HEADER_LENGTH = 20;
+
+    /**
+     * The length in bytes of the header of an IPv6 packet.
+     */
+    private static final int IPV6_HEADER_LENGTH = 40;
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>PacketSizeControlImpl</tt> class
+     * and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(PacketSizeControlImpl.class);
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the maximum size in bytes of the RTP payloads output by the video
+     * packetizers. The default is {@link #DEFAULT_MAX_PACKET_SIZE}.
+     */
+    public static final String MAX_PACKET_SIZE_PNAME
+        = "org.jitsi.impl.neomedia.control.PacketSizeControlImpl"
+            + ".maxPacketSize";
+
+    /**
+     * The minimum size in bytes of the RTP payloads output by the video
+     * packetizers.
+     */
+    public static final int MIN_PACKET_SIZE = 128;
+
+    /**
+     * The length in bytes which is reserved in each RTP packet for the
+     * (variable) CSRC list, the header extensions and the SRTP authentication
+     * tag.
+     */
+    private static final int RTP_EXTRA_LENGTH = 32;
+
+    /**
+     * The length in bytes of the fixed header of an RTP packet.
+     */
+    private static final int RTP_HEADER_LENGTH = 12;
+
+    /**
+     * The length in bytes of the header of a UDP datagram.
+     */
+    private static final int UDP_HEADER_LENGTH = 8;
+
+    /**
+     * Gets the configured maximum size in bytes of the RTP payloads output by
+     * the video packetizers.
+     *
+     * @return the configured maximum size in bytes of the RTP payloads output
+     * by the video packetizers
+     */
+    public static int getMaxPacketSize()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        int maxPacketSize = DEFAULT_MAX_PACKET_SIZE;
+
+        if (cfg != null)
+            maxPacketSize = cfg.getInt(MAX_PACKET_SIZE_PNAME, maxPacketSize);
+        return Math.max(MIN_PACKET_SIZE, maxPacketSize);
+    }
+
+    /**
+     * Gets the size in bytes of the RTP payloads which fit into the MTU of the
+     * network interface used by a specific <tt>StreamConnector</tt> (without
+     * exceeding {@link #getMaxPacketSize()}).
+     *
+     * @param connector the <tt>StreamConnector</tt> to get the size of the RTP
+     * payloads of or <tt>null</tt>
+     * @return the size in bytes of the RTP payloads which fit into the MTU of
+     * the network interface used by <tt>connector</tt> or
+     * {@link #getMaxPacketSize()} if the MTU is not known
+     */
+    public static int getPacketSize(StreamConnector connector)
+    {
+        int packetSize = getMaxPacketSize();
+
+        if (connector == null)
+            return packetSize;
+
+        InetAddress localAddress = null;
+        DatagramSocket dataSocket = connector.getDataSocket();
+
+        if (dataSocket != null)
+            localAddress = dataSocket.getLocalAddress();
+        else
+        {
+            Socket dataTCPSocket = connector.getDataTCPSocket();
+
+            if (dataTCPSocket != null)
+                localAddress = dataTCPSocket.getLocalAddress();
+        }
+        if ((localAddress == null) || localAddress.isAnyLocalAddress())
+            return packetSize;
+
+        int mtu;
+
+        try
+        {
+            NetworkInterface networkInterface
+                = NetworkInterface.getByInetAddress(localAddress);
+
+            mtu = (networkInterface == null) ? -1 : networkInterface.getMTU();
+        }
+        catch (SocketException se)
+        {
+            logger.debug("Failed to determine the MTU of " + localAddress, se);
+            mtu = -1;
+        }
+        if (mtu > 0)
+        {
+            int mtuPacketSize
+                = mtu
+                    - ((localAddress instanceof Inet6Address)
+                            ? IPV6_HEADER_LENGTH
+                            : IPV4_HEADER_LENGTH)
+                    - UDP_HEADER_LENGTH
+                    - RTP_HEADER_LENGTH
+                    - RTP_EXTRA_LENGTH;
+
+            packetSize
+                = Math.max(MIN_PACKET_SIZE, Math.min(packetSize, mtuPacketSize));
+        }
+        return packetSize;
+    }
+
+    /**
+     * The maximum size in bytes of the RTP payloads output by the owner of
+     * this <tt>PacketSizeControl</tt>.
+     */
+    private volatile int packetSize;
+
+    /**
+     * Initializes a new <tt>PacketSizeControlImpl</tt> instance with the
+     * configured maximum packet size.
+     */
+    public PacketSizeControlImpl()
+    {
+        this(getMaxPacketSize());
+    }
+
+    /**
+     * Initializes a new <tt>PacketSizeControlImpl</tt> instance with a
+     * specific packet size.
+     *
+     * @param packetSize the maximum size in bytes of the RTP payloads to be
+     * output by the owner of the new instance
+     */
+    public PacketSizeControlImpl(int packetSize)
+    {
+        setPacketSize(packetSize);
+    }
+
+    /**
+     * Gets the UI <tt>Component</tt> associated with this <tt>Control</tt>
+     * object.
+     *
+     * @return the UI <tt>Component</tt> associated with this <tt>Control</tt>
+     * object
+     */
+    public Component getControlComponent()
+    {
+        return null;
+    }
+
+    /**
+     * Gets the maximum size in bytes of the RTP payloads output by the owner
+     * of this <tt>PacketSizeControl</tt>.
+     *
+     * @return the maximum size in bytes of the RTP payloads output by the
+     * owner of this <tt>PacketSizeControl</tt>
+     */
+    public int getPacketSize()
+    {
+        return packetSize;
+    }
+
+    /**
+     * Sets the maximum size in bytes of the RTP payloads output by the owner
+     * of this <tt>PacketSizeControl</tt>. Takes effect with the next frame.
+     *
+     * @param numBytes the maximum size in bytes of the RTP payloads to be
+     * output by the owner of this <tt>PacketSizeControl</tt>
+     * @return the maximum size in bytes of the RTP payloads which is actually
+     * set (i.e. not less than {@link #MIN_PACKET_SIZE})
+     */
+    public int setPacketSize(int numBytes)
+    {
+        packetSize = Math.max(MIN_PACKET_SIZE, numBytes);
+        return packetSize;
+    }
+}
@@ -1001,6 +1001,27 @@ public class MediaDeviceSession
         return null;
     }
 
+    /**
+     * Gets the <tt>DataSource</tt> which is played back on the
+     * <tt>MediaDevice</tt> represented by this <tt>MediaDeviceSession</tt> for
+     * a specific <tt>ReceiveStream</tt>.
+     *
+     * @param receiveStream the <tt>ReceiveStream</tt> to get the played back
+     * <tt>DataSource</tt> of
+     * @return the <tt>DataSource</tt> which is played back for the specified
+     * <tt>receiveStream</tt> or <tt>null</tt> if there is no such
+     * <tt>DataSource</tt>
+     */
+    public DataSource getPlaybackDataSource(ReceiveStream receiveStream)
+    {
+        synchronized (playbacks)
+        {
+            Playback playback = getPlayback(receiveStream);
+
+            return (playback == null) ? null : playback.dataSource;
+        }
+    }
+
     /**
      * Gets the <tt>Player</tt> rendering the <tt>ReceiveStream</tt> with a
      * specific SSRC.
@@ -6,9 +6,12 @@
  */
 package org.jitsi.impl.neomedia.device;
 
+import java.io.*;
+
 import javax.media.protocol.*;
 import javax.media.rtp.*;
 
+import org.jitsi.impl.neomedia.jitterbuffer.*;
 import org.jitsi.impl.neomedia.protocol.*;
 
 /**
@@ -17,7 +20,9 @@ import org.jitsi.impl.neomedia.protocol.*;
  * is introduced because it seems that after the <tt>DataSource</tt> of a
  * <tt>ReceiveStream</tt> is disconnected, it cannot be connected to or started
  * and if a <tt>Processor</tt> is created on it, it freezes in the
- * {@link javax.media.Processor#Configuring} state.
+ * {@link javax.media.Processor#Configuring} state. Additionally, plays out
+ * the audio <tt>PushBufferStream</tt>s of the <tt>ReceiveStream</tt> through
+ * <tt>JitterBufferPushBufferStream</tt>s.
  *
  * @author Lubomir Marinov
  */
@@ -32,6 +37,19 @@ public class ReceiveStreamPushBufferDataSource
      */
     private final ReceiveStream receiveStream;
 
+    /**
+     * The <tt>PushBufferStream</tt>s of the wrapped <tt>DataSource</tt> which
+     * {@link #streams} have been initialized for.
+     */
+    private PushBufferStream[] sourceStreams;
+
+    /**
+     * The <tt>PushBufferStream</tt>s of this instance i.e. the
+     * <tt>PushBufferStream</tt>s of the wrapped <tt>DataSource</tt> with the
+     * audio ones played out through <tt>JitterBufferPushBufferStream</tt>s.
+     */
+    private PushBufferStream[] streams;
+
     /**
      * The indicator which determines whether {@link DataSource#disconnect()} is
      * to be called on the wrapped <tt>DataSource</tt> when it is called on this
@@ -111,15 +129,39 @@ public class ReceiveStreamPushBufferDataSource
 
     /**
      * Implements {@link PushBufferDataSource#getStreams()}. Delegates to the
-     * wrapped <tt>DataSource</tt> of the <tt>ReceiveStream</tt>.
+     * wrapped <tt>DataSource</tt> of the <tt>ReceiveStream</tt> and plays out
+     * its audio <tt>PushBufferStream</tt>s through
+     * <tt>JitterBufferPushBufferStream</tt>s.
      *
      * @return an array of the <tt>PushBufferStream</tt>s of the wrapped
      * <tt>DataSource</tt> of the <tt>ReceiveStream</tt>
      */
     @Override
-    public PushBufferStream[] getStreams()
+    public synchronized PushBufferStream[] getStreams()
     {
-        return dataSource.getStreams();
+        PushBufferStream[] sourceStreams = dataSource.getStreams();
+
+        if (sourceStreams != this.sourceStreams)
+        {
+            this.sourceStreams = sourceStreams;
+            if (sourceStreams == null)
+                streams = null;
+            else
+            {
+                streams = new PushBufferStream[sourceStreams.length];
+                for (int i = 0; i < sourceStreams.length; i++)
+                {
+                    PushBufferStream sourceStream = sourceStreams[i];
+
+                    streams[i]
+                        = JitterBufferPushBufferStream.isJitterBufferEnabled(
+                                sourceStream)
+                            ? new JitterBufferPushBufferStream(sourceStream)
+                            : sourceStream;
+                }
+            }
+        }
+        return (streams == null) ? null : streams.clone();
     }
 
     /**
@@ -135,4 +177,56 @@ public class ReceiveStreamPushBufferDataSource
     {
         this.suppressDisconnect = suppressDisconnect;
     }
+
+    /**
+     * Starts the wrapped <tt>DataSource</tt> of the <tt>ReceiveStream</tt> and
+     * the playout of its <tt>JitterBufferPushBufferStream</tt>s.
+     *
+     * @throws IOException if the wrapped <tt>DataSource</tt> fails to start
+     */
+    @Override
+    public void start()
+        throws IOException
+    {
+        super.start();
+
+        PushBufferStream[] streams = getStreams();
+
+        if (streams != null)
+        {
+            for (PushBufferStream stream : streams)
+            {
+                if (stream instanceof JitterBufferPushBufferStream)
+                    ((JitterBufferPushBufferStream) stream).start();
+            }
+        }
+    }
+
+    /**
+     * Stops the playout of the <tt>JitterBufferPushBufferStream</tt>s and the
+     * wrapped <tt>DataSource</tt> of the <tt>ReceiveStream</tt>.
+     *
+     * @throws IOException if the wrapped <tt>DataSource</tt> fails to stop
+     */
+    @Override
+    public void stop()
+        throws IOException
+    {
+        PushBufferStream[] streams;
+
+        synchronized (this)
+        {
+            streams = this.streams;
+        }
+        if (streams != null)
+        {
+            for (PushBufferStream stream : streams)
+            {
+                if (stream instanceof JitterBufferPushBufferStream)
+                    ((JitterBufferPushBufferStream) stream).stop();
+            }
+        }
+
+        super.stop();
+    }
 }
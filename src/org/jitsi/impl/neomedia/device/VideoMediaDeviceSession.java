@@ -1108,6 +1108,28 @@ public class VideoMediaDeviceSession
                                     playerScaler
                                 });
                     }
+                    /*
+                     * For VP8, the depacketizer requests a key frame when it
+                     * has lost a frame which other frames reference.
+                     */
+                    else if ("vp8/rtp".equalsIgnoreCase(fmjEncoding)
+                            && (keyFrameControl != null))
+                    {
+                        org.jitsi.impl.neomedia.codec.video.vp8.DePacketizer
+                            depacketizer
+                                = new org.jitsi.impl.neomedia.codec.video.vp8
+                                        .DePacketizer();
+
+                        depacketizer.setKeyFrameControl(keyFrameControl);
+                        trackControl.setCodecChain(
+                                new Codec[]
+                                {
+                                    depacketizer,
+                                    new org.jitsi.impl.neomedia.codec.video.vp8
+                                            .VPXDecoder(),
+                                    playerScaler
+                                });
+                    }
                     else
                     {
                         trackControl.setCodecChain(
@@ -1119,7 +1141,7 @@ public class VideoMediaDeviceSession
             catch (UnsupportedPlugInException upiex)
             {
                 logger.error(
-                        "Failed to add SwScale or H.264 DePacketizer"
+                        "Failed to add SwScale or DePacketizer"
                             + " to codec chain",
                         upiex);
                 playerScaler = null;
@@ -1393,6 +1415,20 @@ public class VideoMediaDeviceSession
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Sets the packet size of the packetizers once they are known.
+     */
+    @Override
+    protected void processorControllerUpdate(ControllerEvent ev)
+    {
+        super.processorControllerUpdate(ev);
+
+        if (ev instanceof RealizeCompleteEvent)
+            setPacketSize();
+    }
+
     /**
      * Removes RTCPFeedbackCreateListener.
      *
@@ -1430,6 +1466,8 @@ public class VideoMediaDeviceSession
     public void setConnector(AbstractRTPConnector rtpConnector)
     {
         this.rtpConnector = rtpConnector;
+
+        setPacketSize();
     }
 
     /**
@@ -1526,6 +1564,28 @@ public class VideoMediaDeviceSession
         }
     }
 
+    /**
+     * Sets the maximum size of the RTP payloads output by the packetizers of
+     * the <tt>Processor</tt> of this instance to the one which fits into the
+     * MTU of the network interface used by {@link #rtpConnector}.
+     */
+    private void setPacketSize()
+    {
+        Set<PacketSizeControl> packetSizeControls
+            = getEncoderControls(PacketSizeControl.class);
+
+        if (packetSizeControls.isEmpty())
+            return;
+
+        AbstractRTPConnector rtpConnector = this.rtpConnector;
+        int packetSize
+            = PacketSizeControlImpl.getPacketSize(
+                    (rtpConnector == null) ? null : rtpConnector.getConnector());
+
+        for (PacketSizeControl packetSizeControl : packetSizeControls)
+            packetSizeControl.setPacketSize(packetSize);
+    }
+
     /**
      * Sets the <tt>MediaFormatImpl</tt> in which a specific <tt>Processor</tt>
      * producing media to be streamed to the remote peer is to output.
@@ -1673,6 +1733,17 @@ public class VideoMediaDeviceSession
                         mediaFormat.getAdditionalCodecSettings());
             }
 
+            // packet size
+            {
+                AbstractRTPConnector rtpConnector = this.rtpConnector;
+
+                encoder.setPacketSize(
+                        PacketSizeControlImpl.getPacketSize(
+                                (rtpConnector == null)
+                                    ? null
+                                    : rtpConnector.getConnector()));
+            }
+
             this.encoder = encoder;
             onRTCPFeedbackCreate(encoder);
             synchronized (rtcpFeedbackCreateListners)
@@ -6,6 +6,7 @@
  */
 package org.jitsi.impl.neomedia.imgstreaming;
 
+import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.*;
 
@@ -34,24 +35,74 @@ public class ImgStreamingUtils
                                                int height,
                                                int type)
     {
+        return getScaledImage(src, width, height, type, null);
+    }
+
+    /**
+     * Get a scaled <tt>BufferedImage</tt> reusing a specific
+     * <tt>BufferedImage</tt> (e.g. the one returned for the previous frame)
+     * as the destination if it has the requested size and type.
+     *
+     * @param src source image
+     * @param width width of scaled image
+     * @param height height of scaled image
+     * @param type <tt>BufferedImage</tt> type
+     * @param dst the <tt>BufferedImage</tt> to scale <tt>src</tt> into if
+     * its size and type match or <tt>null</tt>
+     * @return scaled <tt>BufferedImage</tt> which is <tt>dst</tt> if it was
+     * reusable
+     */
+    public static BufferedImage getScaledImage(BufferedImage src,
+                                               int width,
+                                               int height,
+                                               int type,
+                                               BufferedImage dst)
+    {
+        if ((dst == null)
+                || (dst.getWidth() != width)
+                || (dst.getHeight() != height)
+                || (dst.getType() != type))
+            dst = new BufferedImage(width, height, type);
+
         double scaleWidth = width / ((double)src.getWidth());
         double scaleHeight = height / ((double)src.getHeight());
-        AffineTransform tx = new AffineTransform();
 
         // Skip rescaling if input and output size are the same.
-        if ((Double.compare(scaleWidth, 1) != 0)
-                || (Double.compare(scaleHeight, 1) != 0))
-            tx.scale(scaleWidth, scaleHeight);
+        if ((Double.compare(scaleWidth, 1) == 0)
+                && (Double.compare(scaleHeight, 1) == 0))
+        {
+            /*
+             * Merely converting the pixels by blitting is much faster than an
+             * AffineTransformOp with the identity transform.
+             */
+            Graphics2D g = dst.createGraphics();
+
+            try
+            {
+                g.setComposite(AlphaComposite.Src);
+                g.drawImage(src, 0, 0, null);
+            }
+            finally
+            {
+                g.dispose();
+            }
+            return dst;
+        }
+
+        AffineTransform tx = new AffineTransform();
+
+        tx.scale(scaleWidth, scaleHeight);
 
         AffineTransformOp op
             = new AffineTransformOp(tx, AffineTransformOp.TYPE_BILINEAR);
-        BufferedImage dst = new BufferedImage(width, height, type);
 
         return op.filter(src, dst);
     }
 
     /**
-     * Get raw bytes from ARGB <tt>BufferedImage</tt>.
+     * Get raw bytes from ARGB <tt>BufferedImage</tt>. The bytes of each pixel
+     * are in the order of the bands of the image i.e. red, green, blue and
+     * alpha.
      *
      * @param src ARGB <BufferImage</tt>
      * @param output output buffer, if not null and if its length is at least
@@ -68,8 +119,6 @@ public class ImgStreamingUtils
         int width = src.getWidth();
         int height = src.getHeight();
         int size = width * height * 4;
-        int off = 0;
-        int pixel[] = new int[4];
         byte data[] = null;
 
         if(output == null || output.length < size)
@@ -83,15 +132,55 @@ public class ImgStreamingUtils
             data = output;
         }
 
-        for(int y = 0 ; y < height ; y++)
-            for(int x = 0 ; x < width ; x++)
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        SampleModel sampleModel = raster.getSampleModel();
+
+        if ((dataBuffer instanceof DataBufferInt)
+                && (sampleModel instanceof SinglePixelPackedSampleModel))
+        {
+            /*
+             * Read the packed pixels directly rather than have the raster
+             * unpack them one by one. (Note that DataBufferInt#getData() keeps
+             * src from being accelerated which is of no concern for captured
+             * frames.)
+             */
+            int pixels[] = ((DataBufferInt) dataBuffer).getData();
+            SinglePixelPackedSampleModel sppsm
+                = (SinglePixelPackedSampleModel) sampleModel;
+            int scanlineStride = sppsm.getScanlineStride();
+            int rowOff
+                = dataBuffer.getOffset()
+                    + sppsm.getOffset(
+                            -raster.getSampleModelTranslateX(),
+                            -raster.getSampleModelTranslateY());
+            int off = 0;
+
+            for(int y = 0 ; y < height ; y++, rowOff += scanlineStride)
+            {
+                for(int x = rowOff, end = rowOff + width ; x < end ; x++)
+                {
+                    int pixel = pixels[x];
+
+                    data[off++] = (byte)(pixel >> 16);
+                    data[off++] = (byte)(pixel >> 8);
+                    data[off++] = (byte)pixel;
+                    data[off++] = (byte)(pixel >>> 24);
+                }
+            }
+        }
+        else
+        {
+            /* Unpack the pixels one row at a time. */
+            int pixels[] = new int[width * 4];
+            int off = 0;
+
+            for(int y = 0 ; y < height ; y++)
             {
-                raster.getPixel(x, y, pixel);
-                data[off++] = (byte)pixel[0];
-                data[off++] = (byte)pixel[1];
-                data[off++] = (byte)pixel[2];
-                data[off++] = (byte)pixel[3];
+                raster.getPixels(0, y, width, 1, pixels);
+                for(int i = 0 ; i < pixels.length ; i++)
+                    data[off++] = (byte)pixels[i];
             }
+        }
 
         return data;
     }
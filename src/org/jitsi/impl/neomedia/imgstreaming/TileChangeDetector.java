@@ -0,0 +1,312 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.imgstreaming;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Detects the regions of raw ARGB frames (as captured by
+ * <tt>DesktopInteract</tt>) which have changed since the previous frame. The
+ * frames are divided into square tiles, a hash of each tile is kept and the
+ * tiles the hashes of which differ from the ones of the previous frame are
+ * reported as changed. The changed tiles are merged into rectangles.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class TileChangeDetector
+{
+    /**
+     * The default length in pixels of the side of a tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    /**
+     * The number of bytes per pixel of the frames.
+     */
+    private static final int PIXEL_SIZE = 4;
+
+    /**
+     * The rectangles made of the tiles which changed in the last frame.
+     */
+    private final List<Rectangle> changedRegions = new ArrayList<Rectangle>();
+
+    /**
+     * The number of tiles which changed in the last frame.
+     */
+    private int changedTileCount;
+
+    /**
+     * The flags which indicate which tiles changed in the last frame.
+     */
+    private boolean[] changedTiles;
+
+    /**
+     * The height in pixels of the last frame.
+     */
+    private int height = -1;
+
+    /**
+     * The number of tile columns of the last frame.
+     */
+    private int tileColumns;
+
+    /**
+     * The hashes of the tiles of the last frame.
+     */
+    private int[] tileHashes;
+
+    /**
+     * The number of tile rows of the last frame.
+     */
+    private int tileRows;
+
+    /**
+     * The length in pixels of the side of a tile.
+     */
+    private final int tileSize;
+
+    /**
+     * The width in pixels of the last frame.
+     */
+    private int width = -1;
+
+    /**
+     * Initializes a new <tt>TileChangeDetector</tt> instance with
+     * {@link #DEFAULT_TILE_SIZE}.
+     */
+    public TileChangeDetector()
+    {
+        this(DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Initializes a new <tt>TileChangeDetector</tt> instance with a specific
+     * tile size.
+     *
+     * @param tileSize the length in pixels of the side of a tile
+     */
+    public TileChangeDetector(int tileSize)
+    {
+        if (tileSize < 1)
+            throw new IllegalArgumentException("tileSize");
+
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Compares a specific raw ARGB frame with the previous one and determines
+     * the regions which have changed. The first frame, a frame with a size
+     * different from the one of the previous frame and the frame following
+     * {@link #reset()} are completely changed.
+     *
+     * @param frame the raw ARGB frame i.e. 4 bytes per pixel and rows without
+     * padding
+     * @param offset the offset in <tt>frame</tt> at which the frame starts
+     * @param width the width in pixels of the frame
+     * @param height the height in pixels of the frame
+     * @return <tt>true</tt> if the frame differs from the previous one;
+     * otherwise, <tt>false</tt>
+     */
+    public boolean detect(byte[] frame, int offset, int width, int height)
+    {
+        if ((width < 1) || (height < 1))
+            throw new IllegalArgumentException("width or height");
+        if (offset + width * height * PIXEL_SIZE > frame.length)
+            throw new IllegalArgumentException("frame");
+
+        boolean resized = (this.width != width) || (this.height != height);
+
+        if (resized)
+        {
+            this.width = width;
+            this.height = height;
+            tileColumns = (width + tileSize - 1) / tileSize;
+            tileRows = (height + tileSize - 1) / tileSize;
+            tileHashes = new int[tileColumns * tileRows];
+            changedTiles = new boolean[tileHashes.length];
+        }
+
+        int rowLength = width * PIXEL_SIZE;
+
+        changedTileCount = 0;
+        for (int tileRow = 0, tile = 0; tileRow < tileRows; tileRow++)
+        {
+            int yEnd = Math.min((tileRow + 1) * tileSize, height);
+
+            for (int tileColumn = 0;
+                    tileColumn < tileColumns;
+                    tileColumn++, tile++)
+            {
+                int xOffset = tileColumn * tileSize * PIXEL_SIZE;
+                int xLength
+                    = Math.min(tileSize * PIXEL_SIZE, rowLength - xOffset);
+                int hash = 1;
+
+                for (int y = tileRow * tileSize; y < yEnd; y++)
+                {
+                    int i = offset + y * rowLength + xOffset;
+
+                    for (int end = i + xLength; i < end; i += PIXEL_SIZE)
+                    {
+                        int pixel
+                            = ((frame[i] & 0xFF) << 24)
+                                | ((frame[i + 1] & 0xFF) << 16)
+                                | ((frame[i + 2] & 0xFF) << 8)
+                                | (frame[i + 3] & 0xFF);
+
+                        hash = 31 * hash + pixel;
+                    }
+                }
+
+                boolean changed = resized || (tileHashes[tile] != hash);
+
+                tileHashes[tile] = hash;
+                changedTiles[tile] = changed;
+                if (changed)
+                    changedTileCount++;
+            }
+        }
+
+        mergeChangedTiles();
+        return (changedTileCount != 0);
+    }
+
+    /**
+     * Gets the bounds of the regions which changed in the last frame given
+     * to {@link #detect(byte[], int, int, int)}.
+     *
+     * @return the bounds of the regions which changed in the last frame or
+     * <tt>null</tt> if none changed
+     */
+    public Rectangle getChangedBounds()
+    {
+        Rectangle bounds = null;
+
+        for (Rectangle region : changedRegions)
+        {
+            if (bounds == null)
+                bounds = new Rectangle(region);
+            else
+                bounds.add(region);
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets the regions which changed in the last frame given to
+     * {@link #detect(byte[], int, int, int)}. The regions do not overlap and
+     * are clipped to the frame.
+     *
+     * @return the regions which changed in the last frame
+     */
+    public Rectangle[] getChangedRegions()
+    {
+        Rectangle[] regions = new Rectangle[changedRegions.size()];
+
+        for (int i = 0; i < regions.length; i++)
+            regions[i] = new Rectangle(changedRegions.get(i));
+        return regions;
+    }
+
+    /**
+     * Gets the number of tiles which changed in the last frame given to
+     * {@link #detect(byte[], int, int, int)}.
+     *
+     * @return the number of tiles which changed in the last frame
+     */
+    public int getChangedTileCount()
+    {
+        return changedTileCount;
+    }
+
+    /**
+     * Gets the length in pixels of the side of a tile.
+     *
+     * @return the length in pixels of the side of a tile
+     */
+    public int getTileSize()
+    {
+        return tileSize;
+    }
+
+    /**
+     * Merges {@link #changedTiles} into {@link #changedRegions}: the changed
+     * tiles of a row are merged into runs and a run is merged with the run
+     * of the row above it if they span the same columns.
+     */
+    private void mergeChangedTiles()
+    {
+        changedRegions.clear();
+        if (changedTileCount == 0)
+            return;
+
+        /*
+         * The regions which end in the previous tile row and may be extended
+         * downwards, keyed by the index of their first tile column.
+         */
+        Map<Integer, Rectangle> open = new HashMap<Integer, Rectangle>();
+        Map<Integer, Rectangle> next = new HashMap<Integer, Rectangle>();
+
+        for (int tileRow = 0; tileRow < tileRows; tileRow++)
+        {
+            int rowStart = tileRow * tileColumns;
+            int y = tileRow * tileSize;
+            int h = Math.min(tileSize, height - y);
+
+            for (int tileColumn = 0; tileColumn < tileColumns;)
+            {
+                if (!changedTiles[rowStart + tileColumn])
+                {
+                    tileColumn++;
+                    continue;
+                }
+
+                int runStart = tileColumn;
+
+                do
+                    tileColumn++;
+                while ((tileColumn < tileColumns)
+                        && changedTiles[rowStart + tileColumn]);
+
+                int x = runStart * tileSize;
+                int w = Math.min(tileColumn * tileSize, width) - x;
+                Rectangle region = open.remove(runStart);
+
+                if ((region != null) && (region.x == x) && (region.width == w))
+                    region.height += h;
+                else
+                {
+                    region = new Rectangle(x, y, w, h);
+                    changedRegions.add(region);
+                }
+                next.put(runStart, region);
+            }
+
+            Map<Integer, Rectangle> swap = open;
+
+            open = next;
+            next = swap;
+            next.clear();
+        }
+    }
+
+    /**
+     * Forgets the previous frame so that the next frame given to
+     * {@link #detect(byte[], int, int, int)} is reported as completely
+     * changed.
+     */
+    public void reset()
+    {
+        width = -1;
+        height = -1;
+        changedRegions.clear();
+        changedTileCount = 0;
+    }
+}
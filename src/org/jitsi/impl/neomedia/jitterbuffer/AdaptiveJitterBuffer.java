@@ -0,0 +1,1121 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.jitterbuffer;
+
+import java.awt.*;
+
+import javax.media.*;
+import javax.media.Buffer;
+
+import org.apache.commons.math3.stat.descriptive.*;
+import org.jitsi.impl.neomedia.codec.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.service.neomedia.control.*;
+
+/**
+ * Implements an adaptive jitter buffer for the RTP packets of an audio stream.
+ * The packets are ordered by their sequence numbers and are played out one
+ * per packet interval. The delay at which they are played out follows the
+ * inter-arrival jitter which is estimated from the arrival times and the
+ * sequence numbers of the packets (the timestamps of the <tt>Buffer</tt>s are
+ * not reliable enough): the target delay grows immediately when the jitter
+ * grows or a packet arrives too late and it shrinks (by dropping a packet)
+ * only after the buffer has stayed above the target delay for a while.
+ * <p>
+ * A packet which is missing at its playout time is declared lost if the
+ * buffer holds enough packets after it; otherwise, the playout waits for it.
+ * If the decoder supports it (i.e. Opus and SILK), a lost packet and a wait
+ * are turned into <tt>Buffer</tt>s which ask the decoder to decode the
+ * forward error correction data of the next packet
+ * (<tt>AbstractCodec2.BUFFER_FLAG_FEC</tt>) or to conceal the loss
+ * (<tt>AbstractCodec2.BUFFER_FLAG_PLC</tt>) so that the playout does not fall
+ * silent.
+ * </p>
+ * <p>
+ * The time is specified by the callers (in milliseconds) so that instances do
+ * not depend on a clock or a thread of their own.
+ * </p>
+ */
+public class AdaptiveJitterBuffer
+    implements JitterBufferControl
+{
+    /**
+     * The interval in milliseconds after which the target delay added because
+     * of a late packet is reduced by one packet.
+     */
+    private static final int BOOST_DECAY_INTERVAL = 2000;
+
+    /**
+     * The default maximum delay in milliseconds of the playout.
+     */
+    public static final int DEFAULT_MAX_DELAY = 400;
+
+    /**
+     * The default minimum delay in milliseconds of the playout.
+     */
+    public static final int DEFAULT_MIN_DELAY = 0;
+
+    /**
+     * The interval in milliseconds between the packets which is assumed
+     * before it is measured.
+     */
+    private static final int DEFAULT_PACKET_INTERVAL = 20;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which indicates
+     * whether the audio <tt>ReceiveStream</tt>s are to be played out through
+     * <tt>AdaptiveJitterBuffer</tt>s. The default is <tt>true</tt>.
+     */
+    public static final String ENABLED_PNAME
+        = "org.jitsi.impl.neomedia.jitterbuffer.AdaptiveJitterBuffer.enabled";
+
+    /**
+     * The number of packets over which the packet interval is first measured.
+     */
+    private static final int INITIAL_INTERVAL_SPAN = 5;
+
+    /**
+     * The number of packets over which the packet interval is measured.
+     */
+    private static final int INTERVAL_SPAN = 50;
+
+    /**
+     * The number of estimates of the mean deviation of the jitter which are
+     * added to the packet interval to make the target delay.
+     */
+    private static final int JITTER_FACTOR = 4;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the maximum delay in milliseconds of the playout. The default is
+     * {@link #DEFAULT_MAX_DELAY}.
+     */
+    public static final String MAX_DELAY_PNAME
+        = "org.jitsi.impl.neomedia.jitterbuffer.AdaptiveJitterBuffer.maxDelay";
+
+    /**
+     * The number of consecutive packets arriving too early after which the
+     * buffer is reset i.e. after which a discontinuity of the sequence numbers
+     * is assumed.
+     */
+    private static final int MAX_EARLY = 3;
+
+    /**
+     * The maximum number of consecutive packet intervals during which the
+     * buffer asks for concealment while it waits for packets. Afterwards, it
+     * buffers anew (e.g. during a pause of the sender).
+     */
+    private static final int MAX_EXPANSIONS = 5;
+
+    /**
+     * The weight of the oldest sample of the estimate of the packet interval.
+     */
+    private static final int MAX_INTERVAL_SAMPLES = 8;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the minimum delay in milliseconds of the playout. The default is
+     * {@link #DEFAULT_MIN_DELAY}.
+     */
+    public static final String MIN_DELAY_PNAME
+        = "org.jitsi.impl.neomedia.jitterbuffer.AdaptiveJitterBuffer.minDelay";
+
+    /**
+     * The interval in milliseconds during which the buffer has to stay above
+     * the target delay before a packet is dropped to shrink it.
+     */
+    private static final int SHRINK_INTERVAL = 500;
+
+    /**
+     * The number of packets which the buffer can hold. A power of two.
+     */
+    private static final int SIZE = 128;
+
+    /**
+     * Gets the configured maximum delay in milliseconds of the playout.
+     *
+     * @return the configured maximum delay in milliseconds of the playout
+     */
+    private static int getMaxDelay()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        return
+            (cfg == null)
+                ? DEFAULT_MAX_DELAY
+                : cfg.getInt(MAX_DELAY_PNAME, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Gets the configured minimum delay in milliseconds of the playout.
+     *
+     * @return the configured minimum delay in milliseconds of the playout
+     */
+    private static int getMinDelay()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        return
+            (cfg == null)
+                ? DEFAULT_MIN_DELAY
+                : cfg.getInt(MIN_DELAY_PNAME, DEFAULT_MIN_DELAY);
+    }
+
+    /**
+     * Determines whether the audio <tt>ReceiveStream</tt>s are to be played
+     * out through <tt>AdaptiveJitterBuffer</tt>s.
+     *
+     * @return <tt>true</tt> if the audio <tt>ReceiveStream</tt>s are to be
+     * played out through <tt>AdaptiveJitterBuffer</tt>s; otherwise,
+     * <tt>false</tt>
+     */
+    public static boolean isEnabled()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        return (cfg == null) || cfg.getBoolean(ENABLED_PNAME, true);
+    }
+
+    /**
+     * Moves the media data and its properties from a specific <tt>Buffer</tt>
+     * to another <tt>Buffer</tt> which gives its data array and header to the
+     * former in exchange (so that no media data is copied).
+     *
+     * @param from the <tt>Buffer</tt> to move the media data from
+     * @param to the <tt>Buffer</tt> to move the media data to
+     */
+    private static void move(Buffer from, Buffer to)
+    {
+        Object data = to.getData();
+        Object header = to.getHeader();
+
+        to.copy(from);
+        from.setData(data);
+        from.setHeader(header);
+    }
+
+    /**
+     * The number of packets added to the target delay because of packets
+     * which arrived too late.
+     */
+    private int boost;
+
+    /**
+     * The time in milliseconds of the last change of {@link #boost}.
+     */
+    private long boostTime;
+
+    /**
+     * The statistics of the target size in packets of this buffer.
+     */
+    private final SummaryStatistics capacityStatistics
+        = new SummaryStatistics();
+
+    /**
+     * The number of packets which the decoder has been asked to conceal.
+     */
+    private int concealed;
+
+    /**
+     * The indicator which determines whether the decoder supports the
+     * concealment of lost packets requested with
+     * <tt>AbstractCodec2.BUFFER_FLAG_FEC</tt> and
+     * <tt>AbstractCodec2.BUFFER_FLAG_PLC</tt>.
+     */
+    private final boolean concealment;
+
+    /**
+     * The number of packets held by this buffer.
+     */
+    private int count;
+
+    /**
+     * The number of packets discarded because they arrived too early.
+     */
+    private int discardedEarly;
+
+    /**
+     * The number of packets discarded because this buffer held more than the
+     * maximum delay.
+     */
+    private int discardedFull;
+
+    /**
+     * The number of packets discarded because they arrived after their
+     * playout time.
+     */
+    private int discardedLate;
+
+    /**
+     * The number of packets discarded when this buffer was reset.
+     */
+    private int discardedReset;
+
+    /**
+     * The number of packets discarded to shrink this buffer.
+     */
+    private int discardedShrink;
+
+    /**
+     * The number of consecutive packets which arrived too early.
+     */
+    private int early;
+
+    /**
+     * The number of consecutive packet intervals during which this buffer has
+     * waited for packets.
+     */
+    private int expansions;
+
+    /**
+     * The time in milliseconds at which this buffer started buffering.
+     */
+    private long firstArrival;
+
+    /**
+     * The time in milliseconds of the arrival of the packet with
+     * {@link #highestSeq}.
+     */
+    private long highestArrival;
+
+    /**
+     * The highest extended sequence number which has arrived or <tt>-1</tt>.
+     */
+    private long highestSeq = -1;
+
+    /**
+     * The estimate of the interval in milliseconds between the packets.
+     */
+    private double interval = DEFAULT_PACKET_INTERVAL;
+
+    /**
+     * The time in milliseconds of the arrival of the packet with
+     * {@link #intervalSeq}.
+     */
+    private long intervalArrival;
+
+    /**
+     * The number of samples of {@link #interval}.
+     */
+    private int intervalSamples;
+
+    /**
+     * The extended sequence number of the packet from which the packet
+     * interval is being measured or <tt>-1</tt>.
+     */
+    private long intervalSeq = -1;
+
+    /**
+     * The estimate of the mean deviation in milliseconds of the inter-arrival
+     * time of the packets from {@link #interval}.
+     */
+    private double jitter;
+
+    /**
+     * The flags of the last packet played out.
+     */
+    private int lastFlags;
+
+    /**
+     * The <tt>Format</tt> of the last packet played out.
+     */
+    private Format lastFormat;
+
+    /**
+     * The (RTP) sequence number of the last <tt>Buffer</tt> played out.
+     */
+    private long lastSeqNo = Buffer.SEQUENCE_UNKNOWN;
+
+    /**
+     * The timestamp of the last packet played out.
+     */
+    private long lastTimeStamp = Buffer.TIME_UNKNOWN;
+
+    /**
+     * The maximum delay in milliseconds of the playout.
+     */
+    private final int maxDelay;
+
+    /**
+     * The number of times this buffer held more than the maximum delay.
+     */
+    private int maxSizeReached;
+
+    /**
+     * The minimum delay in milliseconds of the playout.
+     */
+    private final int minDelay;
+
+    /**
+     * The minimum number of packets held by this buffer at a playout since
+     * {@link #shrinkTime}.
+     */
+    private int minLevel = Integer.MAX_VALUE;
+
+    /**
+     * The extended sequence number of the next packet to be played out or
+     * <tt>-1</tt>.
+     */
+    private long nextSeq = -1;
+
+    /**
+     * The indicator which determines whether this buffer plays out or
+     * buffers.
+     */
+    private boolean playing;
+
+    /**
+     * The extended sequence numbers of the packets in {@link #slots}.
+     */
+    private final long[] seqs = new long[SIZE];
+
+    /**
+     * The time in milliseconds since which {@link #minLevel} is determined.
+     */
+    private long shrinkTime;
+
+    /**
+     * The statistics of the number of packets held by this buffer at a
+     * playout.
+     */
+    private final SummaryStatistics sizeStatistics = new SummaryStatistics();
+
+    /**
+     * The indicator which determines whether the next packet to be played out
+     * is to be flagged with <tt>Buffer.FLAG_SKIP_FEC</tt> because the packet
+     * before it has been dropped deliberately.
+     */
+    private boolean skipFec;
+
+    /**
+     * The packets held by this buffer indexed by their extended sequence
+     * numbers modulo {@link #SIZE}. The <tt>Buffer</tt>s are reused.
+     */
+    private final Buffer[] slots = new Buffer[SIZE];
+
+    /**
+     * Initializes a new <tt>AdaptiveJitterBuffer</tt> instance with the
+     * configured minimum and maximum delays.
+     *
+     * @param concealment <tt>true</tt> if the decoder supports the concealment
+     * of lost packets requested with <tt>AbstractCodec2.BUFFER_FLAG_FEC</tt>
+     * and <tt>AbstractCodec2.BUFFER_FLAG_PLC</tt>; otherwise, <tt>false</tt>
+     */
+    public AdaptiveJitterBuffer(boolean concealment)
+    {
+        this(concealment, getMinDelay(), getMaxDelay());
+    }
+
+    /**
+     * Initializes a new <tt>AdaptiveJitterBuffer</tt> instance.
+     *
+     * @param concealment <tt>true</tt> if the decoder supports the concealment
+     * of lost packets requested with <tt>AbstractCodec2.BUFFER_FLAG_FEC</tt>
+     * and <tt>AbstractCodec2.BUFFER_FLAG_PLC</tt>; otherwise, <tt>false</tt>
+     * @param minDelay the minimum delay in milliseconds of the playout
+     * @param maxDelay the maximum delay in milliseconds of the playout
+     */
+    public AdaptiveJitterBuffer(
+            boolean concealment,
+            int minDelay,
+            int maxDelay)
+    {
+        this.concealment = concealment;
+        this.minDelay = Math.max(0, minDelay);
+        this.maxDelay = Math.max(this.minDelay, maxDelay);
+
+        for (int i = 0; i < SIZE; i++)
+            seqs[i] = -1;
+    }
+
+    /**
+     * Adds a packet which has arrived at a specific time to this buffer. The
+     * media data of the packet is taken from <tt>buffer</tt> which receives a
+     * spare data array in exchange.
+     *
+     * @param buffer the <tt>Buffer</tt> which contains the packet
+     * @param now the time in milliseconds at which the packet has arrived
+     */
+    public synchronized void add(Buffer buffer, long now)
+    {
+        long seq = extendSeq(buffer.getSequenceNumber());
+
+        if (nextSeq != -1)
+        {
+            if ((seq < nextSeq)
+                    && !playing
+                    && (lastSeqNo == Buffer.SEQUENCE_UNKNOWN)
+                    && (highestSeq - seq < SIZE))
+            {
+                // Nothing has been played out yet so the packet is not late.
+                nextSeq = seq;
+            }
+            else if (seq < nextSeq)
+            {
+                // The playout has already passed the packet.
+                discardedLate++;
+                if (seq > nextSeq - SIZE)
+                {
+                    boost = Math.min(boost + 1, getMaxPackets());
+                    boostTime = now;
+                }
+                return;
+            }
+            if (seq >= nextSeq + SIZE)
+            {
+                discardedEarly++;
+                if (++early < MAX_EARLY)
+                    return;
+                reset();
+                seq = extendSeq(buffer.getSequenceNumber());
+            }
+        }
+        early = 0;
+
+        int index = (int) (seq & (SIZE - 1));
+
+        if (seqs[index] == seq)
+            return; // a duplicate
+        if (seqs[index] != -1)
+        {
+            // The slot is taken by a packet which the playout has not reached.
+            discardedFull++;
+            count--;
+        }
+
+        Buffer slot = slots[index];
+
+        if (slot == null)
+            slots[index] = slot = new Buffer();
+        move(buffer, slot);
+        seqs[index] = seq;
+        count++;
+
+        if ((count == 1) && !playing)
+            firstArrival = now;
+        if (nextSeq == -1)
+            nextSeq = seq;
+
+        if (highestSeq == -1)
+        {
+            highestSeq = seq;
+            highestArrival = now;
+        }
+        else if (seq > highestSeq)
+        {
+            updateJitter(slot, seq, now);
+            highestSeq = seq;
+            highestArrival = now;
+        }
+    }
+
+    /**
+     * Plays out a specific packet held by this buffer into a specific
+     * <tt>Buffer</tt>.
+     *
+     * @param index the index in {@link #slots} of the packet to play out
+     * @param out the <tt>Buffer</tt> to play the packet out into
+     */
+    private void emit(int index, Buffer out)
+    {
+        Buffer slot = slots[index];
+
+        move(slot, out);
+        seqs[index] = -1;
+        count--;
+        out.setDiscard(false);
+        if (skipFec)
+        {
+            out.setFlags(out.getFlags() | Buffer.FLAG_SKIP_FEC);
+            skipFec = false;
+        }
+        lastFlags = out.getFlags();
+        lastFormat = out.getFormat();
+        lastSeqNo = out.getSequenceNumber();
+        lastTimeStamp = out.getTimeStamp();
+    }
+
+    /**
+     * Asks the decoder through a specific <tt>Buffer</tt> to conceal a
+     * specific packet: to decode the forward error correction data of a
+     * specific next packet or to perform packet loss concealment.
+     *
+     * @param seqNo the (RTP) sequence number of the packet to conceal
+     * @param next the packet which follows the packet to conceal and which
+     * is to be searched for forward error correction data or <tt>null</tt>
+     * @param out the <tt>Buffer</tt> to play the request out into
+     */
+    private void emitConcealment(long seqNo, Buffer next, Buffer out)
+    {
+        Object data = out.getData();
+        Object header = out.getHeader();
+        byte[] bytes = (data instanceof byte[]) ? (byte[]) data : null;
+        int flags = lastFlags & ~Buffer.FLAG_RTP_MARKER;
+        int length = 0;
+
+        if (next != null)
+        {
+            length = next.getLength();
+            if ((bytes == null) || (bytes.length < length))
+                bytes = new byte[length];
+            System.arraycopy(
+                    next.getData(), next.getOffset(),
+                    bytes, 0,
+                    length);
+            flags |= AbstractCodec2.BUFFER_FLAG_FEC;
+        }
+        else
+        {
+            if (bytes == null)
+                bytes = new byte[0];
+            flags |= AbstractCodec2.BUFFER_FLAG_PLC;
+        }
+
+        out.setData(bytes);
+        out.setDiscard(false);
+        out.setDuration(Buffer.TIME_UNKNOWN);
+        out.setEOM(false);
+        out.setFlags(flags & ~Buffer.FLAG_SKIP_FEC);
+        out.setFormat(lastFormat);
+        out.setHeader(header);
+        out.setLength(length);
+        out.setOffset(0);
+        out.setSequenceNumber(seqNo);
+        out.setTimeStamp(lastTimeStamp);
+
+        lastSeqNo = seqNo;
+        concealed++;
+    }
+
+    /**
+     * Extends a specific (16-bit RTP) sequence number with the number of
+     * times the sequence numbers have wrapped around.
+     *
+     * @param seqNo the (RTP) sequence number to extend
+     * @return the extended sequence number of <tt>seqNo</tt>
+     */
+    private long extendSeq(long seqNo)
+    {
+        seqNo &= 0xFFFF;
+        if (highestSeq == -1)
+            return seqNo + 0x10000;
+
+        int delta = (short) (seqNo - (highestSeq & 0xFFFF));
+
+        return highestSeq + delta;
+    }
+
+    /**
+     * Gets the number of packets from {@link #nextSeq} to {@link #highestSeq}
+     * i.e. the packets held by this buffer and the packets missing in between.
+     *
+     * @return the number of packets from <tt>nextSeq</tt> to
+     * <tt>highestSeq</tt>
+     */
+    private int getLevel()
+    {
+        return
+            ((nextSeq == -1) || (highestSeq < nextSeq))
+                ? 0
+                : (int) (highestSeq - nextSeq + 1);
+    }
+
+    /**
+     * Gets the maximum number of packets ahead of the playout i.e. the maximum
+     * delay in packets.
+     *
+     * @return the maximum number of packets ahead of the playout
+     */
+    private int getMaxPackets()
+    {
+        return
+            Math.min(
+                    SIZE / 2,
+                    Math.max(1, (int) (maxDelay / getPacketInterval())));
+    }
+
+    /**
+     * Gets the estimate of the interval in milliseconds between the packets
+     * (i.e. the interval at which they are to be played out) rounded to
+     * whole milliseconds.
+     *
+     * @return the estimate of the interval in milliseconds between the packets
+     */
+    public synchronized int getPacketInterval()
+    {
+        return Math.max(1, (int) Math.round(interval));
+    }
+
+    /**
+     * Gets the number of packets which this buffer aims to hold ahead of the
+     * playout.
+     *
+     * @return the number of packets which this buffer aims to hold ahead of
+     * the playout
+     */
+    private int getTargetPackets()
+    {
+        int packetInterval = getPacketInterval();
+        int target
+            = 1 + (int) Math.ceil(JITTER_FACTOR * jitter / packetInterval)
+                + boost;
+        int minPackets
+            = Math.max(
+                    1,
+                    (minDelay + packetInterval - 1) / packetInterval);
+
+        return Math.min(getMaxPackets(), Math.max(minPackets, target));
+    }
+
+    /**
+     * Determines whether this buffer plays out i.e. whether it is to be polled
+     * once per packet interval rather than until it starts to play out.
+     *
+     * @return <tt>true</tt> if this buffer plays out; otherwise,
+     * <tt>false</tt>
+     */
+    public synchronized boolean isPlaying()
+    {
+        return playing;
+    }
+
+    /**
+     * Plays out the next packet (or a request to conceal it) into a specific
+     * <tt>Buffer</tt> if it is time to do so. Once this buffer plays out, it
+     * is to be polled once per {@link #getPacketInterval()}.
+     *
+     * @param now the current time in milliseconds
+     * @param out the <tt>Buffer</tt> to play out into. It receives the data
+     * array of the packet and gives its own data array to this buffer in
+     * exchange.
+     * @return <tt>true</tt> if <tt>out</tt> has been filled; otherwise,
+     * <tt>false</tt>
+     */
+    public synchronized boolean poll(long now, Buffer out)
+    {
+        if (!playing)
+        {
+            if ((count == 0)
+                    || (now - firstArrival
+                            < (getTargetPackets() - 1) * getPacketInterval()))
+                return false;
+
+            while (seqs[(int) (nextSeq & (SIZE - 1))] != nextSeq)
+            {
+                /*
+                 * The decoder is not to conceal the packets which have not
+                 * arrived while the sender paused.
+                 */
+                nextSeq++;
+                skipFec = (lastSeqNo != Buffer.SEQUENCE_UNKNOWN);
+            }
+            playing = true;
+            expansions = 0;
+            minLevel = Integer.MAX_VALUE;
+            shrinkTime = now;
+        }
+
+        if ((boost > 0) && (now - boostTime >= BOOST_DECAY_INTERVAL))
+        {
+            boost--;
+            boostTime = now;
+        }
+
+        int target = getTargetPackets();
+        int level = getLevel();
+
+        sizeStatistics.addValue(level);
+        capacityStatistics.addValue(target);
+
+        // Drop the oldest packets if this buffer holds more than allowed.
+        int maxPackets = getMaxPackets();
+
+        if (level > maxPackets)
+        {
+            maxSizeReached++;
+            while (level > maxPackets)
+            {
+                if (skip())
+                    discardedFull++;
+                level--;
+            }
+            skipFec = true;
+        }
+
+        // Shrink once this buffer has stayed above the target for a while.
+        minLevel = Math.min(minLevel, level);
+        if (now - shrinkTime >= SHRINK_INTERVAL)
+        {
+            if ((minLevel > target)
+                    && (seqs[(int) (nextSeq & (SIZE - 1))] == nextSeq))
+            {
+                skip();
+                discardedShrink++;
+                level--;
+                skipFec = true;
+            }
+            minLevel = Integer.MAX_VALUE;
+            shrinkTime = now;
+        }
+
+        int index = (int) (nextSeq & (SIZE - 1));
+
+        if (seqs[index] == nextSeq)
+        {
+            emit(index, out);
+            nextSeq++;
+            expansions = 0;
+            return true;
+        }
+
+        long seqNo = nextSeq & 0xFFFF;
+
+        if ((level > 0) && (level >= target))
+        {
+            // The packet is lost rather than late.
+            nextSeq++;
+            expansions = 0;
+            if (concealment && !skipFec)
+            {
+                int nextIndex = (int) (nextSeq & (SIZE - 1));
+
+                emitConcealment(
+                        seqNo,
+                        (seqs[nextIndex] == nextSeq) ? slots[nextIndex] : null,
+                        out);
+                return true;
+            }
+            lastSeqNo = seqNo;
+            return false;
+        }
+
+        /*
+         * Wait for the packet (or for any packet if this buffer is empty).
+         * While a missing packet is awaited, the level grows with the arriving
+         * packets so the wait is bounded by the target.
+         */
+        if (++expansions > Math.max(MAX_EXPANSIONS, target))
+        {
+            playing = false;
+            firstArrival = now;
+            return false;
+        }
+        if (concealment && (lastSeqNo != Buffer.SEQUENCE_UNKNOWN))
+        {
+            emitConcealment(lastSeqNo, null, out);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Discards the packets held by this buffer and the state of the playout.
+     * The estimates of the packet interval and the jitter are kept.
+     */
+    public synchronized void reset()
+    {
+        for (int i = 0; i < SIZE; i++)
+        {
+            if (seqs[i] != -1)
+            {
+                seqs[i] = -1;
+                discardedReset++;
+            }
+        }
+        count = 0;
+        early = 0;
+        highestSeq = -1;
+        intervalSeq = -1;
+        nextSeq = -1;
+        playing = false;
+        lastSeqNo = Buffer.SEQUENCE_UNKNOWN;
+        skipFec = false;
+    }
+
+    /**
+     * Advances the playout past the next packet and discards the latter if it
+     * is held by this buffer.
+     *
+     * @return <tt>true</tt> if a packet has been discarded; otherwise,
+     * <tt>false</tt>
+     */
+    private boolean skip()
+    {
+        int index = (int) (nextSeq & (SIZE - 1));
+        boolean discarded = (seqs[index] == nextSeq);
+
+        if (discarded)
+        {
+            seqs[index] = -1;
+            count--;
+        }
+        lastSeqNo = nextSeq & 0xFFFF;
+        nextSeq++;
+        return discarded;
+    }
+
+    /**
+     * Updates the estimates of the packet interval and of the jitter with a
+     * specific packet which has arrived in order.
+     *
+     * @param packet the packet which has arrived in order
+     * @param seq the extended sequence number of <tt>packet</tt>
+     * @param now the time in milliseconds at which <tt>packet</tt> has
+     * arrived
+     */
+    private void updateJitter(Buffer packet, long seq, long now)
+    {
+        // The start of a talkspurt says nothing about the network.
+        if ((packet.getFlags() & Buffer.FLAG_RTP_MARKER) != 0)
+        {
+            intervalSeq = seq;
+            intervalArrival = now;
+            return;
+        }
+
+        long seqDelta = seq - highestSeq;
+        double deviation
+            = Math.abs((now - highestArrival) - seqDelta * interval);
+
+        // A pause of the sender (e.g. DTX) is not jitter.
+        if (deviation <= maxDelay)
+            jitter += (deviation - jitter) / 16;
+
+        /*
+         * The interval is measured over many packets because the jitter of
+         * the inter-arrival times of consecutive packets is large compared to
+         * the interval.
+         */
+        if (intervalSeq == -1)
+        {
+            intervalSeq = seq;
+            intervalArrival = now;
+            return;
+        }
+
+        long span = seq - intervalSeq;
+
+        if (span
+                >= ((intervalSamples == 0)
+                        ? INITIAL_INTERVAL_SPAN
+                        : INTERVAL_SPAN))
+        {
+            double sample = (now - intervalArrival) / (double) span;
+
+            if ((intervalSamples == 0)
+                    || ((sample > interval / 2) && (sample < interval * 2)))
+            {
+                if (intervalSamples < MAX_INTERVAL_SAMPLES)
+                    intervalSamples++;
+                interval += (sample - interval) / intervalSamples;
+            }
+            intervalSeq = seq;
+            intervalArrival = now;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized double getAverageCapacity()
+    {
+        return capacityStatistics.getMean();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized double getAverageSize()
+    {
+        return sizeStatistics.getMean();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getConcealed()
+    {
+        return concealed;
+    }
+
+    /**
+     * Gets the UI <tt>Component</tt> associated with this <tt>Control</tt>
+     * object.
+     *
+     * @return the UI <tt>Component</tt> associated with this <tt>Control</tt>
+     * object
+     */
+    public Component getControlComponent()
+    {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getCurrentDelayMs()
+    {
+        return getLevel() * getPacketInterval();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getCurrentDelayPackets()
+    {
+        return getLevel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getCurrentPacketCount()
+    {
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getCurrentSizePackets()
+    {
+        return getTargetPackets();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getDiscarded()
+    {
+        return
+            discardedEarly + discardedFull + discardedLate + discardedReset
+                + discardedShrink;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getDiscardedEarly()
+    {
+        return discardedEarly;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getDiscardedFull()
+    {
+        return discardedFull;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getDiscardedLate()
+    {
+        return discardedLate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getDiscardedReset()
+    {
+        return discardedReset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getDiscardedShrink()
+    {
+        return discardedShrink;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized double getJitterMs()
+    {
+        return jitter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getMaxCapacity()
+    {
+        return (int) capacityStatistics.getMax();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getMaxSize()
+    {
+        return (int) sizeStatistics.getMax();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getMaxSizeReached()
+    {
+        return maxSizeReached;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getMinCapacity()
+    {
+        return (int) capacityStatistics.getMin();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getMinSize()
+    {
+        return (int) sizeStatistics.getMin();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized double getStandardDeviationCapacity()
+    {
+        return capacityStatistics.getStandardDeviation();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized double getStandardDeviationSize()
+    {
+        return sizeStatistics.getStandardDeviation();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int getTargetDelayMs()
+    {
+        return getTargetPackets() * getPacketInterval();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Always returns <tt>true</tt>.
+     */
+    public boolean isAdaptiveBufferEnabled()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.jitterbuffer;
+
+import java.io.*;
+import java.util.*;
+
+import javax.media.*;
+import javax.media.control.*;
+import javax.media.format.*;
+import javax.media.protocol.*;
+
+import net.sf.fmj.media.util.*;
+
+import org.jitsi.impl.neomedia.jmfext.media.renderer.*;
+import org.jitsi.impl.neomedia.protocol.*;
+import org.jitsi.service.neomedia.codec.*;
+import org.jitsi.service.neomedia.control.*;
+import org.jitsi.util.*;
+
+/**
+ * Implements a <tt>PushBufferStream</tt> which plays out the RTP packets of
+ * the audio <tt>PushBufferStream</tt> of a <tt>ReceiveStream</tt> through an
+ * <tt>AdaptiveJitterBuffer</tt>. The packets are read from the wrapped
+ * <tt>PushBufferStream</tt> as soon as they are available (so that the packet
+ * queue of FMJ neither delays them nor distorts their arrival times) and are
+ * pushed by a thread of this instance once per packet interval.
+ */
+public class JitterBufferPushBufferStream
+    extends SourceStreamDelegate<PushBufferStream>
+    implements PushBufferStream
+{
+    /**
+     * The <tt>Logger</tt> used by the <tt>JitterBufferPushBufferStream</tt>
+     * class and its instances for logging output.
+     */
+    private static final Logger logger
+        = Logger.getLogger(JitterBufferPushBufferStream.class);
+
+    /**
+     * The maximum number of packet intervals by which the playout thread may
+     * fall behind before it stops catching up.
+     */
+    private static final int MAX_LAG = 4;
+
+    /**
+     * The maximum interval in milliseconds at which the wrapped
+     * <tt>PushBufferStream</tt> is polled for packets.
+     */
+    private static final long POLL_INTERVAL = 5;
+
+    /**
+     * Determines whether the decoder of a specific <tt>Format</tt> supports
+     * the concealment of lost packets requested with
+     * <tt>AbstractCodec2.BUFFER_FLAG_FEC</tt> and
+     * <tt>AbstractCodec2.BUFFER_FLAG_PLC</tt>.
+     *
+     * @param format the <tt>Format</tt> to check
+     * @return <tt>true</tt> if the decoder of <tt>format</tt> supports the
+     * concealment of lost packets; otherwise, <tt>false</tt>
+     */
+    private static boolean isConcealmentSupported(Format format)
+    {
+        String encoding = (format == null) ? null : format.getEncoding();
+
+        return
+            Constants.OPUS_RTP.equalsIgnoreCase(encoding)
+                || Constants.SILK_RTP.equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * Determines whether a specific <tt>PushBufferStream</tt> of a
+     * <tt>ReceiveStream</tt> is to be played out through an
+     * <tt>AdaptiveJitterBuffer</tt>.
+     *
+     * @param stream the <tt>PushBufferStream</tt> of a <tt>ReceiveStream</tt>
+     * @return <tt>true</tt> if <tt>stream</tt> is to be played out through an
+     * <tt>AdaptiveJitterBuffer</tt>; otherwise, <tt>false</tt>
+     */
+    public static boolean isJitterBufferEnabled(PushBufferStream stream)
+    {
+        return
+            (stream.getFormat() instanceof AudioFormat)
+                && AdaptiveJitterBuffer.isEnabled();
+    }
+
+    /**
+     * Gets the current time in milliseconds.
+     *
+     * @return the current time in milliseconds
+     */
+    private static long now()
+    {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * The <tt>AdaptiveJitterBuffer</tt> through which the packets of the
+     * wrapped <tt>PushBufferStream</tt> are played out.
+     */
+    private final AdaptiveJitterBuffer jitterBuffer;
+
+    /**
+     * The <tt>Buffer</tt> which has been played out and is to be read through
+     * {@link #read(Buffer)}.
+     */
+    private final Buffer pending = new Buffer();
+
+    /**
+     * The indicator which determines whether {@link #pending} is to be read.
+     */
+    private boolean pendingAvailable;
+
+    /**
+     * The <tt>Buffer</tt> into which packets are read from the wrapped
+     * <tt>PushBufferStream</tt>.
+     */
+    private final Buffer readBuffer = new Buffer();
+
+    /**
+     * The indicator which determines whether this stream has been started.
+     */
+    private boolean started;
+
+    /**
+     * The thread which plays out the packets.
+     */
+    private Thread thread;
+
+    /**
+     * The <tt>BufferTransferHandler</tt> to be notified by this stream when a
+     * packet has been played out.
+     */
+    private BufferTransferHandler transferHandler;
+
+    /**
+     * Initializes a new <tt>JitterBufferPushBufferStream</tt> instance which
+     * is to play out the packets of a specific <tt>PushBufferStream</tt>
+     * through an <tt>AdaptiveJitterBuffer</tt>.
+     *
+     * @param stream the <tt>PushBufferStream</tt> of a <tt>ReceiveStream</tt>
+     * to play out
+     */
+    public JitterBufferPushBufferStream(PushBufferStream stream)
+    {
+        super(stream);
+
+        jitterBuffer
+            = new AdaptiveJitterBuffer(
+                    isConcealmentSupported(stream.getFormat()));
+    }
+
+    /**
+     * Implements {@link Controls#getControl(String)}. Gives access to the
+     * <tt>AdaptiveJitterBuffer</tt> of this instance as the
+     * <tt>JitterBufferControl</tt> and the <tt>PacketQueueControl</tt> and
+     * delegates to the wrapped <tt>PushBufferStream</tt> otherwise.
+     *
+     * @param controlType a <tt>String</tt> value which specifies the type of
+     * the control to be retrieved
+     * @return an <tt>Object</tt> which represents the control of this stream
+     * of the specified type if such a control is available; otherwise,
+     * <tt>null</tt>
+     */
+    @Override
+    public Object getControl(String controlType)
+    {
+        if (JitterBufferControl.class.getName().equals(controlType)
+                || PacketQueueControl.class.getName().equals(controlType))
+            return jitterBuffer;
+        else
+            return super.getControl(controlType);
+    }
+
+    /**
+     * Implements {@link Controls#getControls()}. Replaces the
+     * <tt>PacketQueueControl</tt> of the wrapped <tt>PushBufferStream</tt>
+     * with the <tt>AdaptiveJitterBuffer</tt> of this instance.
+     *
+     * @return an array of <tt>Object</tt>s which represent the controls
+     * available for this stream
+     */
+    @Override
+    public Object[] getControls()
+    {
+        Object[] controls = super.getControls();
+        List<Object> newControls = new ArrayList<Object>();
+
+        newControls.add(jitterBuffer);
+        if (controls != null)
+        {
+            for (Object control : controls)
+            {
+                if (!(control instanceof PacketQueueControl))
+                    newControls.add(control);
+            }
+        }
+        return newControls.toArray();
+    }
+
+    /**
+     * Implements {@link PushBufferStream#getFormat()}. Delegates to the
+     * wrapped <tt>PushBufferStream</tt>.
+     *
+     * @return the <tt>Format</tt> of the wrapped <tt>PushBufferStream</tt>
+     */
+    public Format getFormat()
+    {
+        return stream.getFormat();
+    }
+
+    /**
+     * Implements {@link PushBufferStream#read(Buffer)}. Gives the
+     * <tt>Buffer</tt> which has been played out last (and has not been read
+     * yet) to the caller.
+     *
+     * @param buffer the <tt>Buffer</tt> in which the played out media data is
+     * to be returned to the caller
+     * @throws IOException never
+     */
+    public void read(Buffer buffer)
+        throws IOException
+    {
+        synchronized (pending)
+        {
+            if (pendingAvailable)
+            {
+                Object data = buffer.getData();
+                Object header = buffer.getHeader();
+
+                buffer.copy(pending);
+                pending.setData(data);
+                pending.setHeader(header);
+                pendingAvailable = false;
+            }
+            else
+                buffer.setDiscard(true);
+        }
+    }
+
+    /**
+     * Reads the packets which are available in the wrapped
+     * <tt>PushBufferStream</tt> into the <tt>AdaptiveJitterBuffer</tt>.
+     */
+    private void readPackets()
+    {
+        synchronized (readBuffer)
+        {
+            while (true)
+            {
+                readBuffer.setDiscard(false);
+                readBuffer.setFlags(0);
+                readBuffer.setLength(0);
+                try
+                {
+                    stream.read(readBuffer);
+                }
+                catch (IOException ioe)
+                {
+                    logger.debug("Failed to read an RTP packet.", ioe);
+                    break;
+                }
+                if (readBuffer.isDiscard())
+                    break;
+                if (readBuffer.getLength() > 0)
+                    jitterBuffer.add(readBuffer, now());
+            }
+        }
+    }
+
+    /**
+     * Runs in {@link #thread} and plays out the packets through the
+     * <tt>AdaptiveJitterBuffer</tt>.
+     */
+    private void runInThread()
+    {
+        long next = now();
+
+        while (true)
+        {
+            BufferTransferHandler transferHandler;
+
+            synchronized (this)
+            {
+                if (!started
+                        || (thread != Thread.currentThread())
+                        || (this.transferHandler == null))
+                    break;
+                transferHandler = this.transferHandler;
+            }
+
+            readPackets();
+
+            long now = now();
+
+            if (now >= next)
+            {
+                boolean played;
+
+                synchronized (pending)
+                {
+                    played = jitterBuffer.poll(now, pending);
+                    if (played)
+                        pendingAvailable = true;
+                }
+                if (played)
+                    transferHandler.transferData(this);
+
+                if (jitterBuffer.isPlaying())
+                {
+                    int packetInterval = jitterBuffer.getPacketInterval();
+
+                    next += packetInterval;
+                    if (next < now - MAX_LAG * packetInterval)
+                        next = now;
+                }
+                else
+                    next = now + POLL_INTERVAL;
+                now = now();
+            }
+
+            long timeout = Math.min(next - now, POLL_INTERVAL);
+
+            if (timeout > 0)
+            {
+                synchronized (this)
+                {
+                    try
+                    {
+                        wait(timeout);
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Implements
+     * {@link PushBufferStream#setTransferHandler(BufferTransferHandler)}.
+     * Reads the packets of the wrapped <tt>PushBufferStream</tt> as soon as it
+     * reports them available and notifies <tt>transferHandler</tt> when they
+     * are played out.
+     *
+     * @param transferHandler the <tt>BufferTransferHandler</tt> to be notified
+     * by this stream when media data is available for reading
+     */
+    public void setTransferHandler(BufferTransferHandler transferHandler)
+    {
+        stream.setTransferHandler(
+                (transferHandler == null)
+                    ? null
+                    : new BufferTransferHandler()
+                    {
+                        public void transferData(PushBufferStream stream)
+                        {
+                            readPackets();
+                        }
+                    });
+
+        synchronized (this)
+        {
+            this.transferHandler = transferHandler;
+            startThread();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Starts the playout of this stream.
+     */
+    public synchronized void start()
+    {
+        started = true;
+        startThread();
+    }
+
+    /**
+     * Starts {@link #thread} if this stream has been started and has a
+     * <tt>BufferTransferHandler</tt>.
+     */
+    private synchronized void startThread()
+    {
+        if (!started || (transferHandler == null) || (thread != null))
+            return;
+
+        thread
+            = new Thread(getClass().getName())
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        AbstractRenderer.useThreadPriority(
+                                MediaThread.getAudioPriority());
+                        runInThread();
+                    }
+                    finally
+                    {
+                        synchronized (JitterBufferPushBufferStream.this)
+                        {
+                            if (thread == Thread.currentThread())
+                                thread = null;
+                        }
+                    }
+                }
+            };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the playout of this stream and discards the packets which have
+     * not been played out.
+     */
+    public synchronized void stop()
+    {
+        started = false;
+        thread = null;
+        notifyAll();
+        jitterBuffer.reset();
+    }
+}
@@ -18,6 +18,8 @@ import org.jitsi.impl.neomedia.codec.*;
 import org.jitsi.impl.neomedia.codec.video.*;
 import org.jitsi.impl.neomedia.imgstreaming.*;
 import org.jitsi.impl.neomedia.jmfext.media.protocol.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 import org.jitsi.util.*;
 
 /**
@@ -30,6 +32,55 @@ import org.jitsi.util.*;
 public class ImageStream
     extends AbstractVideoPullBufferStream
 {
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * whether frames identical to the previous one are skipped (i.e. output
+     * as discarded <tt>Buffer</tt>s) rather than encoded and sent. The
+     * default is <tt>true</tt>.
+     */
+    public static final String CHANGE_DETECTION_PNAME
+        = "org.jitsi.impl.neomedia.jmfext.media.protocol.imgstreaming"
+            + ".ImageStream.changeDetection";
+
+    /**
+     * The default value of {@link #MAX_STATIC_CAPTURE_INTERVAL_PNAME}.
+     */
+    private static final long DEFAULT_MAX_STATIC_CAPTURE_INTERVAL = 500;
+
+    /**
+     * The default value of {@link #REFRESH_INTERVAL_PNAME}.
+     */
+    private static final long DEFAULT_REFRESH_INTERVAL = 2000;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the maximum interval in milliseconds between two captures of the
+     * screen while it is static. The interval doubles with each frame which
+     * is skipped because it is identical to the previous one, starting from
+     * {@link #MIN_STATIC_CAPTURE_INTERVAL}, and the frame rate is restored as
+     * soon as the screen changes.
+     */
+    public static final String MAX_STATIC_CAPTURE_INTERVAL_PNAME
+        = "org.jitsi.impl.neomedia.jmfext.media.protocol.imgstreaming"
+            + ".ImageStream.maxStaticCaptureInterval";
+
+    /**
+     * The interval in milliseconds between the capture of the first frame
+     * identical to the previous one and the next capture.
+     */
+    private static final long MIN_STATIC_CAPTURE_INTERVAL = 50;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the maximum interval in milliseconds between two frames which are not
+     * skipped. A frame is output even if it is identical to the previous one
+     * once the interval elapses so that the encoder may respond to requests
+     * for key frames while the screen is static.
+     */
+    public static final String REFRESH_INTERVAL_PNAME
+        = "org.jitsi.impl.neomedia.jmfext.media.protocol.imgstreaming"
+            + ".ImageStream.refreshInterval";
+
     /**
      * The <tt>Logger</tt> used by the <tt>ImageStream</tt> class and its
      * instances for logging output.
@@ -42,6 +93,12 @@ public class ImageStream
      */
     private final ByteBufferPool byteBufferPool = new ByteBufferPool();
 
+    /**
+     * The <tt>TileChangeDetector</tt> which detects the frames identical to
+     * the previous one or <tt>null</tt> if they are not to be skipped.
+     */
+    private TileChangeDetector changeDetector;
+
     /**
      * Desktop interaction (screen capture, key press, ...).
      */
@@ -52,11 +109,49 @@ public class ImageStream
      */
     private int displayIndex = -1;
 
+    /**
+     * The raw ARGB frame captured for the <tt>AVFrameFormat</tt> output when
+     * the frames are compared by {@link #changeDetector}. Reused across
+     * frames.
+     */
+    private byte[] frameBytes;
+
+    /**
+     * The time in milliseconds at which the last frame which was not skipped
+     * was captured.
+     */
+    private long lastFrameTime;
+
+    /**
+     * The value of {@link #MAX_STATIC_CAPTURE_INTERVAL_PNAME}.
+     */
+    private long maxStaticCaptureInterval
+        = DEFAULT_MAX_STATIC_CAPTURE_INTERVAL;
+
+    /**
+     * The value of {@link #REFRESH_INTERVAL_PNAME}.
+     */
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    /**
+     * The ARGB <tt>BufferedImage</tt> into which the screen captured by AWT
+     * is scaled. Reused across frames because allocating one per frame is
+     * the largest cost of the AWT capture path.
+     */
+    private BufferedImage scaledScreen;
+
     /**
      * Sequence number.
      */
     private long seqNo = 0;
 
+    /**
+     * The interval in milliseconds to wait before the next capture because
+     * the last frame was identical to the previous one or <tt>0</tt> if the
+     * screen is not static.
+     */
+    private long staticCaptureInterval = 0;
+
     /**
      * X origin.
      */
@@ -81,6 +176,64 @@ public class ImageStream
         super(dataSource, formatControl);
     }
 
+    /**
+     * Copies a raw ARGB frame into a <tt>ByteBuffer</tt> of
+     * {@link #byteBufferPool} padded as expected by FFmpeg.
+     *
+     * @param bytes the raw ARGB frame
+     * @param dim dimension of the video
+     * @return the <tt>ByteBuffer</tt> which contains the frame
+     */
+    private ByteBuffer copyToNative(byte[] bytes, Dimension dim)
+    {
+        int length = dim.width * dim.height * 4;
+        ByteBuffer data
+            = byteBufferPool.getBuffer(
+                    length + FFmpeg.FF_INPUT_BUFFER_PADDING_SIZE);
+
+        data.setLength(length + FFmpeg.FF_INPUT_BUFFER_PADDING_SIZE);
+        FFmpeg.memcpy(data.getPtr(), bytes, 0, length);
+        return data;
+    }
+
+    /**
+     * Determines whether a specific frame is to be output or skipped because
+     * it is identical to the previous one and updates the capture interval
+     * of the static screen accordingly.
+     *
+     * @param bytes the raw ARGB frame
+     * @param dim dimension of the video
+     * @return the regions of the frame which changed since the previous one
+     * (an empty array if the frame is output to refresh the static screen) or
+     * <tt>null</tt> if the frame is to be skipped
+     */
+    private Rectangle[] detectChange(byte[] bytes, Dimension dim)
+    {
+        long now = System.currentTimeMillis();
+
+        if (changeDetector.detect(bytes, 0, dim.width, dim.height))
+        {
+            staticCaptureInterval = 0;
+            lastFrameTime = now;
+            return changeDetector.getChangedRegions();
+        }
+        else if (now - lastFrameTime >= refreshInterval)
+        {
+            lastFrameTime = now;
+            return new Rectangle[0];
+        }
+        else
+        {
+            staticCaptureInterval
+                = (staticCaptureInterval == 0)
+                    ? MIN_STATIC_CAPTURE_INTERVAL
+                    : Math.min(
+                            2 * staticCaptureInterval,
+                            maxStaticCaptureInterval);
+            return null;
+        }
+    }
+
     /**
      * Blocks and reads into a <tt>Buffer</tt> from this
      * <tt>PullBufferStream</tt>.
@@ -110,6 +263,8 @@ public class ImageStream
                 buffer.setFormat(format);
         }
 
+        Rectangle[] changedRegions = null;
+
         if(format instanceof AVFrameFormat)
         {
             Object o = buffer.getData();
@@ -125,7 +280,33 @@ public class ImageStream
 
             AVFrameFormat avFrameFormat = (AVFrameFormat) format;
             Dimension size = avFrameFormat.getSize();
-            ByteBuffer data = readScreenNative(size);
+            ByteBuffer data;
+
+            if (changeDetector == null)
+                data = readScreenNative(size);
+            else
+            {
+                /*
+                 * The frames cannot be compared in native memory so capture
+                 * into a byte array and copy to native memory the frames
+                 * which are not skipped only.
+                 */
+                byte[] bytes = readScreen(frameBytes, size);
+
+                if (bytes == null)
+                    data = null;
+                else
+                {
+                    frameBytes = bytes;
+                    changedRegions = detectChange(bytes, size);
+                    if (changedRegions == null)
+                    {
+                        skip(buffer);
+                        return;
+                    }
+                    data = copyToNative(bytes, size);
+                }
+            }
 
             if(data != null)
             {
@@ -152,11 +333,25 @@ public class ImageStream
             bytes = readScreen(bytes, size);
 
             buffer.setData(bytes);
+            if ((changeDetector != null) && (bytes != null))
+            {
+                changedRegions = detectChange(bytes, size);
+                if (changedRegions == null)
+                {
+                    skip(buffer);
+                    return;
+                }
+            }
             buffer.setOffset(0);
             buffer.setLength(bytes.length);
         }
 
-        buffer.setHeader(null);
+        buffer.setDiscard(false);
+        /*
+         * Report the changed regions to the encoder path (or null if they are
+         * unknown).
+         */
+        buffer.setHeader(changedRegions);
         buffer.setTimeStamp(System.nanoTime());
         buffer.setSequenceNumber(seqNo);
         buffer.setFlags(Buffer.FLAG_SYSTEM_TIME | Buffer.FLAG_LIVE_DATA);
@@ -177,7 +372,6 @@ public class ImageStream
         Dimension formatSize = format.getSize();
         int width = formatSize.width;
         int height = formatSize.height;
-        BufferedImage scaledScreen = null;
         BufferedImage screen = null;
         byte data[] = null;
         int size = width * height * 4;
@@ -195,13 +389,15 @@ public class ImageStream
             return output;
         }
 
-        System.out.println("failed to grab with native! " + output.length);
+        if (logger.isTraceEnabled())
+            logger.trace("Failed to grab screen with native grabber.");
 
         /* OK native grabber failed or is not available,
          * try with AWT Robot and convert it to the right format
          *
-         * Note that it is very memory consuming since memory are allocated
-         * to capture screen (via Robot) and then for converting to raw bytes
+         * Note that it is memory consuming since memory is allocated to
+         * capture screen (via Robot). The scaled image and the raw bytes are
+         * reused across frames though.
          * Moreover support for multiple display has not yet been investigated
          *
          * Normally not of our supported platform (Windows (x86, x64),
@@ -217,13 +413,13 @@ public class ImageStream
                 = ImgStreamingUtils.getScaledImage(
                         screen,
                         width, height,
-                        BufferedImage.TYPE_INT_ARGB);
+                        BufferedImage.TYPE_INT_ARGB,
+                        scaledScreen);
             /* get raw bytes */
             data = ImgStreamingUtils.getImageBytes(scaledScreen, output);
         }
 
         screen = null;
-        scaledScreen = null;
         return data;
     }
 
@@ -284,6 +480,38 @@ public class ImageStream
         this.y = y;
     }
 
+    /**
+     * Skips the frame which has just been captured because it is identical to
+     * the previous one i.e. marks a specific <tt>Buffer</tt> as discarded and
+     * waits for {@link #staticCaptureInterval} (because
+     * <tt>AbstractVideoPullBufferStream</tt> does not respect the frame rate
+     * for discarded <tt>Buffer</tt>s).
+     *
+     * @param buffer the <tt>Buffer</tt> to skip the frame of
+     */
+    private void skip(Buffer buffer)
+    {
+        buffer.setDiscard(true);
+
+        long sleep
+            = Math.min(
+                    staticCaptureInterval,
+                    lastFrameTime + refreshInterval
+                        - System.currentTimeMillis());
+
+        if (sleep > 0)
+        {
+            try
+            {
+                Thread.sleep(sleep);
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Start desktop capture stream.
      *
@@ -306,6 +534,25 @@ public class ImageStream
                 logger.warn("Cannot create DesktopInteract object!");
             }
         }
+
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        boolean changeDetection = true;
+
+        if (cfg != null)
+        {
+            changeDetection
+                = cfg.getBoolean(CHANGE_DETECTION_PNAME, changeDetection);
+            maxStaticCaptureInterval
+                = cfg.getLong(
+                        MAX_STATIC_CAPTURE_INTERVAL_PNAME,
+                        DEFAULT_MAX_STATIC_CAPTURE_INTERVAL);
+            refreshInterval
+                = cfg.getLong(
+                        REFRESH_INTERVAL_PNAME,
+                        DEFAULT_REFRESH_INTERVAL);
+        }
+        changeDetector = changeDetection ? new TileChangeDetector() : null;
+        staticCaptureInterval = 0;
     }
 
     /**
@@ -327,6 +574,8 @@ public class ImageStream
             super.stop();
 
             byteBufferPool.drain();
+            frameBytes = null;
+            scaledScreen = null;
         }
     }
 }
@@ -0,0 +1,415 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.notify;
+
+import java.io.*;
+import java.util.*;
+
+import javax.media.*;
+import javax.media.format.*;
+import javax.sound.sampled.AudioInputStream;
+
+import org.jitsi.impl.neomedia.device.AudioSystem;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.util.*;
+
+/**
+ * Caches the decoded PCM of audio clips (e.g. ringtones) so that playing them
+ * again (and in a loop in particular) does not read, decode and resample their
+ * URIs again. The decoded PCM is kept in the format of the URI and in each of
+ * the formats to which it has been resampled for a renderer. The cache is
+ * bounded by the total size of the decoded PCM and evicts the least recently
+ * used entries first.
+ * <p>
+ * The byte arrays held by the cache are shared and are, consequently, not to
+ * be modified.
+ * </p>
+ */
+public class AudioClipCache
+{
+    /**
+     * The default value of the {@link #MAX_SIZE_PNAME} property.
+     */
+    private static final int DEFAULT_MAX_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>AudioClipCache</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(AudioClipCache.class);
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the maximum total size in bytes of the decoded PCM kept by an
+     * <tt>AudioClipCache</tt>. A value of zero disables the caching.
+     */
+    public static final String MAX_SIZE_PNAME
+        = "org.jitsi.impl.neomedia.notify.AudioClipCache.maxSize";
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * a comma-separated list of the URIs of the audio clips to be decoded into
+     * an <tt>AudioClipCache</tt> when it is initialized.
+     */
+    public static final String PRELOAD_PNAME
+        = "org.jitsi.impl.neomedia.notify.AudioClipCache.preload";
+
+    /**
+     * The cached PCM mapped by URI and format in least recently used order.
+     */
+    private final LinkedHashMap<Key, DecodedAudio> entries
+        = new LinkedHashMap<Key, DecodedAudio>(16, 0.75f, true);
+
+    /**
+     * The maximum total size in bytes of the cached PCM.
+     */
+    private final int maxSize;
+
+    /**
+     * The total size in bytes of the cached PCM.
+     */
+    private int size;
+
+    /**
+     * Initializes a new <tt>AudioClipCache</tt> instance with the maximum
+     * size specified by the {@link #MAX_SIZE_PNAME} property.
+     */
+    public AudioClipCache()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        maxSize
+            = (cfg == null)
+                ? DEFAULT_MAX_SIZE
+                : cfg.getInt(MAX_SIZE_PNAME, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Gets the decoded PCM of a specific URI in the format of the URI. If it
+     * is not cached yet, the URI is read and decoded in the calling thread.
+     *
+     * @param audioSystem the <tt>AudioSystem</tt> to read the URI with
+     * @param uri the URI of the audio clip to get the decoded PCM of
+     * @return the decoded PCM of <tt>uri</tt> or <tt>null</tt> if it could not
+     * be decoded or is too large to be cached
+     */
+    public DecodedAudio getDecodedAudio(AudioSystem audioSystem, String uri)
+    {
+        Key key = new Key(uri, null);
+        DecodedAudio decodedAudio = get(key);
+
+        if (decodedAudio == null)
+        {
+            decodedAudio = decode(audioSystem, uri);
+            if (decodedAudio != null)
+                decodedAudio = put(key, decodedAudio);
+        }
+        return decodedAudio;
+    }
+
+    /**
+     * Gets the decoded PCM of a specific URI which has been resampled to a
+     * specific format and put into this cache by
+     * {@link #putResampledAudio(String, DecodedAudio)}.
+     *
+     * @param uri the URI of the audio clip to get the resampled PCM of
+     * @param format the <tt>Format</tt> of the resampled PCM to get
+     * @return the decoded PCM of <tt>uri</tt> resampled to <tt>format</tt> or
+     * <tt>null</tt> if it is not cached
+     */
+    public DecodedAudio getResampledAudio(String uri, Format format)
+    {
+        return get(new Key(uri, format));
+    }
+
+    /**
+     * Decodes the audio clips specified by the {@link #PRELOAD_PNAME}
+     * property into this cache in a daemon thread so that their first play
+     * does not wait for them to be read and decoded.
+     *
+     * @param audioSystem the <tt>AudioSystem</tt> to read the URIs with
+     */
+    public void preload(final AudioSystem audioSystem)
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+        String preload = (cfg == null) ? null : cfg.getString(PRELOAD_PNAME);
+
+        if ((preload == null) || (maxSize <= 0))
+            return;
+
+        final List<String> uris = new ArrayList<String>();
+
+        for (String uri : preload.split(","))
+        {
+            uri = uri.trim();
+            if (uri.length() != 0)
+                uris.add(uri);
+        }
+        if (uris.isEmpty())
+            return;
+
+        Thread thread
+            = new Thread(getClass().getName())
+            {
+                @Override
+                public void run()
+                {
+                    for (String uri : uris)
+                    {
+                        if (getDecodedAudio(audioSystem, uri) == null)
+                            logger.warn("Failed to preload " + uri);
+                    }
+                }
+            };
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Puts the decoded PCM of a specific URI which has been resampled to a
+     * specific format into this cache.
+     *
+     * @param uri the URI of the audio clip which has been decoded into
+     * <tt>resampledAudio</tt>
+     * @param resampledAudio the decoded PCM of <tt>uri</tt> resampled to the
+     * format of a renderer
+     * @return the cached decoded PCM of <tt>uri</tt> in the format of
+     * <tt>resampledAudio</tt> which is <tt>resampledAudio</tt> unless another
+     * thread has put it into this cache first
+     */
+    public DecodedAudio putResampledAudio(
+            String uri,
+            DecodedAudio resampledAudio)
+    {
+        return put(new Key(uri, resampledAudio.format), resampledAudio);
+    }
+
+    /**
+     * Reads and decodes a specific URI into PCM in its format. The URI is
+     * decoded only if its length is known in advance and fits into this
+     * cache so that the PCM is read into an array of its exact size.
+     *
+     * @param audioSystem the <tt>AudioSystem</tt> to read <tt>uri</tt> with
+     * @param uri the URI of the audio clip to decode
+     * @return the decoded PCM of <tt>uri</tt> or <tt>null</tt> if <tt>uri</tt>
+     * could not be decoded or is too large to be cached
+     */
+    private DecodedAudio decode(AudioSystem audioSystem, String uri)
+    {
+        if (maxSize <= 0)
+            return null;
+
+        InputStream audioStream = null;
+
+        try
+        {
+            audioStream = audioSystem.getAudioInputStream(uri);
+            if (!(audioStream instanceof AudioInputStream))
+                return null;
+
+            Format format = audioSystem.getFormat(audioStream);
+
+            if (!(format instanceof AudioFormat))
+                return null;
+
+            javax.sound.sampled.AudioFormat audioStreamFormat
+                = ((AudioInputStream) audioStream).getFormat();
+            long frameLength
+                = ((AudioInputStream) audioStream).getFrameLength();
+            int frameSize = audioStreamFormat.getFrameSize();
+
+            if ((frameLength == javax.sound.sampled.AudioSystem.NOT_SPECIFIED)
+                    || (frameSize <= 0)
+                    || (frameLength * frameSize > maxSize))
+                return null;
+
+            byte[] data = new byte[(int) (frameLength * frameSize)];
+            int length = 0;
+
+            while (length < data.length)
+            {
+                int read
+                    = audioStream.read(data, length, data.length - length);
+
+                if (read == -1)
+                    break;
+                length += read;
+            }
+            if (length < data.length)
+                data = Arrays.copyOf(data, length - length % frameSize);
+
+            return new DecodedAudio(format, data);
+        }
+        catch (IOException ioex)
+        {
+            logger.error("Failed to decode audio stream " + uri, ioex);
+            return null;
+        }
+        finally
+        {
+            if (audioStream != null)
+            {
+                try
+                {
+                    audioStream.close();
+                }
+                catch (IOException ioex)
+                {
+                    /*
+                     * The audio stream has been read so failing to close it
+                     * does not affect the decoded PCM.
+                     */
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the cached PCM associated with a specific <tt>Key</tt> and marks
+     * it as the most recently used.
+     *
+     * @param key the <tt>Key</tt> of the cached PCM to get
+     * @return the cached PCM associated with <tt>key</tt> or <tt>null</tt>
+     */
+    private synchronized DecodedAudio get(Key key)
+    {
+        return entries.get(key);
+    }
+
+    /**
+     * Puts specific PCM into this cache under a specific <tt>Key</tt> and
+     * evicts the least recently used entries which do not fit anymore.
+     *
+     * @param key the <tt>Key</tt> to put <tt>decodedAudio</tt> under
+     * @param decodedAudio the PCM to put into this cache
+     * @return the PCM which is cached under <tt>key</tt> which is
+     * <tt>decodedAudio</tt> unless another thread has put PCM under
+     * <tt>key</tt> first
+     */
+    private synchronized DecodedAudio put(Key key, DecodedAudio decodedAudio)
+    {
+        DecodedAudio existing = entries.get(key);
+
+        if (existing != null)
+            return existing;
+
+        int length = decodedAudio.data.length;
+
+        if (length > maxSize)
+            return decodedAudio;
+
+        for (Iterator<DecodedAudio> i = entries.values().iterator();
+                i.hasNext() && (size + length > maxSize);)
+        {
+            size -= i.next().data.length;
+            i.remove();
+        }
+        entries.put(key, decodedAudio);
+        size += length;
+        return decodedAudio;
+    }
+
+    /**
+     * Represents the decoded PCM of an audio clip in a specific format.
+     */
+    public static class DecodedAudio
+    {
+        /**
+         * The PCM which is not to be modified.
+         */
+        public final byte[] data;
+
+        /**
+         * The <tt>AudioFormat</tt> of {@link #data}.
+         */
+        public final AudioFormat format;
+
+        /**
+         * Initializes a new <tt>DecodedAudio</tt> instance.
+         *
+         * @param format the <tt>Format</tt> of <tt>data</tt> which is to be
+         * an <tt>AudioFormat</tt>
+         * @param data the PCM which is not to be modified after the
+         * initialization of the new instance
+         */
+        public DecodedAudio(Format format, byte[] data)
+        {
+            this.format = (AudioFormat) format;
+            this.data = data;
+        }
+
+        /**
+         * Gets the size in bytes of a frame of {@link #data}.
+         *
+         * @return the size in bytes of a frame of {@link #data}
+         */
+        public int getFrameSize()
+        {
+            int frameSize
+                = format.getSampleSizeInBits() / 8 * format.getChannels();
+
+            return (frameSize > 0) ? frameSize : 1;
+        }
+    }
+
+    /**
+     * Implements the key of {@link AudioClipCache#entries}. Combines the URI
+     * of an audio clip with the format of its decoded PCM or <tt>null</tt> for
+     * the format of the URI.
+     */
+    private static class Key
+    {
+        /**
+         * The format of the decoded PCM or <tt>null</tt> for the format of
+         * {@link #uri}.
+         */
+        private final Format format;
+
+        /**
+         * The URI of the audio clip.
+         */
+        private final String uri;
+
+        /**
+         * Initializes a new <tt>Key</tt> instance.
+         *
+         * @param uri the URI of the audio clip
+         * @param format the format of the decoded PCM or <tt>null</tt> for the
+         * format of <tt>uri</tt>
+         */
+        private Key(String uri, Format format)
+        {
+            this.uri = uri;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (o == this)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key that = (Key) o;
+
+            return
+                uri.equals(that.uri)
+                    && ((format == null)
+                            ? (that.format == null)
+                            : format.equals(that.format));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return uri.hashCode();
+        }
+    }
+}
@@ -26,6 +26,12 @@ public class AudioNotifierServiceImpl
     implements AudioNotifierService,
                PropertyChangeListener
 {
+    /**
+     * The <tt>AudioClipCache</tt> which shares the decoded PCM of the
+     * <tt>SCAudioClip</tt>s created by this instance among them.
+     */
+    private final AudioClipCache audioClipCache = new AudioClipCache();
+
     /**
      * The cache of <tt>SCAudioClip</tt> instances which we may reuse. The reuse
      * is complex because a <tt>SCAudioClip</tt> may be used by a single user at
@@ -62,6 +68,11 @@ public class AudioNotifierServiceImpl
                     .getDeviceConfiguration();
 
         this.deviceConfiguration.addPropertyChangeListener(this);
+
+        AudioSystem audioSystem = this.deviceConfiguration.getAudioSystem();
+
+        if (audioSystem != null)
+            audioClipCache.preload(audioSystem);
     }
 
     /**
@@ -142,7 +153,8 @@ public class AudioNotifierServiceImpl
                                     uri,
                                     this,
                                     audioSystem,
-                                    playback);
+                                    playback,
+                                    audioClipCache);
                     }
                 }
                 catch (Throwable t)
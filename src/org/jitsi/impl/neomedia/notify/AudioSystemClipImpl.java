@@ -37,16 +37,113 @@ public class AudioSystemClipImpl
     private static final Logger logger
         = Logger.getLogger(AudioSystemClipImpl.class);
 
+    /**
+     * Initializes a new resampler of PCM from a specific input format to a
+     * specific output format.
+     *
+     * @param inputFormat the input format of the new resampler
+     * @param outputFormat the output format of the new resampler
+     * @return a new resampler of PCM from <tt>inputFormat</tt> to
+     * <tt>outputFormat</tt>
+     */
+    private static Codec createResampler(
+            Format inputFormat,
+            Format outputFormat)
+    {
+        Codec resampler = new SpeexResampler();
+
+        resampler.setInputFormat(inputFormat);
+        resampler.setOutputFormat(outputFormat);
+        return resampler;
+    }
+
+    /**
+     * Resamples the whole decoded PCM of an audio clip to a specific format.
+     *
+     * @param decodedAudio the decoded PCM to resample
+     * @param format the format to resample <tt>decodedAudio</tt> to
+     * @return the PCM of <tt>decodedAudio</tt> resampled to <tt>format</tt> or
+     * <tt>null</tt> if the resampling failed
+     */
+    private static AudioClipCache.DecodedAudio resample(
+            AudioClipCache.DecodedAudio decodedAudio,
+            Format format)
+    {
+        Codec resampler = createResampler(decodedAudio.format, format);
+
+        try
+        {
+            resampler.open();
+        }
+        catch (ResourceUnavailableException ruex)
+        {
+            logger.error(
+                    "Failed to open " + resampler.getClass().getName(),
+                    ruex);
+            return null;
+        }
+        try
+        {
+            byte[] data = decodedAudio.data;
+            int frameSize = decodedAudio.getFrameSize();
+            int chunkLength
+                = DEFAULT_BUFFER_DATA_LENGTH / frameSize * frameSize;
+            ByteArrayOutputStream resampledData
+                = new ByteArrayOutputStream(data.length);
+            Buffer inBuffer = new Buffer();
+            Buffer outBuffer = new Buffer();
+
+            inBuffer.setData(data);
+            inBuffer.setFormat(decodedAudio.format);
+            for (int offset = 0; offset < data.length; offset += chunkLength)
+            {
+                inBuffer.setLength(Math.min(chunkLength, data.length - offset));
+                inBuffer.setOffset(offset);
+                outBuffer.setLength(0);
+                outBuffer.setOffset(0);
+                if ((resampler.process(inBuffer, outBuffer)
+                            & Codec.BUFFER_PROCESSED_FAILED)
+                        == Codec.BUFFER_PROCESSED_FAILED)
+                    return null;
+                resampledData.write(
+                        (byte[]) outBuffer.getData(),
+                        outBuffer.getOffset(),
+                        outBuffer.getLength());
+            }
+            return
+                new AudioClipCache.DecodedAudio(
+                        format,
+                        resampledData.toByteArray());
+        }
+        finally
+        {
+            resampler.close();
+        }
+    }
+
     private final AudioSystem audioSystem;
 
     private Buffer buffer;
 
     private byte[] bufferData;
 
+    /**
+     * The <tt>AudioClipCache</tt> which shares the decoded PCM of
+     * {@link #uri} with the other <tt>AudioSystemClipImpl</tt> instances or
+     * <tt>null</tt> if the PCM is not cached.
+     */
+    private final AudioClipCache cache;
+
     private final boolean playback;
 
     private Renderer renderer;
 
+    /**
+     * The <tt>Buffer</tt> which carries the input of the resampler when
+     * {@link #uri} is streamed rather than played from {@link #cache}.
+     */
+    private Buffer resamplerBuffer;
+
     /**
      * Creates the audio clip and initializes the listener used from the
      * loop timer.
@@ -62,11 +159,35 @@ public class AudioSystemClipImpl
             AudioSystem audioSystem,
             boolean playback)
         throws IOException
+    {
+        this(url, audioNotifier, audioSystem, playback, null);
+    }
+
+    /**
+     * Creates the audio clip and initializes the listener used from the
+     * loop timer.
+     *
+     * @param url the URL pointing to the audio file
+     * @param audioNotifier the audio notify service
+     * @param playback to use playback or notification device
+     * @param cache the <tt>AudioClipCache</tt> to share the decoded PCM of
+     * <tt>url</tt> through or <tt>null</tt> to read and decode <tt>url</tt>
+     * every time it is played
+     * @throws IOException cannot audio clip with supplied URL.
+     */
+    public AudioSystemClipImpl(
+            String url,
+            AudioNotifierService audioNotifier,
+            AudioSystem audioSystem,
+            boolean playback,
+            AudioClipCache cache)
+        throws IOException
     {
         super(url, audioNotifier);
 
         this.audioSystem = audioSystem;
         this.playback = playback;
+        this.cache = cache;
     }
 
     /**
@@ -76,8 +197,15 @@ public class AudioSystemClipImpl
     protected void enterRunInPlayThread()
     {
         logger.debug("Enter run in play thread called");
-        buffer = new Buffer();
-        bufferData = new byte[DEFAULT_BUFFER_DATA_LENGTH];
+        /*
+         * The buffers are reused by the subsequent play threads because an
+         * SCAudioClip is played by a single user at a time.
+         */
+        if (buffer == null)
+        {
+            buffer = new Buffer();
+            bufferData = new byte[DEFAULT_BUFFER_DATA_LENGTH];
+        }
         buffer.setData(bufferData);
 
         renderer = audioSystem.createRenderer(playback);
@@ -90,8 +218,6 @@ public class AudioSystemClipImpl
     protected void exitRunInPlayThread()
     {
         logger.debug("Exit run in play thread called");
-        buffer = null;
-        bufferData = null;
         renderer = null;
     }
 
@@ -115,10 +241,94 @@ public class AudioSystemClipImpl
         }
     }
 
+    /**
+     * Plays the decoded PCM of {@link #uri} from {@link #cache} once.
+     *
+     * @param decodedAudio the decoded PCM of {@link #uri} in the format of
+     * {@link #uri}
+     * @return <tt>true</tt> if the playback was successful; otherwise,
+     * <tt>false</tt>
+     */
+    private boolean runOnceFromCache(AudioClipCache.DecodedAudio decodedAudio)
+    {
+        if ((renderer == null) || (buffer == null))
+            return false;
+
+        Format format = decodedAudio.format;
+        Format rendererFormat = setRendererInputFormat(format);
+        /*
+         * The resampling preserves the number of channels and the sample size
+         * so the frames of the resampled PCM are of the same size.
+         */
+        int frameSize = decodedAudio.getFrameSize();
+
+        if (!rendererFormat.equals(format))
+        {
+            AudioClipCache.DecodedAudio resampledAudio
+                = cache.getResampledAudio(uri, rendererFormat);
+
+            if (resampledAudio == null)
+            {
+                resampledAudio = resample(decodedAudio, rendererFormat);
+                if (resampledAudio == null)
+                    return false;
+                resampledAudio = cache.putResampledAudio(uri, resampledAudio);
+            }
+            decodedAudio = resampledAudio;
+        }
+
+        byte[] data = decodedAudio.data;
+        int chunkLength = bufferData.length / frameSize * frameSize;
+
+        buffer.setData(bufferData);
+        buffer.setFormat(rendererFormat);
+        try
+        {
+            renderer.open();
+            renderer.start();
+
+            for (int offset = 0;
+                    isStarted() && (offset < data.length);
+                    offset += chunkLength)
+            {
+                int length = Math.min(chunkLength, data.length - offset);
+
+                /*
+                 * The renderers apply the gain to their input in place so the
+                 * shared PCM is copied rather than given to them.
+                 */
+                System.arraycopy(data, offset, bufferData, 0, length);
+                buffer.setLength(length);
+                buffer.setOffset(0);
+                while ((renderer.process(buffer)
+                            & Renderer.INPUT_BUFFER_NOT_CONSUMED)
+                        == Renderer.INPUT_BUFFER_NOT_CONSUMED);
+            }
+        }
+        catch (ResourceUnavailableException ruex)
+        {
+            logger.error(
+                    "Failed to open " + renderer.getClass().getName(),
+                    ruex);
+            return false;
+        }
+        return true;
+    }
+
     @Override
     protected boolean runOnceInPlayThread()
     {
         logger.debug("Run once in play thread called");
+
+        if ((cache != null) && (uri != null))
+        {
+            AudioClipCache.DecodedAudio decodedAudio
+                = cache.getDecodedAudio(audioSystem, uri);
+
+            if (decodedAudio != null)
+                return runOnceFromCache(decodedAudio);
+        }
+
         InputStream audioStream = null;
 
         try
@@ -141,52 +351,26 @@ public class AudioSystemClipImpl
             if (rendererFormat == null || renderer == null)
                 return false;
 
-            Format resamplerFormat = null;
+            Format resamplerFormat = rendererFormat;
 
-            if (renderer.setInputFormat(rendererFormat) == null)
-            {
-                /*
-                 * Try to negotiate a resampling of the audioStream to one of
-                 * the formats supported by the renderer.
-                 */
-                resampler = new SpeexResampler();
-                resamplerFormat = rendererFormat;
-                resampler.setInputFormat(resamplerFormat);
-
-                Format[] supportedResamplerFormats
-                    = resampler.getSupportedOutputFormats(resamplerFormat);
+            rendererFormat = setRendererInputFormat(resamplerFormat);
+            if (rendererFormat.equals(resamplerFormat))
+                resamplerFormat = null;
+            else
+                resampler = createResampler(resamplerFormat, rendererFormat);
 
-                for (Format supportedRendererFormat
-                        : renderer.getSupportedInputFormats())
-                {
-                    for (Format supportedResamplerFormat
-                            : supportedResamplerFormats)
-                    {
-                        if (supportedRendererFormat.matches(
-                                supportedResamplerFormat))
-                        {
-                            rendererFormat = supportedRendererFormat;
-                            resampler.setOutputFormat(rendererFormat);
-                            renderer.setInputFormat(rendererFormat);
-                            break;
-                        }
-                    }
-                }
-            }
-            
             if (buffer == null)
                 return false;
 
             Buffer rendererBuffer = buffer;
-            Buffer resamplerBuffer;
+            byte[] readData;
 
+            rendererBuffer.setData(bufferData);
             rendererBuffer.setFormat(rendererFormat);
             if (resampler == null)
-                resamplerBuffer = null;
+                readData = bufferData;
             else
             {
-                resamplerBuffer = new Buffer();
-
                 int bufferDataLength = DEFAULT_BUFFER_DATA_LENGTH;
 
                 if (resamplerFormat instanceof AudioFormat)
@@ -195,10 +379,20 @@ public class AudioSystemClipImpl
                     int frameSize
                         = af.getSampleSizeInBits() / 8 * af.getChannels();
 
-                    bufferDataLength = bufferDataLength / frameSize * frameSize;
+                    if (frameSize > 0)
+                    {
+                        bufferDataLength
+                            = bufferDataLength / frameSize * frameSize;
+                    }
+                }
+                if (resamplerBuffer == null)
+                    resamplerBuffer = new Buffer();
+                readData = (byte[]) resamplerBuffer.getData();
+                if ((readData == null) || (readData.length != bufferDataLength))
+                {
+                    readData = new byte[bufferDataLength];
+                    resamplerBuffer.setData(readData);
                 }
-                bufferData = new byte[bufferDataLength];
-                resamplerBuffer.setData(bufferData);
                 resamplerBuffer.setFormat(resamplerFormat);
 
                 resampler.open();
@@ -212,7 +406,7 @@ public class AudioSystemClipImpl
                 int bufferLength;
 
                 while (isStarted()
-                        && ((bufferLength = audioStream.read(bufferData))
+                        && ((bufferLength = audioStream.read(readData))
                                 != -1))
                 {
                     if (resampler == null)
@@ -275,4 +469,49 @@ public class AudioSystemClipImpl
         }
         return true;
     }
+
+    /**
+     * Sets the input format of {@link #renderer} to a specific format of the
+     * PCM to be played or, if the renderer does not support it, negotiates a
+     * resampling of the PCM to one of the formats supported by the renderer.
+     *
+     * @param format the format of the PCM to be played
+     * @return the input format of {@link #renderer} which is <tt>format</tt>
+     * if the PCM is not to be resampled
+     */
+    private Format setRendererInputFormat(Format format)
+    {
+        Format rendererFormat = format;
+
+        if (renderer.setInputFormat(rendererFormat) == null)
+        {
+            /*
+             * Try to negotiate a resampling of the audioStream to one of
+             * the formats supported by the renderer.
+             */
+            Codec resampler = new SpeexResampler();
+
+            resampler.setInputFormat(format);
+
+            Format[] supportedResamplerFormats
+                = resampler.getSupportedOutputFormats(format);
+
+            for (Format supportedRendererFormat
+                    : renderer.getSupportedInputFormats())
+            {
+                for (Format supportedResamplerFormat
+                        : supportedResamplerFormats)
+                {
+                    if (supportedRendererFormat.matches(
+                            supportedResamplerFormat))
+                    {
+                        rendererFormat = supportedRendererFormat;
+                        renderer.setInputFormat(rendererFormat);
+                        break;
+                    }
+                }
+            }
+        }
+        return rendererFormat;
+    }
 }
@@ -12,6 +12,13 @@ import org.jitsi.impl.neomedia.*;
  * Encapsulate the concept of packet transformation. Given a packet,
  * <tt>PacketTransformer</tt> can either transform it or reverse the
  * transformation.
+ * <p>
+ * The packets given to a <tt>PacketTransformer</tt> are usually acquired from
+ * {@link RawPacketPool} and are owned (and eventually released) by the stream
+ * which acquired them. Consequently, a <tt>PacketTransformer</tt> should
+ * transform a packet in place (growing into its headroom and tailroom if
+ * necessary) and must not retain a reference to it after it returns.
+ * </p>
  *
  * @author Bing SU (nova.su@gmail.com)
  */
@@ -135,12 +135,16 @@ public class TransformEngineChain
          * Transforms a specific packet.
          *
          * @param pkt the packet to be transformed
-         * @return the transformed packet
+         * @return the transformed packet or <tt>null</tt> if a transformer in
+         * this chain dropped it
          */
         public RawPacket transform(RawPacket pkt)
         {
             for (TransformEngine engine : engineChain)
             {
+                if (pkt == null)
+                    break;
+
                 PacketTransformer pTransformer
                     = isRtp
                         ? engine.getRTPTransformer()
@@ -64,7 +64,16 @@ public class TransformTCPOutputStream
 
         if (transformer != null)
         {
-            pkt = transformer.transform(pkt);
+            RawPacket transformed = transformer.transform(pkt);
+
+            /*
+             * The transformer has dropped the packet acquired by super so it
+             * is returned to the pool right away rather than left to the
+             * garbage collector.
+             */
+            if (transformed == null)
+                RawPacketPool.release(pkt);
+            pkt = transformed;
 
             /*
              * This is for the case when the ZRTP engine stops the media stream
@@ -7,6 +7,7 @@
 package org.jitsi.impl.neomedia.transform.csrc;
 
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.audiolevel.*;
 import org.jitsi.impl.neomedia.transform.*;
 import org.jitsi.service.neomedia.*;
 
@@ -123,10 +124,7 @@ public class CsrcTransformEngine
             if(levels != null)
             {
                 if (csrcLevelDispatcher == null)
-                {
                     csrcLevelDispatcher = new CsrcAudioLevelDispatcher();
-                    new Thread(csrcLevelDispatcher).start();
-                }
 
                 csrcLevelDispatcher.addLevels(levels);
             }
@@ -257,62 +255,55 @@ public class CsrcTransformEngine
     }
 
     /**
-     * A simple thread that waits for new levels to be reported from incoming
-     * RTP packets and then delivers them to the <tt>AudioMediaStream</tt>
-     * associated with this engine. The reason we need to do this in a separate
-     * thread is, of course, the time sensitive nature of incoming RTP packets.
+     * A simple task that delivers the levels reported from incoming RTP
+     * packets to the <tt>AudioMediaStream</tt> associated with this engine.
+     * The reason we need to do this in the shared
+     * <tt>EventDispatchExecutor</tt> is, of course, the time sensitive nature
+     * of incoming RTP packets. If levels are reported faster than they are
+     * delivered, only the latest levels are delivered.
      */
     private class CsrcAudioLevelDispatcher
-        implements Runnable
+        extends EventDispatchExecutor.Task
     {
-        /** Indicates whether this thread is supposed to be running */
-        private boolean isRunning = false;
+        /** Indicates whether this dispatcher is supposed to be running */
+        private boolean isRunning = true;
 
         /** The levels that we last received from the reverseTransform thread*/
         private long[] lastReportedLevels = null;
 
         /**
-         * Waits for new levels to be reported via the <tt>addLevels()</tt>
-         * method and then delivers them to the <tt>AudioMediaStream</tt> that
-         * we are associated with.
+         * Delivers the levels last reported via the <tt>addLevels()</tt>
+         * method to the <tt>AudioMediaStream</tt> that we are associated
+         * with.
          */
-        public void run()
+        @Override
+        protected void dispatch()
         {
-            isRunning = true;
-
             // Audio levels are received in RTP audio streams only.
             if(!(mediaStream instanceof AudioMediaStreamImpl))
                 return;
 
-            AudioMediaStreamImpl audioStream
-                = (AudioMediaStreamImpl) mediaStream;
+            long[] audioLevels;
 
-            while(isRunning)
+            synchronized(this)
             {
-                long[] audioLevels;
-
-                synchronized(this)
-                {
-                    if(lastReportedLevels == null)
-                    {
-                        try { wait(); } catch (InterruptedException ie) {}
-                        continue;
-                    }
-                    else
-                    {
-                        audioLevels = lastReportedLevels;
-                        lastReportedLevels = null;
-                    }
-                }
-
-                if(audioLevels != null)
-                    audioStream.audioLevelsReceived(audioLevels);
+                if(!isRunning)
+                    return;
+
+                audioLevels = lastReportedLevels;
+                lastReportedLevels = null;
+            }
+
+            if(audioLevels != null)
+            {
+                ((AudioMediaStreamImpl) mediaStream).audioLevelsReceived(
+                        audioLevels);
             }
         }
 
         /**
          * A level matrix that we should deliver to our media stream and
-         * its listeners in a separate thread.
+         * its listeners in the shared <tt>EventDispatchExecutor</tt>.
          *
          * @param levels the levels that we'd like to queue for processing.
          */
@@ -320,14 +311,16 @@ public class CsrcTransformEngine
         {
             synchronized(this)
             {
+                if(!isRunning)
+                    return;
+
                 this.lastReportedLevels = levels;
-                notifyAll();
             }
+            schedule();
         }
 
         /**
-         * Causes our run method to exit so that this thread would stop
-         * handling levels.
+         * Causes this dispatcher to stop handling levels.
          */
         public void stop()
         {
@@ -335,7 +328,6 @@ public class CsrcTransformEngine
             {
                 this.lastReportedLevels = null;
                 isRunning = false;
-                notifyAll();
             }
         }
     }
@@ -11,6 +11,7 @@ import java.util.*;
 import javax.media.*;
 
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.impl.neomedia.audiolevel.*;
 import org.jitsi.impl.neomedia.transform.*;
 import org.jitsi.service.neomedia.*;
 import org.jitsi.service.neomedia.codec.*;
@@ -242,10 +243,7 @@ public class DtmfTransformEngine
             DtmfRawPacket p = new DtmfRawPacket(pkt);
 
             if (dtmfDispatcher == null)
-            {
                 dtmfDispatcher = new DTMFDispatcher();
-                new Thread(dtmfDispatcher, "DTMFDispatcherThread").start();
-            }
             dtmfDispatcher.addTonePacket(p);
 
             // ignore received dtmf packets
@@ -446,7 +444,7 @@ public class DtmfTransformEngine
     }
 
     /**
-     * Stops threads that this transform engine is using for even delivery.
+     * Stops the event delivery of this transform engine.
      */
     public void stop()
     {
@@ -471,16 +469,16 @@ public class DtmfTransformEngine
     }
 
     /**
-     * A simple thread that waits for new tones to be reported from incoming
-     * RTP packets and then delivers them to the <tt>AudioMediaStream</tt>
-     * associated with this engine. The reason we need to do this in a separate
-     * thread is of course the time sensitive nature of incoming RTP packets.
+     * A simple task that delivers the tones reported from incoming RTP packets
+     * to the <tt>AudioMediaStream</tt> associated with this engine. The reason
+     * we need to do this in the shared <tt>EventDispatchExecutor</tt> is of
+     * course the time sensitive nature of incoming RTP packets.
      */
     private class DTMFDispatcher
-        implements Runnable
+        extends EventDispatchExecutor.Task
     {
-        /** Indicates whether this thread is supposed to be running */
-        private boolean isRunning = false;
+        /** Indicates whether this dispatcher is supposed to be running */
+        private boolean isRunning = true;
 
         /** The tone that we last received from the reverseTransform thread*/
         private DTMFRtpTone lastReceivedTone = null;
@@ -494,49 +492,41 @@ public class DtmfTransformEngine
         private boolean toEnd = false;
 
         /**
-         * Waits for new tone to be reported via the <tt>addTonePacket()</tt>
-         * method and then delivers them to the <tt>AudioMediaStream</tt> that
-         * we are associated with.
+         * Delivers the tone last reported via the <tt>addTonePacket()</tt>
+         * method to the <tt>AudioMediaStream</tt> that we are associated
+         * with.
          */
-        public void run()
+        @Override
+        protected void dispatch()
         {
-            isRunning = true;
-
-            DTMFRtpTone temp = null;
+            DTMFRtpTone temp;
+            boolean toEnd;
 
-            while(isRunning)
+            synchronized(this)
             {
-                synchronized(this)
-                {
-                    if(lastReceivedTone == null)
-                    {
-                        try
-                        {
-                            wait();
-                        }
-                        catch (InterruptedException ie) {}
-                    }
-
-                    temp = lastReceivedTone;
-                    // make lastReportedLevels to null
-                    // so we will wait for the next tone on next iteration
-                    lastReceivedTone = null;
-                }
+                if(!isRunning)
+                    return;
+
+                temp = lastReceivedTone;
+                toEnd = this.toEnd;
+                // make lastReceivedTone null so that the tone is not
+                // reported again
+                lastReceivedTone = null;
+                this.toEnd = false;
+            }
 
-                if(temp != null
-                    && ((lastReportedTone == null && !toEnd)
-                        || (lastReportedTone != null && toEnd)))
+            if(temp != null
+                && ((lastReportedTone == null && !toEnd)
+                    || (lastReportedTone != null && toEnd)))
+            {
+                //now notify our listener
+                if (mediaStream != null)
                 {
-                    //now notify our listener
-                    if (mediaStream != null)
-                    {
-                        mediaStream.fireDTMFEvent(temp, toEnd);
-                        if(toEnd)
-                            lastReportedTone = null;
-                        else
-                            lastReportedTone = temp;
-                        toEnd = false;
-                    }
+                    mediaStream.fireDTMFEvent(temp, toEnd);
+                    if(toEnd)
+                        lastReportedTone = null;
+                    else
+                        lastReportedTone = temp;
                 }
             }
         }
@@ -551,16 +541,17 @@ public class DtmfTransformEngine
         {
             synchronized(this)
             {
+                if(!isRunning)
+                    return;
+
                 this.lastReceivedTone = getToneFromPacket(p);
                 this.toEnd = p.isEnd();
-
-                notifyAll();
             }
+            schedule();
         }
 
         /**
-         * Causes our run method to exit so that this thread would stop
-         * handling levels.
+         * Causes this dispatcher to stop handling tones.
          */
         public void stop()
         {
@@ -568,8 +559,6 @@ public class DtmfTransformEngine
             {
                 this.lastReceivedTone = null;
                 isRunning = false;
-
-                notifyAll();
             }
         }
 
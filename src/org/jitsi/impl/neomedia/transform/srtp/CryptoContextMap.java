@@ -0,0 +1,282 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jitsi.util.*;
+
+/**
+ * Maps SSRCs to the SRTP or SRTCP cryptographic contexts of one transform
+ * direction. Lookups (i.e. the per-packet path) neither box the SSRCs nor take
+ * locks. Contexts which have not been looked up for a specific idle timeout
+ * are removed so that SSRC churn does not accumulate contexts. The removal is
+ * performed by a shared background thread rather than on the per-packet path
+ * and a removed context is closed only after a further idle timeout so that a
+ * thread which has looked it up right before its removal does not use it
+ * closed.
+ *
+ * @param <T> the type of the cryptographic contexts
+ */
+abstract class CryptoContextMap<T>
+{
+    /**
+     * The <tt>ScheduledExecutorService</tt> which removes the idle contexts of
+     * all <tt>CryptoContextMap</tt>s.
+     */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Gets the <tt>ScheduledExecutorService</tt> which removes the idle
+     * contexts of all <tt>CryptoContextMap</tt>s and initializes it if
+     * necessary.
+     *
+     * @return the <tt>ScheduledExecutorService</tt> which removes the idle
+     * contexts of all <tt>CryptoContextMap</tt>s
+     */
+    private static synchronized ScheduledExecutorService getScheduler()
+    {
+        if (scheduler == null)
+        {
+            scheduler
+                = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactory()
+                        {
+                            public Thread newThread(Runnable r)
+                            {
+                                Thread t
+                                    = new Thread(
+                                            r,
+                                            CryptoContextMap.class.getName());
+
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        });
+        }
+        return scheduler;
+    }
+
+    /**
+     * The (cryptographic context, time of last use) pairs of this map by SSRC.
+     */
+    private final CopyOnWriteLongHashMap<Entry<T>> entries
+        = new CopyOnWriteLongHashMap<Entry<T>>();
+
+    /**
+     * The time in milliseconds after its last use at which a context is
+     * removed from this map. Zero or negative if contexts are never removed
+     * (until {@link #clear()}).
+     */
+    private final long idleTimeout;
+
+    /**
+     * The periodic removal of the idle contexts of this map or <tt>null</tt>
+     * if contexts are never removed or this map has been cleared.
+     */
+    private ScheduledFuture<?> removeIdleFuture;
+
+    /**
+     * The contexts which have been removed from this map by the last
+     * invocation of {@link #removeIdle()} and are to be closed by the next
+     * one.
+     */
+    private final List<T> removedIdle = new ArrayList<T>();
+
+    /**
+     * Initializes a new <tt>CryptoContextMap</tt> instance.
+     *
+     * @param idleTimeout the time in milliseconds after its last use at which
+     * a context is to be removed from the new instance or zero to never remove
+     * contexts
+     */
+    public CryptoContextMap(long idleTimeout)
+    {
+        this.idleTimeout = idleTimeout;
+
+        if (idleTimeout > 0)
+        {
+            RemoveIdleTask<T> task = new RemoveIdleTask<T>(this);
+
+            removeIdleFuture
+                = getScheduler().scheduleWithFixedDelay(
+                        task,
+                        idleTimeout, idleTimeout,
+                        TimeUnit.MILLISECONDS);
+            task.future = removeIdleFuture;
+        }
+    }
+
+    /**
+     * Removes all contexts from this map and closes them.
+     */
+    public synchronized void clear()
+    {
+        if (removeIdleFuture != null)
+        {
+            removeIdleFuture.cancel(false);
+            removeIdleFuture = null;
+        }
+
+        for (long ssrc : entries.keys())
+        {
+            Entry<T> entry = entries.remove(ssrc);
+
+            if (entry != null)
+                close(entry.context);
+        }
+        for (T context : removedIdle)
+            close(context);
+        removedIdle.clear();
+    }
+
+    /**
+     * Closes a specific context which has been removed from this map.
+     *
+     * @param context the context to close
+     */
+    protected abstract void close(T context);
+
+    /**
+     * Gets the context of a specific SSRC and marks it as used.
+     *
+     * @param ssrc the SSRC to get the context of
+     * @return the context of <tt>ssrc</tt> or <tt>null</tt> if this map does
+     * not contain a context for <tt>ssrc</tt>
+     */
+    public T get(long ssrc)
+    {
+        Entry<T> entry = entries.get(ssrc);
+
+        if (entry == null)
+            return null;
+        if (idleTimeout > 0)
+            entry.lastUseTime = System.currentTimeMillis();
+        return entry.context;
+    }
+
+    /**
+     * Adds a context for a specific SSRC unless this map already contains a
+     * context for it.
+     *
+     * @param ssrc the SSRC to add the context of
+     * @param context the context to add
+     * @return the context of <tt>ssrc</tt> in this map after the call i.e.
+     * <tt>context</tt> if it was added or the existing context
+     */
+    public T putIfAbsent(long ssrc, T context)
+    {
+        Entry<T> entry = new Entry<T>(context, System.currentTimeMillis());
+
+        return entries.putIfAbsent(ssrc, entry).context;
+    }
+
+    /**
+     * Closes the contexts removed by the previous invocation and removes the
+     * contexts which have not been used for {@link #idleTimeout} milliseconds.
+     * The latter are closed by the next invocation i.e. no earlier than
+     * {@link #idleTimeout} milliseconds later.
+     */
+    private synchronized void removeIdle()
+    {
+        if (removeIdleFuture == null)
+            return;
+
+        for (T context : removedIdle)
+            close(context);
+        removedIdle.clear();
+
+        long now = System.currentTimeMillis();
+
+        for (long ssrc : entries.keys())
+        {
+            Entry<T> entry = entries.get(ssrc);
+
+            if ((entry != null) && (now - entry.lastUseTime >= idleTimeout))
+            {
+                entries.remove(ssrc);
+                removedIdle.add(entry.context);
+            }
+        }
+    }
+
+    /**
+     * Represents a context of this map along with the time it was last used.
+     *
+     * @param <T> the type of the context
+     */
+    private static class Entry<T>
+    {
+        /**
+         * The context.
+         */
+        public final T context;
+
+        /**
+         * The time in milliseconds at which {@link #context} was last used.
+         */
+        public volatile long lastUseTime;
+
+        /**
+         * Initializes a new <tt>Entry</tt> instance.
+         *
+         * @param context the context
+         * @param lastUseTime the time in milliseconds at which
+         * <tt>context</tt> was last used
+         */
+        public Entry(T context, long lastUseTime)
+        {
+            this.context = context;
+            this.lastUseTime = lastUseTime;
+        }
+    }
+
+    /**
+     * Implements the periodic removal of the idle contexts of a
+     * <tt>CryptoContextMap</tt>. References the map weakly so that a map
+     * which has not been cleared may still be garbage collected and cancels
+     * itself then.
+     *
+     * @param <T> the type of the contexts of the map
+     */
+    private static class RemoveIdleTask<T>
+        implements Runnable
+    {
+        /**
+         * The periodic execution of this task.
+         */
+        public volatile ScheduledFuture<?> future;
+
+        /**
+         * The <tt>CryptoContextMap</tt> to remove the idle contexts of.
+         */
+        private final WeakReference<CryptoContextMap<T>> map;
+
+        /**
+         * Initializes a new <tt>RemoveIdleTask</tt> instance.
+         *
+         * @param map the <tt>CryptoContextMap</tt> to remove the idle
+         * contexts of
+         */
+        public RemoveIdleTask(CryptoContextMap<T> map)
+        {
+            this.map = new WeakReference<CryptoContextMap<T>>(map);
+        }
+
+        public void run()
+        {
+            CryptoContextMap<T> map = this.map.get();
+
+            if (map != null)
+                map.removeIdle();
+            else if (future != null)
+                future.cancel(false);
+        }
+    }
+}
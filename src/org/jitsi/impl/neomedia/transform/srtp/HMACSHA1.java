@@ -0,0 +1,312 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import org.bouncycastle.crypto.*;
+import org.bouncycastle.crypto.digests.*;
+import org.bouncycastle.crypto.params.*;
+
+/**
+ * Implements HMAC-SHA1 (RFC 2104) for the authentication of SRTP and SRTCP
+ * packets. Unlike BouncyCastle's <tt>HMac</tt>, which processes the inner and
+ * outer key pads for every message, the SHA-1 states after the key pads are
+ * computed once in {@link #init(CipherParameters)} and are restored (i.e.
+ * copied) at the start of every message. Saves two SHA-1 block computations
+ * per packet and allocates nothing after initialization.
+ */
+public class HMACSHA1
+    implements Mac
+{
+    /**
+     * The length in bytes of a SHA-1 block.
+     */
+    private static final int BLOCK_LENGTH = 64;
+
+    /**
+     * The length in bytes of a SHA-1 digest.
+     */
+    private static final int DIGEST_LENGTH = 20;
+
+    /**
+     * The initial SHA-1 state as defined by FIPS 180-4.
+     */
+    private static final int[] INITIAL_STATE
+        = { 0x67452301, 0xEFCDAB89, 0x98BADCFE, 0x10325476, 0xC3D2E1F0 };
+
+    /**
+     * The block of the message which is being buffered until it is complete.
+     */
+    private final byte[] block = new byte[BLOCK_LENGTH];
+
+    /**
+     * The number of bytes in {@link #block}.
+     */
+    private int blockLength;
+
+    /**
+     * The number of bytes hashed by the current SHA-1 computation including
+     * the key pad.
+     */
+    private long byteCount;
+
+    /**
+     * The inner digest of the message which is being authenticated.
+     */
+    private final byte[] innerDigest = new byte[DIGEST_LENGTH];
+
+    /**
+     * The SHA-1 state after the inner key pad has been hashed.
+     */
+    private final int[] innerState = new int[5];
+
+    /**
+     * The SHA-1 state after the outer key pad has been hashed.
+     */
+    private final int[] outerState = new int[5];
+
+    /**
+     * The current SHA-1 state.
+     */
+    private final int[] state = new int[5];
+
+    /**
+     * The message schedule of the SHA-1 block computation.
+     */
+    private final int[] w = new int[80];
+
+    /**
+     * {@inheritDoc}
+     */
+    public int doFinal(byte[] out, int outOff)
+    {
+        finish(innerDigest, 0);
+
+        System.arraycopy(outerState, 0, state, 0, state.length);
+        byteCount = BLOCK_LENGTH;
+        blockLength = 0;
+        update(innerDigest, 0, innerDigest.length);
+        finish(out, outOff);
+
+        reset();
+        return DIGEST_LENGTH;
+    }
+
+    /**
+     * Completes the current SHA-1 computation (i.e. pads the message) and
+     * writes the digest into a specific <tt>byte</tt> array.
+     *
+     * @param out the <tt>byte</tt> array to write the digest into
+     * @param outOff the offset in <tt>out</tt> at which the digest is to be
+     * written
+     */
+    private void finish(byte[] out, int outOff)
+    {
+        long bitCount = byteCount << 3;
+
+        block[blockLength++] = (byte) 0x80;
+        if (blockLength > BLOCK_LENGTH - 8)
+        {
+            while (blockLength < BLOCK_LENGTH)
+                block[blockLength++] = 0;
+            processBlock(block, 0);
+            blockLength = 0;
+        }
+        while (blockLength < BLOCK_LENGTH - 8)
+            block[blockLength++] = 0;
+        for (int i = 56; i >= 0; i -= 8)
+            block[blockLength++] = (byte) (bitCount >>> i);
+        processBlock(block, 0);
+        blockLength = 0;
+
+        for (int i = 0; i < state.length; i++)
+        {
+            int s = state[i];
+
+            out[outOff++] = (byte) (s >>> 24);
+            out[outOff++] = (byte) (s >>> 16);
+            out[outOff++] = (byte) (s >>> 8);
+            out[outOff++] = (byte) s;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getAlgorithmName()
+    {
+        return "SHA-1/HMAC";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getMacSize()
+    {
+        return DIGEST_LENGTH;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void init(CipherParameters params)
+    {
+        byte[] key = ((KeyParameter) params).getKey();
+
+        if (key.length > BLOCK_LENGTH)
+        {
+            Digest digest = new SHA1Digest();
+            byte[] keyDigest = new byte[DIGEST_LENGTH];
+
+            digest.update(key, 0, key.length);
+            digest.doFinal(keyDigest, 0);
+            key = keyDigest;
+        }
+
+        byte[] pad = new byte[BLOCK_LENGTH];
+
+        System.arraycopy(key, 0, pad, 0, key.length);
+        for (int i = 0; i < pad.length; i++)
+            pad[i] ^= 0x36;
+        System.arraycopy(INITIAL_STATE, 0, state, 0, state.length);
+        processBlock(pad, 0);
+        System.arraycopy(state, 0, innerState, 0, state.length);
+
+        // 0x36 ^ 0x5c turns the inner pad into the outer pad.
+        for (int i = 0; i < pad.length; i++)
+            pad[i] ^= (0x36 ^ 0x5c);
+        System.arraycopy(INITIAL_STATE, 0, state, 0, state.length);
+        processBlock(pad, 0);
+        System.arraycopy(state, 0, outerState, 0, state.length);
+
+        reset();
+    }
+
+    /**
+     * Performs the SHA-1 block computation on a specific block and updates
+     * {@link #state}.
+     *
+     * @param in the <tt>byte</tt> array which contains the block
+     * @param inOff the offset in <tt>in</tt> at which the block starts
+     */
+    private void processBlock(byte[] in, int inOff)
+    {
+        int[] w = this.w;
+
+        for (int t = 0; t < 16; t++, inOff += 4)
+        {
+            w[t]
+                = (in[inOff] << 24)
+                    | ((in[inOff + 1] & 0xff) << 16)
+                    | ((in[inOff + 2] & 0xff) << 8)
+                    | (in[inOff + 3] & 0xff);
+        }
+        for (int t = 16; t < 80; t++)
+        {
+            int x = w[t - 3] ^ w[t - 8] ^ w[t - 14] ^ w[t - 16];
+
+            w[t] = (x << 1) | (x >>> 31);
+        }
+
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+
+        for (int t = 0; t < 80; t++)
+        {
+            int f;
+
+            if (t < 20)
+                f = ((b & c) | (~b & d)) + 0x5A827999;
+            else if (t < 40)
+                f = (b ^ c ^ d) + 0x6ED9EBA1;
+            else if (t < 60)
+                f = ((b & c) | (b & d) | (c & d)) + 0x8F1BBCDC;
+            else
+                f = (b ^ c ^ d) + 0xCA62C1D6;
+
+            int temp = ((a << 5) | (a >>> 27)) + f + e + w[t];
+
+            e = d;
+            d = c;
+            c = (b << 30) | (b >>> 2);
+            b = a;
+            a = temp;
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Restores the SHA-1 state after the inner key pad.
+     */
+    public void reset()
+    {
+        System.arraycopy(innerState, 0, state, 0, state.length);
+        byteCount = BLOCK_LENGTH;
+        blockLength = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void update(byte in)
+    {
+        block[blockLength++] = in;
+        byteCount++;
+        if (blockLength == BLOCK_LENGTH)
+        {
+            processBlock(block, 0);
+            blockLength = 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void update(byte[] in, int inOff, int len)
+    {
+        byteCount += len;
+
+        // Complete the buffered block.
+        if (blockLength != 0)
+        {
+            int n = Math.min(len, BLOCK_LENGTH - blockLength);
+
+            System.arraycopy(in, inOff, block, blockLength, n);
+            blockLength += n;
+            inOff += n;
+            len -= n;
+            if (blockLength < BLOCK_LENGTH)
+                return;
+            processBlock(block, 0);
+            blockLength = 0;
+        }
+
+        // Process the whole blocks straight out of the input.
+        while (len >= BLOCK_LENGTH)
+        {
+            processBlock(in, inOff);
+            inOff += BLOCK_LENGTH;
+            len -= BLOCK_LENGTH;
+        }
+
+        // Buffer the remainder.
+        if (len > 0)
+        {
+            System.arraycopy(in, inOff, block, 0, len);
+            blockLength = len;
+        }
+    }
+}
@@ -134,7 +134,7 @@ public class SRTCPCryptoContext
     private BlockCipher cipherF8 = null; // used inside F8 mode only
 
     // implements the counter cipher mode for RTP according to RFC 3711
-    private final SRTPCipherCTR cipherCtr = new SRTPCipherCTR();
+    private SRTPCipherCTR cipherCtr = new SRTPCipherCTR();
 
     // Here some fields that a allocated here or in constructor. The methods
     // use these fields to avoid too many new operations
@@ -212,6 +212,8 @@ public class SRTCPCryptoContext
 
         case SRTPPolicy.AESCM_ENCRYPTION:
             cipher = new AESFastEngine();
+            cipherCtr
+                = SRTPCipherCTR.createAESInstance(policy.getEncKeyLength());
             encKey = new byte[this.policy.getEncKeyLength()];
             saltKey = new byte[this.policy.getSaltKeyLength()];
             break;
@@ -233,7 +235,7 @@ public class SRTCPCryptoContext
             break;
 
         case SRTPPolicy.HMACSHA1_AUTHENTICATION:
-            mac = new HMac(new SHA1Digest());
+            mac = new HMACSHA1();
             authKey = new byte[policy.getAuthKeyLength()];
             tagStore = new byte[mac.getMacSize()];
             break;
@@ -527,7 +529,7 @@ public class SRTCPCryptoContext
      */
     private void authenticatePacket(RawPacket pkt, int index)
     {
-        mac.update(pkt.getBuffer(), 0, pkt.getLength());
+        mac.update(pkt.getBuffer(), pkt.getOffset(), pkt.getLength());
         // byte[] rb = new byte[4];
         rbStore[0] = (byte) (index >> 24);
         rbStore[1] = (byte) (index >> 16);
@@ -652,6 +654,7 @@ public class SRTCPCryptoContext
             SRTPCipherF8.deriveForIV(cipherF8, encKey, saltKey);
         encryptionKey = new KeyParameter(encKey);
         cipher.init(true, encryptionKey);
+        cipherCtr.init(encKey);
         Arrays.fill(encKey, (byte)0);
     }
 
@@ -6,8 +6,6 @@
  */
 package org.jitsi.impl.neomedia.transform.srtp;
 
-import java.util.*;
-
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.transform.*;
 
@@ -25,9 +23,14 @@ public class SRTCPTransformer
     private final SRTPContextFactory reverseFactory;
 
     /**
-     * All the known SSRC's corresponding SRTCPCryptoContexts
+     * The SRTCPCryptoContexts of the SSRCs of the transformed packets.
+     */
+    private final CryptoContextMap<SRTCPCryptoContext> forwardContexts;
+
+    /**
+     * The SRTCPCryptoContexts of the SSRCs of the reverse-transformed packets.
      */
-    private final Hashtable<Long,SRTCPCryptoContext> contexts;
+    private final CryptoContextMap<SRTCPCryptoContext> reverseContexts;
 
     /**
      * Constructs a SRTCPTransformer object.
@@ -54,7 +57,11 @@ public class SRTCPTransformer
     {
         this.forwardFactory = forwardFactory;
         this.reverseFactory = reverseFactory;
-        this.contexts = new Hashtable<Long, SRTCPCryptoContext>();
+
+        long idleTimeout = SRTPTransformer.getContextIdleTimeout();
+
+        forwardContexts = createContextMap(idleTimeout);
+        reverseContexts = createContextMap(idleTimeout);
     }
 
     /**
@@ -64,45 +71,65 @@ public class SRTCPTransformer
      */
     public void close()
     {
-        synchronized (contexts)
+        synchronized (this)
         {
             forwardFactory.close();
             if (reverseFactory != forwardFactory)
                 reverseFactory.close();
 
-            Iterator<Map.Entry<Long, SRTCPCryptoContext>> iter
-                = contexts.entrySet().iterator();
+            forwardContexts.clear();
+            reverseContexts.clear();
+        }
+    }
 
-            while (iter.hasNext())
+    /**
+     * Initializes a new map of SSRCs to <tt>SRTCPCryptoContext</tt>s.
+     *
+     * @param idleTimeout the time in milliseconds after which the context of
+     * an SSRC which has not been seen is to be closed or zero
+     * @return a new map of SSRCs to <tt>SRTCPCryptoContext</tt>s
+     */
+    private static CryptoContextMap<SRTCPCryptoContext> createContextMap(
+            long idleTimeout)
+    {
+        return
+            new CryptoContextMap<SRTCPCryptoContext>(idleTimeout)
             {
-                Map.Entry<Long, SRTCPCryptoContext> entry = iter.next();
-                SRTCPCryptoContext context = entry.getValue();
-
-                iter.remove();
-                if (context != null)
+                @Override
+                protected void close(SRTCPCryptoContext context)
+                {
                     context.close();
-            }
-        }
+                }
+            };
     }
 
     private SRTCPCryptoContext getContext(
             RawPacket pkt,
-            SRTPContextFactory engine)
+            SRTPContextFactory engine,
+            CryptoContextMap<SRTCPCryptoContext> contexts)
     {
         long ssrc = pkt.getRTCPSSRC();
-        SRTCPCryptoContext context = null;
+        SRTCPCryptoContext context = contexts.get(ssrc);
 
-        synchronized (contexts)
+        if (context == null && engine != null)
         {
-            context = contexts.get(ssrc);
-            if (context == null && engine != null)
+            context = engine.getDefaultContextControl();
+            if (context != null)
             {
-                context = engine.getDefaultContextControl();
-                if (context != null)
+                context = context.deriveContext(ssrc);
+                context.deriveSrtcpKeys();
+
+                /*
+                 * Another thread may have derived a context for the same SSRC
+                 * in the meantime.
+                 */
+                SRTCPCryptoContext existing
+                    = contexts.putIfAbsent(ssrc, context);
+
+                if (existing != context)
                 {
-                    context = context.deriveContext(ssrc);
-                    context.deriveSrtcpKeys();
-                    contexts.put(ssrc, context);
+                    context.close();
+                    context = existing;
                 }
             }
         }
@@ -118,7 +145,8 @@ public class SRTCPTransformer
      */
     public RawPacket reverseTransform(RawPacket pkt)
     {
-        SRTCPCryptoContext context = getContext(pkt, reverseFactory);
+        SRTCPCryptoContext context
+            = getContext(pkt, reverseFactory, reverseContexts);
 
         return
             ((context != null) && context.reverseTransformPacket(pkt))
@@ -134,7 +162,8 @@ public class SRTCPTransformer
      */
     public RawPacket transform(RawPacket pkt)
     {
-        SRTCPCryptoContext context = getContext(pkt, forwardFactory);
+        SRTCPCryptoContext context
+            = getContext(pkt, forwardFactory, forwardContexts);
 
         if(context != null)
         {
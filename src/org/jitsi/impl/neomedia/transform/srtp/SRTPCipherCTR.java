@@ -25,7 +25,12 @@
 */
 package org.jitsi.impl.neomedia.transform.srtp;
 
+import javax.crypto.*;
+
 import org.bouncycastle.crypto.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
+import org.jitsi.util.*;
 
 /**
  * SRTPCipherCTR implements SRTP Counter Mode AES Encryption (AES-CM).
@@ -51,48 +56,131 @@ import org.bouncycastle.crypto.*;
  *
  * We use AESCipher to handle basic AES encryption / decryption.
  *
+ * This implementation computes the cipher stream through a BouncyCastle
+ * <tt>BlockCipher</tt> and XORs it into the data in place one block at a time.
+ * {@link #createAESInstance(int)} may return an extender which encrypts
+ * through the Java Cryptography Extension instead.
+ *
  * @author Werner Dittmann (Werner.Dittmann@t-online.de)
  * @author Bing SU (nova.su@gmail.com)
  */
 public class SRTPCipherCTR
 {
+    /**
+     * The name of the <tt>boolean</tt> <tt>ConfigurationService</tt> property
+     * which indicates whether AES-CM is to be computed through the
+     * &quot;AES/ECB/NoPadding&quot; <tt>Cipher</tt> of the Java Cryptography
+     * Extension (if it is available and supports the key length) rather than
+     * through BouncyCastle. The default value is <tt>true</tt>.
+     */
+    public static final String USE_JCE_PNAME
+        = "org.jitsi.impl.neomedia.transform.srtp.SRTPCipherCTR.useJCE";
 
     private final static int BLKLEN = 16;
-    private final static int MAX_BUFFER_LENGTH = 10*1024;
+
+    /**
+     * The <tt>Logger</tt> used by the <tt>SRTPCipherCTR</tt> class and its
+     * instances for logging output.
+     */
+    private static final Logger logger = Logger.getLogger(SRTPCipherCTR.class);
+
     private final byte[] cipherInBlock = new byte[BLKLEN];
     private final byte[] tmpCipherBlock = new byte[BLKLEN];
-    private byte[] streamBuf = new byte[1024];
+
+    /**
+     * Initializes a new <tt>SRTPCipherCTR</tt> instance which is to perform
+     * AES-CM with a key of a specific length using the most efficient
+     * implementation available.
+     *
+     * @param keyLength the length in bytes of the key to be used
+     * @return a new <tt>SRTPCipherCTR</tt> instance
+     */
+    public static SRTPCipherCTR createAESInstance(int keyLength)
+    {
+        boolean useJCE = true;
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        if (cfg != null)
+            useJCE = cfg.getBoolean(USE_JCE_PNAME, useJCE);
+        if (useJCE)
+        {
+            try
+            {
+                if (Cipher.getMaxAllowedKeyLength("AES") >= keyLength * 8)
+                    return new SRTPCipherCTRJCE();
+            }
+            catch (Exception ex)
+            {
+                /*
+                 * The Java Cryptography Extension does not provide AES/ECB so
+                 * fall back to BouncyCastle.
+                 */
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug(
+                            "Failed to initialize AES/ECB/NoPadding, falling"
+                                + " back to BouncyCastle.",
+                            ex);
+                }
+            }
+        }
+        return new SRTPCipherCTR();
+    }
 
     public SRTPCipherCTR()
     {
     }
 
+    /**
+     * Initializes this instance with the session encryption key to be used by
+     * subsequent calls to
+     * {@link #process(BlockCipher, byte[], int, int, byte[])}. The
+     * <tt>BlockCipher</tt> passed to <tt>process</tt> is expected to have
+     * been initialized with the same key. The implementation of
+     * <tt>SRTPCipherCTR</tt> relies on the <tt>BlockCipher</tt> only and does
+     * nothing.
+     *
+     * @param key the session encryption key
+     */
+    public void init(byte[] key)
+    {
+    }
+
+    /**
+     * Encrypts / decrypts (i.e. XORs with the AES-CM cipher stream) specific
+     * data in place.
+     *
+     * @param cipher the <tt>BlockCipher</tt> initialized with the session
+     * encryption key
+     * @param data the data to encrypt / decrypt in place
+     * @param off the offset in <tt>data</tt> at which the data to encrypt /
+     * decrypt starts
+     * @param len the number of bytes to encrypt / decrypt
+     * @param iv the initialization vector of the cipher stream
+     */
     public void process(BlockCipher cipher, byte[] data, int off, int len,
         byte[] iv)
     {
         if (off + len > data.length)
             return;
 
-        // if data fits in inter buffer - use it. Otherwise allocate bigger
-        // buffer store it to use it for later processing - up to a defined
-        // maximum size.
-        byte[] cipherStream = null;
-        if (len > streamBuf.length)
-        {
-            cipherStream = new byte[len];
-            if (cipherStream.length <= MAX_BUFFER_LENGTH)
-            {
-                streamBuf = cipherStream;
-            }
-        }
-        else
+        System.arraycopy(iv, 0, cipherInBlock, 0, 14);
+
+        // XOR the cipher stream into the data one block at a time rather than
+        // compute the whole cipher stream into a temporary buffer first.
+        for (int ctr = 0; len > 0; ctr++)
         {
-            cipherStream = streamBuf;
-        }
+            cipherInBlock[14] = (byte) ((ctr & 0xFF00) >> 8);
+            cipherInBlock[15] = (byte) ((ctr & 0x00FF));
+
+            cipher.processBlock(cipherInBlock, 0, tmpCipherBlock, 0);
 
-        getCipherStream(cipher, cipherStream, len, iv);
-        for (int i = 0; i < len; i++)
-            data[i + off] ^= cipherStream[i];
+            int blkLen = (len < BLKLEN) ? len : BLKLEN;
+
+            for (int i = 0; i < blkLen; i++)
+                data[off++] ^= tmpCipherBlock[i];
+            len -= blkLen;
+        }
     }
 
     /**
@@ -0,0 +1,136 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.impl.neomedia.transform.srtp;
+
+import java.security.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+import org.bouncycastle.crypto.*;
+
+/**
+ * Implements SRTP Counter Mode AES Encryption (AES-CM) through the
+ * &quot;AES/ECB/NoPadding&quot; <tt>Cipher</tt> of the Java Cryptography
+ * Extension which (unlike BouncyCastle) may be compiled by the virtual machine
+ * into hardware-accelerated AES instructions. The counter blocks of a packet
+ * (i.e. the SRTP IV with the block counter in its least significant 16 bits)
+ * are encrypted with a single invocation of the <tt>Cipher</tt> into a cipher
+ * stream which is then XORed into the packet. Unlike
+ * &quot;AES/CTR/NoPadding&quot;, the <tt>Cipher</tt> is initialized once per
+ * session key rather than once per packet with a new
+ * <tt>IvParameterSpec</tt> and does not copy the data when it is encrypted in
+ * place.
+ * <p>
+ * The cipher stream for key derivation is still computed by the
+ * <tt>BlockCipher</tt> as with {@link SRTPCipherCTR}.
+ * </p>
+ */
+public class SRTPCipherCTRJCE
+    extends SRTPCipherCTR
+{
+    /**
+     * The length in bytes of an AES block.
+     */
+    private static final int BLKLEN = 16;
+
+    /**
+     * The &quot;AES/ECB/NoPadding&quot; <tt>Cipher</tt> which computes the
+     * cipher stream.
+     */
+    private final Cipher cipher;
+
+    /**
+     * The cipher stream of the last processed packet.
+     */
+    private byte[] cipherStream = new byte[0];
+
+    /**
+     * The counter blocks of the last processed packet.
+     */
+    private byte[] counterBlocks = new byte[0];
+
+    /**
+     * The indicator which determines whether {@link #cipher} has been
+     * initialized with the session encryption key.
+     */
+    private boolean initialized;
+
+    /**
+     * Initializes a new <tt>SRTPCipherCTRJCE</tt> instance.
+     *
+     * @throws GeneralSecurityException if the Java Cryptography Extension does
+     * not provide an &quot;AES/ECB/NoPadding&quot; <tt>Cipher</tt>
+     */
+    public SRTPCipherCTRJCE()
+        throws GeneralSecurityException
+    {
+        cipher = Cipher.getInstance("AES/ECB/NoPadding");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init(byte[] key)
+    {
+        try
+        {
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+            initialized = true;
+        }
+        catch (GeneralSecurityException gse)
+        {
+            initialized = false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Falls back to the <tt>BlockCipher</tt> if {@link #init(byte[])} has not
+     * been invoked yet or the Java Cryptography Extension fails.
+     */
+    @Override
+    public void process(BlockCipher cipher, byte[] data, int off, int len,
+        byte[] iv)
+    {
+        if (off + len > data.length)
+            return;
+
+        if (initialized)
+        {
+            int cipherStreamLength = (len + BLKLEN - 1) / BLKLEN * BLKLEN;
+
+            if (counterBlocks.length < cipherStreamLength)
+            {
+                counterBlocks = new byte[cipherStreamLength];
+                cipherStream = new byte[cipherStreamLength];
+            }
+            for (int ctr = 0, i = 0; i < cipherStreamLength; ctr++, i += BLKLEN)
+            {
+                System.arraycopy(iv, 0, counterBlocks, i, 14);
+                counterBlocks[i + 14] = (byte) ((ctr & 0xFF00) >> 8);
+                counterBlocks[i + 15] = (byte) (ctr & 0x00FF);
+            }
+            try
+            {
+                this.cipher.update(
+                        counterBlocks, 0, cipherStreamLength,
+                        cipherStream, 0);
+                for (int i = 0; i < len; i++)
+                    data[off + i] ^= cipherStream[i];
+                return;
+            }
+            catch (GeneralSecurityException gse)
+            {
+                initialized = false;
+            }
+        }
+        super.process(cipher, data, off, len, iv);
+    }
+}
@@ -27,6 +27,7 @@
 package org.jitsi.impl.neomedia.transform.srtp;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.bouncycastle.crypto.*;
 import org.bouncycastle.crypto.digests.*;
@@ -36,6 +37,8 @@ import org.bouncycastle.crypto.params.*;
 import org.jitsi.bccontrib.macs.*;
 import org.jitsi.bccontrib.params.*;
 import org.jitsi.impl.neomedia.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 
 /**
  * SRTPCryptoContext class is the core class of SRTP implementation.
@@ -64,9 +67,26 @@ import org.jitsi.impl.neomedia.*;
 public class SRTPCryptoContext
 {
     /**
-     * The replay check windows size
+     * The default replay check window size in packets.
      */
-    private static final long REPLAY_WINDOW_SIZE = 64;
+    private static final int DEFAULT_REPLAY_WINDOW_SIZE = 64;
+
+    /**
+     * The maximum replay check window size in packets.
+     */
+    private static final int MAX_REPLAY_WINDOW_SIZE = 1024;
+
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the number of packets (from {@link #DEFAULT_REPLAY_WINDOW_SIZE} to
+     * {@link #MAX_REPLAY_WINDOW_SIZE}, rounded up to a power of two) prior to
+     * the most recently received one which are checked for replays. Packets
+     * older than that are rejected. Video streams which are reordered on the
+     * network may need more than the default.
+     */
+    public static final String REPLAY_WINDOW_SIZE_PNAME
+        = "org.jitsi.impl.neomedia.transform.srtp.SRTPCryptoContext"
+            + ".replayWindowSize";
 
     /**
      * RTP SSRC of this cryptographic context
@@ -104,9 +124,23 @@ public class SRTPCryptoContext
     private long keyDerivationRate;
 
     /**
-     * Bit mask for replay check
+     * Bit mask for replay check. The bit at position <tt>index</tt> modulo the
+     * number of bits in the mask is set if the packet with SRTP index
+     * <tt>index</tt> has been received.
+     */
+    private final long[] replayWindow;
+
+    /**
+     * The number of packets which have been rejected by this context because
+     * they failed authentication.
+     */
+    private final AtomicLong authFailureCount = new AtomicLong();
+
+    /**
+     * The number of packets which have been rejected by this context because
+     * they were replayed or too old for the replay check window.
      */
-    private long replayWindow;
+    private final AtomicLong replayCount = new AtomicLong();
 
     /**
      * Master encryption key
@@ -156,7 +190,7 @@ public class SRTPCryptoContext
     /**
      * implements the counter cipher mode for RTP according to RFC 3711
      */
-    private final SRTPCipherCTR cipherCtr = new SRTPCipherCTR();
+    private SRTPCipherCTR cipherCtr = new SRTPCipherCTR();
 
     /**
      * Temp store.
@@ -201,6 +235,7 @@ public class SRTPCryptoContext
         seqNumSet = false;
         policy = null;
         tagStore = null;
+        replayWindow = new long[getReplayWindowSize() / 64];
     }
 
     /**
@@ -239,6 +274,7 @@ public class SRTPCryptoContext
         seqNum = 0;
         keyDerivationRate = kdr;
         seqNumSet = false;
+        replayWindow = new long[getReplayWindowSize() / 64];
 
         policy = policyIn;
 
@@ -265,6 +301,8 @@ public class SRTPCryptoContext
 
         case SRTPPolicy.AESCM_ENCRYPTION:
             cipher = new AESFastEngine();
+            cipherCtr
+                = SRTPCipherCTR.createAESInstance(policy.getEncKeyLength());
             encKey = new byte[policy.getEncKeyLength()];
             saltKey = new byte[policy.getSaltKeyLength()];
             break;
@@ -287,7 +325,7 @@ public class SRTPCryptoContext
             break;
 
         case SRTPPolicy.HMACSHA1_AUTHENTICATION:
-            mac = new HMac(new SHA1Digest());
+            mac = new HMACSHA1();
             authKey = new byte[policy.getAuthKeyLength()];
             tagStore = new byte[mac.getMacSize()];
             break;
@@ -320,6 +358,17 @@ public class SRTPCryptoContext
         Arrays.fill(masterSalt, (byte)0);
     }
 
+    /**
+     * Gets the number of packets which have been rejected by this SRTP
+     * cryptographic context because they failed authentication.
+     *
+     * @return the number of packets which have failed authentication
+     */
+    public long getAuthFailureCount()
+    {
+        return authFailureCount.get();
+    }
+
     /**
      * Get the authentication tag length of this SRTP cryptographic context
      *
@@ -347,6 +396,42 @@ public class SRTPCryptoContext
         }
     }
 
+    /**
+     * Gets the number of packets which have been rejected by this SRTP
+     * cryptographic context because they were replayed or too old for the
+     * replay check window.
+     *
+     * @return the number of packets which have failed the replay check
+     */
+    public long getReplayCount()
+    {
+        return replayCount.get();
+    }
+
+    /**
+     * Gets the replay check window size in packets configured through
+     * {@link #REPLAY_WINDOW_SIZE_PNAME}.
+     *
+     * @return the replay check window size in packets
+     */
+    private static int getReplayWindowSize()
+    {
+        int replayWindowSize = DEFAULT_REPLAY_WINDOW_SIZE;
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        if (cfg != null)
+        {
+            replayWindowSize
+                = cfg.getInt(REPLAY_WINDOW_SIZE_PNAME, replayWindowSize);
+        }
+
+        int size = DEFAULT_REPLAY_WINDOW_SIZE;
+
+        while ((size < replayWindowSize) && (size < MAX_REPLAY_WINDOW_SIZE))
+            size <<= 1;
+        return size;
+    }
+
     /**
      * Get the SSRC of this SRTP cryptographic context
      *
@@ -458,6 +543,7 @@ public class SRTPCryptoContext
         /* Replay control */
         if (!checkReplay(seqNo, guessedIndex))
         {
+            replayCount.incrementAndGet();
             return false;
         }
         /* Authenticate the packet */
@@ -480,6 +566,7 @@ public class SRTPCryptoContext
                     continue;
                 else
                 {
+                    authFailureCount.incrementAndGet();
                     return false;
                 }
             }
@@ -599,8 +686,8 @@ public class SRTPCryptoContext
     /**
      * Checks if a packet is a replayed on based on its sequence number.
      *
-     * This method supports a 64 packet history relative the the given
-     * sequence number.
+     * This method supports a history of the configured replay check window
+     * size relative to the most recently received packet.
      *
      * Sequence Number is guaranteed to be real (not faked) through
      * authentication.
@@ -624,13 +711,13 @@ public class SRTPCryptoContext
         }
         else
         {
-            if (-delta > REPLAY_WINDOW_SIZE) {
+            if (-delta >= replayWindow.length * 64) {
                 /* Packet too old */
                 return false;
             }
             else
             {
-                if (((this.replayWindow >> (-delta)) & 0x1) != 0)
+                if (isReplayWindowBitSet(guessedIndex))
                 {
                     /* Packet already received ! */
                     return false;
@@ -735,9 +822,43 @@ public class SRTPCryptoContext
             SRTPCipherF8.deriveForIV(cipherF8, encKey, saltKey);
         encryptionKey = new KeyParameter(encKey);
         cipher.init(true, encryptionKey);
+        cipherCtr.init(encKey);
         Arrays.fill(encKey, (byte)0);
     }
 
+    /**
+     * Determines whether the bit of {@link #replayWindow} which corresponds to
+     * a specific SRTP packet index is set.
+     *
+     * @param index the SRTP packet index
+     * @return <tt>true</tt> if the bit which corresponds to <tt>index</tt> is
+     * set; otherwise, <tt>false</tt>
+     */
+    private boolean isReplayWindowBitSet(long index)
+    {
+        int bit = (int) (index & (replayWindow.length * 64 - 1));
+
+        return (replayWindow[bit >>> 6] & (1L << (bit & 63))) != 0;
+    }
+
+    /**
+     * Sets or clears the bit of {@link #replayWindow} which corresponds to a
+     * specific SRTP packet index.
+     *
+     * @param index the SRTP packet index
+     * @param value <tt>true</tt> to set the bit or <tt>false</tt> to clear it
+     */
+    private void setReplayWindowBit(long index, boolean value)
+    {
+        int bit = (int) (index & (replayWindow.length * 64 - 1));
+        long mask = 1L << (bit & 63);
+
+        if (value)
+            replayWindow[bit >>> 6] |= mask;
+        else
+            replayWindow[bit >>> 6] &= ~mask;
+    }
+
     /**
      * Compute (guess) the new SRTP index based on the sequence number of a
      * received RTP packet.
@@ -787,21 +908,29 @@ public class SRTPCryptoContext
         long delta = guessedIndex - (((long) this.roc) << 16 | this.seqNum);
 
         /* update the replay bit mask */
-        if( delta > 0 )
-        {
-          replayWindow = replayWindow << delta;
-          replayWindow |= 1;
-        }
-        else
-        {
-          replayWindow |= ( 1 << delta );
-        }
-
-        if (seqNo > seqNum)
+        if (delta > 0)
         {
-            seqNum = seqNo & 0xffff;
+            /*
+             * Forget the packets which have slid out of the window i.e. the
+             * ones which occupied the bits of the newly covered indexes.
+             */
+            if (delta >= replayWindow.length * 64)
+                Arrays.fill(replayWindow, 0);
+            else
+            {
+                for (long i = guessedIndex - delta + 1; i < guessedIndex; i++)
+                    setReplayWindowBit(i, false);
+            }
         }
-        if (this.guessedROC > this.roc)
+        setReplayWindowBit(guessedIndex, true);
+
+        /*
+         * Only a packet with an index greater than the highest one received
+         * so far advances it (RFC 3711, section 3.3.1). A reordered packet
+         * from before a rollover must not pair its (large) sequence number
+         * with the rolled over ROC.
+         */
+        if (delta > 0)
         {
             roc = guessedROC;
             seqNum = seqNo & 0xffff;
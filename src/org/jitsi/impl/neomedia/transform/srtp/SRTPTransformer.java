@@ -25,10 +25,10 @@
 */
 package org.jitsi.impl.neomedia.transform.srtp;
 
-import java.util.*;
-
 import org.jitsi.impl.neomedia.*;
 import org.jitsi.impl.neomedia.transform.*;
+import org.jitsi.service.configuration.*;
+import org.jitsi.service.libjitsi.*;
 
 /**
  * SRTPTransformer implements PacketTransformer and provides implementations
@@ -44,13 +44,46 @@ import org.jitsi.impl.neomedia.transform.*;
 public class SRTPTransformer
     implements PacketTransformer
 {
+    /**
+     * The name of the <tt>ConfigurationService</tt> property which specifies
+     * the time in milliseconds after which the SRTP and SRTCP cryptographic
+     * context of an SSRC which has not been seen is discarded. A context which
+     * is needed again afterwards is derived anew with a Roll-Over-Counter of
+     * zero so the timeout should be well above the time a stream may pause.
+     * The default value of zero disables the discarding.
+     */
+    public static final String CONTEXT_IDLE_TIMEOUT_PNAME
+        = "org.jitsi.impl.neomedia.transform.srtp.SRTPTransformer"
+            + ".contextIdleTimeout";
+
+    /**
+     * Gets the time in milliseconds after which the cryptographic context of
+     * an SSRC which has not been seen is to be discarded.
+     *
+     * @return the time in milliseconds after which the cryptographic context
+     * of an SSRC which has not been seen is to be discarded or zero if
+     * cryptographic contexts are not to be discarded
+     * @see #CONTEXT_IDLE_TIMEOUT_PNAME
+     */
+    static long getContextIdleTimeout()
+    {
+        ConfigurationService cfg = LibJitsi.getConfigurationService();
+
+        return (cfg == null) ? 0 : cfg.getLong(CONTEXT_IDLE_TIMEOUT_PNAME, 0);
+    }
+
     private final SRTPContextFactory forwardFactory;
     private final SRTPContextFactory reverseFactory;
 
     /**
-     * All the known SSRC's corresponding SRTPCryptoContexts
+     * The SRTPCryptoContexts of the SSRCs of the transformed packets.
+     */
+    private final CryptoContextMap<SRTPCryptoContext> forwardContexts;
+
+    /**
+     * The SRTPCryptoContexts of the SSRCs of the reverse-transformed packets.
      */
-    private final Hashtable<Long, SRTPCryptoContext> contexts;
+    private final CryptoContextMap<SRTPCryptoContext> reverseContexts;
 
     /**
      * Initializes a new <tt>SRTPTransformer</tt> instance.
@@ -77,7 +110,11 @@ public class SRTPTransformer
     {
         this.forwardFactory = forwardFactory;
         this.reverseFactory = reverseFactory;
-        this.contexts = new Hashtable<Long, SRTPCryptoContext>();
+
+        long idleTimeout = getContextIdleTimeout();
+
+        forwardContexts = createContextMap(idleTimeout);
+        reverseContexts = createContextMap(idleTimeout);
     }
 
     /**
@@ -87,45 +124,65 @@ public class SRTPTransformer
      */
     public void close()
     {
-        synchronized (contexts)
+        synchronized (this)
         {
             forwardFactory.close();
             if (reverseFactory != forwardFactory)
                 reverseFactory.close();
 
-            Iterator<Map.Entry<Long, SRTPCryptoContext>> iter
-                = contexts.entrySet().iterator();
+            forwardContexts.clear();
+            reverseContexts.clear();
+        }
+    }
 
-            while (iter.hasNext())
+    /**
+     * Initializes a new map of SSRCs to <tt>SRTPCryptoContext</tt>s.
+     *
+     * @param idleTimeout the time in milliseconds after which the context of
+     * an SSRC which has not been seen is to be closed or zero
+     * @return a new map of SSRCs to <tt>SRTPCryptoContext</tt>s
+     */
+    private static CryptoContextMap<SRTPCryptoContext> createContextMap(
+            long idleTimeout)
+    {
+        return
+            new CryptoContextMap<SRTPCryptoContext>(idleTimeout)
             {
-                Map.Entry<Long, SRTPCryptoContext> entry = iter.next();
-                SRTPCryptoContext context = entry.getValue();
-
-                iter.remove();
-                if (context != null)
+                @Override
+                protected void close(SRTPCryptoContext context)
+                {
                     context.close();
-            }
-        }
+                }
+            };
     }
 
     private SRTPCryptoContext getContext(
             long ssrc,
             SRTPContextFactory engine,
+            CryptoContextMap<SRTPCryptoContext> contexts,
             int deriveSrtpKeysIndex)
     {
-        SRTPCryptoContext context;
+        SRTPCryptoContext context = contexts.get(ssrc);
 
-        synchronized (contexts)
+        if (context == null)
         {
-            context = contexts.get(ssrc);
-            if (context == null)
+            context = engine.getDefaultContext();
+            if (context != null)
             {
-                context = engine.getDefaultContext();
-                if (context != null)
+                context = context.deriveContext(ssrc, 0, 0);
+                context.deriveSrtpKeys(deriveSrtpKeysIndex);
+
+                /*
+                 * Another thread may have derived a context for the same SSRC
+                 * in the meantime.
+                 */
+                SRTPCryptoContext existing
+                    = contexts.putIfAbsent(ssrc, context);
+
+                if (existing != context)
                 {
-                    context = context.deriveContext(ssrc, 0, 0);
-                    context.deriveSrtpKeys(deriveSrtpKeysIndex);
-                    contexts.put(ssrc, context);
+                    context.close();
+                    context = existing;
                 }
             }
         }
@@ -148,7 +205,11 @@ public class SRTPTransformer
             return null;
 
         SRTPCryptoContext context
-            = getContext(pkt.getSSRC(), reverseFactory, pkt.getSequenceNumber());
+            = getContext(
+                    pkt.getSSRC(),
+                    reverseFactory,
+                    reverseContexts,
+                    pkt.getSequenceNumber());
 
         return
             ((context != null) && context.reverseTransformPacket(pkt))
@@ -164,7 +225,8 @@ public class SRTPTransformer
      */
     public RawPacket transform(RawPacket pkt)
     {
-        SRTPCryptoContext context = getContext(pkt.getSSRC(), forwardFactory, 0);
+        SRTPCryptoContext context
+            = getContext(pkt.getSSRC(), forwardFactory, forwardContexts, 0);
 
         context.transformPacket(pkt);
         return pkt;
@@ -53,6 +53,16 @@ public interface ConfigurationService
     public static final String PNAME_CONFIGURATION_FILE_NAME
         = "net.java.sip.communicator.CONFIGURATION_FILE_NAME";
 
+    /**
+     * The name of the system property which specifies the time in
+     * milliseconds for which the changes to the properties are to be
+     * coalesced before the configuration file is written. The default value
+     * is <tt>0</tt> which means that the configuration file is written right
+     * after each change.
+     */
+    public static final String PNAME_CONFIGURATION_WRITE_BEHIND_DELAY
+        = "net.java.sip.communicator.CONFIGURATION_WRITE_BEHIND_DELAY";
+
     /**
      * Sets the property with the specified name to the specified value. Calling
      * this method would first trigger a PropertyChangeEvent that will
@@ -400,6 +410,17 @@ public interface ConfigurationService
     public void storeConfiguration()
         throws IOException;
 
+    /**
+     * Stores the changes to the properties which have not been stored in the
+     * configuration file yet because they are being coalesced (as specified by
+     * {@link #PNAME_CONFIGURATION_WRITE_BEHIND_DELAY}). Does nothing if there
+     * are no such changes.
+     *
+     * @throws IOException in case storing the configuration failed.
+     */
+    public void flush()
+        throws IOException;
+
     /**
      * Deletes the current configuration and reloads it from the configuration
      * file.  The
@@ -13,6 +13,7 @@ import java.util.List;
 
 import javax.media.*;
 
+import org.jitsi.impl.neomedia.*;
 import org.jitsi.service.configuration.*;
 import org.jitsi.service.libjitsi.*;
 import org.jitsi.service.neomedia.event.*;
@@ -82,29 +83,7 @@ public class BasicVolumeControl
             float level = gainControl.getLevel() * (MAX_VOLUME_PERCENT / 100);
 
             if (level != 1)
-            {
-                for (int i = offset, toIndex = offset + length;
-                        i < toIndex;
-                        i += 2)
-                {
-                    int i1 = i + 1;
-                    short s = (short) ((buffer[i] & 0xff) | (buffer[i1] << 8));
-
-                    /* Clip, don't wrap. */
-                    int si = s;
-
-                    si = (int) (si * level);
-                    if (si > Short.MAX_VALUE)
-                        s = Short.MAX_VALUE;
-                    else if (si < Short.MIN_VALUE)
-                        s = Short.MIN_VALUE;
-                    else
-                        s = (short) si;
-
-                    buffer[i] = (byte) s;
-                    buffer[i1] = (byte) (s >> 8);
-                }
-            }
+                PcmKernels.applyGain(buffer, offset, length, level);
         }
     }
 
@@ -230,6 +230,16 @@ public interface MediaStreamStats
      */
     public int getNbDiscardedFull();
 
+    /**
+     * Returns the number of packets which the decoder has been asked to
+     * conceal since the beginning of the session, because they were missing
+     * at their playout time.
+     *
+     * @return the number of packets which the decoder has been asked to
+     * conceal since the beginning of the session.
+     */
+    public int getNbConcealed();
+
     /**
      * Returns the current size of the packet queue.
      *
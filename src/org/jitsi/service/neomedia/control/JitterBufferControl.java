@@ -0,0 +1,53 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.service.neomedia.control;
+
+import javax.media.control.*;
+
+/**
+ * Extends <tt>PacketQueueControl</tt> with the state of an adaptive jitter
+ * buffer which sizes itself from the measured inter-arrival jitter and asks
+ * the decoder to conceal the packets which are missing at their playout time.
+ */
+public interface JitterBufferControl
+    extends PacketQueueControl
+{
+    /**
+     * Gets the number of packets which the decoder has been asked to conceal
+     * (with forward error correction data if available or with packet loss
+     * concealment otherwise) because they were missing at their playout time
+     * or because the buffer ran empty.
+     *
+     * @return the number of packets which the decoder has been asked to
+     * conceal
+     */
+    public int getConcealed();
+
+    /**
+     * Gets the number of packets which have been discarded because they
+     * arrived too early i.e. too far ahead of the playout to fit into the
+     * buffer.
+     *
+     * @return the number of packets which have been discarded because they
+     * arrived too early
+     */
+    public int getDiscardedEarly();
+
+    /**
+     * Gets the current estimate of the inter-arrival jitter in milliseconds.
+     *
+     * @return the current estimate of the inter-arrival jitter in milliseconds
+     */
+    public double getJitterMs();
+
+    /**
+     * Gets the delay in milliseconds which the buffer currently aims at.
+     *
+     * @return the delay in milliseconds which the buffer currently aims at
+     */
+    public int getTargetDelayMs();
+}
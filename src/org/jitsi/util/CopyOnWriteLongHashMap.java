@@ -0,0 +1,334 @@
+/*
+ * Jitsi, the OpenSource Java VoIP and Instant Messaging client.
+ *
+ * Distributable under LGPL license.
+ * See terms of license at gnu.org.
+ */
+package org.jitsi.util;
+
+/**
+ * Implements a map with primitive <tt>long</tt> keys which is optimized for
+ * lookups on hot paths (e.g. by SSRC for every RTP packet) and infrequent
+ * modifications. Lookups neither box their keys nor take locks: they read an
+ * immutable open-addressing hash table through a <tt>volatile</tt> reference.
+ * Modifications are serialized and copy the table.
+ *
+ * @param <V> the type of the values of the map
+ */
+public class CopyOnWriteLongHashMap<V>
+{
+    /**
+     * The immutable hash table which represents the current state of this
+     * map.
+     */
+    private volatile Table table = Table.EMPTY;
+
+    /**
+     * Removes all mappings from this map.
+     */
+    public synchronized void clear()
+    {
+        table = Table.EMPTY;
+    }
+
+    /**
+     * Determines whether this map contains a mapping for a specific key.
+     *
+     * @param key the key to check
+     * @return <tt>true</tt> if this map contains a mapping for <tt>key</tt>;
+     * otherwise, <tt>false</tt>
+     */
+    public boolean containsKey(long key)
+    {
+        return (table.get(key) != null);
+    }
+
+    /**
+     * Gets the value to which a specific key is mapped.
+     *
+     * @param key the key to get the value of
+     * @return the value to which <tt>key</tt> is mapped or <tt>null</tt> if
+     * this map contains no mapping for <tt>key</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        return (V) table.get(key);
+    }
+
+    /**
+     * Determines whether this map contains no mappings.
+     *
+     * @return <tt>true</tt> if this map contains no mappings; otherwise,
+     * <tt>false</tt>
+     */
+    public boolean isEmpty()
+    {
+        return (table.size == 0);
+    }
+
+    /**
+     * Gets a snapshot of the keys of this map.
+     *
+     * @return an array of the keys of this map at the time of the call
+     */
+    public long[] keys()
+    {
+        Table table = this.table;
+        long[] keys = new long[table.size];
+        int i = 0;
+
+        for (int slot = 0; slot < table.values.length; slot++)
+            if (table.values[slot] != null)
+                keys[i++] = table.keys[slot];
+        return keys;
+    }
+
+    /**
+     * Maps a specific key to a specific value.
+     *
+     * @param key the key to map
+     * @param value the value to map <tt>key</tt> to
+     * @return the value <tt>key</tt> was mapped to before the call or
+     * <tt>null</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V put(long key, V value)
+    {
+        if (value == null)
+            throw new NullPointerException("value");
+
+        Table table = this.table;
+        Object oldValue = table.get(key);
+
+        if (oldValue != value)
+            this.table = table.copy(key, value, null);
+        return (V) oldValue;
+    }
+
+    /**
+     * Maps a specific key to a specific value unless the key is already
+     * mapped.
+     *
+     * @param key the key to map
+     * @param value the value to map <tt>key</tt> to
+     * @return the value <tt>key</tt> is mapped to after the call
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V putIfAbsent(long key, V value)
+    {
+        if (value == null)
+            throw new NullPointerException("value");
+
+        Table table = this.table;
+        Object oldValue = table.get(key);
+
+        if (oldValue == null)
+        {
+            this.table = table.copy(key, value, null);
+            return value;
+        }
+        else
+            return (V) oldValue;
+    }
+
+    /**
+     * Removes the mapping of a specific key.
+     *
+     * @param key the key to remove the mapping of
+     * @return the value <tt>key</tt> was mapped to before the call or
+     * <tt>null</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(long key)
+    {
+        Table table = this.table;
+        Object oldValue = table.get(key);
+
+        if (oldValue != null)
+            this.table = table.copy(key, null, null);
+        return (V) oldValue;
+    }
+
+    /**
+     * Removes all mappings to a specific value.
+     *
+     * @param value the value to remove the mappings to
+     * @return <tt>true</tt> if this map changed as a result of the call;
+     * otherwise, <tt>false</tt>
+     */
+    public synchronized boolean removeValue(V value)
+    {
+        Table table = this.table;
+        Table newTable = table.copy(0, null, value);
+
+        if (newTable.size == table.size)
+            return false;
+        else
+        {
+            this.table = newTable;
+            return true;
+        }
+    }
+
+    /**
+     * Gets the number of mappings in this map.
+     *
+     * @return the number of mappings in this map
+     */
+    public int size()
+    {
+        return table.size;
+    }
+
+    /**
+     * Represents an immutable open-addressing hash table with linear probing.
+     */
+    private static class Table
+    {
+        /**
+         * The <tt>Table</tt> without mappings.
+         */
+        static final Table EMPTY = new Table(new long[1], new Object[1], 0);
+
+        /**
+         * The keys of the mappings in this table.
+         */
+        final long[] keys;
+
+        /**
+         * The bit mask which maps a hash code to a slot index.
+         */
+        final int mask;
+
+        /**
+         * The number of mappings in this table.
+         */
+        final int size;
+
+        /**
+         * The values of the mappings in this table. A <tt>null</tt> element
+         * denotes a free slot.
+         */
+        final Object[] values;
+
+        /**
+         * Initializes a new <tt>Table</tt> instance.
+         *
+         * @param keys the keys of the mappings of the new instance
+         * @param values the values of the mappings of the new instance
+         * @param size the number of mappings of the new instance
+         */
+        private Table(long[] keys, Object[] values, int size)
+        {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+
+            mask = values.length - 1;
+        }
+
+        /**
+         * Gets the index of the slot at which the probing for a specific key
+         * starts.
+         *
+         * @param key the key to get the index of the initial slot of
+         * @param mask the bit mask which maps a hash code to a slot index
+         * @return the index of the slot at which the probing for <tt>key</tt>
+         * starts
+         */
+        private static int slot(long key, int mask)
+        {
+            long h = key * 0x9E3779B97F4A7C15L;
+
+            return ((int) (h ^ (h >>> 32))) & mask;
+        }
+
+        /**
+         * Initializes a copy of this table with a specific mapping added,
+         * replaced or removed and/or with all mappings to a specific value
+         * removed.
+         *
+         * @param key the key of the mapping to add, replace or remove
+         * @param value the value to map <tt>key</tt> to or <tt>null</tt> to
+         * remove the mapping of <tt>key</tt>
+         * @param removal the value to remove all mappings to or <tt>null</tt>
+         * @return the copy of this table
+         */
+        Table copy(long key, Object value, Object removal)
+        {
+            int capacity = 1;
+            int minCapacity = 2 * (size + 1);
+
+            while (capacity < minCapacity)
+                capacity <<= 1;
+
+            long[] newKeys = new long[capacity];
+            Object[] newValues = new Object[capacity];
+            int newMask = capacity - 1;
+            int newSize = 0;
+            boolean put = (value != null) && (removal == null);
+
+            for (int i = 0; i < values.length; i++)
+            {
+                Object v = values[i];
+
+                if (v == null)
+                    continue;
+
+                long k = keys[i];
+
+                if ((removal != null) ? (v == removal) : (k == key))
+                    continue;
+
+                insert(newKeys, newValues, newMask, k, v);
+                newSize++;
+            }
+            if (put)
+            {
+                insert(newKeys, newValues, newMask, key, value);
+                newSize++;
+            }
+            return new Table(newKeys, newValues, newSize);
+        }
+
+        /**
+         * Gets the value a specific key is mapped to in this table.
+         *
+         * @param key the key to get the value of
+         * @return the value <tt>key</tt> is mapped to in this table or
+         * <tt>null</tt>
+         */
+        Object get(long key)
+        {
+            for (int i = slot(key, mask);; i = (i + 1) & mask)
+            {
+                Object v = values[i];
+
+                if ((v == null) || (keys[i] == key))
+                    return v;
+            }
+        }
+
+        /**
+         * Inserts a mapping into a specific table which is under construction.
+         *
+         * @param keys the keys of the table to insert into
+         * @param values the values of the table to insert into
+         * @param mask the bit mask of the table to insert into
+         * @param key the key of the mapping to insert
+         * @param value the value of the mapping to insert
+         */
+        private static void insert(
+                long[] keys, Object[] values, int mask,
+                long key, Object value)
+        {
+            int i = slot(key, mask);
+
+            while (values[i] != null)
+                i = (i + 1) & mask;
+            keys[i] = key;
+            values[i] = value;
+        }
+    }
+}